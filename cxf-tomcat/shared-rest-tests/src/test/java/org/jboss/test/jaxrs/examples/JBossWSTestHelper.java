@@ -5,8 +5,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.WeakHashMap;
@@ -17,6 +19,7 @@ import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.test.jaxrs.examples.common.UndeployListener;
 
 public class JBossWSTestHelper {
 
@@ -288,10 +291,26 @@ public class JBossWSTestHelper {
 	    }
 	    
 	    public static void setXml(WebArchive archive, String application, String urlPattern) {
+	       setXml(archive, application, urlPattern, Collections.<String, String>emptyMap());
+	    }
+
+	    /**
+	     * Same as above, adding the given init-params to the CXF servlet, e.g. the StoreFactory of the deployment.
+	     * The UndeployListener closing the stores of the deployment is always declared.
+	     */
+	    public static void setXml(WebArchive archive, String application, String urlPattern, Map<String, String> initParams) {
+	       StringBuilder params = new StringBuilder();
+	       for (Entry<String, String> param : initParams.entrySet()) {
+	          params.append("<init-param><param-name>").append(param.getKey()).append("</param-name><param-value>")
+	                .append(param.getValue()).append("</param-value></init-param>");
+	       }
+	       archive.addClass(UndeployListener.class);
 	       archive.setWebXML(new StringAsset("<web-app xmlns=\"http://java.sun.com/xml/ns/javaee\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
                  + "xsi:schemaLocation=\"http://java.sun.com/xml/ns/javaee http://java.sun.com/xml/ns/javaee/web-app_3_0.xsd\" version=\"3.0\">"
+                 + "<listener><listener-class>" + UndeployListener.class.getName() + "</listener-class></listener>"
                  + "<servlet><servlet-name>CXFServlet</servlet-name><servlet-class>org.apache.cxf.jaxrs.servlet.CXFNonSpringJaxrsServlet</servlet-class><load-on-startup>1</load-on-startup>"
                  + "<init-param><param-name>javax.ws.rs.Application</param-name><param-value>" + application + "</param-value></init-param>"
+                 + params
                  + "</servlet><servlet-mapping><servlet-name>CXFServlet</servlet-name><url-pattern>" + urlPattern + "</url-pattern></servlet-mapping></web-app>"));
 	    }
 }
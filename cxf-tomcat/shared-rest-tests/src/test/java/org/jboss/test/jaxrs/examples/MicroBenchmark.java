@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples;
+
+/**
+ * Minimal timing harness shared by the *Benchmark classes. Those classes are not matched by the
+ * surefire includes, so they only run when selected explicitly, e.g. -Dtest=CustomerXmlReaderBenchmark
+ */
+public final class MicroBenchmark
+{
+   public interface Op
+   {
+      void run(int i) throws Exception;
+   }
+
+   private MicroBenchmark()
+   {
+   }
+
+   /**
+    * Runs the operation once for warm-up and once measured, printing and returning the mean ns/op.
+    */
+   public static double nsPerOp(String label, int iterations, Op op) throws Exception
+   {
+      for (int i = 0; i < iterations; i++)
+      {
+         op.run(i);
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+      {
+         op.run(i);
+      }
+      double ns = (double) (System.nanoTime() - start) / iterations;
+      System.out.println(String.format("%-48s %12.1f ns/op", label, ns));
+      return ns;
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Secondary index of a store on one property: the ids holding each value, as an {@link OrderedIdIndex} so a
+ * posting list is read in id order from any id without a lock and knows its size. A posting list left empty
+ * is kept for the next id taking that value.
+ */
+public final class AttributeIndex<V>
+{
+   /**
+    * Reads the indexed property of a value, null when it has none.
+    */
+   public interface Attribute<V>
+   {
+      String valueOf(V value);
+   }
+
+   private static final OrderedIdIndex NONE = new OrderedIdIndex();
+
+   private final String property;
+   private final Attribute<V> attribute;
+   private final ConcurrentMap<String, OrderedIdIndex> postings = new ConcurrentHashMap<String, OrderedIdIndex>();
+
+   public AttributeIndex(String property, Attribute<V> attribute)
+   {
+      this.property = property;
+      this.attribute = attribute;
+   }
+
+   public String getProperty()
+   {
+      return property;
+   }
+
+   /**
+    * Returns the ids holding the given value, an empty posting list if there are none; it must not be changed.
+    */
+   public OrderedIdIndex postings(String key)
+   {
+      OrderedIdIndex ids = postings.get(key);
+      return ids == null ? NONE : ids;
+   }
+
+   /**
+    * Moves the id from the posting list of its previous value to the one of its new value, either may be null.
+    */
+   void update(int id, V previous, V value)
+   {
+      String from = previous == null ? null : attribute.valueOf(previous);
+      String to = value == null ? null : attribute.valueOf(value);
+      if (from != null && from.equals(to))
+      {
+         return;
+      }
+      if (to != null)
+      {
+         OrderedIdIndex ids = postings.get(to);
+         if (ids == null)
+         {
+            OrderedIdIndex created = new OrderedIdIndex();
+            ids = postings.putIfAbsent(to, created);
+            if (ids == null)
+            {
+               ids = created;
+            }
+         }
+         ids.add(id);
+      }
+      if (from != null)
+      {
+         postings(from).remove(id);
+      }
+   }
+}
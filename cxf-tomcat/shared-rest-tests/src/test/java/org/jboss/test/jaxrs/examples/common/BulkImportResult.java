@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a bulk import: the assigned ids as ranges ("1-1000", "1003"), the number of imported and
+ * rejected records and the first {@link CustomerBulkImport#MAX_REPORTED_ERRORS} rejections.
+ */
+@XmlRootElement(name = "bulk-import")
+@XmlType(propOrder = {"complete", "imported", "failed", "ranges", "errors"})
+public class BulkImportResult
+{
+   private boolean complete;
+   private int imported;
+   private int failed;
+   private List<String> ranges = new ArrayList<String>();
+   private List<BulkImportError> errors = new ArrayList<BulkImportError>();
+
+   /**
+    * False when the document could not be read to its end; the records before the failure are kept.
+    */
+   @XmlElement
+   public boolean isComplete()
+   {
+      return complete;
+   }
+
+   public void setComplete(boolean complete)
+   {
+      this.complete = complete;
+   }
+
+   @XmlElement
+   public int getImported()
+   {
+      return imported;
+   }
+
+   public void setImported(int imported)
+   {
+      this.imported = imported;
+   }
+
+   @XmlElement
+   public int getFailed()
+   {
+      return failed;
+   }
+
+   public void setFailed(int failed)
+   {
+      this.failed = failed;
+   }
+
+   @XmlElementWrapper(name = "ids")
+   @XmlElement(name = "range")
+   public List<String> getRanges()
+   {
+      return ranges;
+   }
+
+   public void setRanges(List<String> ranges)
+   {
+      this.ranges = ranges;
+   }
+
+   @XmlElementWrapper(name = "errors")
+   @XmlElement(name = "error")
+   public List<BulkImportError> getErrors()
+   {
+      return errors;
+   }
+
+   public void setErrors(List<BulkImportError> errors)
+   {
+      this.errors = errors;
+   }
+}
@@ -0,0 +1,217 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Record codecs of the persistent stores. Strings are stored as UTF-8, {@link CustomerData} customers in the
+ * {@link CustomerRecordCodec} layout and the other domain classes as the JSON their generated
+ * <code>&lt;Type&gt;JsonProvider</code> writes. A {@link Versioned} value is stored with its version, in the
+ * codec of the class it wraps.
+ */
+public final class Codecs
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private static final class StringCodec implements MappedStore.Codec<String>
+   {
+      public byte[] encode(String value)
+      {
+         return value.getBytes(UTF_8);
+      }
+
+      public String decode(int id, ByteBuffer record)
+      {
+         return new String(bytes(record), UTF_8);
+      }
+   }
+
+   /**
+    * Goes through the static readObject / writeObject methods the JSON provider generator emits, so a value
+    * reads back as it would from a request body.
+    */
+   private static final class JsonProviderCodec<V> implements MappedStore.Codec<V>
+   {
+      private final Class<V> type;
+      private final Method write;
+      private final Method read;
+      private final Constructor<?> parser;
+
+      private JsonProviderCodec(Class<V> type, Class<?> provider, Class<?> parserType) throws NoSuchMethodException
+      {
+         this.type = type;
+         write = provider.getMethod("writeObject", Writer.class, type);
+         read = provider.getMethod("readObject", parserType);
+         parser = parserType.getConstructor(Reader.class);
+      }
+
+      public byte[] encode(V value)
+      {
+         StringWriter out = new StringWriter();
+         invoke(write, out, value);
+         return out.toString().getBytes(UTF_8);
+      }
+
+      public V decode(int id, ByteBuffer record)
+      {
+         try
+         {
+            Object in = parser.newInstance(new InputStreamReader(new ByteArrayInputStream(bytes(record)), UTF_8));
+            return type.cast(invoke(read, in));
+         }
+         catch (InvocationTargetException e)
+         {
+            throw new IllegalStateException("Cannot decode record " + id, e.getCause());
+         }
+         catch (ReflectiveOperationException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      private static Object invoke(Method method, Object... args)
+      {
+         try
+         {
+            return method.invoke(null, args);
+         }
+         catch (InvocationTargetException e)
+         {
+            throw new IllegalStateException(method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                  + " failed", e.getCause());
+         }
+         catch (IllegalAccessException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+   }
+
+   /**
+    * Writes the version and the class of a {@link Versioned} value ahead of the value, as the codec of its class
+    * encodes it; the class is read back through the class loader of the codecs, the one of the deployment.
+    */
+   private static final class VersionedCodec implements MappedStore.Codec<Versioned<Object>>
+   {
+      private final ConcurrentMap<String, MappedStore.Codec<Object>> codecs =
+            new ConcurrentHashMap<String, MappedStore.Codec<Object>>();
+
+      public byte[] encode(Versioned<Object> versioned)
+      {
+         Object value = versioned.getValue();
+         byte[] type = value.getClass().getName().getBytes(UTF_8);
+         byte[] bytes = codec(value.getClass().getName()).encode(value);
+         return ByteBuffer.allocate(8 + 2 + type.length + bytes.length).putLong(versioned.getVersion())
+               .putShort((short) type.length).put(type).put(bytes).array();
+      }
+
+      public Versioned<Object> decode(int id, ByteBuffer record)
+      {
+         long version = record.getLong();
+         byte[] type = new byte[record.getShort()];
+         record.get(type);
+         return Versioned.of(codec(new String(type, UTF_8)).decode(id, record.slice()), version);
+      }
+
+      @SuppressWarnings("unchecked")
+      private MappedStore.Codec<Object> codec(String type)
+      {
+         MappedStore.Codec<Object> codec = codecs.get(type);
+         if (codec == null)
+         {
+            try
+            {
+               codec = (MappedStore.Codec<Object>) forType(Class.forName(type, true, Codecs.class.getClassLoader()));
+            }
+            catch (ClassNotFoundException e)
+            {
+               throw new IllegalStateException("Cannot load the versioned type " + type, e);
+            }
+            if (codec == null)
+            {
+               throw new IllegalStateException("No codec for the versioned type " + type);
+            }
+            codecs.putIfAbsent(type, codec);
+         }
+         return codec;
+      }
+   }
+
+   private Codecs()
+   {
+   }
+
+   /**
+    * Returns the codec of the type, null if it has none.
+    */
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   public static <V> MappedStore.Codec<V> forType(Class<V> type)
+   {
+      if (type == String.class)
+      {
+         return (MappedStore.Codec<V>) (MappedStore.Codec<?>) new StringCodec();
+      }
+      if (CustomerData.class.isAssignableFrom(type))
+      {
+         return new CustomerRecordCodec(type);
+      }
+      if (type == Versioned.class)
+      {
+         return (MappedStore.Codec<V>) (MappedStore.Codec<?>) new VersionedCodec();
+      }
+      try
+      {
+         ClassLoader loader = type.getClassLoader();
+         Class<?> provider = Class.forName(type.getName() + "JsonProvider", true, loader);
+         String name = provider.getName();
+         Class<?> parser = Class.forName(name.substring(0, name.lastIndexOf('.') + 1) + "JsonCodec", true, loader);
+         return new JsonProviderCodec<V>(type, provider, parser);
+      }
+      catch (ClassNotFoundException e)
+      {
+         return null;
+      }
+      catch (NoSuchMethodException e)
+      {
+         return null;
+      }
+   }
+
+   static byte[] bytes(ByteBuffer record)
+   {
+      byte[] bytes = new byte[record.remaining()];
+      record.get(bytes);
+      return bytes;
+   }
+}
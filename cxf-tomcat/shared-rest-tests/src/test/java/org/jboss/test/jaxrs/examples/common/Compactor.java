@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes the values of a store which became garbage, e.g. cancelled orders, in the background. The ids are
+ * marked when their value becomes garbage, so a sweep visits those only; it removes them in batches of at most
+ * {@link #BATCH_MILLIS} ms, each id with a {@link Store#compute(int, Store.Update)} of its own, and pauses as
+ * long between batches. No lock is held across ids, so the requests of the store are never queued behind a
+ * sweep and a reader never waits for it.
+ */
+public class Compactor<V>
+{
+   public static final long BATCH_MILLIS = 2;
+   private static final int CHUNK = 256;
+   private static final ExecutorService sweeper = CustomerXmlExport.createExecutor("store-compaction", 1);
+
+   /**
+    * Tells whether a value can be removed.
+    */
+   public interface Garbage<V>
+   {
+      boolean isGarbage(V value);
+   }
+
+   /**
+    * Told about every value a sweep removed, from the sweeping thread.
+    */
+   public interface Removal<V>
+   {
+      void removed(int id, V value);
+   }
+
+   private final Store<V> store;
+   private final Garbage<V> garbage;
+   private final Removal<V> listener;
+   private final OrderedIdIndex marked = new OrderedIdIndex();
+   private final AtomicBoolean running = new AtomicBoolean();
+   private final AtomicLong removed = new AtomicLong();
+   private final Store.Update<V> removal;
+   // the value the last removal took out, only the sweeping thread reads and writes it
+   private V swept;
+
+   public Compactor(Store<V> store, Garbage<V> garbage)
+   {
+      this(store, garbage, null);
+   }
+
+   public Compactor(Store<V> store, final Garbage<V> garbage, Removal<V> listener)
+   {
+      this.store = store;
+      this.garbage = garbage;
+      this.listener = listener;
+      this.removal = new Store.Update<V>()
+      {
+         public V apply(int id, V current)
+         {
+            if (current != null && garbage.isGarbage(current))
+            {
+               swept = current;
+               return null;
+            }
+            return current;
+         }
+      };
+   }
+
+   /**
+    * Records that the value of the id became garbage.
+    */
+   public void mark(int id)
+   {
+      marked.add(id);
+   }
+
+   /**
+    * Marks the garbage a store already holds, e.g. a persistent one coming back, in the background.
+    */
+   public void scan()
+   {
+      sweeper.submit(new Runnable()
+      {
+         public void run()
+         {
+            for (int[] ids = store.ids(Integer.MIN_VALUE, CHUNK); ids.length > 0; ids = store.ids(ids[ids.length - 1] + 1, CHUNK))
+            {
+               for (int id : ids)
+               {
+                  V value = store.get(id);
+                  if (value != null && garbage.isGarbage(value))
+                  {
+                     marked.add(id);
+                  }
+               }
+               if (ids[ids.length - 1] == Integer.MAX_VALUE)
+               {
+                  break;
+               }
+            }
+         }
+      });
+   }
+
+   /**
+    * Starts a sweep of the marked ids unless one is running, and returns whether it did; the sweep runs until
+    * no id is marked.
+    */
+   public boolean sweep()
+   {
+      if (!running.compareAndSet(false, true))
+      {
+         return false;
+      }
+      sweeper.submit(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               while (batch())
+               {
+                  TimeUnit.MILLISECONDS.sleep(BATCH_MILLIS);
+               }
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+            }
+            finally
+            {
+               running.set(false);
+            }
+         }
+      });
+      return true;
+   }
+
+   public boolean isRunning()
+   {
+      return running.get();
+   }
+
+   /**
+    * Returns how many ids are marked and not swept yet.
+    */
+   public int pending()
+   {
+      return marked.size();
+   }
+
+   /**
+    * Returns how many values the sweeps removed so far.
+    */
+   public long removed()
+   {
+      return removed.get();
+   }
+
+   /**
+    * Sweeps marked ids until the time of a batch is up, and returns whether some are left.
+    */
+   boolean batch()
+   {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS);
+      int from = Integer.MIN_VALUE;
+      while (true)
+      {
+         int[] ids = marked.from(from, CHUNK);
+         if (ids.length == 0)
+         {
+            // ids marked meanwhile below the last one swept are left to the next batch
+            return from != Integer.MIN_VALUE && marked.size() > 0;
+         }
+         for (int id : ids)
+         {
+            if (store.get(id) != null && store.compute(id, removal) == null && swept != null)
+            {
+               removed.incrementAndGet();
+               if (listener != null)
+               {
+                  listener.removed(id, swept);
+               }
+            }
+            swept = null;
+            marked.remove(id);
+         }
+         if (ids[ids.length - 1] == Integer.MAX_VALUE)
+         {
+            return marked.size() > 0;
+         }
+         from = ids[ids.length - 1] + 1;
+         if (System.nanoTime() - deadline >= 0)
+         {
+            return true;
+         }
+      }
+   }
+}
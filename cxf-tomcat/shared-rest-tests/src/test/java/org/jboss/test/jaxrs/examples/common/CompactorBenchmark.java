@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.junit.Test;
+
+/**
+ * Latency of order reads while half of 1M orders, all cancelled, are purged: by the former purge holding the
+ * store for the whole scan, and by a {@link Compactor} sweeping in time-bounded batches.
+ */
+public class CompactorBenchmark
+{
+   private static final int ORDERS = 1000000;
+
+   private static final Compactor.Garbage<Order> CANCELLED = new Compactor.Garbage<Order>()
+   {
+      public boolean isGarbage(Order order)
+      {
+         return order.isCancelled();
+      }
+   };
+
+   @Test
+   public void testReadLatencyDuringPurge() throws Exception
+   {
+      for (int run = 0; run < 2; run++)
+      {
+         final Store<Order> locked = orders();
+         reads("reads, purge holding the store", locked, new Runnable()
+         {
+            public void run()
+            {
+               synchronized (locked)
+               {
+                  for (Order order : locked.range(0, Integer.MAX_VALUE))
+                  {
+                     if (order.isCancelled())
+                     {
+                        locked.remove(order.getId());
+                     }
+                  }
+               }
+            }
+         });
+
+         final Store<Order> swept = orders();
+         final Compactor<Order> compactor = new Compactor<Order>(swept, CANCELLED);
+         for (int id = 2; id <= ORDERS; id += 2)
+         {
+            compactor.mark(id);
+         }
+         reads("reads, compactor sweeping", swept, new Runnable()
+         {
+            public void run()
+            {
+               compactor.sweep();
+               while (compactor.isRunning())
+               {
+                  try
+                  {
+                     Thread.sleep(1);
+                  }
+                  catch (InterruptedException e)
+                  {
+                     throw new RuntimeException(e);
+                  }
+               }
+            }
+         });
+      }
+   }
+
+   private static Store<Order> orders()
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      for (int id = 1; id <= ORDERS; id++)
+      {
+         Order order = new Order();
+         order.setId(id);
+         order.setCancelled(id % 2 == 0);
+         store.put(id, order);
+      }
+      return store;
+   }
+
+   /**
+    * Reads orders, synchronized on the store as the resource reads were against the former purge, until the
+    * purge is over, and prints the percentiles of the read latency.
+    */
+   private static void reads(String label, final Store<Order> store, Runnable purge) throws Exception
+   {
+      final AtomicBoolean done = new AtomicBoolean();
+      final long[] latencies = new long[1 << 22];
+      final int[] count = new int[1];
+      Thread reader = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            int id = 1;
+            while (!done.get() && count[0] < latencies.length)
+            {
+               id = (int) ((id * 48271L) % ORDERS) + 1;
+               long start = System.nanoTime();
+               synchronized (store)
+               {
+                  store.get(id);
+               }
+               latencies[count[0]++] = System.nanoTime() - start;
+               Thread.yield();
+            }
+         }
+      });
+      long start = System.nanoTime();
+      reader.start();
+      purge.run();
+      long millis = (System.nanoTime() - start) / 1000000;
+      done.set(true);
+      reader.join();
+      long[] sorted = Arrays.copyOf(latencies, count[0]);
+      Arrays.sort(sorted);
+      System.out.println(String.format("%-34s purge %5d ms, %8d reads, p50 %8d ns, p99 %10d ns, max %10d ns",
+            label, millis, sorted.length, sorted[sorted.length / 2], sorted[sorted.length * 99 / 100],
+            sorted[sorted.length - 1]));
+   }
+}
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactorTest
+{
+   private static final Compactor.Garbage<Order> CANCELLED = new Compactor.Garbage<Order>()
+   {
+      public boolean isGarbage(Order order)
+      {
+         return order.isCancelled();
+      }
+   };
+
+   private static Order order(int id, boolean cancelled)
+   {
+      Order order = new Order();
+      order.setId(id);
+      order.setCancelled(cancelled);
+      return order;
+   }
+
+   private static void await(Compactor<Order> compactor) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while ((compactor.isRunning() || compactor.pending() > 0) && System.nanoTime() < deadline)
+      {
+         Thread.sleep(5);
+      }
+      Assert.assertFalse(compactor.isRunning());
+   }
+
+   @Test
+   public void testRemovesMarkedGarbageOnly() throws Exception
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      Compactor<Order> compactor = new Compactor<Order>(store, CANCELLED);
+      for (int id = 1; id <= 1000; id++)
+      {
+         store.put(id, order(id, false));
+      }
+      for (int id = 2; id <= 1000; id += 2)
+      {
+         store.put(id, order(id, true));
+         compactor.mark(id);
+      }
+      // marked, but put back as a live order before the sweep
+      store.put(500, order(500, false));
+      Assert.assertEquals(500, compactor.pending());
+
+      Assert.assertTrue(compactor.sweep());
+      await(compactor);
+      Assert.assertEquals(0, compactor.pending());
+      Assert.assertEquals(499, compactor.removed());
+      Assert.assertEquals(501, store.size());
+      Assert.assertNotNull(store.get(500));
+      Assert.assertNull(store.get(2));
+      Assert.assertNotNull(store.get(1));
+   }
+
+   @Test
+   public void testBatchesAreTimeBounded()
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      Compactor<Order> compactor = new Compactor<Order>(store, CANCELLED);
+      for (int id = 1; id <= 200000; id++)
+      {
+         store.put(id, order(id, true));
+         compactor.mark(id);
+      }
+      int batches = 0;
+      while (compactor.batch())
+      {
+         batches++;
+      }
+      Assert.assertTrue(batches > 0);
+      Assert.assertEquals(0, store.size());
+      Assert.assertEquals(200000, compactor.removed());
+   }
+
+   @Test
+   public void testOneSweepAtATime() throws Exception
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      Compactor<Order> compactor = new Compactor<Order>(store, CANCELLED);
+      for (int id = 1; id <= 100000; id++)
+      {
+         store.put(id, order(id, true));
+         compactor.mark(id);
+      }
+      Assert.assertTrue(compactor.sweep());
+      Assert.assertFalse(compactor.sweep());
+      await(compactor);
+      Assert.assertEquals(0, store.size());
+      Assert.assertTrue(compactor.sweep());
+      await(compactor);
+   }
+
+   @Test
+   public void testScanMarksExistingGarbage() throws Exception
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      for (int id = 1; id <= 1000; id++)
+      {
+         store.put(id, order(id, id % 3 == 0));
+      }
+      Compactor<Order> compactor = new Compactor<Order>(store, CANCELLED);
+      compactor.scan();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (compactor.pending() < 333 && System.nanoTime() < deadline)
+      {
+         Thread.sleep(5);
+      }
+      Assert.assertEquals(333, compactor.pending());
+      compactor.sweep();
+      await(compactor);
+      Assert.assertEquals(667, store.size());
+   }
+}
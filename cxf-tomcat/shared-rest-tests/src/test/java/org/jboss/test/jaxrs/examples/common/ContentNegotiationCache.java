@@ -0,0 +1,364 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Caches the outcome of content negotiation for the GET methods of the given resource classes.
+ *
+ * The methods are grouped by path template, each group with the media types its methods produce. The first
+ * time a raw <code>Accept</code> header is seen for a group, its media ranges are parsed, ordered by quality
+ * and specificity and matched against those types; the decision is kept in a bounded per-group map. When it
+ * names a single media type the header is replaced by that type before the runtime matches the request, so
+ * the runtime parses one type and finds one candidate. Headers whose best range matches several types, or
+ * none, are remembered as undecided and left to the runtime's full negotiation, as are headers seen once the
+ * map is full.
+ *
+ * Resource methods see the rewritten header.
+ */
+@Provider
+@PreMatching
+public class ContentNegotiationCache implements ContainerRequestFilter
+{
+   /** Distinct Accept headers remembered per path template. */
+   public static final int MAX_ENTRIES = 64;
+
+   private static final String UNDECIDED = "";
+
+   private final List<Producers> groups = new ArrayList<Producers>();
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+
+   public ContentNegotiationCache(Class<?>... resourceClasses)
+   {
+      Map<String, Producers> templates = new LinkedHashMap<String, Producers>();
+      for (Class<?> resourceClass : resourceClasses)
+      {
+         Path classPath = resourceClass.getAnnotation(Path.class);
+         Produces classProduces = resourceClass.getAnnotation(Produces.class);
+         for (Method method : resourceClass.getMethods())
+         {
+            if (method.getAnnotation(GET.class) == null)
+            {
+               continue;
+            }
+            Path methodPath = method.getAnnotation(Path.class);
+            String template = normalize((classPath == null ? "" : classPath.value()) + "/"
+                  + (methodPath == null ? "" : methodPath.value()));
+            Producers producers = templates.get(template);
+            if (producers == null)
+            {
+               producers = new Producers(template);
+               templates.put(template, producers);
+            }
+            Produces produces = method.getAnnotation(Produces.class);
+            if (produces == null)
+            {
+               produces = classProduces;
+            }
+            if (produces == null)
+            {
+               // produces anything, nothing to decide ahead of the runtime
+               producers.cacheable = false;
+               continue;
+            }
+            for (String value : produces.value())
+            {
+               for (String type : value.split(","))
+               {
+                  producers.types.add(type.trim());
+               }
+            }
+         }
+      }
+      groups.addAll(templates.values());
+      // literal paths before templated ones, as the runtime matches them
+      Collections.sort(groups, new Comparator<Producers>()
+      {
+         public int compare(Producers a, Producers b)
+         {
+            return b.literals - a.literals;
+         }
+      });
+   }
+
+   public void filter(ContainerRequestContext requestContext) throws IOException
+   {
+      String method = requestContext.getMethod();
+      if (!"GET".equals(method) && !"HEAD".equals(method))
+      {
+         return;
+      }
+      String accept = requestContext.getHeaderString(HttpHeaders.ACCEPT);
+      if (accept == null)
+      {
+         return;
+      }
+      String resolved = resolve(requestContext.getUriInfo().getPath(), accept);
+      if (resolved != null && !resolved.equals(accept))
+      {
+         requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT, resolved);
+      }
+   }
+
+   /**
+    * Returns the single media type the Accept header resolves to for the path, null if it is left to the runtime.
+    */
+   public String resolve(String path, String accept)
+   {
+      Producers producers = match(normalize(path));
+      if (producers == null || !producers.cacheable)
+      {
+         return null;
+      }
+      String decision = producers.decisions.get(accept);
+      if (decision != null)
+      {
+         hits.incrementAndGet();
+      }
+      else
+      {
+         misses.incrementAndGet();
+         decision = negotiate(accept, producers.types);
+         if (producers.decisions.size() < MAX_ENTRIES)
+         {
+            producers.decisions.putIfAbsent(accept, decision);
+         }
+      }
+      return UNDECIDED.equals(decision) ? null : decision;
+   }
+
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   public double getHitRatio()
+   {
+      long hits = this.hits.get();
+      long total = hits + misses.get();
+      return total == 0 ? 0 : (double) hits / total;
+   }
+
+   private Producers match(String path)
+   {
+      for (Producers producers : groups)
+      {
+         if (producers.path.matcher(path).matches())
+         {
+            return producers;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Full negotiation: ranges are taken by decreasing quality, then specificity; the first ones matching any
+    * produced type decide, provided they all point to the same one.
+    */
+   static String negotiate(String accept, Set<String> produced)
+   {
+      final List<MediaType> ranges = new ArrayList<MediaType>();
+      List<MediaType> types = new ArrayList<MediaType>();
+      try
+      {
+         for (String range : accept.split(","))
+         {
+            if (range.trim().length() > 0)
+            {
+               ranges.add(MediaType.valueOf(range.trim()));
+            }
+         }
+         for (String type : produced)
+         {
+            types.add(MediaType.valueOf(type));
+         }
+      }
+      catch (IllegalArgumentException e)
+      {
+         return UNDECIDED;
+      }
+      List<MediaType> sorted = new ArrayList<MediaType>(ranges);
+      Collections.sort(sorted, new Comparator<MediaType>()
+      {
+         public int compare(MediaType a, MediaType b)
+         {
+            int c = Double.compare(quality(b), quality(a));
+            return c != 0 ? c : specificity(b) - specificity(a);
+         }
+      });
+      for (int i = 0; i < sorted.size();)
+      {
+         MediaType first = sorted.get(i);
+         if (quality(first) <= 0)
+         {
+            break;
+         }
+         Set<String> matched = new LinkedHashSet<String>();
+         int j = i;
+         for (; j < sorted.size() && quality(sorted.get(j)) == quality(first)
+               && specificity(sorted.get(j)) == specificity(first); j++)
+         {
+            int k = 0;
+            for (String type : produced)
+            {
+               if (sorted.get(j).isCompatible(types.get(k++)))
+               {
+                  matched.add(type);
+               }
+            }
+         }
+         if (matched.size() == 1)
+         {
+            return matched.iterator().next();
+         }
+         if (matched.size() > 1)
+         {
+            return UNDECIDED;
+         }
+         i = j;
+      }
+      return UNDECIDED;
+   }
+
+   private static double quality(MediaType range)
+   {
+      String q = range.getParameters().get("q");
+      try
+      {
+         return q == null ? 1 : Double.parseDouble(q);
+      }
+      catch (NumberFormatException e)
+      {
+         return 0;
+      }
+   }
+
+   private static int specificity(MediaType range)
+   {
+      if (range.isWildcardType())
+      {
+         return 0;
+      }
+      if (range.isWildcardSubtype())
+      {
+         return 1;
+      }
+      int parameters = range.getParameters().size() - (range.getParameters().containsKey("q") ? 1 : 0);
+      return parameters > 0 ? 3 : 2;
+   }
+
+   private static String normalize(String path)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (String segment : path.split("/"))
+      {
+         if (segment.length() > 0)
+         {
+            sb.append('/').append(segment);
+         }
+      }
+      return sb.toString();
+   }
+
+   private static final class Producers
+   {
+      final Pattern path;
+      final int literals;
+      final Set<String> types = new LinkedHashSet<String>();
+      final ConcurrentMap<String, String> decisions = new ConcurrentHashMap<String, String>();
+      boolean cacheable = true;
+
+      Producers(String template)
+      {
+         StringBuilder regex = new StringBuilder();
+         int literals = 0;
+         int i = 0;
+         while (i < template.length())
+         {
+            int open = template.indexOf('{', i);
+            if (open < 0)
+            {
+               open = template.length();
+            }
+            if (open > i)
+            {
+               regex.append(Pattern.quote(template.substring(i, open)));
+               literals += open - i;
+            }
+            if (open == template.length())
+            {
+               break;
+            }
+            int depth = 0;
+            int close = open;
+            for (; close < template.length(); close++)
+            {
+               char c = template.charAt(close);
+               if (c == '{')
+               {
+                  depth++;
+               }
+               else if (c == '}' && --depth == 0)
+               {
+                  break;
+               }
+            }
+            String variable = template.substring(open + 1, Math.min(close, template.length()));
+            int colon = variable.indexOf(':');
+            regex.append('(').append(colon < 0 ? "[^/]+?" : variable.substring(colon + 1).trim()).append(')');
+            i = close + 1;
+         }
+         this.path = Pattern.compile(regex.toString());
+         this.literals = literals;
+      }
+   }
+}
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContentNegotiationCacheTest
+{
+   @Path("/customers")
+   public static class Resource
+   {
+      @GET
+      @Path("{id}")
+      @Produces({"application/xml", "application/json"})
+      public String getCustomer(@PathParam("id") int id)
+      {
+         return null;
+      }
+
+      @GET
+      @Path("{id}")
+      @Produces("text/plain")
+      public String getCustomerString(@PathParam("id") int id)
+      {
+         return null;
+      }
+
+      @GET
+      @Path("count")
+      @Produces("text/plain")
+      public String getCount()
+      {
+         return null;
+      }
+
+      @GET
+      @Path("{id}/raw")
+      public String getRaw(@PathParam("id") int id)
+      {
+         return null;
+      }
+   }
+
+   @Test
+   public void testQualityThenSpecificity()
+   {
+      Set<String> produced = types("application/xml", "application/json", "text/plain");
+      Assert.assertEquals("application/json",
+            ContentNegotiationCache.negotiate("application/xml;q=0.5, application/json", produced));
+      Assert.assertEquals("text/plain", ContentNegotiationCache.negotiate("*/*, text/plain", produced));
+      Assert.assertEquals("application/xml",
+            ContentNegotiationCache.negotiate("text/*;q=0.1, application/xml;q=0.9", produced));
+   }
+
+   @Test
+   public void testUndecided()
+   {
+      Set<String> produced = types("application/xml", "application/json", "text/plain");
+      Assert.assertNull(undecided(ContentNegotiationCache.negotiate("application/*", produced)));
+      Assert.assertNull(undecided(ContentNegotiationCache.negotiate("application/xml, application/json", produced)));
+      Assert.assertNull(undecided(ContentNegotiationCache.negotiate("image/png", produced)));
+      Assert.assertNull(undecided(ContentNegotiationCache.negotiate("text/plain;q=0", produced)));
+      Assert.assertNull(undecided(ContentNegotiationCache.negotiate("not a media type;;", produced)));
+   }
+
+   @Test
+   public void testResolveByPathTemplate()
+   {
+      ContentNegotiationCache cache = new ContentNegotiationCache(Resource.class);
+      Assert.assertEquals("text/plain", cache.resolve("customers/1", "text/plain, application/*;q=0.5"));
+      Assert.assertEquals("application/json", cache.resolve("/customers/1/", "application/json"));
+      // the literal path is matched before the template
+      Assert.assertEquals("text/plain", cache.resolve("customers/count", "*/*"));
+      Assert.assertNull(cache.resolve("customers/1", "*/*"));
+      // no @Produces, left to the runtime
+      Assert.assertNull(cache.resolve("customers/1/raw", "text/plain"));
+      Assert.assertNull(cache.resolve("orders", "text/plain"));
+   }
+
+   @Test
+   public void testHitsAndMisses()
+   {
+      ContentNegotiationCache cache = new ContentNegotiationCache(Resource.class);
+      for (int i = 0; i < 4; i++)
+      {
+         Assert.assertEquals("application/xml", cache.resolve("customers/" + i, "application/xml"));
+         Assert.assertNull(cache.resolve("customers/" + i, "application/*"));
+      }
+      Assert.assertEquals(6, cache.getHits());
+      Assert.assertEquals(2, cache.getMisses());
+      Assert.assertEquals(0.75, cache.getHitRatio(), 0.0);
+   }
+
+   @Test
+   public void testBoundedEntries()
+   {
+      ContentNegotiationCache cache = new ContentNegotiationCache(Resource.class);
+      for (int i = 0; i <= ContentNegotiationCache.MAX_ENTRIES; i++)
+      {
+         cache.resolve("customers/1", "text/plain;level=" + i);
+      }
+      Assert.assertEquals(0, cache.getHits());
+      cache.resolve("customers/1", "text/plain;level=0");
+      Assert.assertEquals(1, cache.getHits());
+      // seen once the map was full, so still negotiated every time
+      cache.resolve("customers/1", "text/plain;level=" + ContentNegotiationCache.MAX_ENTRIES);
+      Assert.assertEquals(1, cache.getHits());
+   }
+
+   private static Set<String> types(String... types)
+   {
+      return new LinkedHashSet<String>(Arrays.asList(types));
+   }
+
+   private static String undecided(String decision)
+   {
+      return decision.length() == 0 ? null : decision;
+   }
+}
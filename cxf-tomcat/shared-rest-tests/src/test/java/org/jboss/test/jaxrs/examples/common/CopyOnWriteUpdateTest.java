@@ -0,0 +1,216 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Readers racing copy-on-write updates: every update writes one token into all the fields of a customer, so a
+ * reader that sees two different tokens in one customer saw it half updated.
+ */
+public class CopyOnWriteUpdateTest
+{
+   private static final int WRITERS = 4;
+   private static final int READERS = 4;
+   private static final int UPDATES = 2000;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testNoTornReads() throws Exception
+   {
+      MappedStoreFactory mapped = new MappedStoreFactory(folder.newFolder("mapped"));
+      LoggedStoreFactory logged = new LoggedStoreFactory(folder.newFolder("logged"), WriteAheadLog.Sync.INTERVAL,
+            10, 100000);
+      try
+      {
+         for (StoreFactory factory : new StoreFactory[] {new InMemoryStoreFactory(), new IntHashStoreFactory(),
+               mapped, logged})
+         {
+            final Store<Customer> store = factory.createStore("customers", Customer.class);
+            store.put(1, customer("initial"));
+            race(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  for (int i = 0; i < UPDATES; i++)
+                  {
+                     String token = Thread.currentThread().getName() + "-" + i;
+                     Customer current;
+                     Customer updated;
+                     do
+                     {
+                        current = store.get(1);
+                        updated = CustomerCopy.of(current);
+                        fill(updated, token);
+                     }
+                     while (!store.replace(1, current, updated));
+                  }
+                  return null;
+               }
+            }, new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  Customer cust = store.get(1);
+                  String token = cust.getFirstName();
+                  for (String field : new String[] {cust.getLastName(), cust.getStreet(), cust.getCity(),
+                        cust.getState(), cust.getZip(), cust.getCountry()})
+                  {
+                     Assert.assertEquals(store.getClass().getSimpleName() + " returned a torn customer", token, field);
+                  }
+                  return null;
+               }
+            });
+         }
+      }
+      finally
+      {
+         mapped.close();
+         logged.close();
+      }
+   }
+
+   @Test
+   public void testVersionsOnlyGrow() throws Exception
+   {
+      final Store<Versioned<Customer>> store = new IntHashStoreFactory().createStore("customers",
+            Versioned.<Customer>type());
+      store.put(1, Versioned.initial(customer("initial")));
+      final ThreadLocal<Long> seen = new ThreadLocal<Long>();
+      race(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            for (int i = 0; i < UPDATES; i++)
+            {
+               Versioned<Customer> current;
+               do
+               {
+                  current = store.get(1);
+               }
+               while (!store.replace(1, current, current.next(customer(Long.toString(current.getVersion() + 1)))));
+            }
+            return null;
+         }
+      }, new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            Versioned<Customer> record = store.get(1);
+            Long last = seen.get();
+            Assert.assertTrue(last == null || record.getVersion() >= last);
+            seen.set(record.getVersion());
+            if (record.getVersion() > 1)
+            {
+               // the value always belongs to the version it is stored with
+               Assert.assertEquals(Long.toString(record.getVersion()), record.getValue().getFirstName());
+            }
+            return null;
+         }
+      });
+      Assert.assertEquals(1 + WRITERS * UPDATES, store.get(1).getVersion());
+   }
+
+   /**
+    * Runs the writers to completion while the readers read in a loop.
+    */
+   private static void race(Callable<Void> writer, final Callable<Void> read) throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+      try
+      {
+         final AtomicBoolean done = new AtomicBoolean();
+         List<Future<Void>> writers = new ArrayList<Future<Void>>();
+         List<Future<Void>> readers = new ArrayList<Future<Void>>();
+         for (int i = 0; i < READERS; i++)
+         {
+            readers.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  while (!done.get())
+                  {
+                     read.call();
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (int i = 0; i < WRITERS; i++)
+         {
+            writers.add(executor.submit(writer));
+         }
+         try
+         {
+            for (Future<Void> f : writers)
+            {
+               f.get();
+            }
+         }
+         finally
+         {
+            done.set(true);
+         }
+         for (Future<Void> f : readers)
+         {
+            f.get();
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   private static Customer customer(String token)
+   {
+      Customer cust = new Customer();
+      cust.setId(1);
+      fill(cust, token);
+      return cust;
+   }
+
+   private static void fill(Customer cust, String token)
+   {
+      cust.setFirstName(token);
+      cust.setLastName(token);
+      cust.setStreet(token);
+      cust.setCity(token);
+      cust.setState(token);
+      cust.setZip(token);
+      cust.setCountry(token);
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a <code>&lt;customers&gt;</code> document of any size into a customer store. Customers are read
+ * one element at a time and stored in batches of {@link #BATCH_SIZE}; each batch takes a contiguous block
+ * of ids from the store with a single allocation. Only the current batch, the id ranges and the first
+ * {@link #MAX_REPORTED_ERRORS} errors are held in memory.
+ *
+ * Records without a first or last name are rejected and reported by their position in the document.
+ */
+public final class CustomerBulkImport<T extends CustomerData>
+{
+   public static final int BATCH_SIZE = 1000;
+   public static final int MAX_REPORTED_ERRORS = 100;
+
+   public interface Factory<T>
+   {
+      T newCustomer();
+   }
+
+   private final Store<T> customerDB;
+   private final List<T> batch = new ArrayList<T>(BATCH_SIZE);
+   private final Map<Integer, T> batchById = new HashMap<Integer, T>(BATCH_SIZE * 2);
+   private final BulkImportResult result = new BulkImportResult();
+   private int rangeStart = -1;
+   private int rangeEnd = -1;
+
+   private CustomerBulkImport(Store<T> customerDB)
+   {
+      this.customerDB = customerDB;
+   }
+
+   public static <T extends CustomerData> BulkImportResult importCustomers(InputStream is, Store<T> customerDB,
+         Factory<T> factory)
+   {
+      return new CustomerBulkImport<T>(customerDB).run(is, factory);
+   }
+
+   private BulkImportResult run(InputStream is, Factory<T> factory)
+   {
+      int index = 0;
+      try
+      {
+         XMLStreamReader reader = CustomerXmlReader.createReader(is);
+         try
+         {
+            reader.nextTag();
+            if (!"customers".equals(reader.getLocalName()))
+            {
+               throw new XMLStreamException("expected <customers> but found <" + reader.getLocalName() + ">",
+                     reader.getLocation());
+            }
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+               if (!"customer".equals(reader.getLocalName()))
+               {
+                  error(index++, "unexpected element <" + reader.getLocalName() + ">");
+                  CustomerXmlReader.skipElement(reader);
+                  continue;
+               }
+               T cust = factory.newCustomer();
+               try
+               {
+                  CustomerXmlReader.readCustomer(reader, cust);
+               }
+               catch (NumberFormatException e)
+               {
+                  // the id attribute is parsed before the reader moves on
+                  error(index++, "invalid id: " + e.getMessage());
+                  CustomerXmlReader.skipElement(reader);
+                  continue;
+               }
+               if (isEmpty(cust.getFirstName()) || isEmpty(cust.getLastName()))
+               {
+                  error(index++, "first-name and last-name are required");
+                  continue;
+               }
+               index++;
+               batch.add(cust);
+               if (batch.size() == BATCH_SIZE)
+               {
+                  flush();
+               }
+            }
+            result.setComplete(true);
+         }
+         finally
+         {
+            reader.close();
+         }
+      }
+      catch (XMLStreamException e)
+      {
+         error(index, "malformed document: " + e.getMessage());
+      }
+      flush();
+      if (rangeStart != -1)
+      {
+         addRange();
+      }
+      return result;
+   }
+
+   private void flush()
+   {
+      int count = batch.size();
+      if (count == 0)
+      {
+         return;
+      }
+      int first = customerDB.nextIds(count);
+      for (int i = 0; i < count; i++)
+      {
+         T cust = batch.get(i);
+         cust.setId(first + i);
+         batchById.put(first + i, cust);
+      }
+      customerDB.putAll(batchById);
+      batchById.clear();
+      batch.clear();
+
+      result.setImported(result.getImported() + count);
+      if (rangeStart != -1 && first == rangeEnd + 1)
+      {
+         rangeEnd = first + count - 1;
+         return;
+      }
+      if (rangeStart != -1)
+      {
+         addRange();
+      }
+      rangeStart = first;
+      rangeEnd = first + count - 1;
+   }
+
+   private void addRange()
+   {
+      result.getRanges().add(rangeStart == rangeEnd ? Integer.toString(rangeStart) : rangeStart + "-" + rangeEnd);
+   }
+
+   private void error(int index, String message)
+   {
+      result.setFailed(result.getFailed() + 1);
+      if (result.getErrors().size() < MAX_REPORTED_ERRORS)
+      {
+         result.getErrors().add(new BulkImportError(index, message));
+      }
+   }
+
+   private static boolean isEmpty(String s)
+   {
+      return s == null || s.trim().length() == 0;
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.test.jaxrs.examples.ex06_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the batching, id ranges and error reporting of {@link CustomerBulkImport}.
+ */
+public class CustomerBulkImportTest
+{
+   private static final CustomerBulkImport.Factory<Customer> FACTORY = new CustomerBulkImport.Factory<Customer>()
+   {
+      public Customer newCustomer()
+      {
+         return new Customer();
+      }
+   };
+
+   @Test
+   public void testRangesAndErrors() throws Exception
+   {
+      Store<Customer> customerDB = new InMemoryStore<Customer>();
+      customerDB.nextIds(10);
+      String xml = "<customers>"
+            + "<customer><first-name>Bill</first-name><last-name>Burke</last-name></customer>"
+            + "<customer><first-name>Joe</first-name></customer>"
+            + "<customer id=\"x\"><first-name>Monica</first-name><last-name>Burke</last-name></customer>"
+            + "<order/>"
+            + "<customer><first-name>Steve</first-name><last-name>Burke</last-name><city>Boston</city></customer>"
+            + "</customers>";
+
+      BulkImportResult result = CustomerBulkImport.importCustomers(stream(xml), customerDB, FACTORY);
+
+      Assert.assertTrue(result.isComplete());
+      Assert.assertEquals(2, result.getImported());
+      Assert.assertEquals(3, result.getFailed());
+      Assert.assertEquals("11-12", result.getRanges().get(0));
+      Assert.assertEquals(1, result.getErrors().get(0).getIndex());
+      Assert.assertEquals(2, result.getErrors().get(1).getIndex());
+      Assert.assertEquals(3, result.getErrors().get(2).getIndex());
+      Assert.assertEquals("Bill", customerDB.get(11).getFirstName());
+      Assert.assertEquals("Boston", customerDB.get(12).getCity());
+      Assert.assertEquals(13, customerDB.nextId());
+   }
+
+   @Test
+   public void testMalformedDocumentKeepsParsedRecords() throws Exception
+   {
+      Store<Customer> customerDB = new InMemoryStore<Customer>();
+      String xml = "<customers>"
+            + "<customer><first-name>Bill</first-name><last-name>Burke</last-name></customer>"
+            + "<customer><first-name>Joe</first-name><last-name>Burke";
+
+      BulkImportResult result = CustomerBulkImport.importCustomers(stream(xml), customerDB, FACTORY);
+
+      Assert.assertFalse(result.isComplete());
+      Assert.assertEquals(1, result.getImported());
+      Assert.assertEquals(1, result.getErrors().get(0).getIndex());
+      Assert.assertEquals(1, customerDB.size());
+   }
+
+   @Test
+   public void testLargeDocumentIsStreamed() throws Exception
+   {
+      final int records = 1000000;
+      final AtomicInteger stored = new AtomicInteger();
+      final AtomicInteger largestBatch = new AtomicInteger();
+      // keeps nothing, so only the importer's own buffers stay on the heap
+      Store<Customer> customerDB = new InMemoryStore<Customer>()
+      {
+         @Override
+         public void putAll(Map<Integer, ? extends Customer> m)
+         {
+            stored.addAndGet(m.size());
+            largestBatch.set(Math.max(largestBatch.get(), m.size()));
+         }
+      };
+      Enumeration<InputStream> chunks = new Enumeration<InputStream>()
+      {
+         private int next = -1;
+
+         public boolean hasMoreElements()
+         {
+            return next <= records;
+         }
+
+         public InputStream nextElement()
+         {
+            if (next > records)
+            {
+               throw new NoSuchElementException();
+            }
+            String chunk;
+            if (next == -1)
+               chunk = "<customers>\n";
+            else if (next == records)
+               chunk = "</customers>\n";
+            else
+               chunk = "   <customer><first-name>Bill" + next + "</first-name><last-name>Burke</last-name></customer>\n";
+            next++;
+            return stream(chunk);
+         }
+      };
+
+      BulkImportResult result = CustomerBulkImport.importCustomers(new SequenceInputStream(chunks), customerDB, FACTORY);
+
+      Assert.assertTrue(result.isComplete());
+      Assert.assertEquals(records, result.getImported());
+      Assert.assertEquals(records, stored.get());
+      Assert.assertEquals(CustomerBulkImport.BATCH_SIZE, largestBatch.get());
+      Assert.assertEquals("1-" + records, result.getRanges().get(0));
+   }
+
+   @Test
+   public void testReportedErrorsAreCapped() throws Exception
+   {
+      StringBuilder xml = new StringBuilder("<customers>");
+      for (int i = 0; i < CustomerBulkImport.MAX_REPORTED_ERRORS * 3; i++)
+      {
+         xml.append("<customer/>");
+      }
+      xml.append("</customers>");
+
+      BulkImportResult result = CustomerBulkImport.importCustomers(stream(xml.toString()),
+            new InMemoryStore<Customer>(), FACTORY);
+
+      Assert.assertEquals(CustomerBulkImport.MAX_REPORTED_ERRORS * 3, result.getFailed());
+      Assert.assertEquals(CustomerBulkImport.MAX_REPORTED_ERRORS, result.getErrors().size());
+      Assert.assertTrue(result.getRanges().isEmpty());
+   }
+
+   private static InputStream stream(String s)
+   {
+      return new ByteArrayInputStream(s.getBytes(Charset.forName("UTF-8")));
+   }
+}
@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+/**
+ * Copies customers for copy-on-write updates, see {@link Store#replace(int, Object, Object)}: a customer handed
+ * to a store is never modified again, so readers and writers never see one half updated.
+ */
+public final class CustomerCopy
+{
+   private CustomerCopy()
+   {
+   }
+
+   /**
+    * Returns a new instance of the class of <code>from</code> with the same properties.
+    */
+   @SuppressWarnings("unchecked")
+   public static <C extends CustomerData> C of(C from)
+   {
+      C copy;
+      try
+      {
+         copy = (C) from.getClass().newInstance();
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException("Cannot instantiate " + from.getClass().getName(), e);
+      }
+      copy.setId(from.getId());
+      copy.setFirstName(from.getFirstName());
+      copy.setLastName(from.getLastName());
+      copy.setStreet(from.getStreet());
+      copy.setCity(from.getCity());
+      copy.setState(from.getState());
+      copy.setZip(from.getZip());
+      copy.setCountry(from.getCountry());
+      return copy;
+   }
+}
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Record layout of a customer in a {@link MappedStore}: first name, last name, street, city, state, zip and
+ * country, each one a short byte count (-1 for null) followed by its UTF-8 bytes. The id is kept by the store.
+ * {@link CustomerXmlWriter#writeCustomer(int, ByteBuffer, boolean, int)} writes this layout without decoding it.
+ */
+public class CustomerRecordCodec<C extends CustomerData> implements MappedStore.Codec<C>
+{
+   static final int FIELDS = 7;
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private final Class<C> type;
+
+   public CustomerRecordCodec(Class<C> type)
+   {
+      this.type = type;
+   }
+
+   public byte[] encode(C cust)
+   {
+      byte[][] fields = {bytes(cust.getFirstName()), bytes(cust.getLastName()), bytes(cust.getStreet()),
+            bytes(cust.getCity()), bytes(cust.getState()), bytes(cust.getZip()), bytes(cust.getCountry())};
+      int length = 0;
+      for (byte[] field : fields)
+      {
+         length += 2 + (field == null ? 0 : field.length);
+      }
+      ByteBuffer record = ByteBuffer.allocate(length);
+      for (byte[] field : fields)
+      {
+         if (field == null)
+         {
+            record.putShort((short) -1);
+         }
+         else
+         {
+            record.putShort((short) field.length);
+            record.put(field);
+         }
+      }
+      return record.array();
+   }
+
+   public C decode(int id, ByteBuffer record)
+   {
+      C cust;
+      try
+      {
+         cust = type.newInstance();
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+      }
+      cust.setId(id);
+      cust.setFirstName(string(record));
+      cust.setLastName(string(record));
+      cust.setStreet(string(record));
+      cust.setCity(string(record));
+      cust.setState(string(record));
+      cust.setZip(string(record));
+      cust.setCountry(string(record));
+      return cust;
+   }
+
+   private static byte[] bytes(String s)
+   {
+      if (s == null)
+      {
+         return null;
+      }
+      byte[] bytes = s.getBytes(UTF_8);
+      if (bytes.length > Short.MAX_VALUE)
+      {
+         throw new IllegalArgumentException("Field longer than " + Short.MAX_VALUE + " bytes");
+      }
+      return bytes;
+   }
+
+   private static String string(ByteBuffer record)
+   {
+      int length = record.getShort();
+      if (length < 0)
+      {
+         return null;
+      }
+      byte[] bytes = new byte[length];
+      record.get(bytes);
+      return new String(bytes, UTF_8);
+   }
+}
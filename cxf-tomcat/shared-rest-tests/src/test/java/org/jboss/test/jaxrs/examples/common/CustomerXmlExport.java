@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes a <code>&lt;customers&gt;</code> document for a snapshot of customers, serializing ranges of
+ * {@link #CHUNK_SIZE} customers on worker threads into pooled {@link CustomerXmlWriter} buffers.
+ *
+ * The calling thread hands the buffers to the stream strictly in range order and flushes after each one,
+ * so the first chunk goes out as soon as it is ready while later ranges are still being written. At most
+ * two ranges per worker are in flight, which bounds the memory to that many buffers whatever the size of
+ * the snapshot. The output is byte for byte the one a single writer would produce.
+ */
+public final class CustomerXmlExport
+{
+   public static final int CHUNK_SIZE = 256;
+
+   private static final ExecutorService workers = createExecutor(Runtime.getRuntime().availableProcessors());
+
+   private CustomerXmlExport()
+   {
+   }
+
+   public static ExecutorService createExecutor(int threads)
+   {
+      return createExecutor("customer-export", threads);
+   }
+
+   /**
+    * A pool of daemon threads which exit when idle, so an undeployed application does not keep them.
+    */
+   public static ExecutorService createExecutor(final String name, int threads)
+   {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+               private final AtomicInteger count = new AtomicInteger();
+
+               public Thread newThread(Runnable r)
+               {
+                  Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+               }
+            });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+   }
+
+   public static void write(OutputStream os, CustomerData[] customers) throws IOException
+   {
+      write(os, customers, workers, Runtime.getRuntime().availableProcessors());
+   }
+
+   public static void write(OutputStream os, final CustomerData[] customers, ExecutorService executor, int threads)
+         throws IOException
+   {
+      if (customers.length == 0)
+      {
+         CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+         try
+         {
+            writer.startCustomers().endCustomers().flushTo(os);
+         }
+         finally
+         {
+            writer.release();
+         }
+         return;
+      }
+      int chunks = (customers.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      int window = Math.max(2, threads * 2);
+      Deque<Future<CustomerXmlWriter>> pending = new ArrayDeque<Future<CustomerXmlWriter>>(window);
+      int submitted = 0;
+      try
+      {
+         while (submitted < chunks && pending.size() < window)
+         {
+            pending.add(executor.submit(chunk(customers, submitted++, chunks)));
+         }
+         while (!pending.isEmpty())
+         {
+            CustomerXmlWriter writer = pending.poll().get();
+            try
+            {
+               writer.flushTo(os);
+            }
+            finally
+            {
+               writer.release();
+            }
+            if (submitted < chunks)
+            {
+               pending.add(executor.submit(chunk(customers, submitted++, chunks)));
+            }
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("export interrupted");
+      }
+      catch (ExecutionException e)
+      {
+         throw new IOException("could not write customers", e.getCause());
+      }
+      finally
+      {
+         for (Future<CustomerXmlWriter> future : pending)
+         {
+            future.cancel(false);
+         }
+      }
+   }
+
+   private static Callable<CustomerXmlWriter> chunk(final CustomerData[] customers, final int chunk, final int chunks)
+   {
+      return new Callable<CustomerXmlWriter>()
+      {
+         public CustomerXmlWriter call()
+         {
+            CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+            if (chunk == 0)
+            {
+               writer.startCustomers();
+            }
+            int end = Math.min(customers.length, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++)
+            {
+               writer.writeCustomer(customers[i], true, 3);
+            }
+            if (chunk == chunks - 1)
+            {
+               writer.endCustomers();
+            }
+            return writer;
+         }
+      };
+   }
+}
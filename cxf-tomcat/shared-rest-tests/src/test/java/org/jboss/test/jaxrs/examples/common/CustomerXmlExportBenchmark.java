@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex05_1.domain.Customer;
+import org.junit.Test;
+
+/**
+ * Export throughput of {@link CustomerXmlExport} for 1, 2, 4, ... worker threads up to the number of cores,
+ * against the single threaded writer the export used to be.
+ */
+public class CustomerXmlExportBenchmark
+{
+   private static final int CUSTOMERS = 200000;
+   private static final int ITERATIONS = 10;
+
+   private static final OutputStream NULL_STREAM = new OutputStream()
+   {
+      @Override
+      public void write(int b)
+      {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+      }
+   };
+
+   @Test
+   public void testScaling() throws Exception
+   {
+      final Customer[] customers = CustomerXmlExportTest.customers(CUSTOMERS);
+
+      double single = MicroBenchmark.nsPerOp("single writer", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+            try
+            {
+               writer.startCustomers();
+               for (Customer customer : customers)
+               {
+                  writer.writeCustomer(customer, true, 3);
+               }
+               writer.endCustomers();
+               writer.flushTo(NULL_STREAM);
+            }
+            finally
+            {
+               writer.release();
+            }
+         }
+      });
+      print(1, single, single);
+
+      int cores = Runtime.getRuntime().availableProcessors();
+      for (int threads = 1;; threads = Math.min(threads * 2, cores))
+      {
+         final int n = threads;
+         final ExecutorService executor = CustomerXmlExport.createExecutor(n);
+         try
+         {
+            double ns = MicroBenchmark.nsPerOp("CustomerXmlExport, " + n + " thread(s)", ITERATIONS, new MicroBenchmark.Op()
+            {
+               public void run(int i) throws Exception
+               {
+                  CustomerXmlExport.write(NULL_STREAM, customers, executor, n);
+               }
+            });
+            print(n, ns, single);
+         }
+         finally
+         {
+            executor.shutdown();
+         }
+         if (threads == cores)
+         {
+            break;
+         }
+      }
+   }
+
+   private static void print(int threads, double ns, double single)
+   {
+      System.out.println(String.format("   %d thread(s): %,.0f customers/s, %.2fx the single writer", threads,
+            CUSTOMERS / (ns / 1e9), single / ns));
+   }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+import org.jboss.test.jaxrs.examples.ex05_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the parallel {@link CustomerXmlExport} keeps the snapshot order and the single writer layout.
+ */
+public class CustomerXmlExportTest
+{
+   @Test
+   public void testSameBytesAsSingleWriter() throws Exception
+   {
+      ExecutorService executor = CustomerXmlExport.createExecutor(4);
+      try
+      {
+         int[] sizes = {0, 1, CustomerXmlExport.CHUNK_SIZE - 1, CustomerXmlExport.CHUNK_SIZE,
+               CustomerXmlExport.CHUNK_SIZE + 1, CustomerXmlExport.CHUNK_SIZE * 37 + 5};
+         for (int size : sizes)
+         {
+            Customer[] customers = customers(size);
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            CustomerXmlExport.write(actual, customers, executor, 4);
+            Assert.assertArrayEquals("size " + size, sequential(customers), actual.toByteArray());
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testHeadChunkIsFlushedFirst() throws Exception
+   {
+      final int size = CustomerXmlExport.CHUNK_SIZE * 8;
+      final StringBuilder flushes = new StringBuilder();
+      OutputStream os = new ByteArrayOutputStream()
+      {
+         @Override
+         public void flush()
+         {
+            flushes.append(size()).append(',');
+         }
+      };
+      ExecutorService executor = CustomerXmlExport.createExecutor(2);
+      try
+      {
+         CustomerXmlExport.write(os, customers(size), executor, 2);
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      // one flush per range, the first one right after the head range
+      String[] counts = flushes.toString().split(",");
+      Assert.assertEquals(8, counts.length);
+      byte[] head = sequential(customers(CustomerXmlExport.CHUNK_SIZE));
+      Assert.assertEquals(head.length - "</customers>\n".length(), Integer.parseInt(counts[0]));
+   }
+
+   @Test(expected = IOException.class)
+   public void testWorkerFailureIsReported() throws Exception
+   {
+      Customer[] customers = customers(CustomerXmlExport.CHUNK_SIZE * 4);
+      customers[CustomerXmlExport.CHUNK_SIZE * 2] = null;
+      CustomerXmlExport.write(new ByteArrayOutputStream(), customers);
+   }
+
+   static Customer[] customers(int size)
+   {
+      Customer[] customers = new Customer[size];
+      for (int i = 0; i < size; i++)
+      {
+         Customer cust = new Customer();
+         cust.setId(i + 1);
+         cust.setFirstName("Bill" + i);
+         cust.setLastName("Burke");
+         cust.setStreet("263 Clarendon Street");
+         cust.setCity("Boston");
+         cust.setState("MA");
+         cust.setZip("02115");
+         cust.setCountry("USA");
+         customers[i] = cust;
+      }
+      return customers;
+   }
+
+   private static byte[] sequential(Customer[] customers) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+      try
+      {
+         writer.startCustomers();
+         for (Customer customer : customers)
+         {
+            writer.writeCustomer(customer, true, 3);
+         }
+         writer.endCustomers();
+         writer.flushTo(out);
+      }
+      finally
+      {
+         writer.release();
+      }
+      return out.toByteArray();
+   }
+}
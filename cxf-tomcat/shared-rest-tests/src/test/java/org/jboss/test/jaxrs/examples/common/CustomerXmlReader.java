@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Reads a <code>&lt;customer&gt;</code> document straight into a {@link CustomerData} bean with StAX,
+ * without building a DOM tree. Whitespace, comments and unknown elements between the fields are skipped.
+ *
+ * The {@link XMLInputFactory} is created once; the StAX spec does not guarantee that a factory is
+ * thread-safe, so only reader creation is serialized and the parsing itself runs unlocked.
+ */
+public final class CustomerXmlReader
+{
+   private static final XMLInputFactory factory = createFactory();
+
+   private CustomerXmlReader()
+   {
+   }
+
+   private static XMLInputFactory createFactory()
+   {
+      XMLInputFactory f = XMLInputFactory.newInstance();
+      f.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      return f;
+   }
+
+   public static XMLStreamReader createReader(InputStream is) throws XMLStreamException
+   {
+      synchronized (factory)
+      {
+         return factory.createXMLStreamReader(is);
+      }
+   }
+
+   /**
+    * Parses a whole document whose root element is the customer.
+    */
+   public static <T extends CustomerData> T read(InputStream is, T cust) throws XMLStreamException
+   {
+      XMLStreamReader reader = createReader(is);
+      try
+      {
+         reader.nextTag();
+         return readCustomer(reader, cust);
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   /**
+    * Reads the customer element the reader is positioned on and leaves the reader on its end tag.
+    */
+   public static <T extends CustomerData> T readCustomer(XMLStreamReader reader, T cust) throws XMLStreamException
+   {
+      reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+      String id = reader.getAttributeValue(null, "id");
+      if (id != null && !id.trim().equals(""))
+         cust.setId(Integer.parseInt(id.trim()));
+      while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+      {
+         String name = reader.getLocalName();
+         if (name.equals("first-name"))
+         {
+            cust.setFirstName(reader.getElementText());
+         }
+         else if (name.equals("last-name"))
+         {
+            cust.setLastName(reader.getElementText());
+         }
+         else if (name.equals("street"))
+         {
+            cust.setStreet(reader.getElementText());
+         }
+         else if (name.equals("city"))
+         {
+            cust.setCity(reader.getElementText());
+         }
+         else if (name.equals("state"))
+         {
+            cust.setState(reader.getElementText());
+         }
+         else if (name.equals("zip"))
+         {
+            cust.setZip(reader.getElementText());
+         }
+         else if (name.equals("country"))
+         {
+            cust.setCountry(reader.getElementText());
+         }
+         else
+         {
+            skipElement(reader);
+         }
+      }
+      return cust;
+   }
+
+   /**
+    * Skips the element the reader is positioned on, including all of its children.
+    */
+   public static void skipElement(XMLStreamReader reader) throws XMLStreamException
+   {
+      int depth = 1;
+      while (depth > 0)
+      {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT)
+            depth++;
+         else if (event == XMLStreamConstants.END_ELEMENT)
+            depth--;
+      }
+   }
+}
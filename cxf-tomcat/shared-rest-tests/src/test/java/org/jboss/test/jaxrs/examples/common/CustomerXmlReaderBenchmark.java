@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares {@link CustomerXmlReader} with the per-request DOM parsing it replaced.
+ */
+public class CustomerXmlReaderBenchmark
+{
+   private static final int ITERATIONS = 50000;
+
+   private static final byte[] XML = ("<customer id=\"42\">"
+         + "<first-name>Bill</first-name>"
+         + "<last-name>Burke</last-name>"
+         + "<street>256 Clarendon Street</street>"
+         + "<city>Boston</city>"
+         + "<state>MA</state>"
+         + "<zip>02115</zip>"
+         + "<country>USA</country>"
+         + "</customer>").getBytes(Charset.forName("UTF-8"));
+
+   @Test
+   public void testThroughput() throws Exception
+   {
+      Customer stax = CustomerXmlReader.read(new ByteArrayInputStream(XML), new Customer());
+      Customer dom = readWithDom(new ByteArrayInputStream(XML));
+      Assert.assertEquals(dom.getId(), stax.getId());
+      Assert.assertEquals(dom.getFirstName(), stax.getFirstName());
+      Assert.assertEquals(dom.getCountry(), stax.getCountry());
+
+      double domNs = MicroBenchmark.nsPerOp("DOM readCustomer", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            readWithDom(new ByteArrayInputStream(XML));
+         }
+      });
+      double staxNs = MicroBenchmark.nsPerOp("CustomerXmlReader", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            CustomerXmlReader.read(new ByteArrayInputStream(XML), new Customer());
+         }
+      });
+      System.out.println(String.format("speed-up: %.2fx", domNs / staxNs));
+   }
+
+   @Test
+   public void testWhitespaceBetweenFields() throws Exception
+   {
+      String xml = "<?xml version=\"1.0\"?>\n<customer>\n   <first-name>Bill</first-name>\n   <!-- note -->\n"
+            + "   <nickname><short>B</short></nickname>\n   <last-name>Burke</last-name>\n</customer>\n";
+      Customer cust = CustomerXmlReader.read(new ByteArrayInputStream(xml.getBytes("UTF-8")), new Customer());
+      Assert.assertEquals("Bill", cust.getFirstName());
+      Assert.assertEquals("Burke", cust.getLastName());
+      Assert.assertEquals(0, cust.getId());
+   }
+
+   /**
+    * The DOM based readCustomer the example resources used to carry.
+    */
+   private static Customer readWithDom(InputStream is) throws Exception
+   {
+      DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      Document doc = builder.parse(is);
+      Element root = doc.getDocumentElement();
+      Customer cust = new Customer();
+      if (root.getAttribute("id") != null && !root.getAttribute("id").trim().equals(""))
+         cust.setId(Integer.valueOf(root.getAttribute("id")));
+      NodeList nodes = root.getChildNodes();
+      for (int i = 0; i < nodes.getLength(); i++)
+      {
+         Element element = (Element) nodes.item(i);
+         if (element.getTagName().equals("first-name"))
+         {
+            cust.setFirstName(element.getTextContent());
+         }
+         else if (element.getTagName().equals("last-name"))
+         {
+            cust.setLastName(element.getTextContent());
+         }
+         else if (element.getTagName().equals("street"))
+         {
+            cust.setStreet(element.getTextContent());
+         }
+         else if (element.getTagName().equals("city"))
+         {
+            cust.setCity(element.getTextContent());
+         }
+         else if (element.getTagName().equals("state"))
+         {
+            cust.setState(element.getTextContent());
+         }
+         else if (element.getTagName().equals("zip"))
+         {
+            cust.setZip(element.getTextContent());
+         }
+         else if (element.getTagName().equals("country"))
+         {
+            cust.setCountry(element.getTextContent());
+         }
+      }
+      return cust;
+   }
+}
@@ -0,0 +1,369 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes <code>&lt;customer&gt;</code> documents as UTF-8 bytes into a pooled buffer that is handed to the
+ * output stream with a single write. The markup is pre-encoded, field values are escaped and encoded in
+ * place, so writing a customer does not allocate once the buffer has been sized.
+ *
+ * Usage is acquire / write / {@link #flushTo(OutputStream)} / {@link #release()}; an instance must not
+ * be shared between threads while acquired.
+ */
+public final class CustomerXmlWriter
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   private static final byte[] CUSTOMERS_START = bytes("<customers>\n");
+   private static final byte[] CUSTOMERS_END = bytes("</customers>\n");
+   private static final byte[] CUSTOMER_START = bytes("<customer>\n");
+   private static final byte[] CUSTOMER_ID_START = bytes("<customer id=\"");
+   private static final byte[] CUSTOMER_ID_END = bytes("\">\n");
+   private static final byte[] CUSTOMER_END = bytes("</customer>\n");
+   private static final byte[] FIRST_NAME_START = bytes("   <first-name>");
+   private static final byte[] FIRST_NAME_END = bytes("</first-name>\n");
+   private static final byte[] LAST_NAME_START = bytes("   <last-name>");
+   private static final byte[] LAST_NAME_END = bytes("</last-name>\n");
+   private static final byte[] STREET_START = bytes("   <street>");
+   private static final byte[] STREET_END = bytes("</street>\n");
+   private static final byte[] CITY_START = bytes("   <city>");
+   private static final byte[] CITY_END = bytes("</city>\n");
+   private static final byte[] STATE_START = bytes("   <state>");
+   private static final byte[] STATE_END = bytes("</state>\n");
+   private static final byte[] ZIP_START = bytes("   <zip>");
+   private static final byte[] ZIP_END = bytes("</zip>\n");
+   private static final byte[] COUNTRY_START = bytes("   <country>");
+   private static final byte[] COUNTRY_END = bytes("</country>\n");
+   private static final byte[] NULL = bytes("null");
+   private static final byte[] LT = bytes("&lt;");
+   private static final byte[] GT = bytes("&gt;");
+   private static final byte[] AMP = bytes("&amp;");
+   private static final byte[] QUOT = bytes("&quot;");
+   private static final byte[] APOS = bytes("&apos;");
+
+   private static final int INITIAL_CAPACITY = 1024;
+   /** Buffers grown beyond this by large documents are dropped instead of being kept in the pool. */
+   private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+   private static final AtomicReferenceArray<CustomerXmlWriter> pool = new AtomicReferenceArray<CustomerXmlWriter>(
+         Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+   private byte[] buf = new byte[INITIAL_CAPACITY];
+   private int count;
+
+   private CustomerXmlWriter()
+   {
+   }
+
+   private static byte[] bytes(String s)
+   {
+      return s.getBytes(UTF_8);
+   }
+
+   public static CustomerXmlWriter acquire()
+   {
+      for (int i = 0; i < pool.length(); i++)
+      {
+         CustomerXmlWriter writer = pool.getAndSet(i, null);
+         if (writer != null)
+         {
+            return writer;
+         }
+      }
+      return new CustomerXmlWriter();
+   }
+
+   public void release()
+   {
+      count = 0;
+      if (buf.length > MAX_POOLED_CAPACITY)
+      {
+         return;
+      }
+      for (int i = 0; i < pool.length(); i++)
+      {
+         if (pool.compareAndSet(i, null, this))
+         {
+            return;
+         }
+      }
+   }
+
+   /**
+    * Convenience for the single customer GET: writes the document, flushes it and returns the buffer to the pool.
+    */
+   public static void write(OutputStream os, CustomerData cust, boolean includeId) throws IOException
+   {
+      CustomerXmlWriter writer = acquire();
+      try
+      {
+         writer.writeCustomer(cust, includeId, 0);
+         writer.flushTo(os);
+      }
+      finally
+      {
+         writer.release();
+      }
+   }
+
+   public CustomerXmlWriter startCustomers()
+   {
+      append(CUSTOMERS_START);
+      return this;
+   }
+
+   public CustomerXmlWriter endCustomers()
+   {
+      append(CUSTOMERS_END);
+      return this;
+   }
+
+   /**
+    * Appends one customer element, indented by <code>indent</code> spaces.
+    */
+   public CustomerXmlWriter writeCustomer(CustomerData cust, boolean includeId, int indent)
+   {
+      writeIndent(indent);
+      if (includeId)
+      {
+         append(CUSTOMER_ID_START);
+         appendInt(cust.getId());
+         append(CUSTOMER_ID_END);
+      }
+      else
+      {
+         append(CUSTOMER_START);
+      }
+      writeField(indent, FIRST_NAME_START, cust.getFirstName(), FIRST_NAME_END);
+      writeField(indent, LAST_NAME_START, cust.getLastName(), LAST_NAME_END);
+      writeField(indent, STREET_START, cust.getStreet(), STREET_END);
+      writeField(indent, CITY_START, cust.getCity(), CITY_END);
+      writeField(indent, STATE_START, cust.getState(), STATE_END);
+      writeField(indent, ZIP_START, cust.getZip(), ZIP_END);
+      writeField(indent, COUNTRY_START, cust.getCountry(), COUNTRY_END);
+      writeIndent(indent);
+      append(CUSTOMER_END);
+      return this;
+   }
+
+   /**
+    * Same output as {@link #writeCustomer(CustomerData, boolean, int)} for a record in the
+    * {@link CustomerRecordCodec} layout: the UTF-8 field bytes are escaped and copied as they are, nothing is
+    * decoded. Reads the record from its position on.
+    */
+   public CustomerXmlWriter writeCustomer(int id, ByteBuffer record, boolean includeId, int indent)
+   {
+      writeIndent(indent);
+      if (includeId)
+      {
+         append(CUSTOMER_ID_START);
+         appendInt(id);
+         append(CUSTOMER_ID_END);
+      }
+      else
+      {
+         append(CUSTOMER_START);
+      }
+      writeField(indent, FIRST_NAME_START, record, FIRST_NAME_END);
+      writeField(indent, LAST_NAME_START, record, LAST_NAME_END);
+      writeField(indent, STREET_START, record, STREET_END);
+      writeField(indent, CITY_START, record, CITY_END);
+      writeField(indent, STATE_START, record, STATE_END);
+      writeField(indent, ZIP_START, record, ZIP_END);
+      writeField(indent, COUNTRY_START, record, COUNTRY_END);
+      writeIndent(indent);
+      append(CUSTOMER_END);
+      return this;
+   }
+
+   public int size()
+   {
+      return count;
+   }
+
+   /**
+    * Hands the buffered bytes to the stream in one write, flushes it and resets the buffer.
+    */
+   public void flushTo(OutputStream os) throws IOException
+   {
+      os.write(buf, 0, count);
+      os.flush();
+      count = 0;
+   }
+
+   private void writeField(int indent, byte[] start, String value, byte[] end)
+   {
+      writeIndent(indent);
+      append(start);
+      if (value == null)
+      {
+         // what the string concatenation based writers used to print
+         append(NULL);
+      }
+      else
+      {
+         appendEscaped(value);
+      }
+      append(end);
+   }
+
+   private void writeField(int indent, byte[] start, ByteBuffer record, byte[] end)
+   {
+      writeIndent(indent);
+      append(start);
+      int length = record.getShort();
+      if (length < 0)
+      {
+         append(NULL);
+      }
+      else
+      {
+         ensureCapacity(length);
+         for (int i = 0; i < length; i++)
+         {
+            byte b = record.get();
+            // the markup characters are ASCII, so they never occur inside a multi-byte sequence
+            switch (b)
+            {
+               case '<':
+                  append(LT);
+                  break;
+               case '>':
+                  append(GT);
+                  break;
+               case '&':
+                  append(AMP);
+                  break;
+               case '"':
+                  append(QUOT);
+                  break;
+               case '\'':
+                  append(APOS);
+                  break;
+               default:
+                  ensureCapacity(1);
+                  buf[count++] = b;
+            }
+         }
+      }
+      append(end);
+   }
+
+   private void writeIndent(int indent)
+   {
+      ensureCapacity(indent);
+      for (int i = 0; i < indent; i++)
+      {
+         buf[count++] = ' ';
+      }
+   }
+
+   private void append(byte[] bytes)
+   {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buf, count, bytes.length);
+      count += bytes.length;
+   }
+
+   private void appendInt(int value)
+   {
+      if (value == Integer.MIN_VALUE)
+      {
+         append(bytes(Integer.toString(value)));
+         return;
+      }
+      ensureCapacity(11);
+      if (value < 0)
+      {
+         buf[count++] = '-';
+         value = -value;
+      }
+      int digits = 1;
+      for (int v = value; v >= 10; v /= 10)
+      {
+         digits++;
+      }
+      int pos = count + digits;
+      do
+      {
+         buf[--pos] = (byte) ('0' + value % 10);
+         value /= 10;
+      }
+      while (value != 0);
+      count += digits;
+   }
+
+   private void appendEscaped(String s)
+   {
+      int len = s.length();
+      int start = 0;
+      for (int i = 0; i < len; i++)
+      {
+         byte[] escaped;
+         switch (s.charAt(i))
+         {
+            case '<':
+               escaped = LT;
+               break;
+            case '>':
+               escaped = GT;
+               break;
+            case '&':
+               escaped = AMP;
+               break;
+            case '"':
+               escaped = QUOT;
+               break;
+            case '\'':
+               escaped = APOS;
+               break;
+            default:
+               continue;
+         }
+         appendUtf8(s, start, i);
+         append(escaped);
+         start = i + 1;
+      }
+      appendUtf8(s, start, len);
+   }
+
+   private void appendUtf8(String s, int start, int end)
+   {
+      ensureCapacity((end - start) * Utf8.MAX_BYTES_PER_CHAR);
+      count = Utf8.encode(s, start, end, buf, count);
+   }
+
+   private void ensureCapacity(int extra)
+   {
+      if (count + extra > buf.length)
+      {
+         byte[] grown = new byte[Math.max(buf.length * 2, count + extra)];
+         System.arraycopy(buf, 0, grown, 0, count);
+         buf = grown;
+      }
+   }
+}
@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks {@link CustomerXmlWriter} against the PrintStream output it replaced and its escaping.
+ */
+public class CustomerXmlWriterTest
+{
+   @Test
+   public void testSameBytesAsPrintStream() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setId(1234);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      cust.setStreet("256 Clarendon Street");
+      cust.setCity("Boston");
+      cust.setState("MA");
+      cust.setCountry("USA");
+
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      PrintStream writer = new PrintStream(expected, false, "UTF-8");
+      writer.print("<customer id=\"" + cust.getId() + "\">\n");
+      writer.print("   <first-name>" + cust.getFirstName() + "</first-name>\n");
+      writer.print("   <last-name>" + cust.getLastName() + "</last-name>\n");
+      writer.print("   <street>" + cust.getStreet() + "</street>\n");
+      writer.print("   <city>" + cust.getCity() + "</city>\n");
+      writer.print("   <state>" + cust.getState() + "</state>\n");
+      writer.print("   <zip>" + cust.getZip() + "</zip>\n");
+      writer.print("   <country>" + cust.getCountry() + "</country>\n");
+      writer.print("</customer>\n");
+      writer.flush();
+
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      CustomerXmlWriter.write(actual, cust, true);
+      Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+   }
+
+   @Test
+   public void testEscapingRoundTrip() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setId(-7);
+      cust.setFirstName("<Bill> & \"Billy\"");
+      cust.setLastName("O'Burke");
+      cust.setStreet("Zürichstraße € 😀");
+      cust.setCity("a]]>b");
+      cust.setState("");
+      cust.setZip("02115");
+      cust.setCountry("USA");
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CustomerXmlWriter.write(out, cust, true);
+      Customer read = CustomerXmlReader.read(new ByteArrayInputStream(out.toByteArray()), new Customer());
+
+      Assert.assertEquals(cust.getId(), read.getId());
+      Assert.assertEquals(cust.getFirstName(), read.getFirstName());
+      Assert.assertEquals(cust.getLastName(), read.getLastName());
+      Assert.assertEquals(cust.getStreet(), read.getStreet());
+      Assert.assertEquals(cust.getCity(), read.getCity());
+      Assert.assertEquals(cust.getState(), read.getState());
+      Assert.assertEquals(cust.getZip(), read.getZip());
+   }
+
+   @Test
+   public void testCustomersList() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try
+      {
+         writer.startCustomers().writeCustomer(cust, true, 3).writeCustomer(cust, false, 3).endCustomers();
+         writer.flushTo(out);
+      }
+      finally
+      {
+         writer.release();
+      }
+      String xml = out.toString("UTF-8");
+      Assert.assertTrue(xml.startsWith("<customers>\n   <customer id=\"1\">\n      <first-name>Bill</first-name>\n"));
+      Assert.assertTrue(xml.contains("\n   <customer>\n"));
+      Assert.assertTrue(xml.endsWith("   </customer>\n</customers>\n"));
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+/**
+ * Count-min sketch of how often ids were used recently, the admission filter of TinyLFU: 4 rows of 4-bit
+ * counters, an id counts in one counter per row and its frequency is the smallest of them. Once as many uses as
+ * 10 times the width were counted, every counter is halved, so old popularity fades.
+ *
+ * The counters are updated without synchronization; an update lost to a race only makes an estimate lower.
+ */
+public final class FrequencySketch
+{
+   private static final int ROWS = 4;
+   private static final int MAX_COUNT = 15;
+   private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+   private final byte[] counters;
+   private final int mask;
+   private final int sampleSize;
+   private int additions;
+
+   /**
+    * Creates a sketch for about <code>entries</code> distinct ids.
+    */
+   FrequencySketch(int entries)
+   {
+      int width = Integer.highestOneBit(Math.max(64, Math.min(entries, 1 << 20)) - 1) << 1;
+      counters = new byte[ROWS * width];
+      mask = width - 1;
+      sampleSize = 10 * width;
+   }
+
+   void increment(int id)
+   {
+      boolean added = false;
+      for (int row = 0; row < ROWS; row++)
+      {
+         int index = index(id, row);
+         if (counters[index] < MAX_COUNT)
+         {
+            counters[index]++;
+            added = true;
+         }
+      }
+      if (added && ++additions >= sampleSize)
+      {
+         reset();
+      }
+   }
+
+   int frequency(int id)
+   {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < ROWS; row++)
+      {
+         frequency = Math.min(frequency, counters[index(id, row)]);
+      }
+      return frequency;
+   }
+
+   private void reset()
+   {
+      for (int i = 0; i < counters.length; i++)
+      {
+         counters[i] = (byte) (counters[i] >>> 1);
+      }
+      additions /= 2;
+   }
+
+   private int index(int id, int row)
+   {
+      int h = (id + 1) * SEEDS[row];
+      h ^= h >>> 16;
+      h *= 0x7FEB352D;
+      h ^= h >>> 15;
+      return row * (mask + 1) + (h & mask);
+   }
+}
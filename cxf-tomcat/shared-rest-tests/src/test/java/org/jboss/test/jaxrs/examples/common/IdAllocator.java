@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out the ids of a store from blocks each thread leases from the store, so creating values on many threads
+ * does not update a single shared counter per id: a thread goes to the store once every {@link #BLOCK_PARAM}
+ * ids. The ids of a thread increase, the ids of different threads interleave; and an id stored explicitly may
+ * lie in a block leased before, so with blocks of more than one id the ids must come from the allocator only.
+ *
+ * A node id puts the ids of a store into a range of their own, <code>node &lt;&lt; 27</code> onwards, so
+ * instances of a deployment, each with its own store, never hand out the same id. There are
+ * {@link #MAX_NODES} nodes of 2^27 ids each; node 0 starts at 1 as a plain store does.
+ */
+public class IdAllocator
+{
+   public static final String BLOCK_PARAM = "org.jboss.test.jaxrs.examples.ids.block";
+   public static final String NODE_PARAM = "org.jboss.test.jaxrs.examples.ids.node";
+   public static final int MAX_NODES = 16;
+   static final int NODE_SHIFT = 27;
+
+   /**
+    * The central allocator blocks are leased from, {@link Store#nextIds(int)} of the store by default.
+    */
+   public interface Counter
+   {
+      int nextIds(int count);
+   }
+
+   private final Counter counter;
+   private final int block;
+   private final int base;
+   private final ThreadLocal<int[]> leased = new ThreadLocal<int[]>()
+   {
+      @Override
+      protected int[] initialValue()
+      {
+         // next id, end of the block
+         return new int[2];
+      }
+   };
+
+   public IdAllocator(final Store<?> store, int block, int node)
+   {
+      this(new Counter()
+      {
+         public int nextIds(int count)
+         {
+            return store.nextIds(count);
+         }
+      }, block, node);
+   }
+
+   public IdAllocator(Counter counter, int block, int node)
+   {
+      if (block < 1)
+      {
+         throw new IllegalArgumentException("Invalid id block size: " + block);
+      }
+      if (node < 0 || node >= MAX_NODES)
+      {
+         throw new IllegalArgumentException("Invalid node id: " + node);
+      }
+      this.counter = counter;
+      this.block = block;
+      this.base = node << NODE_SHIFT;
+   }
+
+   /**
+    * Returns a factory whose stores allocate their ids through an allocator.
+    */
+   public static StoreFactory factory(final StoreFactory factory, final int block, final int node)
+   {
+      return new StoreFactory()
+      {
+         public <V> Store<V> createStore(String name, Class<V> type)
+         {
+            return new LeasingStore<V>(factory.createStore(name, type), block, node);
+         }
+      };
+   }
+
+   public int next()
+   {
+      int[] ids = leased.get();
+      if (ids[0] == ids[1])
+      {
+         ids[0] = lease(block);
+         ids[1] = ids[0] + block;
+      }
+      return ids[0]++;
+   }
+
+   /**
+    * Leases <code>count</code> consecutive ids from the counter and returns the first one.
+    */
+   public int lease(int count)
+   {
+      int first = counter.nextIds(count);
+      while (first > 0 && first <= base)
+      {
+         // the store has not allocated in the range of the node yet, skip to it
+         int gap = base - (first + count - 1);
+         if (gap > 0)
+         {
+            counter.nextIds(gap);
+         }
+         first = counter.nextIds(count);
+      }
+      // past the range of the node, or past Integer.MAX_VALUE
+      if (first <= 0 || (long) first - base + count - 1 > (1L << NODE_SHIFT) - 1)
+      {
+         throw new IllegalStateException("The ids of node " + (base >>> NODE_SHIFT) + " are exhausted");
+      }
+      return first;
+   }
+
+   /**
+    * Allocates the ids of a store through an {@link IdAllocator}, everything else goes to the store.
+    */
+   private static final class LeasingStore<V> implements Store<V>
+   {
+      private final Store<V> store;
+      private final IdAllocator ids;
+
+      private LeasingStore(Store<V> store, int block, int node)
+      {
+         this.store = store;
+         this.ids = new IdAllocator(store, block, node);
+      }
+
+      public int nextId()
+      {
+         return ids.next();
+      }
+
+      public int nextIds(int count)
+      {
+         return ids.lease(count);
+      }
+
+      public V get(int id)
+      {
+         return store.get(id);
+      }
+
+      public V put(int id, V value)
+      {
+         return store.put(id, value);
+      }
+
+      public void putAll(Map<Integer, ? extends V> values)
+      {
+         store.putAll(values);
+      }
+
+      public V remove(int id)
+      {
+         return store.remove(id);
+      }
+
+      public boolean replace(int id, V expected, V updated)
+      {
+         return store.replace(id, expected, updated);
+      }
+
+      public V compute(int id, Update<V> update)
+      {
+         return store.compute(id, update);
+      }
+
+      public List<V> range(int fromId, int limit)
+      {
+         return store.range(fromId, limit);
+      }
+
+      public List<V> page(int offset, int limit)
+      {
+         return store.page(offset, limit);
+      }
+
+      public List<V> rangeBefore(int toId, int limit)
+      {
+         return store.rangeBefore(toId, limit);
+      }
+
+      public int[] ids(int fromId, int limit)
+      {
+         return store.ids(fromId, limit);
+      }
+
+      public int[] idsBefore(int toId, int limit)
+      {
+         return store.idsBefore(toId, limit);
+      }
+
+      public int size()
+      {
+         return store.size();
+      }
+
+      public long version()
+      {
+         return store.version();
+      }
+   }
+}
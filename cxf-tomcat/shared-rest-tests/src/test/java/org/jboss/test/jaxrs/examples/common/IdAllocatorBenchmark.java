@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.junit.Test;
+
+/**
+ * Throughput of allocating the ids of new orders on 1 to 8 threads, from the counter of the store and from
+ * blocks of 64 ids leased per thread. The throughput only scales with the cores the box has.
+ */
+public class IdAllocatorBenchmark
+{
+   private static final int CREATES = 5000000;
+
+   // keeps the ids from being optimized away
+   private static volatile int sink;
+
+   @Test
+   public void testCreatesAsThreadsGrow() throws Exception
+   {
+      System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+      for (int run = 0; run < 2; run++)
+      {
+         for (int threads = 1; threads <= 8; threads *= 2)
+         {
+            creates("store counter, " + threads + " threads", new IntHashStore<Order>(), threads);
+            Store<Order> leased = IdAllocator.factory(new IntHashStoreFactory(), 64, 0).createStore("orders", Order.class);
+            creates("blocks of 64, " + threads + " threads", leased, threads);
+         }
+      }
+   }
+
+   private static void creates(String label, final Store<Order> store, int threads) throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try
+      {
+         final CountDownLatch start = new CountDownLatch(1);
+         final int perThread = CREATES / threads;
+         List<Future<Integer>> creators = new ArrayList<Future<Integer>>();
+         for (int t = 0; t < threads; t++)
+         {
+            creators.add(executor.submit(new Callable<Integer>()
+            {
+               public Integer call() throws Exception
+               {
+                  start.await();
+                  int sum = 0;
+                  for (int i = 0; i < perThread; i++)
+                  {
+                     Order order = new Order();
+                     order.setId(store.nextId());
+                     sum += order.getId();
+                  }
+                  return sum;
+               }
+            }));
+         }
+         long begin = System.nanoTime();
+         start.countDown();
+         int sum = 0;
+         for (Future<Integer> creator : creators)
+         {
+            sum += creator.get();
+         }
+         double seconds = (System.nanoTime() - begin) / 1e9;
+         sink += sum;
+         System.out.println(String.format("%-36s %14.0f ids/s", label, perThread * threads / seconds));
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Stores allocating single ids in the range of node 3 keep the store contract; blocks and node ranges are
+ * checked below.
+ */
+public class IdAllocatorTest extends StoreConformanceTest
+{
+   @Override
+   protected StoreFactory createFactory()
+   {
+      return IdAllocator.factory(new IntHashStoreFactory(), 1, 3);
+   }
+
+   @Test
+   public void testIdsInTheRangeOfTheNode()
+   {
+      int first = store.nextId();
+      Assert.assertEquals((3 << IdAllocator.NODE_SHIFT) + 1, first);
+      Assert.assertEquals(first + 1, store.nextId());
+      Assert.assertEquals(1, IdAllocator.factory(new IntHashStoreFactory(), 1, 0).createStore("ids", String.class).nextId());
+   }
+
+   @Test
+   public void testBlocksPerThread() throws Exception
+   {
+      final Store<String> store = IdAllocator.factory(new IntHashStoreFactory(), 100, 0).createStore("ids", String.class);
+      Assert.assertEquals(1, store.nextId());
+      Assert.assertEquals(2, store.nextId());
+      // a bulk allocation is consecutive, after the block of this thread
+      Assert.assertEquals(101, store.nextIds(10));
+      Assert.assertEquals(3, store.nextId());
+
+      final Map<Integer, Boolean> seen = new ConcurrentHashMap<Integer, Boolean>();
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try
+      {
+         List<Future<Void>> allocators = new ArrayList<Future<Void>>();
+         for (int t = 0; t < THREADS; t++)
+         {
+            allocators.add(executor.submit(new Callable<Void>()
+            {
+               public Void call()
+               {
+                  int previous = 0;
+                  for (int i = 0; i < 1000; i++)
+                  {
+                     int id = store.nextId();
+                     Assert.assertTrue(id > previous);
+                     Assert.assertNull("id " + id + " allocated twice", seen.put(id, Boolean.TRUE));
+                     previous = id;
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> allocator : allocators)
+         {
+            allocator.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      Assert.assertEquals(THREADS * 1000, seen.size());
+      Assert.assertFalse(seen.containsKey(101));
+   }
+
+   @Test
+   public void testNodesNeverShareIds()
+   {
+      // two instances of a deployment, each with its own store
+      Store<String> first = IdAllocator.factory(new IntHashStoreFactory(), 10, 1).createStore("ids", String.class);
+      Store<String> second = IdAllocator.factory(new IntHashStoreFactory(), 10, 2).createStore("ids", String.class);
+      for (int i = 0; i < 1000; i++)
+      {
+         Assert.assertEquals(1, first.nextId() >>> IdAllocator.NODE_SHIFT);
+         Assert.assertEquals(2, second.nextId() >>> IdAllocator.NODE_SHIFT);
+      }
+   }
+
+   @Test
+   public void testExhaustedNode()
+   {
+      IntHashStore<String> store = new IntHashStore<String>();
+      IdAllocator ids = new IdAllocator(store, 1, IdAllocator.MAX_NODES - 1);
+      store.put(Integer.MAX_VALUE - 1, "last but one");
+      Assert.assertEquals(Integer.MAX_VALUE, ids.next());
+      try
+      {
+         ids.next();
+         Assert.fail();
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidNode()
+   {
+      new IdAllocator(new IntHashStore<String>(), 1, IdAllocator.MAX_NODES);
+   }
+}
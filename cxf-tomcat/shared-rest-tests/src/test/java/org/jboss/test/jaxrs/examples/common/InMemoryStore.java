@@ -0,0 +1,268 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Baseline store: a skip list kept in id order, so range scans need no sorting, plus counters for the ids and
+ * the size, which the skip list can only count by walking it.
+ */
+public class InMemoryStore<V> implements Store<V>
+{
+   private final ConcurrentNavigableMap<Integer, V> values = new ConcurrentSkipListMap<Integer, V>();
+   private final AtomicInteger lastId = new AtomicInteger();
+   private final AtomicInteger size = new AtomicInteger();
+   private final AtomicLong version = new AtomicLong();
+
+   public int nextId()
+   {
+      return lastId.incrementAndGet();
+   }
+
+   public int nextIds(int count)
+   {
+      return lastId.addAndGet(count) - count + 1;
+   }
+
+   public V get(int id)
+   {
+      return values.get(id);
+   }
+
+   public V put(int id, V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      V previous = values.put(id, value);
+      if (previous == null)
+      {
+         size.incrementAndGet();
+         version.incrementAndGet();
+      }
+      allocated(id);
+      return previous;
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+      {
+         put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   public V remove(int id)
+   {
+      V previous = values.remove(id);
+      if (previous != null)
+      {
+         size.decrementAndGet();
+         version.incrementAndGet();
+      }
+      return previous;
+   }
+
+   public boolean replace(int id, V expected, V updated)
+   {
+      if (updated == null)
+      {
+         throw new NullPointerException();
+      }
+      return values.replace(id, expected, updated);
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      while (true)
+      {
+         V current = values.get(id);
+         V updated = update.apply(id, current);
+         if (current == null)
+         {
+            if (updated == null)
+            {
+               return null;
+            }
+            if (values.putIfAbsent(id, updated) == null)
+            {
+               size.incrementAndGet();
+               version.incrementAndGet();
+               allocated(id);
+               return updated;
+            }
+         }
+         else if (updated == null)
+         {
+            if (values.remove(id, current))
+            {
+               size.decrementAndGet();
+               version.incrementAndGet();
+               return null;
+            }
+         }
+         else if (values.replace(id, current, updated))
+         {
+            return updated;
+         }
+      }
+   }
+
+   public List<V> range(int fromId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(limit, 64));
+      if (limit <= 0)
+      {
+         return result;
+      }
+      for (V value : values.tailMap(fromId).values())
+      {
+         result.add(value);
+         if (result.size() == limit)
+         {
+            break;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * The skip list has no positional access, so the entries before the page are walked over.
+    */
+   public List<V> page(int offset, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      if (offset < 0 || limit <= 0)
+      {
+         return result;
+      }
+      int i = 0;
+      for (V value : values.values())
+      {
+         if (i++ < offset)
+         {
+            continue;
+         }
+         result.add(value);
+         if (result.size() == limit)
+         {
+            break;
+         }
+      }
+      return result;
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      if (limit <= 0)
+      {
+         return result;
+      }
+      for (V value : values.headMap(toId).descendingMap().values())
+      {
+         result.add(value);
+         if (result.size() == limit)
+         {
+            break;
+         }
+      }
+      Collections.reverse(result);
+      return result;
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      int[] ids = new int[Math.min(Math.max(limit, 0), 64)];
+      int count = 0;
+      for (Integer id : values.tailMap(fromId).keySet())
+      {
+         if (count == limit)
+         {
+            break;
+         }
+         if (count == ids.length)
+         {
+            ids = Arrays.copyOf(ids, (int) Math.min(limit, count * 2L));
+         }
+         ids[count++] = id;
+      }
+      return count == ids.length ? ids : Arrays.copyOf(ids, count);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      int[] ids = new int[Math.min(Math.max(limit, 0), 64)];
+      int count = 0;
+      for (Integer id : values.headMap(toId).descendingKeySet())
+      {
+         if (count == limit)
+         {
+            break;
+         }
+         if (count == ids.length)
+         {
+            ids = Arrays.copyOf(ids, (int) Math.min(limit, count * 2L));
+         }
+         ids[count++] = id;
+      }
+      // collected from the closest one down
+      int[] ascending = new int[count];
+      for (int i = 0; i < count; i++)
+      {
+         ascending[i] = ids[count - 1 - i];
+      }
+      return ascending;
+   }
+
+   public int size()
+   {
+      return size.get();
+   }
+
+   public long version()
+   {
+      return version.get();
+   }
+
+   /**
+    * Keeps explicitly stored ids out of the range handed out by {@link #nextId()}.
+    */
+   private void allocated(int id)
+   {
+      int last = lastId.get();
+      while (id > last && !lastId.compareAndSet(last, id))
+      {
+         last = lastId.get();
+      }
+   }
+}
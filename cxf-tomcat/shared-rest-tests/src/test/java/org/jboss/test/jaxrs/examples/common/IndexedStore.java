@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@link AttributeIndex secondary indexes} of a store up to date: every update of an id goes through this
+ * store, which applies it and moves the id between posting lists while holding a lock striped by id, so the
+ * updates of one id reach the indexes in the order they reached the store. Reads go straight to the store.
+ *
+ * A reader may see a posting list a moment before or after the value it describes, so a search checks every
+ * value it reads against its condition; an id is never missing from the posting list of its current value
+ * once its update returned. The same goes for the optional {@link NameIndex}.
+ */
+public class IndexedStore<V> implements Store<V>
+{
+   private static final int STRIPES = 64;
+   private static final int CHUNK = 1024;
+
+   private final Store<V> store;
+   private final Map<String, AttributeIndex<V>> indexes = new LinkedHashMap<String, AttributeIndex<V>>();
+   private final NameIndex<V> names;
+   private final Object[] stripes = new Object[STRIPES];
+
+   public IndexedStore(Store<V> store, Collection<AttributeIndex<V>> indexes)
+   {
+      this(store, indexes, null);
+   }
+
+   public IndexedStore(Store<V> store, Collection<AttributeIndex<V>> indexes, NameIndex<V> names)
+   {
+      this.store = store;
+      this.names = names;
+      for (AttributeIndex<V> index : indexes)
+      {
+         this.indexes.put(index.getProperty().toLowerCase(), index);
+      }
+      for (int i = 0; i < STRIPES; i++)
+      {
+         stripes[i] = new Object();
+      }
+      // a persistent store comes back with values to index
+      for (int[] ids = store.ids(Integer.MIN_VALUE, CHUNK); ids.length > 0; ids = store.ids(ids[ids.length - 1] + 1, CHUNK))
+      {
+         for (int id : ids)
+         {
+            reindex(id, null, store.get(id));
+         }
+         if (ids[ids.length - 1] == Integer.MAX_VALUE)
+         {
+            break;
+         }
+      }
+   }
+
+   /**
+    * Indexes lastName, city, state, zip and country.
+    */
+   public static <C extends CustomerData> IndexedStore<C> customers(Store<C> store)
+   {
+      List<AttributeIndex<C>> indexes = new ArrayList<AttributeIndex<C>>();
+      indexes.add(new AttributeIndex<C>("lastName", new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getLastName();
+         }
+      }));
+      indexes.add(new AttributeIndex<C>("city", new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getCity();
+         }
+      }));
+      indexes.add(new AttributeIndex<C>("state", new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getState();
+         }
+      }));
+      indexes.add(new AttributeIndex<C>("zip", new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getZip();
+         }
+      }));
+      indexes.add(new AttributeIndex<C>("country", new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getCountry();
+         }
+      }));
+      return new IndexedStore<C>(store, indexes);
+   }
+
+   /**
+    * Indexes the first and last names only.
+    */
+   public static <C extends CustomerData> IndexedStore<C> byName(Store<C> store)
+   {
+      NameIndex<C> names = new NameIndex<C>(new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getFirstName();
+         }
+      }, new AttributeIndex.Attribute<C>()
+      {
+         public String valueOf(C customer)
+         {
+            return customer.getLastName();
+         }
+      });
+      return new IndexedStore<C>(store, Collections.<AttributeIndex<C>>emptyList(), names);
+   }
+
+   /**
+    * Returns the index of the property, whatever its case, null if it is not indexed.
+    */
+   public AttributeIndex<V> index(String property)
+   {
+      return indexes.get(property.toLowerCase());
+   }
+
+   /**
+    * Returns the value of the lowest id holding the name, null if there is none.
+    */
+   public V getByName(String firstName, String lastName)
+   {
+      return names().get(store, firstName, lastName);
+   }
+
+   /**
+    * Returns up to <code>limit</code> values holding the name, either part may be a prefix ending with
+    * <code>*</code>; see {@link NameIndex}.
+    */
+   public List<V> findByName(String firstName, String lastName, int limit)
+   {
+      return names().find(store, firstName, lastName, limit);
+   }
+
+   public int nextId()
+   {
+      return store.nextId();
+   }
+
+   public int nextIds(int count)
+   {
+      return store.nextIds(count);
+   }
+
+   public V get(int id)
+   {
+      return store.get(id);
+   }
+
+   public V put(int id, V value)
+   {
+      synchronized (stripe(id))
+      {
+         V previous = store.put(id, value);
+         reindex(id, previous, value);
+         return previous;
+      }
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+      {
+         put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   public V remove(int id)
+   {
+      synchronized (stripe(id))
+      {
+         V previous = store.remove(id);
+         reindex(id, previous, null);
+         return previous;
+      }
+   }
+
+   public boolean replace(int id, V expected, V updated)
+   {
+      synchronized (stripe(id))
+      {
+         if (!store.replace(id, expected, updated))
+         {
+            return false;
+         }
+         reindex(id, expected, updated);
+         return true;
+      }
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      synchronized (stripe(id))
+      {
+         V previous = store.get(id);
+         V updated = store.compute(id, update);
+         reindex(id, previous, updated);
+         return updated;
+      }
+   }
+
+   public List<V> range(int fromId, int limit)
+   {
+      return store.range(fromId, limit);
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      return store.page(offset, limit);
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      return store.rangeBefore(toId, limit);
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      return store.ids(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      return store.idsBefore(toId, limit);
+   }
+
+   public int size()
+   {
+      return store.size();
+   }
+
+   public long version()
+   {
+      return store.version();
+   }
+
+   private void reindex(int id, V previous, V value)
+   {
+      if (previous == null && value == null)
+      {
+         return;
+      }
+      for (AttributeIndex<V> index : indexes.values())
+      {
+         index.update(id, previous, value);
+      }
+      if (names != null)
+      {
+         names.update(id, previous, value);
+      }
+   }
+
+   private NameIndex<V> names()
+   {
+      if (names == null)
+      {
+         throw new IllegalStateException("The names of the store are not indexed");
+      }
+      return names;
+   }
+
+   private Object stripe(int id)
+   {
+      return stripes[IntHashStore.hash(id) & (STRIPES - 1)];
+   }
+}
@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexedStoreTest extends StoreConformanceTest
+{
+   private static final AttributeIndex.Attribute<String> FIRST_LETTER = new AttributeIndex.Attribute<String>()
+   {
+      public String valueOf(String value)
+      {
+         return value.isEmpty() ? null : value.substring(0, 1);
+      }
+   };
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      return new StoreFactory()
+      {
+         public <V> Store<V> createStore(String name, Class<V> type)
+         {
+            // the conformance tests store strings
+            @SuppressWarnings("unchecked")
+            Store<V> store = (Store<V>) index(new IntHashStore<String>());
+            return store;
+         }
+      };
+   }
+
+   @Test
+   public void testPostingsFollowUpdates() throws Exception
+   {
+      IndexedStore<String> indexed = index(new IntHashStore<String>());
+      Random random = new Random(3);
+      Map<Integer, String> expected = new HashMap<Integer, String>();
+      for (int i = 0; i < 20000; i++)
+      {
+         int id = random.nextInt(500);
+         String value = (char) ('a' + random.nextInt(5)) + Integer.toString(i);
+         switch (random.nextInt(4))
+         {
+            case 0:
+               indexed.remove(id);
+               expected.remove(id);
+               break;
+            case 1:
+               String current = indexed.get(id);
+               if (current != null && indexed.replace(id, current, value))
+               {
+                  expected.put(id, value);
+               }
+               break;
+            default:
+               indexed.put(id, value);
+               expected.put(id, value);
+         }
+      }
+      assertPostings(indexed, expected);
+      // a second index built over the same store starts from its values
+      assertPostings(new IndexedStore<String>(indexed, Collections.singletonList(
+            new AttributeIndex<String>("first", FIRST_LETTER))), expected);
+   }
+
+   @Test
+   public void testConcurrentUpdatesKeepPostings() throws Exception
+   {
+      final IndexedStore<String> indexed = index(new IntHashStore<String>());
+      final AtomicInteger counter = new AtomicInteger();
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            Random random = new Random(counter.incrementAndGet());
+            for (int i = 0; i < 20000; i++)
+            {
+               // every thread fights over the same few ids
+               int id = random.nextInt(16);
+               if (random.nextInt(5) == 0)
+               {
+                  indexed.remove(id);
+               }
+               else
+               {
+                  indexed.put(id, (char) ('a' + random.nextInt(5)) + "");
+               }
+            }
+            return null;
+         }
+      });
+      Map<Integer, String> expected = new HashMap<Integer, String>();
+      for (int id = 0; id < 16; id++)
+      {
+         if (indexed.get(id) != null)
+         {
+            expected.put(id, indexed.get(id));
+         }
+      }
+      assertPostings(indexed, expected);
+   }
+
+   private static IndexedStore<String> index(Store<String> store)
+   {
+      return new IndexedStore<String>(store, Collections.singletonList(new AttributeIndex<String>("first", FIRST_LETTER)));
+   }
+
+   private static void assertPostings(IndexedStore<String> indexed, Map<Integer, String> expected)
+   {
+      for (char c = 'a'; c < 'f'; c++)
+      {
+         TreeSet<Integer> ids = new TreeSet<Integer>();
+         for (Map.Entry<Integer, String> entry : expected.entrySet())
+         {
+            if (entry.getValue().charAt(0) == c)
+            {
+               ids.add(entry.getKey());
+            }
+         }
+         OrderedIdIndex postings = indexed.index("FIRST").postings(String.valueOf(c));
+         Assert.assertEquals(ids.size(), postings.size());
+         int i = 0;
+         for (int id : postings.page(0, Integer.MAX_VALUE))
+         {
+            Assert.assertTrue(ids.contains(id));
+            i++;
+         }
+         Assert.assertEquals(ids.size(), i);
+      }
+   }
+}
@@ -0,0 +1,367 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Store keyed by primitive ints: an open addressing table with linear probing, so a lookup neither boxes the id
+ * nor follows a node per entry, and an entry costs an int slot plus a reference slot.
+ *
+ * Writers are serialized on the store. Readers take no lock: a lookup reads the sequence number, probes the
+ * table and checks that the sequence number did not change, which writers increment before and after every
+ * structural change (insert, removal with its backward shift, resize). A lookup that keeps losing that race
+ * falls back to the lock. The slots are read through atomic arrays, whose volatile reads keep the probe from
+ * being reordered past the second read of the sequence number.
+ *
+ * The ids are also kept in an {@link OrderedIdIndex}, so scans and pages cost O(log n) plus the page whatever the
+ * offset, without taking the lock either.
+ */
+public class IntHashStore<V> implements Store<V>
+{
+   private static final int INITIAL_CAPACITY = 16;
+   private static final int OPTIMISTIC_ATTEMPTS = 8;
+
+   private static final class Table<V>
+   {
+      private final AtomicIntegerArray keys;
+      private final AtomicReferenceArray<V> values;
+      private final int mask;
+
+      private Table(int capacity)
+      {
+         keys = new AtomicIntegerArray(capacity);
+         values = new AtomicReferenceArray<V>(capacity);
+         mask = capacity - 1;
+      }
+
+      /**
+       * Returns the slot holding the id, or the empty slot ending its probe sequence as <code>-slot - 1</code>.
+       */
+      private int find(int id)
+      {
+         int slot = hash(id) & mask;
+         while (true)
+         {
+            if (values.get(slot) == null)
+            {
+               return -slot - 1;
+            }
+            if (keys.get(slot) == id)
+            {
+               return slot;
+            }
+            slot = (slot + 1) & mask;
+         }
+      }
+
+      private V get(int id)
+      {
+         int slot = find(id);
+         return slot < 0 ? null : values.get(slot);
+      }
+   }
+
+   private final AtomicInteger lastId = new AtomicInteger();
+   private volatile Table<V> table = new Table<V>(INITIAL_CAPACITY);
+   private volatile int sequence;
+   private volatile int size;
+   private final OrderedIdIndex order = new OrderedIdIndex();
+   private volatile long version;
+
+   public int nextId()
+   {
+      return lastId.incrementAndGet();
+   }
+
+   public int nextIds(int count)
+   {
+      return lastId.addAndGet(count) - count + 1;
+   }
+
+   public V get(int id)
+   {
+      for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++)
+      {
+         int before = sequence;
+         if ((before & 1) != 0)
+         {
+            // a writer is in the middle of a change
+            Thread.yield();
+            continue;
+         }
+         V value = table.get(id);
+         if (sequence == before)
+         {
+            return value;
+         }
+      }
+      synchronized (this)
+      {
+         return table.get(id);
+      }
+   }
+
+   public synchronized V put(int id, V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      allocated(id);
+      Table<V> t = table;
+      int slot = t.find(id);
+      if (slot >= 0)
+      {
+         // replacing the value of a slot is a single write, readers see either value
+         return t.values.getAndSet(slot, value);
+      }
+      insert(t, -slot - 1, id, value);
+      return null;
+   }
+
+   public synchronized void putAll(Map<Integer, ? extends V> values)
+   {
+      for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+      {
+         put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   public synchronized V remove(int id)
+   {
+      Table<V> t = table;
+      int slot = t.find(id);
+      if (slot < 0)
+      {
+         return null;
+      }
+      V previous = t.values.get(slot);
+      sequence++;
+      try
+      {
+         delete(t, slot);
+         order.remove(id);
+         size--;
+         version++;
+      }
+      finally
+      {
+         sequence++;
+      }
+      return previous;
+   }
+
+   public synchronized boolean replace(int id, V expected, V updated)
+   {
+      if (updated == null)
+      {
+         throw new NullPointerException();
+      }
+      Table<V> t = table;
+      int slot = t.find(id);
+      // by identity, a single compareAndSet of the slot
+      return slot >= 0 && t.values.compareAndSet(slot, expected, updated);
+   }
+
+   public synchronized V compute(int id, Update<V> update)
+   {
+      V current = table.get(id);
+      V updated = update.apply(id, current);
+      if (updated == null)
+      {
+         if (current != null)
+         {
+            remove(id);
+         }
+      }
+      else if (updated != current)
+      {
+         put(id, updated);
+      }
+      return updated;
+   }
+
+   /**
+    * The ids come from the index and the values from the table, which a writer may change in between: an id
+    * removed meanwhile is skipped and the ids following it are read from the index again, so the list is
+    * only short when the store has no more values.
+    */
+   public List<V> range(int fromId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] ids = order.from(fromId, limit);
+      while (ids.length > 0 && values(ids, result) < limit && ids[ids.length - 1] != Integer.MAX_VALUE)
+      {
+         ids = order.from(ids[ids.length - 1] + 1, limit - result.size());
+      }
+      return result;
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] ids = order.page(offset, limit);
+      if (ids.length > 0 && values(ids, result) < limit && ids[ids.length - 1] != Integer.MAX_VALUE)
+      {
+         result.addAll(range(ids[ids.length - 1] + 1, limit - result.size()));
+      }
+      return result;
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] ids = order.before(toId, limit);
+      while (ids.length > 0)
+      {
+         List<V> earlier = new ArrayList<V>(ids.length);
+         values(ids, earlier);
+         result.addAll(0, earlier);
+         if (result.size() == limit)
+         {
+            break;
+         }
+         ids = order.before(ids[0], limit - result.size());
+      }
+      return result;
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      return order.from(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      return order.before(toId, limit);
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public long version()
+   {
+      return version;
+   }
+
+   /**
+    * Adds the values of the ids still present to the list and returns its size.
+    */
+   private int values(int[] ids, List<V> result)
+   {
+      for (int id : ids)
+      {
+         V value = get(id);
+         if (value != null)
+         {
+            result.add(value);
+         }
+      }
+      return result.size();
+   }
+
+   private void insert(Table<V> t, int slot, int id, V value)
+   {
+      sequence++;
+      try
+      {
+         if ((size + 1) * 4L > t.keys.length() * 3L)
+         {
+            t = resize(t);
+            slot = -t.find(id) - 1;
+         }
+         t.keys.set(slot, id);
+         t.values.set(slot, value);
+         size++;
+         order.add(id);
+         version++;
+      }
+      finally
+      {
+         sequence++;
+      }
+   }
+
+   private Table<V> resize(Table<V> t)
+   {
+      Table<V> bigger = new Table<V>(t.keys.length() * 2);
+      for (int slot = 0; slot < t.keys.length(); slot++)
+      {
+         V value = t.values.get(slot);
+         if (value != null)
+         {
+            int id = t.keys.get(slot);
+            int free = -bigger.find(id) - 1;
+            bigger.keys.set(free, id);
+            bigger.values.set(free, value);
+         }
+      }
+      table = bigger;
+      return bigger;
+   }
+
+   /**
+    * Removes the slot and shifts back the entries of its probe sequence, so no tombstones are left behind.
+    */
+   private static <V> void delete(Table<V> t, int slot)
+   {
+      int hole = slot;
+      int next = (hole + 1) & t.mask;
+      while (t.values.get(next) != null)
+      {
+         int home = hash(t.keys.get(next)) & t.mask;
+         // move the entry if the hole lies cyclically between its home slot and its current slot
+         if (((next - home) & t.mask) >= ((next - hole) & t.mask))
+         {
+            t.keys.set(hole, t.keys.get(next));
+            t.values.set(hole, t.values.get(next));
+            hole = next;
+         }
+         next = (next + 1) & t.mask;
+      }
+      t.values.set(hole, null);
+   }
+
+   private void allocated(int id)
+   {
+      int last = lastId.get();
+      while (id > last && !lastId.compareAndSet(last, id))
+      {
+         last = lastId.get();
+      }
+   }
+
+   static int hash(int id)
+   {
+      // Fibonacci hashing spreads consecutive ids, the low bits are then used as the slot
+      int h = id * 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+}
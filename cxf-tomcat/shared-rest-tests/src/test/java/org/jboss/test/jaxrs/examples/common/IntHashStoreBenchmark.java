@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
+import org.junit.Test;
+
+/**
+ * Heap per entry and GET cost of {@link IntHashStore} against the <code>ConcurrentHashMap&lt;Integer, Customer&gt;</code>
+ * the resources used to keep. Only the structure is measured, the customers are shared by both.
+ */
+public class IntHashStoreBenchmark
+{
+   private static final int CUSTOMERS = 2000000;
+   private static final int LOOKUPS = 20000000;
+
+   @Test
+   public void testFootprintAndGets() throws Exception
+   {
+      final Customer[] customers = new Customer[CUSTOMERS + 1];
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         customers[id] = new Customer();
+         customers[id].setId(id);
+      }
+
+      long before = usedHeap();
+      final Map<Integer, Customer> map = new ConcurrentHashMap<Integer, Customer>();
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         map.put(id, customers[id]);
+      }
+      System.out.println(String.format("%-48s %12.1f bytes/entry", "ConcurrentHashMap<Integer, Customer>",
+            (double) (usedHeap() - before) / CUSTOMERS));
+
+      before = usedHeap();
+      final IntHashStore<Customer> store = new IntHashStore<Customer>();
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         store.put(id, customers[id]);
+      }
+      System.out.println(String.format("%-48s %12.1f bytes/entry", "IntHashStore<Customer>",
+            (double) (usedHeap() - before) / CUSTOMERS));
+
+      // a fixed pseudo random walk over the ids, so both see the same cache misses
+      final int[] ids = new int[1 << 16];
+      for (int i = 0, id = 1; i < ids.length; i++)
+      {
+         id = (int) ((id * 48271L) % CUSTOMERS) + 1;
+         ids[i] = id;
+      }
+      final int mask = ids.length - 1;
+      double boxed = MicroBenchmark.nsPerOp("ConcurrentHashMap.get(Integer)", LOOKUPS, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            if (map.get(ids[i & mask]) == null)
+            {
+               throw new IllegalStateException();
+            }
+         }
+      });
+      double primitive = MicroBenchmark.nsPerOp("IntHashStore.get(int)", LOOKUPS, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            if (store.get(ids[i & mask]) == null)
+            {
+               throw new IllegalStateException();
+            }
+         }
+      });
+      System.out.println(String.format("   %.2fx the ConcurrentHashMap lookups", boxed / primitive));
+      // keeps both structures reachable until here
+      System.out.println("   " + (map.size() + store.size()) + " entries");
+   }
+
+   private static long usedHeap() throws InterruptedException
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
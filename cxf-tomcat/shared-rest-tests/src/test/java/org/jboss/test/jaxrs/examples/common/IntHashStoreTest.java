@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntHashStoreTest extends StoreConformanceTest
+{
+   @Override
+   protected StoreFactory createFactory()
+   {
+      return new IntHashStoreFactory();
+   }
+
+   @Test
+   public void testRandomOperationsMatchTreeMap() throws Exception
+   {
+      // a small key space keeps probe sequences long and removals shifting entries back
+      Random random = new Random(42);
+      TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+      for (int i = 0; i < 200000; i++)
+      {
+         int id = random.nextInt(2000) - 1000;
+         if (random.nextInt(3) == 0)
+         {
+            Assert.assertEquals(expected.remove(id), store.remove(id));
+         }
+         else
+         {
+            String value = Integer.toString(i);
+            Assert.assertEquals(expected.put(id, value), store.put(id, value));
+         }
+         Assert.assertEquals(expected.size(), store.size());
+      }
+      for (int id = -1000; id < 1000; id++)
+      {
+         Assert.assertEquals(expected.get(id), store.get(id));
+      }
+      Assert.assertEquals(new ArrayList<String>(expected.tailMap(-10).values()).subList(0, 50), store.range(-10, 50));
+   }
+
+   @Test
+   public void testSparseRange() throws Exception
+   {
+      store.put(1, "first");
+      store.put(Integer.MAX_VALUE, "last");
+      store.put(1000000000, "middle");
+      List<String> all = store.range(Integer.MIN_VALUE, 10);
+      Assert.assertEquals(3, all.size());
+      Assert.assertEquals("first", all.get(0));
+      Assert.assertEquals("middle", all.get(1));
+      Assert.assertEquals("last", all.get(2));
+      Assert.assertEquals("last", store.range(1000000001, 10).get(0));
+   }
+
+   @Test
+   public void testReadsDuringResizeAndRemoval() throws Exception
+   {
+      final int stable = 1000;
+      for (int id = 1; id <= stable; id++)
+      {
+         store.put(id, "stable" + id);
+      }
+      final AtomicBoolean done = new AtomicBoolean();
+      final AtomicReference<String> failure = new AtomicReference<String>();
+      Thread reader = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            while (!done.get())
+            {
+               for (int id = 1; id <= stable; id++)
+               {
+                  String value = store.get(id);
+                  if (!("stable" + id).equals(value))
+                  {
+                     failure.set("id " + id + " read as " + value);
+                     return;
+                  }
+               }
+            }
+         }
+      };
+      reader.start();
+      try
+      {
+         // grows the table several times, then removes the entries again, shifting the stable ones around
+         for (int round = 0; round < 20; round++)
+         {
+            for (int id = stable + 1; id <= stable + 20000; id++)
+            {
+               store.put(id, "churn");
+            }
+            for (int id = stable + 1; id <= stable + 20000; id++)
+            {
+               store.remove(id);
+            }
+         }
+      }
+      finally
+      {
+         done.set(true);
+         reader.join();
+      }
+      Assert.assertNull(failure.get());
+      Assert.assertEquals(stable, store.size());
+   }
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+/**
+ * Builds one JAXBContext per domain package when the application is constructed, instead of lazily on the first
+ * request that needs it. The classes passed in are the root elements of each package; the rest of the graph is
+ * bound by reachability. The runtime's own JAXB provider consults this resolver too.
+ */
+@Provider
+public class JaxbContextResolver implements ContextResolver<JAXBContext>
+{
+   private final Map<String, JAXBContext> contexts = new LinkedHashMap<String, JAXBContext>();
+
+   public JaxbContextResolver(Class<?>... classes)
+   {
+      Map<String, List<Class<?>>> packages = new LinkedHashMap<String, List<Class<?>>>();
+      for (Class<?> clazz : classes)
+      {
+         List<Class<?>> bound = packages.get(packageName(clazz));
+         if (bound == null)
+         {
+            bound = new ArrayList<Class<?>>();
+            packages.put(packageName(clazz), bound);
+         }
+         bound.add(clazz);
+      }
+      for (Map.Entry<String, List<Class<?>>> entry : packages.entrySet())
+      {
+         try
+         {
+            contexts.put(entry.getKey(), JAXBContext.newInstance(entry.getValue().toArray(new Class<?>[0])));
+         }
+         catch (JAXBException e)
+         {
+            throw new IllegalStateException("Cannot bind package " + entry.getKey(), e);
+         }
+      }
+   }
+
+   /**
+    * Returns the context of the type's package, null if that package was not registered.
+    */
+   public JAXBContext getContext(Class<?> type)
+   {
+      return contexts.get(packageName(type));
+   }
+
+   public Collection<JAXBContext> getContexts()
+   {
+      return Collections.unmodifiableCollection(contexts.values());
+   }
+
+   private static String packageName(Class<?> clazz)
+   {
+      String name = clazz.getName();
+      int dot = name.lastIndexOf('.');
+      return dot < 0 ? "" : name.substring(0, dot);
+   }
+}
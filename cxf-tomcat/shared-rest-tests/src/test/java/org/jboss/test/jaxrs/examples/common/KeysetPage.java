@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * One page of a collection resource with the cursors of its neighbours. A cursor page seeks its boundary id
+ * in the store, so it costs the same at any depth and does not shift when ids are added or removed before it,
+ * unlike a <code>start</code> offset; offset pages are still served, with cursors in their links.
+ */
+public final class KeysetPage<V>
+{
+   /**
+    * Returns the id a value is stored under.
+    */
+   public interface Key<V>
+   {
+      int idOf(V value);
+   }
+
+   private final List<V> values;
+   private final PageCursor next;
+   private final PageCursor previous;
+
+   KeysetPage(List<V> values, PageCursor next, PageCursor previous)
+   {
+      this.values = values;
+      this.next = next;
+      this.previous = previous;
+   }
+
+   /**
+    * Returns the page of the given cursors, at most one of which may be set, or the page at
+    * <code>start</code> when neither is.
+    */
+   public static <V> KeysetPage<V> of(Store<V> store, Key<V> key, String after, String before, int start, int size)
+   {
+      if (size < 1 || (after != null && before != null))
+      {
+         throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      if (after != null)
+      {
+         return after(store, key, PageCursor.parse(after).getId(), size);
+      }
+      if (before != null)
+      {
+         return before(store, key, PageCursor.parse(before).getId(), size);
+      }
+      return at(store, key, start, size);
+   }
+
+   /**
+    * The values following the id; one more is read to know whether there is a next page.
+    */
+   public static <V> KeysetPage<V> after(Store<V> store, Key<V> key, int afterId, int size)
+   {
+      long version = store.version();
+      if (afterId == Integer.MAX_VALUE)
+      {
+         return new KeysetPage<V>(Collections.<V>emptyList(), null, new PageCursor(afterId, version));
+      }
+      List<V> values = store.range(afterId + 1, size == Integer.MAX_VALUE ? size : size + 1);
+      PageCursor next = null;
+      if (values.size() > size)
+      {
+         values = values.subList(0, size);
+         next = new PageCursor(key.idOf(values.get(size - 1)), version);
+      }
+      int first = values.isEmpty() ? afterId + 1 : key.idOf(values.get(0));
+      return new KeysetPage<V>(values, next, new PageCursor(first, version));
+   }
+
+   /**
+    * The values preceding the id; one more is read to know whether there is a previous page.
+    */
+   public static <V> KeysetPage<V> before(Store<V> store, Key<V> key, int beforeId, int size)
+   {
+      long version = store.version();
+      if (beforeId == Integer.MIN_VALUE)
+      {
+         return new KeysetPage<V>(Collections.<V>emptyList(), new PageCursor(beforeId, version), null);
+      }
+      List<V> values = store.rangeBefore(beforeId, size == Integer.MAX_VALUE ? size : size + 1);
+      PageCursor previous = null;
+      if (values.size() > size)
+      {
+         values = values.subList(1, values.size());
+         previous = new PageCursor(key.idOf(values.get(0)), version);
+      }
+      int last = values.isEmpty() ? beforeId - 1 : key.idOf(values.get(values.size() - 1));
+      return new KeysetPage<V>(values, new PageCursor(last, version), previous);
+   }
+
+   /**
+    * The values at positions <code>start</code> to <code>start + size - 1</code>.
+    */
+   public static <V> KeysetPage<V> at(Store<V> store, Key<V> key, int start, int size)
+   {
+      long version = store.version();
+      List<V> values = store.page(start, size);
+      PageCursor next = null;
+      PageCursor previous = null;
+      if (!values.isEmpty() && (long) start + size < store.size())
+      {
+         next = new PageCursor(key.idOf(values.get(values.size() - 1)), version);
+      }
+      if (start > 0)
+      {
+         // past the end the previous page is the last one
+         previous = new PageCursor(values.isEmpty() ? Integer.MAX_VALUE : key.idOf(values.get(0)), version);
+      }
+      return new KeysetPage<V>(values, next, previous);
+   }
+
+   public List<V> getValues()
+   {
+      return values;
+   }
+
+   /**
+    * Returns the <code>after</code> cursor of the next page, null on the last page.
+    */
+   public PageCursor getNext()
+   {
+      return next;
+   }
+
+   /**
+    * Returns the <code>before</code> cursor of the previous page, null on the first page.
+    */
+   public PageCursor getPrevious()
+   {
+      return previous;
+   }
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeysetPageTest
+{
+   private static final KeysetPage.Key<Integer> ID = new KeysetPage.Key<Integer>()
+   {
+      public int idOf(Integer value)
+      {
+         // the ids added during a walk hold their id negated
+         return Math.abs(value);
+      }
+   };
+
+   private Store<Integer> store;
+
+   @Before
+   public void setUp()
+   {
+      store = new IntHashStore<Integer>();
+      for (int id = 1; id <= 10; id++)
+      {
+         store.put(id, id);
+      }
+   }
+
+   @Test
+   public void testCursorRoundTrip() throws Exception
+   {
+      PageCursor cursor = new PageCursor(-42, 1L << 40 | 7);
+      PageCursor read = PageCursor.parse(cursor.toString());
+      Assert.assertEquals(-42, read.getId());
+      Assert.assertEquals(1L << 40 | 7, read.getVersion());
+      Assert.assertEquals(32, cursor.toString().length());
+   }
+
+   @Test
+   public void testMalformedCursorsAreBadRequests() throws Exception
+   {
+      String token = new PageCursor(5, 3).toString();
+      String tampered = token.substring(0, 7) + (token.charAt(7) == '6' ? '7' : '6') + token.substring(8);
+      for (String bad : new String[] {"", "5", tampered, token.replace('0', 'x'), token + "0"})
+      {
+         try
+         {
+            PageCursor.parse(bad);
+            Assert.fail(bad);
+         }
+         catch (WebApplicationException e)
+         {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+         }
+      }
+   }
+
+   @Test
+   public void testWalkForwardAndBack() throws Exception
+   {
+      KeysetPage<Integer> page = KeysetPage.of(store, ID, null, null, 0, 4);
+      Assert.assertEquals(list(1, 2, 3, 4), page.getValues());
+      Assert.assertNull(page.getPrevious());
+
+      page = KeysetPage.of(store, ID, page.getNext().toString(), null, 0, 4);
+      Assert.assertEquals(list(5, 6, 7, 8), page.getValues());
+
+      page = KeysetPage.of(store, ID, page.getNext().toString(), null, 0, 4);
+      Assert.assertEquals(list(9, 10), page.getValues());
+      Assert.assertNull(page.getNext());
+
+      page = KeysetPage.of(store, ID, null, page.getPrevious().toString(), 0, 4);
+      Assert.assertEquals(list(5, 6, 7, 8), page.getValues());
+
+      page = KeysetPage.of(store, ID, null, page.getPrevious().toString(), 0, 4);
+      Assert.assertEquals(list(1, 2, 3, 4), page.getValues());
+      Assert.assertNull(page.getPrevious());
+      Assert.assertNotNull(page.getNext());
+   }
+
+   @Test
+   public void testOffsetPages() throws Exception
+   {
+      KeysetPage<Integer> page = KeysetPage.of(store, ID, null, null, 8, 4);
+      Assert.assertEquals(list(9, 10), page.getValues());
+      Assert.assertNull(page.getNext());
+      Assert.assertEquals(9, page.getPrevious().getId());
+
+      // past the end the previous link goes back to the last page
+      page = KeysetPage.of(store, ID, null, null, 20, 4);
+      Assert.assertTrue(page.getValues().isEmpty());
+      page = KeysetPage.of(store, ID, null, page.getPrevious().toString(), 0, 4);
+      Assert.assertEquals(list(7, 8, 9, 10), page.getValues());
+   }
+
+   @Test
+   public void testCursorsDoNotShift() throws Exception
+   {
+      KeysetPage<Integer> first = KeysetPage.of(store, ID, null, null, 0, 3);
+      // an offset would now skip 4 and 5
+      store.remove(1);
+      store.remove(2);
+      KeysetPage<Integer> second = KeysetPage.of(store, ID, first.getNext().toString(), null, 0, 3);
+      Assert.assertEquals(list(4, 5, 6), second.getValues());
+      Assert.assertFalse(first.getNext().toString().equals(new PageCursor(3, store.version()).toString()));
+   }
+
+   @Test
+   public void testBadPageSizes() throws Exception
+   {
+      String token = new PageCursor(1, store.version()).toString();
+      for (Object[] args : new Object[][] {{null, null, 0}, {token, token, 2}})
+      {
+         try
+         {
+            KeysetPage.of(store, ID, (String) args[0], (String) args[1], 0, (Integer) args[2]);
+            Assert.fail();
+         }
+         catch (WebApplicationException e)
+         {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+         }
+      }
+   }
+
+   @Test
+   public void testCursorWalkDuringWrites() throws Exception
+   {
+      for (int id = 11; id <= 10000; id++)
+      {
+         store.put(id, id);
+      }
+      final AtomicBoolean done = new AtomicBoolean();
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         // removes the odd ids and appends new ones while the pages are walked
+         Future<Void> writer = executor.submit(new Callable<Void>()
+         {
+            public Void call() throws Exception
+            {
+               for (int id = 1; !done.get(); id += 2)
+               {
+                  store.remove(id);
+                  int added = store.nextId();
+                  store.put(added, -added);
+               }
+               return null;
+            }
+         });
+         List<Integer> seen = new ArrayList<Integer>();
+         KeysetPage<Integer> page = KeysetPage.of(store, ID, null, null, 0, 100);
+         while (true)
+         {
+            for (Integer value : page.getValues())
+            {
+               if (value > 0)
+               {
+                  seen.add(value);
+               }
+            }
+            if (page.getNext() == null || page.getNext().getId() >= 10000)
+            {
+               break;
+            }
+            page = KeysetPage.of(store, ID, page.getNext().toString(), null, 0, 100);
+         }
+         done.set(true);
+         writer.get();
+         // strictly ascending and every even id once, whatever was removed meanwhile
+         int evens = 0;
+         for (int i = 0; i < seen.size(); i++)
+         {
+            Assert.assertTrue(i == 0 || seen.get(i - 1) < seen.get(i));
+            if (seen.get(i) % 2 == 0)
+            {
+               evens++;
+            }
+         }
+         Assert.assertEquals(5000, evens);
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   private static List<Integer> list(Integer... values)
+   {
+      List<Integer> list = new ArrayList<Integer>();
+      for (Integer value : values)
+      {
+         list.add(value);
+      }
+      return list;
+   }
+}
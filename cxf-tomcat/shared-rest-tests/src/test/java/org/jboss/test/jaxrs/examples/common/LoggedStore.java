@@ -0,0 +1,445 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a store durable: every update is appended to a {@link WriteAheadLog} before it is applied, and returns
+ * once the log made it as durable as its sync policy promises. Opening the store loads the last snapshot and
+ * replays the log written since.
+ *
+ * Every <code>snapshotEntries</code> log entries a background thread rolls the log to a new segment and writes
+ * an image of the store to <code>&lt;name&gt;.snapshot</code>, then deletes the segments it covers. The image is
+ * taken while updates go on, so it may hold some values newer than the roll; replaying the new segment over it
+ * still ends in the right state, since every update logs the whole value.
+ */
+public class LoggedStore<V> implements Store<V>, Closeable
+{
+   private static final byte PUT = 1;
+   private static final byte REMOVE = 2;
+   private static final byte IDS = 3;
+   private static final int SNAPSHOT_MAGIC = 0x43534e50;
+   private static final int SNAPSHOT_END = -1;
+   private static final int SNAPSHOT_CHUNK = 1024;
+
+   private final Store<V> store;
+   private final MappedStore.Codec<V> codec;
+   private final File snapshot;
+   private final WriteAheadLog log;
+   private final int snapshotEntries;
+   private final ExecutorService snapshotter;
+   /** Orders the log entries like the updates they record. */
+   private final Object updates = new Object();
+   private int sinceSnapshot;
+   private boolean snapshotPending;
+
+   public LoggedStore(Store<V> store, MappedStore.Codec<V> codec, File directory, String name,
+         WriteAheadLog.Sync sync, long intervalMillis, int snapshotEntries) throws IOException
+   {
+      this.store = store;
+      this.codec = codec;
+      this.snapshotEntries = snapshotEntries;
+      snapshot = new File(directory, name + ".snapshot");
+      long firstSegment = loadSnapshot();
+      log = new WriteAheadLog(directory, name, sync, intervalMillis, TimeUnit.MILLISECONDS, firstSegment,
+            new WriteAheadLog.Replay()
+            {
+               public void entry(ByteBuffer entry)
+               {
+                  apply(entry);
+               }
+            });
+      final String threadName = "snapshot-" + name;
+      snapshotter = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+         }
+      });
+   }
+
+   public int nextId()
+   {
+      return nextIds(1);
+   }
+
+   public int nextIds(int count)
+   {
+      synchronized (updates)
+      {
+         // nobody waits on an allocation, it becomes durable with the next update that is awaited
+         append(entry(IDS, count, null));
+         return store.nextIds(count);
+      }
+   }
+
+   public V get(int id)
+   {
+      return store.get(id);
+   }
+
+   public V put(int id, V value)
+   {
+      byte[] bytes = codec.encode(value);
+      long ticket;
+      V previous;
+      synchronized (updates)
+      {
+         ticket = append(entry(PUT, id, bytes));
+         previous = store.put(id, value);
+      }
+      await(ticket);
+      return previous;
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      long ticket = 0;
+      synchronized (updates)
+      {
+         for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+         {
+            ticket = append(entry(PUT, entry.getKey(), codec.encode(entry.getValue())));
+            store.put(entry.getKey(), entry.getValue());
+         }
+      }
+      await(ticket);
+   }
+
+   public V remove(int id)
+   {
+      long ticket;
+      V previous;
+      synchronized (updates)
+      {
+         if (store.get(id) == null)
+         {
+            return null;
+         }
+         ticket = append(entry(REMOVE, id, null));
+         previous = store.remove(id);
+      }
+      await(ticket);
+      return previous;
+   }
+
+   public boolean replace(int id, V expected, V updated)
+   {
+      byte[] bytes = codec.encode(updated);
+      long ticket;
+      synchronized (updates)
+      {
+         if (!store.replace(id, expected, updated))
+         {
+            return false;
+         }
+         try
+         {
+            ticket = append(entry(PUT, id, bytes));
+         }
+         catch (IllegalStateException e)
+         {
+            // undone, so the store never holds what the log lacks
+            store.put(id, expected);
+            throw e;
+         }
+      }
+      await(ticket);
+      return true;
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      long ticket = 0;
+      V updated;
+      synchronized (updates)
+      {
+         V current = store.get(id);
+         updated = update.apply(id, current);
+         if (updated == null)
+         {
+            if (current != null)
+            {
+               ticket = append(entry(REMOVE, id, null));
+               store.remove(id);
+            }
+         }
+         else
+         {
+            ticket = append(entry(PUT, id, codec.encode(updated)));
+            store.put(id, updated);
+         }
+      }
+      await(ticket);
+      return updated;
+   }
+
+   public List<V> range(int fromId, int limit)
+   {
+      return store.range(fromId, limit);
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      return store.page(offset, limit);
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      return store.rangeBefore(toId, limit);
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      return store.ids(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      return store.idsBefore(toId, limit);
+   }
+
+   public int size()
+   {
+      return store.size();
+   }
+
+   public long version()
+   {
+      return store.version();
+   }
+
+   /**
+    * Rolls the log, writes the image of the store and deletes the log segments it makes obsolete.
+    */
+   public void snapshot() throws IOException
+   {
+      long segment;
+      int lastId;
+      synchronized (updates)
+      {
+         segment = log.roll();
+         // the Store interface only reveals the id watermark by allocating, the id is given up
+         lastId = store.nextId();
+         sinceSnapshot = 0;
+      }
+      File tmp = new File(snapshot.getPath() + ".tmp");
+      FileOutputStream file = new FileOutputStream(tmp);
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+         out.writeInt(SNAPSHOT_MAGIC);
+         out.writeLong(segment);
+         out.writeInt(lastId);
+         int[] ids = store.ids(Integer.MIN_VALUE, SNAPSHOT_CHUNK);
+         while (ids.length > 0)
+         {
+            for (int id : ids)
+            {
+               V value = store.get(id);
+               if (value != null)
+               {
+                  byte[] bytes = codec.encode(value);
+                  out.writeInt(id);
+                  out.writeInt(bytes.length);
+                  out.write(bytes);
+               }
+            }
+            int last = ids[ids.length - 1];
+            ids = last == Integer.MAX_VALUE ? new int[0] : store.ids(last + 1, SNAPSHOT_CHUNK);
+         }
+         out.writeInt(SNAPSHOT_END);
+         out.writeInt(SNAPSHOT_END);
+         out.flush();
+         file.getFD().sync();
+      }
+      finally
+      {
+         file.close();
+      }
+      Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      log.deleteBefore(segment);
+   }
+
+   public void close() throws IOException
+   {
+      snapshotter.shutdown();
+      try
+      {
+         snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      log.close();
+   }
+
+   /**
+    * Loads the snapshot if there is one and returns the first log segment it does not cover.
+    */
+   private long loadSnapshot() throws IOException
+   {
+      if (!snapshot.exists())
+      {
+         return 0;
+      }
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+      try
+      {
+         if (in.readInt() != SNAPSHOT_MAGIC)
+         {
+            throw new IOException(snapshot + " is not a snapshot");
+         }
+         long segment = in.readLong();
+         store.nextIds(in.readInt());
+         while (true)
+         {
+            int id = in.readInt();
+            int length = in.readInt();
+            if (length == SNAPSHOT_END)
+            {
+               return segment;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            store.put(id, codec.decode(id, ByteBuffer.wrap(bytes)));
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   private void apply(ByteBuffer entry)
+   {
+      byte op = entry.get();
+      int id = entry.getInt();
+      switch (op)
+      {
+         case PUT:
+            store.put(id, codec.decode(id, entry.slice()));
+            break;
+         case REMOVE:
+            store.remove(id);
+            break;
+         case IDS:
+            store.nextIds(id);
+            break;
+         default:
+            throw new IllegalStateException("Unknown log entry " + op);
+      }
+   }
+
+   /**
+    * Appends under the updates lock and schedules a snapshot once enough entries piled up.
+    */
+   private long append(byte[] entry)
+   {
+      long ticket;
+      try
+      {
+         ticket = log.append(entry);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot log the update", e);
+      }
+      if (++sinceSnapshot >= snapshotEntries && !snapshotPending)
+      {
+         snapshotPending = true;
+         snapshotter.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  snapshot();
+               }
+               catch (IOException e)
+               {
+                  // the log still holds everything, the next threshold tries again
+               }
+               finally
+               {
+                  synchronized (updates)
+                  {
+                     snapshotPending = false;
+                  }
+               }
+            }
+         });
+      }
+      return ticket;
+   }
+
+   private void await(long ticket)
+   {
+      if (ticket == 0)
+      {
+         return;
+      }
+      try
+      {
+         log.await(ticket);
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot log the update", e);
+      }
+   }
+
+   private static byte[] entry(byte op, int id, byte[] value)
+   {
+      ByteBuffer entry = ByteBuffer.allocate(5 + (value == null ? 0 : value.length));
+      entry.put(op);
+      entry.putInt(id);
+      if (value != null)
+      {
+         entry.put(value);
+      }
+      return entry.array();
+   }
+}
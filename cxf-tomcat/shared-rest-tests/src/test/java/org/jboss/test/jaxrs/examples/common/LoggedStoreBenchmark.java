@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * PUT throughput of a {@link LoggedStore} under each sync policy, with as many concurrent writers as a busy
+ * connector would run. Only the store is measured, no HTTP.
+ */
+public class LoggedStoreBenchmark
+{
+   private static final int WRITERS = 32;
+   private static final int WRITES_PER_WRITER = 500;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testWritesPerSecond() throws Exception
+   {
+      for (WriteAheadLog.Sync sync : WriteAheadLog.Sync.values())
+      {
+         File directory = folder.newFolder(sync.toString());
+         LoggedStoreFactory factory = new LoggedStoreFactory(directory, sync, 10, 100000);
+         try
+         {
+            Store<Customer> store = factory.createStore("customers", Customer.class);
+            // warm-up
+            run(store);
+            double perSecond = run(store);
+            System.out.println(String.format("%-48s %12.0f writes/s", "LoggedStore " + sync, perSecond));
+         }
+         finally
+         {
+            factory.close();
+         }
+      }
+   }
+
+   private static double run(final Store<Customer> store) throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+      try
+      {
+         final CountDownLatch start = new CountDownLatch(1);
+         List<Future<Void>> writers = new ArrayList<Future<Void>>();
+         for (int w = 0; w < WRITERS; w++)
+         {
+            writers.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  start.await();
+                  for (int i = 0; i < WRITES_PER_WRITER; i++)
+                  {
+                     int id = store.nextId();
+                     Customer cust = new Customer();
+                     cust.setId(id);
+                     cust.setFirstName("Bill");
+                     cust.setLastName("Burke");
+                     cust.setStreet("263 Clarendon Street");
+                     cust.setCity("Boston");
+                     cust.setState("MA");
+                     cust.setZip("02115");
+                     cust.setCountry("USA");
+                     store.put(id, cust);
+                  }
+                  return null;
+               }
+            }));
+         }
+         long begin = System.nanoTime();
+         start.countDown();
+         for (Future<Void> writer : writers)
+         {
+            writer.get();
+         }
+         return WRITERS * WRITES_PER_WRITER / ((System.nanoTime() - begin) / 1e9);
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates a {@link LoggedStore} over an {@link IntHashStore} per store name and value type, logging to the
+ * directory of the {@link MappedStoreFactory}. The system properties
+ * <code>org.jboss.test.jaxrs.examples.store.sync</code> (<code>request</code>, <code>group</code>, the default,
+ * or <code>interval</code>), <code>org.jboss.test.jaxrs.examples.store.sync.interval</code> (milliseconds, 100
+ * by default) and <code>org.jboss.test.jaxrs.examples.store.snapshot</code> (log entries between snapshots,
+ * 10000 by default) tune the log. Types without one of the {@link Codecs} are not logged.
+ */
+public class LoggedStoreFactory implements StoreFactory, Closeable
+{
+   public static final String SYNC_PROPERTY = "org.jboss.test.jaxrs.examples.store.sync";
+   public static final String INTERVAL_PROPERTY = "org.jboss.test.jaxrs.examples.store.sync.interval";
+   public static final String SNAPSHOT_PROPERTY = "org.jboss.test.jaxrs.examples.store.snapshot";
+
+   private final File directory;
+   private final WriteAheadLog.Sync sync;
+   private final long intervalMillis;
+   private final int snapshotEntries;
+   private final List<LoggedStore<?>> stores = new CopyOnWriteArrayList<LoggedStore<?>>();
+
+   public LoggedStoreFactory()
+   {
+      this(MappedStoreFactory.directory(),
+            WriteAheadLog.Sync.valueOf(System.getProperty(SYNC_PROPERTY, "group").toUpperCase(Locale.ENGLISH)),
+            Long.getLong(INTERVAL_PROPERTY, 100), Integer.getInteger(SNAPSHOT_PROPERTY, 10000));
+   }
+
+   public LoggedStoreFactory(File directory, WriteAheadLog.Sync sync, long intervalMillis, int snapshotEntries)
+   {
+      this.directory = directory;
+      this.sync = sync;
+      this.intervalMillis = intervalMillis;
+      this.snapshotEntries = snapshotEntries;
+   }
+
+   public <V> Store<V> createStore(String name, Class<V> type)
+   {
+      MappedStore.Codec<V> codec = Codecs.forType(type);
+      if (codec == null)
+      {
+         return new IntHashStore<V>();
+      }
+      try
+      {
+         if (!directory.isDirectory() && !directory.mkdirs())
+         {
+            throw new IOException("Cannot create " + directory);
+         }
+         LoggedStore<V> store = new LoggedStore<V>(new IntHashStore<V>(), codec, directory, name + "-"
+               + type.getName(), sync, intervalMillis, snapshotEntries);
+         stores.add(store);
+         return store;
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot open the log of store " + name, e);
+      }
+   }
+
+   /**
+    * Closes the stores created so far, forcing what they logged and stopping their threads; the
+    * {@link UndeployListener} calls it when the deployment goes away. A store failing to close does not keep
+    * the others open, the first failure is rethrown.
+    */
+   public void close() throws IOException
+   {
+      IOException failure = null;
+      for (LoggedStore<?> store : stores)
+      {
+         try
+         {
+            store.close();
+         }
+         catch (IOException e)
+         {
+            if (failure == null)
+            {
+               failure = e;
+            }
+         }
+      }
+      stores.clear();
+      if (failure != null)
+      {
+         throw failure;
+      }
+   }
+}
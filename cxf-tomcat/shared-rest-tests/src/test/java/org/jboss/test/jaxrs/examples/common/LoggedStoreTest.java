@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoggedStoreTest extends StoreConformanceTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private LoggedStoreFactory factory;
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      factory = factory(WriteAheadLog.Sync.GROUP);
+      return factory;
+   }
+
+   @After
+   public void closeStores() throws Exception
+   {
+      factory.close();
+   }
+
+   @Test
+   public void testUpdatesSurviveReopen() throws Exception
+   {
+      for (WriteAheadLog.Sync sync : WriteAheadLog.Sync.values())
+      {
+         factory.close();
+         factory = factory(sync);
+         String name = "customers-" + sync;
+         Store<Customer> customers = factory.createStore(name, Customer.class);
+         int first = customers.nextIds(100);
+         for (int id = first; id < first + 100; id++)
+         {
+            customers.put(id, customer(id, "Bill" + id));
+         }
+         for (int id = first; id < first + 100; id += 2)
+         {
+            customers.remove(id);
+         }
+         customers.compute(first + 1, new Store.Update<Customer>()
+         {
+            public Customer apply(int id, Customer current)
+            {
+               return customer(id, "William");
+            }
+         });
+
+         factory.close();
+         factory = factory(sync);
+         Store<Customer> reopened = factory.createStore(name, Customer.class);
+         Assert.assertEquals(sync.toString(), 50, reopened.size());
+         Assert.assertNull(reopened.get(first));
+         Assert.assertEquals("William", reopened.get(first + 1).getFirstName());
+         Assert.assertEquals("Bill" + (first + 99), reopened.get(first + 99).getFirstName());
+         Assert.assertTrue(reopened.nextId() >= first + 100);
+      }
+   }
+
+   @Test
+   public void testCloseForcesIntervalEntriesAndStopsTheWriter() throws Exception
+   {
+      factory.close();
+      // the interval never elapses, only closing forces the entry
+      factory = new LoggedStoreFactory(folder.getRoot(), WriteAheadLog.Sync.INTERVAL, 60000, 100000);
+      Store<Customer> customers = factory.createStore("undeployed", Customer.class);
+      int id = customers.nextId();
+      customers.put(id, customer(id, "Bill"));
+      factory.close();
+      for (Thread thread : Thread.getAllStackTraces().keySet())
+      {
+         Assert.assertFalse(thread.getName(), thread.getName().startsWith("wal-undeployed"));
+      }
+
+      factory = factory(WriteAheadLog.Sync.GROUP);
+      Assert.assertEquals("Bill", factory.createStore("undeployed", Customer.class).get(id).getFirstName());
+   }
+
+   @Test
+   public void testSnapshotTruncatesLog() throws Exception
+   {
+      LoggedStore<String> logged = (LoggedStore<String>) store;
+      for (int id = 1; id <= 1000; id++)
+      {
+         logged.put(id, "customer" + id);
+      }
+      logged.snapshot();
+      for (int id = 1; id <= 10; id++)
+      {
+         logged.remove(id);
+      }
+      Assert.assertEquals(1, logFiles().length);
+      Assert.assertEquals(1, folder.getRoot().list(new FilenameFilter()
+      {
+         public boolean accept(File dir, String name)
+         {
+            return name.endsWith(".snapshot");
+         }
+      }).length);
+
+      String name = logFiles()[0].getName();
+
+      factory.close();
+      factory = factory(WriteAheadLog.Sync.GROUP);
+      Store<String> reopened = factory.createStore(name.substring(0, name.indexOf("-java.lang.String")), String.class);
+      Assert.assertEquals(990, reopened.size());
+      Assert.assertNull(reopened.get(10));
+      Assert.assertEquals("customer1000", reopened.get(1000));
+   }
+
+   @Test
+   public void testBackgroundSnapshot() throws Exception
+   {
+      factory.close();
+      factory = new LoggedStoreFactory(folder.getRoot(), WriteAheadLog.Sync.INTERVAL, 10, 100);
+      Store<String> frequent = factory.createStore("frequent", String.class);
+      for (int id = 1; id <= 1000; id++)
+      {
+         frequent.put(id, "customer" + id);
+      }
+      factory.close();
+      Assert.assertTrue(new File(folder.getRoot(), "frequent-java.lang.String.snapshot").exists());
+
+      factory = new LoggedStoreFactory(folder.getRoot(), WriteAheadLog.Sync.INTERVAL, 10, 100);
+      frequent = factory.createStore("frequent", String.class);
+      Assert.assertEquals(1000, frequent.size());
+      Assert.assertEquals("customer1000", frequent.get(1000));
+   }
+
+   @Test
+   public void testTornTailIsDropped() throws Exception
+   {
+      store.put(1, "Bill");
+      store.put(2, "Joe");
+      factory.close();
+      File log = logFiles()[0];
+      long length = log.length();
+      FileOutputStream out = new FileOutputStream(log, true);
+      try
+      {
+         // the start of an entry whose write a crash cut short
+         out.write(new byte[] {0, 0, 0, 42, 1, 2, 3});
+      }
+      finally
+      {
+         out.close();
+      }
+
+      factory = factory(WriteAheadLog.Sync.GROUP);
+      String name = log.getName();
+      Store<String> reopened = factory.createStore(name.substring(0, name.indexOf("-java.lang.String")), String.class);
+      Assert.assertEquals(2, reopened.size());
+      Assert.assertEquals("Joe", reopened.get(2));
+      Assert.assertEquals(length, log.length());
+      reopened.put(3, "Monica");
+      Assert.assertEquals("Monica", reopened.get(3));
+   }
+
+   @Test
+   public void testOrdersAreLoggedAsJson() throws Exception
+   {
+      Store<Order> orders = factory.createStore("orders", Order.class);
+      org.jboss.test.jaxrs.examples.ex10_2.domain.Customer cust = new org.jboss.test.jaxrs.examples.ex10_2.domain.Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      LineItem item = new LineItem();
+      item.setProduct("iPhone");
+      item.setCost("$199.99");
+      List<LineItem> items = new ArrayList<LineItem>();
+      items.add(item);
+      Order order = new Order();
+      order.setId(orders.nextId());
+      order.setTotal("$199.99");
+      order.setDate("Sun Oct 18 10:00:00 EDT 2015");
+      order.setCustomer(cust);
+      order.setLineItems(items);
+      orders.put(order.getId(), order);
+      order.setCancelled(true);
+      orders.put(order.getId(), order);
+
+      factory.close();
+      factory = factory(WriteAheadLog.Sync.GROUP);
+      Order read = factory.createStore("orders", Order.class).get(order.getId());
+      Assert.assertTrue(read.isCancelled());
+      Assert.assertEquals("$199.99", read.getTotal());
+      Assert.assertEquals("Bill", read.getCustomer().getFirstName());
+      Assert.assertEquals("iPhone", read.getLineItems().get(0).getProduct());
+   }
+
+   private LoggedStoreFactory factory(WriteAheadLog.Sync sync)
+   {
+      return new LoggedStoreFactory(folder.getRoot(), sync, 10, 100000);
+   }
+
+   private File[] logFiles()
+   {
+      return folder.getRoot().listFiles(new FilenameFilter()
+      {
+         public boolean accept(File dir, String name)
+         {
+            return name.endsWith(".log");
+         }
+      });
+   }
+
+   private static Customer customer(int id, String firstName)
+   {
+      Customer cust = new Customer();
+      cust.setId(id);
+      cust.setFirstName(firstName);
+      cust.setLastName("Burke");
+      return cust;
+   }
+}
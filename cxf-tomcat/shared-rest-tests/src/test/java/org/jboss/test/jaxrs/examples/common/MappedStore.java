@@ -0,0 +1,704 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Store whose values live as encoded records in a memory-mapped file, so they neither occupy the Java heap nor
+ * go away with the deployment: opening the file again maps it as is and rebuilds the id index from the record
+ * headers, no value is decoded.
+ *
+ * The file starts with a header (magic, version, last allocated id, end of the records) followed by the records,
+ * each one its capacity, id and payload length (-1 once freed) ahead of the payload. An update that still fits
+ * the capacity of the record is written in place, otherwise the record is freed and the value goes to a free
+ * record large enough for it or to the end of the file, which is remapped twice as large when full. The id to
+ * record offset index is a hash table in a direct buffer, the ids are also kept in an {@link OrderedIdIndex} for
+ * the scans.
+ *
+ * Readers share a read lock and decode from the mapping, {@link #visit(int, int, RecordVisitor)} hands the
+ * records out without decoding them at all; writers take the write lock.
+ */
+public class MappedStore<V> implements Store<V>, Closeable
+{
+   /**
+    * Turns values into record payloads and back.
+    */
+   public interface Codec<V>
+   {
+      byte[] encode(V value);
+
+      /**
+       * Decodes the payload between the position and the limit of <code>record</code>.
+       */
+      V decode(int id, ByteBuffer record);
+   }
+
+   public interface RecordVisitor
+   {
+      /**
+       * Receives a read-only view of the payload of a record, valid only for the duration of the call.
+       */
+      void visit(int id, ByteBuffer record);
+   }
+
+   /**
+    * Open addressing table from int keys to positive int values kept in a direct buffer, so the index costs no
+    * Java heap beyond this object. A slot is the key followed by the value, 0 marks an empty slot. Guarded by
+    * the lock of the store.
+    */
+   private static final class OffHeapIntIndex
+   {
+      private static final int SLOT = 8;
+      private static final int INITIAL_CAPACITY = 64;
+
+      private ByteBuffer slots = ByteBuffer.allocateDirect(INITIAL_CAPACITY * SLOT);
+      private int mask = INITIAL_CAPACITY - 1;
+      private int size;
+
+      /**
+       * Returns the value of the key, 0 if it is absent.
+       */
+      int get(int key)
+      {
+         int slot = find(key);
+         return slot < 0 ? 0 : value(slot);
+      }
+
+      /**
+       * Maps the key to a positive value and returns the previous one, 0 if there was none.
+       */
+      int put(int key, int value)
+      {
+         int slot = find(key);
+         if (slot >= 0)
+         {
+            int previous = value(slot);
+            slots.putInt(slot * SLOT + 4, value);
+            return previous;
+         }
+         if ((size + 1) * 4L > (mask + 1) * 3L)
+         {
+            resize();
+            slot = find(key);
+         }
+         slot = -slot - 1;
+         slots.putInt(slot * SLOT, key);
+         slots.putInt(slot * SLOT + 4, value);
+         size++;
+         return 0;
+      }
+
+      /**
+       * Removes the key and returns its value, 0 if it was absent.
+       */
+      int remove(int key)
+      {
+         int slot = find(key);
+         if (slot < 0)
+         {
+            return 0;
+         }
+         int previous = value(slot);
+         // backward shift deletion, as in IntHashStore
+         int hole = slot;
+         int next = (hole + 1) & mask;
+         while (value(next) != 0)
+         {
+            int home = IntHashStore.hash(key(next)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask))
+            {
+               slots.putInt(hole * SLOT, key(next));
+               slots.putInt(hole * SLOT + 4, value(next));
+               hole = next;
+            }
+            next = (next + 1) & mask;
+         }
+         slots.putInt(hole * SLOT + 4, 0);
+         size--;
+         return previous;
+      }
+
+      int size()
+      {
+         return size;
+      }
+
+      private int find(int key)
+      {
+         int slot = IntHashStore.hash(key) & mask;
+         while (true)
+         {
+            if (value(slot) == 0)
+            {
+               return -slot - 1;
+            }
+            if (key(slot) == key)
+            {
+               return slot;
+            }
+            slot = (slot + 1) & mask;
+         }
+      }
+
+      private int key(int slot)
+      {
+         return slots.getInt(slot * SLOT);
+      }
+
+      private int value(int slot)
+      {
+         return slots.getInt(slot * SLOT + 4);
+      }
+
+      private void resize()
+      {
+         ByteBuffer old = slots;
+         int oldCapacity = mask + 1;
+         slots = ByteBuffer.allocateDirect(oldCapacity * 2 * SLOT);
+         mask = oldCapacity * 2 - 1;
+         for (int slot = 0; slot < oldCapacity; slot++)
+         {
+            int value = old.getInt(slot * SLOT + 4);
+            if (value != 0)
+            {
+               int free = -find(old.getInt(slot * SLOT)) - 1;
+               slots.putInt(free * SLOT, old.getInt(slot * SLOT));
+               slots.putInt(free * SLOT + 4, value);
+            }
+         }
+      }
+   }
+
+   private static final int MAGIC = 0x43535452;
+   private static final int VERSION = 1;
+   private static final int LAST_ID = 8;
+   private static final int END = 12;
+   private static final int HEADER = 16;
+   private static final int RECORD_HEADER = 12;
+   private static final int FREE = -1;
+   private static final int INITIAL_SIZE = 64 * 1024;
+   private static final int MAX_SIZE = Integer.MAX_VALUE - 7;
+
+   private final File file;
+   private final Codec<V> codec;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+   private final OffHeapIntIndex index = new OffHeapIntIndex();
+   private final OrderedIdIndex order = new OrderedIdIndex();
+   /** Offsets of the freed records by capacity. */
+   private final TreeMap<Integer, ArrayDeque<Integer>> free = new TreeMap<Integer, ArrayDeque<Integer>>();
+   private MappedByteBuffer buffer;
+   private int lastId;
+   private int end;
+   private volatile int size;
+   private volatile long version;
+   private boolean closed;
+
+   public MappedStore(File file, Codec<V> codec) throws IOException
+   {
+      this.file = file;
+      this.codec = codec;
+      raf = new RandomAccessFile(file, "rw");
+      channel = raf.getChannel();
+      try
+      {
+         long length = channel.size();
+         if (length == 0)
+         {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(LAST_ID, 0);
+            buffer.putInt(END, HEADER);
+         }
+         else
+         {
+            if (length < HEADER || length > MAX_SIZE)
+            {
+               throw new IOException(file + " is not a store file");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+               throw new IOException(file + " is not a store file");
+            }
+         }
+         recover();
+      }
+      catch (IOException e)
+      {
+         raf.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Rebuilds the index and the free list from the record headers.
+    */
+   private void recover() throws IOException
+   {
+      lastId = buffer.getInt(LAST_ID);
+      end = buffer.getInt(END);
+      if (end < HEADER || end > buffer.capacity())
+      {
+         throw new IOException(file + " is corrupt, records end at " + end);
+      }
+      int count = 0;
+      for (int offset = HEADER; offset < end; offset += RECORD_HEADER + buffer.getInt(offset))
+      {
+         int capacity = buffer.getInt(offset);
+         if (capacity < 0 || offset + RECORD_HEADER + capacity > end)
+         {
+            throw new IOException(file + " is corrupt at offset " + offset);
+         }
+         if (buffer.getInt(offset + 8) == FREE)
+         {
+            release(offset);
+         }
+         else
+         {
+            int id = buffer.getInt(offset + 4);
+            index.put(id, offset);
+            order.add(id);
+            count++;
+         }
+      }
+      size = count;
+   }
+
+   public File getFile()
+   {
+      return file;
+   }
+
+   public int nextId()
+   {
+      return nextIds(1);
+   }
+
+   public int nextIds(int count)
+   {
+      Lock l = writeLock();
+      try
+      {
+         int first = lastId + 1;
+         lastId += count;
+         buffer.putInt(LAST_ID, lastId);
+         return first;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public V get(int id)
+   {
+      Lock l = readLock();
+      try
+      {
+         int offset = index.get(id);
+         return offset == 0 ? null : codec.decode(id, payload(offset));
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public V put(int id, V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      byte[] bytes = codec.encode(value);
+      Lock l = writeLock();
+      try
+      {
+         if (id > lastId)
+         {
+            lastId = id;
+            buffer.putInt(LAST_ID, id);
+         }
+         int offset = index.get(id);
+         V previous = null;
+         if (offset != 0)
+         {
+            previous = codec.decode(id, payload(offset));
+            if (buffer.getInt(offset) >= bytes.length)
+            {
+               write(offset, bytes);
+               return previous;
+            }
+            buffer.putInt(offset + 8, FREE);
+            release(offset);
+         }
+         else
+         {
+            size++;
+            order.add(id);
+            version++;
+         }
+         offset = allocate(bytes.length);
+         buffer.putInt(offset + 4, id);
+         write(offset, bytes);
+         index.put(id, offset);
+         return previous;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      Lock l = writeLock();
+      try
+      {
+         for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+         {
+            put(entry.getKey(), entry.getValue());
+         }
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public V remove(int id)
+   {
+      Lock l = writeLock();
+      try
+      {
+         int offset = index.remove(id);
+         if (offset == 0)
+         {
+            return null;
+         }
+         V previous = codec.decode(id, payload(offset));
+         buffer.putInt(offset + 8, FREE);
+         release(offset);
+         order.remove(id);
+         size--;
+         version++;
+         return previous;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   /**
+    * The values read from the store are copies, so <code>expected</code> matches when it encodes to the bytes
+    * of the record.
+    */
+   public boolean replace(int id, V expected, V updated)
+   {
+      byte[] bytes = codec.encode(expected);
+      Lock l = writeLock();
+      try
+      {
+         int offset = index.get(id);
+         if (offset == 0 || !payload(offset).equals(ByteBuffer.wrap(bytes)))
+         {
+            return false;
+         }
+         put(id, updated);
+         return true;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      Lock l = writeLock();
+      try
+      {
+         V current = get(id);
+         V updated = update.apply(id, current);
+         if (updated == null)
+         {
+            if (current != null)
+            {
+               remove(id);
+            }
+         }
+         else
+         {
+            // decoded values are copies, so the record is written even for the same instance
+            put(id, updated);
+         }
+         return updated;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public List<V> range(int fromId, int limit)
+   {
+      final List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      visit(fromId, limit, new RecordVisitor()
+      {
+         public void visit(int id, ByteBuffer record)
+         {
+            result.add(codec.decode(id, record));
+         }
+      });
+      return result;
+   }
+
+   /**
+    * Hands at most <code>limit</code> records whose ids are greater than or equal to <code>fromId</code> to
+    * the visitor in ascending id order, straight from the mapping, and returns how many were visited. The
+    * visitor runs under the read lock, so it must not update the store.
+    */
+   public int visit(int fromId, int limit, RecordVisitor visitor)
+   {
+      Lock l = readLock();
+      try
+      {
+         return visit(order.from(fromId, limit), visitor);
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   /**
+    * Same as {@link #visit(int, int, RecordVisitor)} for the records at positions <code>offset</code> to
+    * <code>offset + limit - 1</code> in id order.
+    */
+   public int visitPage(int offset, int limit, RecordVisitor visitor)
+   {
+      Lock l = readLock();
+      try
+      {
+         return visit(order.page(offset, limit), visitor);
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      final List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      visitPage(offset, limit, new RecordVisitor()
+      {
+         public void visit(int id, ByteBuffer record)
+         {
+            result.add(codec.decode(id, record));
+         }
+      });
+      return result;
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      Lock l = readLock();
+      try
+      {
+         int[] ids = order.before(toId, limit);
+         List<V> result = new ArrayList<V>(ids.length);
+         for (int id : ids)
+         {
+            result.add(codec.decode(id, payload(index.get(id))));
+         }
+         return result;
+      }
+      finally
+      {
+         l.unlock();
+      }
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      return order.from(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      return order.before(toId, limit);
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public long version()
+   {
+      return version;
+   }
+
+   /**
+    * Forces the mapping to the file and closes it; the store cannot be used afterwards.
+    */
+   public void close() throws IOException
+   {
+      lock.writeLock().lock();
+      try
+      {
+         if (closed)
+         {
+            return;
+         }
+         closed = true;
+         buffer.force();
+         raf.close();
+      }
+      finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Called under the read lock, which keeps the ids from changing since they were read.
+    */
+   private int visit(int[] ids, RecordVisitor visitor)
+   {
+      for (int id : ids)
+      {
+         visitor.visit(id, payload(index.get(id)).asReadOnlyBuffer());
+      }
+      return ids.length;
+   }
+
+   private ByteBuffer payload(int offset)
+   {
+      ByteBuffer record = buffer.duplicate();
+      record.position(offset + RECORD_HEADER);
+      record.limit(offset + RECORD_HEADER + buffer.getInt(offset + 8));
+      return record.slice();
+   }
+
+   private void write(int offset, byte[] bytes)
+   {
+      buffer.putInt(offset + 8, bytes.length);
+      ByteBuffer record = buffer.duplicate();
+      record.position(offset + RECORD_HEADER);
+      record.put(bytes);
+   }
+
+   /**
+    * Returns the offset of a record with room for <code>length</code> bytes, reusing a free record unless it
+    * would waste more than half of its capacity.
+    */
+   private int allocate(int length)
+   {
+      Map.Entry<Integer, ArrayDeque<Integer>> fit = free.ceilingEntry(length);
+      if (fit != null && fit.getKey() <= length * 2 + RECORD_HEADER)
+      {
+         int offset = fit.getValue().poll();
+         if (fit.getValue().isEmpty())
+         {
+            free.remove(fit.getKey());
+         }
+         return offset;
+      }
+      // leave some room for the record to grow in place
+      int capacity = Math.max(16, (length + length / 4 + 7) & ~7);
+      long required = (long) end + RECORD_HEADER + capacity;
+      if (required > buffer.capacity())
+      {
+         if (required > MAX_SIZE)
+         {
+            throw new IllegalStateException(file + " is full");
+         }
+         try
+         {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(MAX_SIZE, Math.max(required,
+                  2L * buffer.capacity())));
+         }
+         catch (IOException e)
+         {
+            throw new IllegalStateException("Cannot grow " + file, e);
+         }
+      }
+      int offset = end;
+      buffer.putInt(offset, capacity);
+      end += RECORD_HEADER + capacity;
+      buffer.putInt(END, end);
+      return offset;
+   }
+
+   private void release(int offset)
+   {
+      int capacity = buffer.getInt(offset);
+      ArrayDeque<Integer> offsets = free.get(capacity);
+      if (offsets == null)
+      {
+         offsets = new ArrayDeque<Integer>();
+         free.put(capacity, offsets);
+      }
+      offsets.add(offset);
+   }
+
+   private Lock readLock()
+   {
+      return locked(lock.readLock());
+   }
+
+   private Lock writeLock()
+   {
+      return locked(lock.writeLock());
+   }
+
+   private Lock locked(Lock l)
+   {
+      l.lock();
+      if (closed)
+      {
+         l.unlock();
+         throw new IllegalStateException(file + " is closed");
+      }
+      return l;
+   }
+}
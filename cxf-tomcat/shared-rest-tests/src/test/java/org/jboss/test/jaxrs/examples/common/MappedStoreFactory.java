@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates a {@link MappedStore} per store name and value type in the directory named by the
+ * <code>org.jboss.test.jaxrs.examples.store.dir</code> system property, <code>jaxrs-examples-stores</code> in
+ * the temporary directory by default, so a redeployed example finds its data again. Types without
+ * one of the {@link Codecs} are kept in an {@link IntHashStore}.
+ */
+public class MappedStoreFactory implements StoreFactory, Closeable
+{
+   public static final String DIRECTORY_PROPERTY = "org.jboss.test.jaxrs.examples.store.dir";
+
+   private final File directory;
+   private final List<MappedStore<?>> stores = new CopyOnWriteArrayList<MappedStore<?>>();
+
+   public MappedStoreFactory()
+   {
+      this(directory());
+   }
+
+   public MappedStoreFactory(File directory)
+   {
+      this.directory = directory;
+   }
+
+   public <V> Store<V> createStore(String name, Class<V> type)
+   {
+      MappedStore.Codec<V> codec = Codecs.forType(type);
+      if (codec == null)
+      {
+         return new IntHashStore<V>();
+      }
+      // the type is part of the name, the examples share store names but not their domain classes
+      File file = new File(directory, name + "-" + type.getName() + ".store");
+      try
+      {
+         if (!directory.isDirectory() && !directory.mkdirs())
+         {
+            throw new IOException("Cannot create " + directory);
+         }
+         MappedStore<V> store = new MappedStore<V>(file, codec);
+         stores.add(store);
+         return store;
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot open store " + file, e);
+      }
+   }
+
+   static File directory()
+   {
+      return new File(System.getProperty(DIRECTORY_PROPERTY, new File(System.getProperty("java.io.tmpdir"),
+            "jaxrs-examples-stores").getPath()));
+   }
+
+   /**
+    * Closes the stores created so far.
+    */
+   public void close() throws IOException
+   {
+      for (MappedStore<?> store : stores)
+      {
+         store.close();
+      }
+      stores.clear();
+   }
+}
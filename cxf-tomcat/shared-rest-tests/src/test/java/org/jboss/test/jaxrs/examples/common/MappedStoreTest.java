@@ -0,0 +1,225 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedStoreTest extends StoreConformanceTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private MappedStoreFactory factory;
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      factory = new MappedStoreFactory(folder.getRoot());
+      return factory;
+   }
+
+   @After
+   public void closeStores() throws Exception
+   {
+      factory.close();
+   }
+
+   @Test
+   public void testRecordsSurviveReopen() throws Exception
+   {
+      Store<Customer> customers = factory.createStore("customers", Customer.class);
+      int first = customers.nextIds(1000);
+      for (int id = first; id < first + 1000; id++)
+      {
+         customers.put(id, customer(id, "Bill" + id, "Burke"));
+      }
+      for (int id = first; id < first + 1000; id += 3)
+      {
+         customers.put(id, customer(id, "William " + id + " with a name longer than its record", "Burke"));
+      }
+      for (int id = first + 1; id < first + 1000; id += 3)
+      {
+         customers.remove(id);
+      }
+      List<Customer> before = customers.range(0, Integer.MAX_VALUE);
+
+      // what a redeployment does: the old stores are closed, a new factory opens the same files
+      factory.close();
+      factory = new MappedStoreFactory(folder.getRoot());
+      Store<Customer> reopened = factory.createStore("customers", Customer.class);
+
+      Assert.assertEquals(before.size(), reopened.size());
+      List<Customer> after = reopened.range(0, Integer.MAX_VALUE);
+      for (int i = 0; i < before.size(); i++)
+      {
+         Assert.assertEquals(xml(before.get(i)), xml(after.get(i)));
+      }
+      Assert.assertEquals("William " + first + " with a name longer than its record", reopened.get(first).getFirstName());
+      Assert.assertNull(reopened.get(first + 1));
+      Assert.assertEquals(first + 1000, reopened.nextId());
+   }
+
+   @Test
+   public void testVersionedValuesSurviveReopen() throws Exception
+   {
+      Store<Versioned<Customer>> customers = factory.createStore("versioned", Versioned.<Customer>type());
+      Assert.assertTrue(customers instanceof MappedStore);
+      Versioned<Customer> bill = Versioned.initial(customer(1, "Bill", "Burke"));
+      customers.put(1, bill);
+      Assert.assertTrue(customers.replace(1, bill, bill.next(customer(1, "William", "Burke"))));
+
+      factory.close();
+      factory = new MappedStoreFactory(folder.getRoot());
+      Versioned<Customer> reopened = factory.createStore("versioned", Versioned.<Customer>type()).get(1);
+      Assert.assertEquals(2, reopened.getVersion());
+      Assert.assertEquals("William", reopened.getValue().getFirstName());
+   }
+
+   @Test
+   public void testUpdatesReuseRecords() throws Exception
+   {
+      String value = new String(new char[1000]).replace('\0', 'x');
+      for (int id = 1; id <= 200; id++)
+      {
+         store.put(id, value);
+      }
+      long length = ((MappedStore<String>) store).getFile().length();
+      for (int round = 0; round < 10; round++)
+      {
+         for (int id = 1; id <= 200; id++)
+         {
+            // shorter values are written in place
+            store.put(id, value.substring(round));
+         }
+      }
+      for (int id = 1; id <= 200; id++)
+      {
+         store.remove(id);
+      }
+      for (int id = 201; id <= 400; id++)
+      {
+         store.put(id, value);
+      }
+      Assert.assertEquals(length, ((MappedStore<String>) store).getFile().length());
+      Assert.assertEquals(200, store.size());
+      Assert.assertEquals(value, store.get(400));
+   }
+
+   @Test
+   public void testRecordWrittenWithoutDecoding() throws Exception
+   {
+      MappedStore<Customer> customers = (MappedStore<Customer>) factory.createStore("customers", Customer.class);
+      customers.put(1, customer(1, "Bill", "Burke"));
+      customers.put(2, customer(2, "<J\u00f6rg> & \"S\u00f8ren\" '\uD83D\uDE00'", null));
+      customers.put(3, new Customer());
+      final CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+      try
+      {
+         writer.startCustomers();
+         Assert.assertEquals(3, customers.visit(0, 10, new MappedStore.RecordVisitor()
+         {
+            public void visit(int id, ByteBuffer record)
+            {
+               writer.writeCustomer(id, record, true, 3);
+            }
+         }));
+         writer.endCustomers();
+         ByteArrayOutputStream actual = new ByteArrayOutputStream();
+         writer.flushTo(actual);
+
+         writer.startCustomers();
+         for (Customer cust : customers.range(0, 10))
+         {
+            writer.writeCustomer(cust, true, 3);
+         }
+         writer.endCustomers();
+         ByteArrayOutputStream expected = new ByteArrayOutputStream();
+         writer.flushTo(expected);
+         Assert.assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+      }
+      finally
+      {
+         writer.release();
+      }
+   }
+
+   @Test
+   public void testUnsupportedTypeStaysOnHeap() throws Exception
+   {
+      Assert.assertTrue(factory.createStore("numbers", Integer.class) instanceof IntHashStore);
+   }
+
+   @Test
+   public void testRejectsForeignFile() throws Exception
+   {
+      FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "foreign-java.lang.String.store"));
+      try
+      {
+         out.write("not a store at all".getBytes("UTF-8"));
+      }
+      finally
+      {
+         out.close();
+      }
+      try
+      {
+         factory.createStore("foreign", String.class);
+         Assert.fail("expected an IllegalStateException");
+      }
+      catch (IllegalStateException e)
+      {
+         Assert.assertTrue(e.getMessage().contains("foreign"));
+      }
+   }
+
+   private static Customer customer(int id, String firstName, String lastName)
+   {
+      Customer cust = new Customer();
+      cust.setId(id);
+      cust.setFirstName(firstName);
+      cust.setLastName(lastName);
+      cust.setStreet("263 Clarendon Street");
+      cust.setCity("Boston");
+      cust.setState("MA");
+      cust.setZip("02115");
+      cust.setCountry("USA");
+      return cust;
+   }
+
+   private static String xml(Customer cust) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CustomerXmlWriter.write(out, cust, true);
+      return out.toString("UTF-8");
+   }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+/**
+ * Amounts as fixed-point cents, e.g. the order totals the examples keep as strings like <code>$199.99</code>.
+ */
+public final class Money
+{
+   private Money()
+   {
+   }
+
+   /**
+    * Parses an amount, with an optional leading currency sign and grouping commas, into cents; a third decimal
+    * rounds half up and anything after the number is ignored. An amount without digits is 0.
+    */
+   public static long parseCents(String amount)
+   {
+      if (amount == null)
+      {
+         return 0;
+      }
+      int i = 0;
+      int length = amount.length();
+      boolean negative = false;
+      while (i < length && !Character.isDigit(amount.charAt(i)) && amount.charAt(i) != '.')
+      {
+         negative |= amount.charAt(i) == '-';
+         i++;
+      }
+      long units = 0;
+      for (; i < length; i++)
+      {
+         char c = amount.charAt(i);
+         if (c >= '0' && c <= '9')
+         {
+            units = units * 10 + (c - '0');
+         }
+         else if (c != ',')
+         {
+            break;
+         }
+      }
+      long cents = units * 100;
+      if (i < length && amount.charAt(i) == '.')
+      {
+         int scale = 10;
+         for (i++; i < length && scale > 0; i++, scale /= 10)
+         {
+            char c = amount.charAt(i);
+            if (c < '0' || c > '9')
+            {
+               break;
+            }
+            cents += (c - '0') * scale;
+         }
+         if (scale == 0 && i < length && amount.charAt(i) >= '5' && amount.charAt(i) <= '9')
+         {
+            cents++;
+         }
+      }
+      return negative ? -cents : cents;
+   }
+
+   /**
+    * Formats cents as <code>$1234.50</code>.
+    */
+   public static String format(long cents)
+   {
+      StringBuilder text = new StringBuilder(16);
+      if (cents < 0)
+      {
+         text.append('-');
+         cents = -cents;
+      }
+      long fraction = cents % 100;
+      text.append('$').append(cents / 100).append('.');
+      if (fraction < 10)
+      {
+         text.append('0');
+      }
+      return text.append(fraction).toString();
+   }
+}
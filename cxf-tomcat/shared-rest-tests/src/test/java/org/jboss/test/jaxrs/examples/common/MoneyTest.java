@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MoneyTest
+{
+   @Test
+   public void testParseCents()
+   {
+      Assert.assertEquals(19999, Money.parseCents("$199.99"));
+      Assert.assertEquals(19999, Money.parseCents("199.99"));
+      Assert.assertEquals(129950, Money.parseCents("$1,299.5"));
+      Assert.assertEquals(500, Money.parseCents("$5"));
+      Assert.assertEquals(50, Money.parseCents("$.5"));
+      Assert.assertEquals(-500, Money.parseCents("-$5.00"));
+      Assert.assertEquals(1000, Money.parseCents("9.995"));
+      Assert.assertEquals(999, Money.parseCents("9.994 USD"));
+      Assert.assertEquals(0, Money.parseCents("free"));
+      Assert.assertEquals(0, Money.parseCents(null));
+   }
+
+   @Test
+   public void testFormat()
+   {
+      Assert.assertEquals("$199.99", Money.format(19999));
+      Assert.assertEquals("$0.05", Money.format(5));
+      Assert.assertEquals("$0.00", Money.format(0));
+      Assert.assertEquals("-$12.30", Money.format(-1230));
+   }
+}
@@ -0,0 +1,247 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index of a store on a first and last name pair, kept up to date by an {@link IndexedStore}. The two names are
+ * compared as they are, so no key is built from them: "Mary-Jo Smith" and "Mary Jo-Smith" are different names.
+ *
+ * An exact lookup hashes the two strings, whose hash codes they cache, and walks one chain of a table; the
+ * chains are immutable, a writer publishes a new head, so readers take no lock. The entries are also kept
+ * sorted by last then first name for the prefix queries.
+ */
+public final class NameIndex<V>
+{
+   private static final int INITIAL_CAPACITY = 16;
+
+   private static final class Entry
+   {
+      private final String first;
+      private final String last;
+      private final int id;
+      private final int hash;
+      private final Entry next;
+
+      private Entry(String first, String last, int id, int hash, Entry next)
+      {
+         this.first = first;
+         this.last = last;
+         this.id = id;
+         this.hash = hash;
+         this.next = next;
+      }
+   }
+
+   private static final Comparator<Entry> BY_NAME = new Comparator<Entry>()
+   {
+      public int compare(Entry a, Entry b)
+      {
+         int c = a.last.compareTo(b.last);
+         if (c == 0)
+         {
+            c = a.first.compareTo(b.first);
+         }
+         return c != 0 ? c : (a.id < b.id ? -1 : (a.id == b.id ? 0 : 1));
+      }
+   };
+
+   private final AttributeIndex.Attribute<V> firstName;
+   private final AttributeIndex.Attribute<V> lastName;
+   private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<Entry>(INITIAL_CAPACITY);
+   private int count;
+   private final ConcurrentSkipListSet<Entry> sorted = new ConcurrentSkipListSet<Entry>(BY_NAME);
+
+   public NameIndex(AttributeIndex.Attribute<V> firstName, AttributeIndex.Attribute<V> lastName)
+   {
+      this.firstName = firstName;
+      this.lastName = lastName;
+   }
+
+   /**
+    * Returns the value of the lowest id holding the name, null if there is none.
+    */
+   V get(Store<V> store, String first, String last)
+   {
+      int hash = hash(first, last);
+      AtomicReferenceArray<Entry> t = table;
+      V found = null;
+      int foundId = 0;
+      for (Entry e = t.get(hash & (t.length() - 1)); e != null; e = e.next)
+      {
+         if (e.hash == hash && e.first.equals(first) && e.last.equals(last) && (found == null || e.id < foundId))
+         {
+            V value = store.get(e.id);
+            // the id may be on its way to another name
+            if (value != null && holds(value, first, last))
+            {
+               found = value;
+               foundId = e.id;
+            }
+         }
+      }
+      return found;
+   }
+
+   /**
+    * Returns up to <code>limit</code> values holding the name, sorted by last name, first name and id. A name
+    * ending with <code>*</code> matches the names it starts, so <code>Bi*</code> and <code>Burke</code> find
+    * Bill Burke and Bianca Burke.
+    */
+   List<V> find(Store<V> store, String first, String last, int limit)
+   {
+      boolean firstPrefix = first.endsWith("*");
+      boolean lastPrefix = last.endsWith("*");
+      String f = firstPrefix ? first.substring(0, first.length() - 1) : first;
+      String l = lastPrefix ? last.substring(0, last.length() - 1) : last;
+      List<V> result = new ArrayList<V>();
+      // within one last name the entries are sorted by first name, so the seek lands on the first match
+      Entry from = new Entry(lastPrefix ? "" : f, l, Integer.MIN_VALUE, 0, null);
+      for (Entry e : sorted.tailSet(from))
+      {
+         if (result.size() >= limit || !(lastPrefix ? e.last.startsWith(l) : e.last.equals(l)))
+         {
+            break;
+         }
+         if (!(firstPrefix ? e.first.startsWith(f) : e.first.equals(f)))
+         {
+            if (lastPrefix)
+            {
+               continue;
+            }
+            break;
+         }
+         V value = store.get(e.id);
+         if (value != null && holds(value, e.first, e.last))
+         {
+            result.add(value);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Moves the id from the previous name of its value to its new one, either value may be null.
+    */
+   void update(int id, V previous, V value)
+   {
+      String fromFirst = previous == null ? null : firstName.valueOf(previous);
+      String fromLast = previous == null ? null : lastName.valueOf(previous);
+      String toFirst = value == null ? null : firstName.valueOf(value);
+      String toLast = value == null ? null : lastName.valueOf(value);
+      boolean from = fromFirst != null && fromLast != null;
+      boolean to = toFirst != null && toLast != null;
+      if (from && to && fromFirst.equals(toFirst) && fromLast.equals(toLast))
+      {
+         return;
+      }
+      // added before it is removed, so the id is never missing from its current name
+      if (to)
+      {
+         add(id, toFirst, toLast);
+      }
+      if (from)
+      {
+         remove(id, fromFirst, fromLast);
+      }
+   }
+
+   public int size()
+   {
+      return sorted.size();
+   }
+
+   private boolean holds(V value, String first, String last)
+   {
+      return first.equals(firstName.valueOf(value)) && last.equals(lastName.valueOf(value));
+   }
+
+   private synchronized void add(int id, String first, String last)
+   {
+      AtomicReferenceArray<Entry> t = table;
+      if ((count + 1) * 4L > t.length() * 3L)
+      {
+         t = resize(t);
+      }
+      int hash = hash(first, last);
+      int bucket = hash & (t.length() - 1);
+      t.set(bucket, new Entry(first, last, id, hash, t.get(bucket)));
+      count++;
+      sorted.add(new Entry(first, last, id, hash, null));
+   }
+
+   private synchronized void remove(int id, String first, String last)
+   {
+      AtomicReferenceArray<Entry> t = table;
+      int hash = hash(first, last);
+      int bucket = hash & (t.length() - 1);
+      Entry head = t.get(bucket);
+      Entry removed = head;
+      while (removed != null && !(removed.id == id && removed.hash == hash && removed.first.equals(first)
+            && removed.last.equals(last)))
+      {
+         removed = removed.next;
+      }
+      if (removed == null)
+      {
+         return;
+      }
+      // the entries ahead of the removed one are copied, readers walking the old chain still see all of it
+      Entry chain = removed.next;
+      for (Entry e = head; e != removed; e = e.next)
+      {
+         chain = new Entry(e.first, e.last, e.id, e.hash, chain);
+      }
+      t.set(bucket, chain);
+      count--;
+      sorted.remove(new Entry(first, last, id, hash, null));
+   }
+
+   private AtomicReferenceArray<Entry> resize(AtomicReferenceArray<Entry> t)
+   {
+      AtomicReferenceArray<Entry> bigger = new AtomicReferenceArray<Entry>(t.length() * 2);
+      int mask = bigger.length() - 1;
+      for (int bucket = 0; bucket < t.length(); bucket++)
+      {
+         for (Entry e = t.get(bucket); e != null; e = e.next)
+         {
+            bigger.set(e.hash & mask, new Entry(e.first, e.last, e.id, e.hash, bigger.get(e.hash & mask)));
+         }
+      }
+      table = bigger;
+      return bigger;
+   }
+
+   /**
+    * The hash of a name as this index computes it, also used to place a name on a {@link ShardedStore} shard.
+    */
+   public static int hash(String first, String last)
+   {
+      int h = first.hashCode() * 31 + last.hashCode();
+      return h ^ (h >>> 16);
+   }
+}
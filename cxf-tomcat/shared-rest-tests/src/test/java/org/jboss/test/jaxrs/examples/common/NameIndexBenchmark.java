@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex04_2.domain.Customer;
+import org.junit.Test;
+
+/**
+ * First and last name lookups as the ex04_2 resource made them, a scan comparing every customer, against the
+ * {@link NameIndex}, from 1k to 1M customers: the scan grows with the store, the index stays flat.
+ */
+public class NameIndexBenchmark
+{
+   private static final int LOOKUPS = 1024;
+
+   @Test
+   public void testLookupAsTheStoreGrows() throws Exception
+   {
+      for (int customers = 1000; customers <= 1000000; customers *= 10)
+      {
+         final IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+         for (int id = 1; id <= customers; id++)
+         {
+            Customer customer = new Customer();
+            customer.setId(id);
+            customer.setFirstName("first" + id);
+            customer.setLastName("last" + (id % 1000));
+            store.put(id, customer);
+         }
+         // the names are built up front, as the path parameters of the requests would be
+         final String[] firsts = new String[LOOKUPS];
+         final String[] lasts = new String[LOOKUPS];
+         for (int i = 0; i < LOOKUPS; i++)
+         {
+            int id = 1 + (int) ((i * 2654435761L) % customers);
+            firsts[i] = "first" + id;
+            lasts[i] = "last" + (id % 1000);
+         }
+         System.out.println(customers + " customers");
+         MicroBenchmark.nsPerOp("   index lookup", 2000000, new MicroBenchmark.Op()
+         {
+            public void run(int i)
+            {
+               if (store.getByName(firsts[i & (LOOKUPS - 1)], lasts[i & (LOOKUPS - 1)]) == null)
+               {
+                  throw new IllegalStateException();
+               }
+            }
+         });
+         MicroBenchmark.nsPerOp("   prefix query, 10 names", 200000, new MicroBenchmark.Op()
+         {
+            public void run(int i)
+            {
+               store.findByName("first1*", lasts[i & (LOOKUPS - 1)], 10);
+            }
+         });
+         MicroBenchmark.nsPerOp("   scan", Math.max(20, 20000000 / customers), new MicroBenchmark.Op()
+         {
+            public void run(int i)
+            {
+               String first = firsts[i & (LOOKUPS - 1)];
+               String last = lasts[i & (LOOKUPS - 1)];
+               for (Customer cust : store.range(0, Integer.MAX_VALUE))
+               {
+                  if (cust.getFirstName().equals(first) && cust.getLastName().equals(last))
+                  {
+                     return;
+                  }
+               }
+               throw new IllegalStateException();
+            }
+         });
+      }
+   }
+}
@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.test.jaxrs.examples.ex04_2.domain.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NameIndexTest
+{
+   private static Customer customer(int id, String first, String last)
+   {
+      Customer customer = new Customer();
+      customer.setId(id);
+      customer.setFirstName(first);
+      customer.setLastName(last);
+      return customer;
+   }
+
+   private static List<Integer> ids(List<Customer> customers)
+   {
+      List<Integer> ids = new ArrayList<Integer>();
+      for (Customer customer : customers)
+      {
+         ids.add(customer.getId());
+      }
+      return ids;
+   }
+
+   @Test
+   public void testExactLookup()
+   {
+      IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      for (int id = 1; id <= 1000; id++)
+      {
+         store.put(id, customer(id, "first" + id, "last" + (id % 10)));
+      }
+      Assert.assertEquals(137, store.getByName("first137", "last7").getId());
+      Assert.assertNull(store.getByName("first137", "last8"));
+      Assert.assertNull(store.getByName("nobody", "last7"));
+   }
+
+   @Test
+   public void testHyphenatedNamesAreDistinct()
+   {
+      IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      store.put(1, customer(1, "Mary-Jo", "Smith"));
+      store.put(2, customer(2, "Mary", "Jo-Smith"));
+      Assert.assertEquals(1, store.getByName("Mary-Jo", "Smith").getId());
+      Assert.assertEquals(2, store.getByName("Mary", "Jo-Smith").getId());
+      Assert.assertNull(store.getByName("Mary-Jo-Smith", ""));
+   }
+
+   @Test
+   public void testSharedNameFindsLowestId()
+   {
+      IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      store.put(5, customer(5, "Bill", "Burke"));
+      store.put(3, customer(3, "Bill", "Burke"));
+      store.put(9, customer(9, "Bill", "Burke"));
+      Assert.assertEquals(3, store.getByName("Bill", "Burke").getId());
+      store.remove(3);
+      Assert.assertEquals(5, store.getByName("Bill", "Burke").getId());
+   }
+
+   @Test
+   public void testRenameMovesTheCustomer()
+   {
+      IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      Customer bill = customer(1, "Bill", "Burke");
+      store.put(1, bill);
+      Assert.assertTrue(store.replace(1, bill, customer(1, "William", "Burke")));
+      Assert.assertNull(store.getByName("Bill", "Burke"));
+      Assert.assertEquals(1, store.getByName("William", "Burke").getId());
+      store.remove(1);
+      Assert.assertNull(store.getByName("William", "Burke"));
+      Assert.assertTrue(store.findByName("W*", "B*", 10).isEmpty());
+   }
+
+   @Test
+   public void testPrefixQueries()
+   {
+      IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      store.put(1, customer(1, "Bill", "Burke"));
+      store.put(2, customer(2, "Bianca", "Burke"));
+      store.put(3, customer(3, "Bill", "Burkett"));
+      store.put(4, customer(4, "Joe", "Burke"));
+      store.put(5, customer(5, "Bill", "Smith"));
+      store.put(6, customer(6, "Bi", "Burke"));
+
+      // sorted by last name, first name and id
+      Assert.assertEquals(Arrays.asList(6, 2, 1), ids(store.findByName("Bi*", "Burke", 10)));
+      Assert.assertEquals(Arrays.asList(6, 2, 1, 3), ids(store.findByName("Bi*", "Bur*", 10)));
+      Assert.assertEquals(Arrays.asList(1, 3), ids(store.findByName("Bill", "Bur*", 10)));
+      Assert.assertEquals(Arrays.asList(1), ids(store.findByName("Bill", "Burke*", 1)));
+      Assert.assertEquals(Arrays.asList(6, 2, 1, 4, 3, 5), ids(store.findByName("*", "*", 10)));
+      Assert.assertEquals(Arrays.asList(1), ids(store.findByName("Bill", "Burke", 10)));
+      Assert.assertTrue(store.findByName("Z*", "Burke", 10).isEmpty());
+   }
+
+   @Test
+   public void testConcurrentRenames() throws Exception
+   {
+      final IndexedStore<Customer> store = IndexedStore.byName(new IntHashStore<Customer>());
+      final int customers = 200;
+      for (int id = 1; id <= customers; id++)
+      {
+         store.put(id, customer(id, "a" + id, "last"));
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try
+      {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>();
+         for (int t = 0; t < 4; t++)
+         {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+               public Void call()
+               {
+                  for (int round = 0; round < 2000; round++)
+                  {
+                     int id = 1 + (round * 4 + thread) % customers;
+                     Customer current = store.get(id);
+                     String first = (current.getFirstName().charAt(0) == 'a' ? "b" : "a") + id;
+                     store.replace(id, current, customer(id, first, "last"));
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> future : futures)
+         {
+            future.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+         executor.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      for (int id = 1; id <= customers; id++)
+      {
+         Customer current = store.get(id);
+         Assert.assertSame(current, store.getByName(current.getFirstName(), "last"));
+         String other = (current.getFirstName().charAt(0) == 'a' ? "b" : "a") + id;
+         Assert.assertNull(store.getByName(other, "last"));
+      }
+      Assert.assertEquals(customers, store.findByName("*", "last", Integer.MAX_VALUE).size());
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testNamesNotIndexed()
+   {
+      IndexedStore.customers(new IntHashStore<Customer>()).getByName("Bill", "Burke");
+   }
+}
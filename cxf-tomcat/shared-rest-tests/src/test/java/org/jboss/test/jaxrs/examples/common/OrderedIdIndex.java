@@ -0,0 +1,341 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Set of ids in ascending order that finds the n-th id in O(log n): a B+tree whose branches know how many ids
+ * each child holds. The nodes are immutable, an update copies the path from the root to its leaf and swaps
+ * the root in with a compare-and-set, retrying when another update came first. Readers take no lock at all:
+ * whatever they do on one root sees one consistent version of the set, and {@link #size()} is the count kept
+ * in the root.
+ *
+ * Removals drop empty nodes but do not merge underfull ones, which keeps every leaf at the same depth.
+ */
+public final class OrderedIdIndex
+{
+   private static final int LEAF_CAPACITY = 64;
+   private static final int BRANCH_CAPACITY = 32;
+   private static final int[] NO_IDS = new int[0];
+
+   private static final class Node
+   {
+      /** The ids of a leaf, null in a branch. */
+      private final int[] ids;
+      /** The children of a branch, null in a leaf. */
+      private final Node[] children;
+      /** The smallest id under each child of a branch. */
+      private final int[] mins;
+      private final int size;
+
+      private Node(int[] ids)
+      {
+         this.ids = ids;
+         children = null;
+         mins = null;
+         size = ids.length;
+      }
+
+      private Node(Node[] children)
+      {
+         this.children = children;
+         ids = null;
+         mins = new int[children.length];
+         int total = 0;
+         for (int i = 0; i < children.length; i++)
+         {
+            mins[i] = children[i].min();
+            total += children[i].size;
+         }
+         size = total;
+      }
+
+      private boolean isLeaf()
+      {
+         return children == null;
+      }
+
+      private int min()
+      {
+         return isLeaf() ? ids[0] : mins[0];
+      }
+
+      /**
+       * The child whose ids the given one falls among: the last one starting at or below it, the first one
+       * for ids below them all.
+       */
+      private int childFor(int id)
+      {
+         int pos = Arrays.binarySearch(mins, id);
+         return pos >= 0 ? pos : Math.max(0, -pos - 2);
+      }
+   }
+
+   private static final Node EMPTY = new Node(NO_IDS);
+
+   private final AtomicReference<Node> root = new AtomicReference<Node>(EMPTY);
+
+   /**
+    * Adds the id and returns whether it was absent.
+    */
+   public boolean add(int id)
+   {
+      while (true)
+      {
+         Node current = root.get();
+         Node[] replaced = insert(current, id);
+         if (replaced == null)
+         {
+            return false;
+         }
+         Node next = replaced.length == 1 ? replaced[0] : new Node(replaced);
+         if (root.compareAndSet(current, next))
+         {
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Removes the id and returns whether it was present.
+    */
+   public boolean remove(int id)
+   {
+      while (true)
+      {
+         Node current = root.get();
+         Node next = delete(current, id);
+         if (next == current)
+         {
+            return false;
+         }
+         if (next == null)
+         {
+            next = EMPTY;
+         }
+         while (!next.isLeaf() && next.children.length == 1)
+         {
+            next = next.children[0];
+         }
+         if (root.compareAndSet(current, next))
+         {
+            return true;
+         }
+      }
+   }
+
+   public int size()
+   {
+      return root.get().size;
+   }
+
+   /**
+    * Returns at most <code>limit</code> ids in ascending order, starting with the one at position
+    * <code>offset</code>, 0 being the smallest id.
+    */
+   public int[] page(int offset, int limit)
+   {
+      return page(root.get(), offset, limit);
+   }
+
+   /**
+    * Returns at most <code>limit</code> of the ids greater than or equal to <code>fromId</code>, in ascending
+    * order.
+    */
+   public int[] from(int fromId, int limit)
+   {
+      Node r = root.get();
+      return page(r, rank(r, fromId), limit);
+   }
+
+   /**
+    * Returns at most <code>limit</code> of the ids lower than <code>toId</code>, the closest ones to it, in
+    * ascending order.
+    */
+   public int[] before(int toId, int limit)
+   {
+      Node r = root.get();
+      int rank = rank(r, toId);
+      int count = Math.min(Math.max(limit, 0), rank);
+      return page(r, rank - count, count);
+   }
+
+   public boolean contains(int id)
+   {
+      Node node = root.get();
+      while (!node.isLeaf())
+      {
+         node = node.children[node.childFor(id)];
+      }
+      return Arrays.binarySearch(node.ids, id) >= 0;
+   }
+
+   /**
+    * Returns how many ids are smaller than the given one.
+    */
+   public int rank(int id)
+   {
+      return rank(root.get(), id);
+   }
+
+   private static int[] page(Node r, int offset, int limit)
+   {
+      if (offset < 0 || limit <= 0 || offset >= r.size)
+      {
+         return NO_IDS;
+      }
+      int[] ids = new int[Math.min(limit, r.size - offset)];
+      collect(r, offset, ids, 0);
+      return ids;
+   }
+
+   private static int collect(Node node, int skip, int[] out, int count)
+   {
+      if (node.isLeaf())
+      {
+         int n = Math.min(node.ids.length - skip, out.length - count);
+         System.arraycopy(node.ids, skip, out, count, n);
+         return count + n;
+      }
+      for (Node child : node.children)
+      {
+         if (skip >= child.size)
+         {
+            skip -= child.size;
+            continue;
+         }
+         count = collect(child, skip, out, count);
+         skip = 0;
+         if (count == out.length)
+         {
+            break;
+         }
+      }
+      return count;
+   }
+
+   private static int rank(Node node, int id)
+   {
+      int rank = 0;
+      while (!node.isLeaf())
+      {
+         int i = node.childFor(id);
+         for (int c = 0; c < i; c++)
+         {
+            rank += node.children[c].size;
+         }
+         node = node.children[i];
+      }
+      int pos = Arrays.binarySearch(node.ids, id);
+      return rank + (pos >= 0 ? pos : -pos - 1);
+   }
+
+   /**
+    * Returns the node replacing this one, two when it had to split, null when the id is already there.
+    */
+   private static Node[] insert(Node node, int id)
+   {
+      if (node.isLeaf())
+      {
+         int pos = Arrays.binarySearch(node.ids, id);
+         if (pos >= 0)
+         {
+            return null;
+         }
+         pos = -pos - 1;
+         int[] ids = new int[node.ids.length + 1];
+         System.arraycopy(node.ids, 0, ids, 0, pos);
+         ids[pos] = id;
+         System.arraycopy(node.ids, pos, ids, pos + 1, node.ids.length - pos);
+         if (ids.length <= LEAF_CAPACITY)
+         {
+            return new Node[] {new Node(ids)};
+         }
+         int half = ids.length / 2;
+         return new Node[] {new Node(Arrays.copyOfRange(ids, 0, half)),
+               new Node(Arrays.copyOfRange(ids, half, ids.length))};
+      }
+      int i = node.childFor(id);
+      Node[] replaced = insert(node.children[i], id);
+      if (replaced == null)
+      {
+         return null;
+      }
+      Node[] children = new Node[node.children.length + replaced.length - 1];
+      System.arraycopy(node.children, 0, children, 0, i);
+      System.arraycopy(replaced, 0, children, i, replaced.length);
+      System.arraycopy(node.children, i + 1, children, i + replaced.length, node.children.length - i - 1);
+      if (children.length <= BRANCH_CAPACITY)
+      {
+         return new Node[] {new Node(children)};
+      }
+      int half = children.length / 2;
+      return new Node[] {new Node(Arrays.copyOfRange(children, 0, half)),
+            new Node(Arrays.copyOfRange(children, half, children.length))};
+   }
+
+   /**
+    * Returns the node replacing this one, null when it ends up empty, the node itself when the id is absent.
+    */
+   private static Node delete(Node node, int id)
+   {
+      if (node.isLeaf())
+      {
+         int pos = Arrays.binarySearch(node.ids, id);
+         if (pos < 0)
+         {
+            return node;
+         }
+         if (node.ids.length == 1)
+         {
+            return null;
+         }
+         int[] ids = new int[node.ids.length - 1];
+         System.arraycopy(node.ids, 0, ids, 0, pos);
+         System.arraycopy(node.ids, pos + 1, ids, pos, ids.length - pos);
+         return new Node(ids);
+      }
+      int i = node.childFor(id);
+      Node child = node.children[i];
+      Node replaced = delete(child, id);
+      if (replaced == child)
+      {
+         return node;
+      }
+      if (replaced != null)
+      {
+         Node[] children = node.children.clone();
+         children[i] = replaced;
+         return new Node(children);
+      }
+      if (node.children.length == 1)
+      {
+         return null;
+      }
+      Node[] children = new Node[node.children.length - 1];
+      System.arraycopy(node.children, 0, children, 0, i);
+      System.arraycopy(node.children, i + 1, children, i, children.length - i);
+      return new Node(children);
+   }
+}
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OrderedIdIndexTest
+{
+   @Test
+   public void testRandomOperationsMatchTreeSet() throws Exception
+   {
+      Random random = new Random(7);
+      OrderedIdIndex index = new OrderedIdIndex();
+      TreeSet<Integer> expected = new TreeSet<Integer>();
+      for (int i = 0; i < 200000; i++)
+      {
+         int id = random.nextInt(20000) - 10000;
+         if (random.nextInt(3) == 0)
+         {
+            Assert.assertEquals(expected.remove(id), index.remove(id));
+         }
+         else
+         {
+            Assert.assertEquals(expected.add(id), index.add(id));
+         }
+         Assert.assertEquals(expected.size(), index.size());
+         if (i % 1000 == 0)
+         {
+            int offset = random.nextInt(expected.size() + 10);
+            Assert.assertArrayEquals(page(expected, offset, 100), index.page(offset, 100));
+            Assert.assertArrayEquals(toArray(expected.tailSet(id, true), 50), index.from(id, 50));
+            Assert.assertEquals(expected.headSet(id).size(), index.rank(id));
+            List<Integer> head = new ArrayList<Integer>(expected.headSet(id));
+            Assert.assertArrayEquals(toArray(head.subList(Math.max(0, head.size() - 50), head.size()), 50),
+                  index.before(id, 50));
+         }
+      }
+      Assert.assertArrayEquals(page(expected, 0, Integer.MAX_VALUE), index.page(0, Integer.MAX_VALUE));
+      for (Integer id : new ArrayList<Integer>(expected))
+      {
+         Assert.assertTrue(index.remove(id));
+      }
+      Assert.assertEquals(0, index.size());
+      Assert.assertEquals(0, index.page(0, 10).length);
+   }
+
+   @Test
+   public void testEdges() throws Exception
+   {
+      OrderedIdIndex index = new OrderedIdIndex();
+      Assert.assertEquals(0, index.from(Integer.MIN_VALUE, 10).length);
+      index.add(Integer.MAX_VALUE);
+      index.add(Integer.MIN_VALUE);
+      index.add(0);
+      Assert.assertArrayEquals(new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE}, index.page(0, 10));
+      Assert.assertArrayEquals(new int[] {Integer.MAX_VALUE}, index.from(1, 10));
+      Assert.assertEquals(0, index.page(3, 10).length);
+      Assert.assertEquals(0, index.page(-1, 10).length);
+      Assert.assertEquals(0, index.page(0, 0).length);
+   }
+
+   @Test
+   public void testReadersSeeConsistentVersions() throws Exception
+   {
+      final OrderedIdIndex index = new OrderedIdIndex();
+      final int writers = 4;
+      final int perWriter = 50000;
+      final AtomicBoolean done = new AtomicBoolean();
+      ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+      try
+      {
+         List<Future<Void>> results = new ArrayList<Future<Void>>();
+         for (int w = 0; w < writers; w++)
+         {
+            final int writer = w;
+            results.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  // interleaved ids, every other one removed again
+                  for (int i = 0; i < perWriter; i++)
+                  {
+                     int id = i * writers + writer;
+                     Assert.assertTrue(index.add(id));
+                     if (i % 2 == 1)
+                     {
+                        Assert.assertTrue(index.remove(id - writers));
+                     }
+                  }
+                  return null;
+               }
+            }));
+         }
+         List<Future<Void>> readers = new ArrayList<Future<Void>>();
+         for (int r = 0; r < 2; r++)
+         {
+            readers.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  while (!done.get())
+                  {
+                     int[] page = index.page(index.size() / 2, 200);
+                     for (int i = 1; i < page.length; i++)
+                     {
+                        Assert.assertTrue(page[i - 1] < page[i]);
+                     }
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> f : results)
+         {
+            f.get();
+         }
+         done.set(true);
+         for (Future<Void> f : readers)
+         {
+            f.get();
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+      Assert.assertEquals(writers * perWriter / 2, index.size());
+      int[] all = index.page(0, Integer.MAX_VALUE);
+      for (int i = 0; i < all.length; i++)
+      {
+         Assert.assertEquals(1, (all[i] / writers) % 2);
+      }
+   }
+
+   private static int[] page(NavigableSet<Integer> set, int offset, int limit)
+   {
+      List<Integer> all = new ArrayList<Integer>(set);
+      if (offset >= all.size())
+      {
+         return new int[0];
+      }
+      return toArray(all.subList(offset, (int) Math.min(all.size(), (long) offset + limit)), Integer.MAX_VALUE);
+   }
+
+   private static int[] toArray(Iterable<Integer> ids, int limit)
+   {
+      List<Integer> list = new ArrayList<Integer>();
+      for (Integer id : ids)
+      {
+         if (list.size() == limit)
+         {
+            break;
+         }
+         list.add(id);
+      }
+      int[] array = new int[list.size()];
+      for (int i = 0; i < array.length; i++)
+      {
+         array[i] = list.get(i);
+      }
+      return array;
+   }
+}
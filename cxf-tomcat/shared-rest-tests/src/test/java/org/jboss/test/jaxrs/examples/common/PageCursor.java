@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * Opaque token of a keyset page boundary: an id and the {@link Store#version()} of the store when the token was
+ * issued. The id is all a page needs to seek to; the version only makes the links of a collection change along
+ * with it, so a cache never serves the page following a cursor from before an insert or a removal. A check
+ * value rejects tokens that were not issued here.
+ */
+public final class PageCursor
+{
+   private static final int TOKEN_LENGTH = 32;
+
+   private final int id;
+   private final long version;
+
+   public PageCursor(int id, long version)
+   {
+      this.id = id;
+      this.version = version;
+   }
+
+   /**
+    * Reads a token written by {@link #toString()}, a malformed one is a bad request.
+    */
+   public static PageCursor parse(String token)
+   {
+      if (token == null || token.length() != TOKEN_LENGTH)
+      {
+         throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      try
+      {
+         int id = (int) Long.parseLong(token.substring(0, 8), 16);
+         long version = Long.parseLong(token.substring(8, 16), 16) << 32 | Long.parseLong(token.substring(16, 24), 16);
+         if ((int) Long.parseLong(token.substring(24), 16) != check(id, version))
+         {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+         }
+         return new PageCursor(id, version);
+      }
+      catch (NumberFormatException e)
+      {
+         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+      }
+   }
+
+   public int getId()
+   {
+      return id;
+   }
+
+   public long getVersion()
+   {
+      return version;
+   }
+
+   /**
+    * Returns the token: the id, the version and the check value in hex.
+    */
+   @Override
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder(TOKEN_LENGTH);
+      hex(sb, id);
+      hex(sb, (int) (version >>> 32));
+      hex(sb, (int) version);
+      hex(sb, check(id, version));
+      return sb.toString();
+   }
+
+   private static void hex(StringBuilder sb, int value)
+   {
+      String digits = Integer.toHexString(value);
+      for (int i = digits.length(); i < 8; i++)
+      {
+         sb.append('0');
+      }
+      sb.append(digits);
+   }
+
+   private static int check(int id, long version)
+   {
+      return IntHashStore.hash(IntHashStore.hash(id) ^ (int) version ^ (int) (version >>> 32) ^ 0x5bd1e995);
+   }
+}
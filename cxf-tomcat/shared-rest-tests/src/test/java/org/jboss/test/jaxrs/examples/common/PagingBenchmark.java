@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
+import org.junit.Test;
+
+/**
+ * Cost of a <code>start</code>/<code>size</code> page at increasing offsets: {@link Store#page(int, int)} of
+ * {@link IntHashStore}, which seeks the offset in its {@link OrderedIdIndex}, against the range-and-skip the
+ * collection resources used to run under the store lock, and of cursor pages while the store is written.
+ */
+public class PagingBenchmark
+{
+   private static final int PAGE = 20;
+   private static final int SKIPPED = 20000000;
+
+   @Test
+   public void testPageCostAcrossOffsets() throws Exception
+   {
+      for (int customers : new int[] {10000, 100000, 1000000})
+      {
+         final IntHashStore<Customer> store = new IntHashStore<Customer>();
+         for (int id = 1; id <= customers; id++)
+         {
+            Customer customer = new Customer();
+            customer.setId(id);
+            store.put(id, customer);
+         }
+         for (final int start : new int[] {0, customers / 2, customers - PAGE})
+         {
+            MicroBenchmark.nsPerOp(String.format("page(%d, %d) of %d", start, PAGE, customers), 1000000,
+                  new MicroBenchmark.Op()
+                  {
+                     public void run(int i)
+                     {
+                        if (store.page(start, PAGE).size() != PAGE)
+                        {
+                           throw new IllegalStateException();
+                        }
+                     }
+                  });
+            MicroBenchmark.nsPerOp(String.format("range(0, %d) skipping %d of %d", start + PAGE, start, customers),
+                  Math.max(10, SKIPPED / (start + PAGE)), new MicroBenchmark.Op()
+                  {
+                     public void run(int i)
+                     {
+                        if (skip(store.range(0, start + PAGE), start) != PAGE)
+                        {
+                           throw new IllegalStateException();
+                        }
+                     }
+                  });
+         }
+      }
+   }
+
+   @Test
+   public void testCursorPagesUnderWrites() throws Exception
+   {
+      final int customers = 1000000;
+      final IntHashStore<Customer> store = new IntHashStore<Customer>();
+      for (int id = 1; id <= customers; id++)
+      {
+         Customer customer = new Customer();
+         customer.setId(id);
+         store.put(id, customer);
+      }
+      final KeysetPage.Key<Customer> key = new KeysetPage.Key<Customer>()
+      {
+         public int idOf(Customer customer)
+         {
+            return customer.getId();
+         }
+      };
+      final AtomicBoolean done = new AtomicBoolean();
+      final AtomicLong writes = new AtomicLong();
+      Thread writer = new Thread()
+      {
+         public void run()
+         {
+            // appends and purges at both ends of the collection
+            for (int id = 1; !done.get(); id += 2)
+            {
+               Customer customer = new Customer();
+               customer.setId(store.nextId());
+               store.put(customer.getId(), customer);
+               store.remove(id);
+               writes.addAndGet(2);
+            }
+         }
+      };
+      writer.start();
+      try
+      {
+         for (final int after : new int[] {0, customers / 2, customers - 2 * PAGE})
+         {
+            MicroBenchmark.nsPerOp(String.format("after(%d, %d) of %d while writing", after, PAGE, customers), 1000000,
+                  new MicroBenchmark.Op()
+                  {
+                     public void run(int i)
+                     {
+                        if (KeysetPage.after(store, key, after, PAGE).getValues().size() != PAGE)
+                        {
+                           throw new IllegalStateException();
+                        }
+                     }
+                  });
+         }
+      }
+      finally
+      {
+         done.set(true);
+         writer.join();
+      }
+      System.out.println("   " + writes.get() + " writes meanwhile");
+   }
+
+   private static int skip(List<Customer> range, int start)
+   {
+      int count = 0;
+      for (int i = start; i < range.size(); i++)
+      {
+         count++;
+      }
+      return count;
+   }
+}
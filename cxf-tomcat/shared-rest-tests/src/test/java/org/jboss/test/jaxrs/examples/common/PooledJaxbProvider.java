@@ -0,0 +1,296 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * JAXB provider for the root elements bound by a {@link JaxbContextResolver}, reusing Marshaller and
+ * Unmarshaller instances instead of creating them per request. Each context gets a bounded pool, primed when the
+ * provider is constructed; an instance taken from the pool is confined to the request thread until it is put back.
+ *
+ * Providers generated for a specific type are preferred by the runtime over this one, which serves the rest.
+ * Request bodies are parsed by a StAX reader with DTDs and external entities disabled, as the generated
+ * providers do.
+ */
+@Provider
+@Produces({"application/xml", "text/xml"})
+@Consumes({"application/xml", "text/xml"})
+public class PooledJaxbProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object>
+{
+   public static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+   private static final XMLInputFactory inputFactory = createInputFactory();
+
+   private final JaxbContextResolver resolver;
+   private final Map<JAXBContext, Pool> pools = new IdentityHashMap<JAXBContext, Pool>();
+   private final AtomicLong created = new AtomicLong();
+   private final AtomicLong reused = new AtomicLong();
+
+   public PooledJaxbProvider(JaxbContextResolver resolver)
+   {
+      this.resolver = resolver;
+      for (JAXBContext context : resolver.getContexts())
+      {
+         Pool pool = new Pool(context);
+         try
+         {
+            pool.marshallers.set(0, pool.createMarshaller());
+            pool.unmarshallers.set(0, pool.createUnmarshaller());
+         }
+         catch (JAXBException e)
+         {
+            throw new IllegalStateException(e);
+         }
+         pools.put(context, pool);
+      }
+   }
+
+   private static XMLInputFactory createInputFactory()
+   {
+      XMLInputFactory f = XMLInputFactory.newInstance();
+      f.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+      return f;
+   }
+
+   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return pool(type) != null;
+   }
+
+   public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException
+   {
+      Pool pool = pool(type);
+      Unmarshaller unmarshaller = null;
+      XMLStreamReader reader = null;
+      try
+      {
+         synchronized (inputFactory)
+         {
+            reader = inputFactory.createXMLStreamReader(entityStream);
+         }
+         unmarshaller = pool.acquireUnmarshaller();
+         return unmarshaller.unmarshal(reader);
+      }
+      catch (XMLStreamException e)
+      {
+         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+      }
+      catch (UnmarshalException e)
+      {
+         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+      }
+      catch (JAXBException e)
+      {
+         throw new WebApplicationException(e);
+      }
+      finally
+      {
+         if (unmarshaller != null)
+         {
+            release(pool.unmarshallers, unmarshaller);
+         }
+         if (reader != null)
+         {
+            try
+            {
+               reader.close();
+            }
+            catch (XMLStreamException e)
+            {
+               // the body was read
+            }
+         }
+      }
+   }
+
+   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return pool(type) != null;
+   }
+
+   public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return -1;
+   }
+
+   public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+         MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException
+   {
+      Pool pool = pool(type);
+      Marshaller marshaller = null;
+      try
+      {
+         marshaller = pool.acquireMarshaller();
+         marshaller.marshal(o, entityStream);
+      }
+      catch (JAXBException e)
+      {
+         throw new WebApplicationException(e);
+      }
+      finally
+      {
+         if (marshaller != null)
+         {
+            release(pool.marshallers, marshaller);
+         }
+      }
+   }
+
+   /** Marshallers and unmarshallers created so far, including the ones priming the pools. */
+   public long getCreated()
+   {
+      return created.get();
+   }
+
+   /** Requests served by an instance taken from a pool. */
+   public long getReused()
+   {
+      return reused.get();
+   }
+
+   public int getIdle()
+   {
+      int idle = 0;
+      for (Pool pool : pools.values())
+      {
+         idle += count(pool.marshallers) + count(pool.unmarshallers);
+      }
+      return idle;
+   }
+
+   private Pool pool(Class<?> type)
+   {
+      if (!type.isAnnotationPresent(XmlRootElement.class))
+      {
+         return null;
+      }
+      JAXBContext context = resolver.getContext(type);
+      return context == null ? null : pools.get(context);
+   }
+
+   private <T> T acquire(AtomicReferenceArray<T> pool)
+   {
+      for (int i = 0; i < pool.length(); i++)
+      {
+         T instance = pool.getAndSet(i, null);
+         if (instance != null)
+         {
+            reused.incrementAndGet();
+            return instance;
+         }
+      }
+      return null;
+   }
+
+   private static <T> void release(AtomicReferenceArray<T> pool, T instance)
+   {
+      for (int i = 0; i < pool.length(); i++)
+      {
+         if (pool.compareAndSet(i, null, instance))
+         {
+            return;
+         }
+      }
+   }
+
+   private static int count(AtomicReferenceArray<?> pool)
+   {
+      int count = 0;
+      for (int i = 0; i < pool.length(); i++)
+      {
+         if (pool.get(i) != null)
+         {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   private final class Pool
+   {
+      private final JAXBContext context;
+      private final AtomicReferenceArray<Marshaller> marshallers = new AtomicReferenceArray<Marshaller>(POOL_SIZE);
+      private final AtomicReferenceArray<Unmarshaller> unmarshallers = new AtomicReferenceArray<Unmarshaller>(
+            POOL_SIZE);
+
+      private Pool(JAXBContext context)
+      {
+         this.context = context;
+      }
+
+      private Marshaller acquireMarshaller() throws JAXBException
+      {
+         Marshaller marshaller = acquire(marshallers);
+         return marshaller != null ? marshaller : createMarshaller();
+      }
+
+      private Unmarshaller acquireUnmarshaller() throws JAXBException
+      {
+         Unmarshaller unmarshaller = acquire(unmarshallers);
+         return unmarshaller != null ? unmarshaller : createUnmarshaller();
+      }
+
+      private Marshaller createMarshaller() throws JAXBException
+      {
+         created.incrementAndGet();
+         Marshaller marshaller = context.createMarshaller();
+         marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+         return marshaller;
+      }
+
+      private Unmarshaller createUnmarshaller() throws JAXBException
+      {
+         created.incrementAndGet();
+         return context.createUnmarshaller();
+      }
+   }
+}
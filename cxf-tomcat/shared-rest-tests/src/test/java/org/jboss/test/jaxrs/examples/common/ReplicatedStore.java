@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store of a {@link Replicator}: on the primary every update is applied to the local store and appended to the
+ * replication backlog as the whole value, in the order of the updates; on a replica the updates are refused and
+ * the entries streamed from the primary are applied instead. Reads always go to the local store.
+ */
+public class ReplicatedStore<V> implements Store<V>
+{
+   private final String name;
+   private final Store<V> store;
+   private final MappedStore.Codec<V> codec;
+   private final Replicator replicator;
+
+   ReplicatedStore(String name, Store<V> store, MappedStore.Codec<V> codec, Replicator replicator)
+   {
+      this.name = name;
+      this.store = store;
+      this.codec = codec;
+      this.replicator = replicator;
+   }
+
+   public int nextId()
+   {
+      return nextIds(1);
+   }
+
+   public int nextIds(int count)
+   {
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         int first = store.nextIds(count);
+         replicator.append(Replicator.entry(name, Replicator.IDS, first + count - 1, null));
+         return first;
+      }
+   }
+
+   public V get(int id)
+   {
+      replicator.checkLoaded();
+      return store.get(id);
+   }
+
+   public V put(int id, V value)
+   {
+      byte[] bytes = codec.encode(value);
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         V previous = store.put(id, value);
+         replicator.append(Replicator.entry(name, Replicator.PUT, id, bytes));
+         return previous;
+      }
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+         {
+            store.put(entry.getKey(), entry.getValue());
+            replicator.append(Replicator.entry(name, Replicator.PUT, entry.getKey(), codec.encode(entry.getValue())));
+         }
+      }
+   }
+
+   public V remove(int id)
+   {
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         V previous = store.remove(id);
+         if (previous != null)
+         {
+            replicator.append(Replicator.entry(name, Replicator.REMOVE, id, null));
+         }
+         return previous;
+      }
+   }
+
+   public boolean replace(int id, V expected, V updated)
+   {
+      byte[] bytes = codec.encode(updated);
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         if (!store.replace(id, expected, updated))
+         {
+            return false;
+         }
+         replicator.append(Replicator.entry(name, Replicator.PUT, id, bytes));
+         return true;
+      }
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      synchronized (replicator.updates)
+      {
+         replicator.checkPrimary();
+         V current = store.get(id);
+         V updated = update.apply(id, current);
+         if (updated == null)
+         {
+            if (current != null)
+            {
+               store.remove(id);
+               replicator.append(Replicator.entry(name, Replicator.REMOVE, id, null));
+            }
+         }
+         else if (updated != current)
+         {
+            store.put(id, updated);
+            replicator.append(Replicator.entry(name, Replicator.PUT, id, codec.encode(updated)));
+         }
+         return updated;
+      }
+   }
+
+   public List<V> range(int fromId, int limit)
+   {
+      replicator.checkLoaded();
+      return store.range(fromId, limit);
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      replicator.checkLoaded();
+      return store.page(offset, limit);
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      replicator.checkLoaded();
+      return store.rangeBefore(toId, limit);
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      replicator.checkLoaded();
+      return store.ids(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      replicator.checkLoaded();
+      return store.idsBefore(toId, limit);
+   }
+
+   public int size()
+   {
+      replicator.checkLoaded();
+      return store.size();
+   }
+
+   public long version()
+   {
+      return store.version();
+   }
+
+   String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Returns the value of the id as a replication entry, null if there is none.
+    */
+   byte[] image(int id)
+   {
+      V value = store.get(id);
+      return value == null ? null : Replicator.entry(name, Replicator.PUT, id, codec.encode(value));
+   }
+
+   /**
+    * Returns the last id allocated as a replication entry; the Store interface only reveals it by allocating,
+    * so the id is given up.
+    */
+   byte[] lastId()
+   {
+      return Replicator.entry(name, Replicator.IDS, store.nextId(), null);
+   }
+
+   /**
+    * Applies an entry streamed from the primary, the replicator holds its updates lock.
+    */
+   void apply(byte op, int id, ByteBuffer value)
+   {
+      switch (op)
+      {
+         case Replicator.PUT:
+            store.put(id, codec.decode(id, value));
+            break;
+         case Replicator.REMOVE:
+            store.remove(id);
+            break;
+         case Replicator.IDS:
+            int next = store.nextId();
+            if (next < id)
+            {
+               store.nextIds(id - next);
+            }
+            break;
+         default:
+            throw new IllegalStateException("Unknown replication entry " + op);
+      }
+   }
+
+   /**
+    * Removes every value, before the image of the primary is applied.
+    */
+   void clear()
+   {
+      for (int[] ids = store.ids(Integer.MIN_VALUE, 1000); ids.length > 0; ids = store.ids(Integer.MIN_VALUE, 1000))
+      {
+         for (int id : ids)
+         {
+            store.remove(id);
+         }
+      }
+   }
+}
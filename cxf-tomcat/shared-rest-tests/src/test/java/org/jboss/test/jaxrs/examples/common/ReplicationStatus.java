@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * State of a {@link Replicator}.
+ */
+@XmlRootElement(name = "replication")
+@XmlType(propOrder = {"role", "sequence", "lag", "replicas", "connected", "loading", "lastError"})
+public class ReplicationStatus
+{
+   private String role;
+   private long sequence;
+   private long lag;
+   private int replicas;
+   private boolean connected;
+   private boolean loading;
+   private String lastError;
+
+   /**
+    * <code>primary</code> or <code>replica</code>.
+    */
+   @XmlElement
+   public String getRole()
+   {
+      return role;
+   }
+
+   public void setRole(String role)
+   {
+      this.role = role;
+   }
+
+   /**
+    * Sequence number of the last update, appended on the primary or applied on a replica.
+    */
+   @XmlElement
+   public long getSequence()
+   {
+      return sequence;
+   }
+
+   public void setSequence(long sequence)
+   {
+      this.sequence = sequence;
+   }
+
+   /**
+    * Updates not applied yet: on a replica those of the primary, on the primary those of its slowest replica.
+    */
+   @XmlElement
+   public long getLag()
+   {
+      return lag;
+   }
+
+   public void setLag(long lag)
+   {
+      this.lag = lag;
+   }
+
+   /**
+    * Replicas following the primary.
+    */
+   @XmlElement
+   public int getReplicas()
+   {
+      return replicas;
+   }
+
+   public void setReplicas(int replicas)
+   {
+      this.replicas = replicas;
+   }
+
+   /**
+    * Whether a replica follows its primary, or whether the primary has replicas.
+    */
+   @XmlElement
+   public boolean isConnected()
+   {
+      return connected;
+   }
+
+   public void setConnected(boolean connected)
+   {
+      this.connected = connected;
+   }
+
+   /**
+    * Whether a replica loads an image of the primary, refusing reads until it holds every value.
+    */
+   @XmlElement
+   public boolean isLoading()
+   {
+      return loading;
+   }
+
+   public void setLoading(boolean loading)
+   {
+      this.loading = loading;
+   }
+
+   /**
+    * The last connection error, e.g. a replica that disconnected or a primary that stopped answering.
+    */
+   @XmlElement
+   public String getLastError()
+   {
+      return lastError;
+   }
+
+   public void setLastError(String lastError)
+   {
+      this.lastError = lastError;
+   }
+}
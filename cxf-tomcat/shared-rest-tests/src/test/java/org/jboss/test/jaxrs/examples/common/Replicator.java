@@ -0,0 +1,760 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Asynchronous primary/replica replication of the stores of a deployment. On the primary every update is
+ * numbered and kept in an in-memory backlog of the last entries, and a sender thread per replica streams the
+ * entries it has not acknowledged yet over a socket, in batches of up to {@value #BATCH_ENTRIES}: the replica
+ * applies a batch, answers with the sequence number it reached, and the entries appended meanwhile make the
+ * next batch. The lag of a replica is the difference of the sequence numbers. An update returns once it is
+ * applied and appended, it does not wait for the replicas.
+ *
+ * A replica connects to the primary with the generation and the sequence number it reached. If the backlog
+ * still holds the entries following it, the stream resumes there; otherwise, e.g. for a new replica or one that
+ * fell too far behind, the primary sends an image of its stores first. The image is read while the updates go
+ * on, so it may hold values newer than its sequence number; applying the entries following it still ends in the
+ * state of the primary, since every entry carries the whole value. A replica serves reads, refuses updates with
+ * a {@link ReadOnlyReplicaException}, and reconnects when the connection drops. While it loads an image its
+ * stores hold part of the values only, so until the entries following the image arrive it refuses reads too,
+ * with a {@link ReplicaLoadingException}. Connection errors are reported by {@link #status()}.
+ *
+ * {@link #promote()} turns a replica into a primary, e.g. once the primary failed: it stops following and starts
+ * a new generation, so a replica of the former primary that got entries the promoted one never got is sent an
+ * image rather than the entries following its own. What a deployment derives from its stores, e.g. aggregates,
+ * is rebuilt by a {@link Promotion}.
+ */
+public class Replicator implements Closeable
+{
+   /** Port the replicator listens on for replicas, while it is the primary. */
+   public static final String PORT_PARAM = "org.jboss.test.jaxrs.examples.replication.port";
+   /** <code>host:port</code> of the primary to follow, none for the primary itself. */
+   public static final String PRIMARY_PARAM = "org.jboss.test.jaxrs.examples.replication.primary";
+
+   public enum Role
+   {
+      PRIMARY, REPLICA
+   }
+
+   static final byte PUT = 1;
+   static final byte REMOVE = 2;
+   static final byte IDS = 3;
+
+   private static final byte RESET = 1;
+   private static final byte IMAGE = 2;
+   private static final byte BATCH = 3;
+
+   private static final int DEFAULT_BACKLOG = 1 << 16;
+   private static final int BATCH_ENTRIES = 1024;
+   private static final int IMAGE_CHUNK = 1024;
+   private static final int HEARTBEAT_MILLIS = 1000;
+   private static final int TIMEOUT_MILLIS = 5000;
+   private static final int RETRY_MILLIS = 500;
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final SecureRandom GENERATIONS = new SecureRandom();
+
+   /**
+    * Told that the replicator was promoted, e.g. to rebuild what it derives from the replicated stores. It runs
+    * under the updates lock, so the first updates of the new primary wait until it returns.
+    */
+   public interface Promotion
+   {
+      void promoted();
+   }
+
+   /**
+    * A replica the primary streams to.
+    */
+   private final class Sender implements Runnable
+   {
+      private final Socket socket;
+      private volatile long acknowledged;
+
+      private Sender(Socket socket)
+      {
+         this.socket = socket;
+      }
+
+      public void run()
+      {
+         try
+         {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            long replicaGeneration = in.readLong();
+            long sent = in.readLong();
+            // until the replica acknowledges, it is behind by everything
+            boolean imaged = !resumes(replicaGeneration, sent);
+            if (imaged)
+            {
+               sent = image(out);
+            }
+            else
+            {
+               acknowledged = sent;
+            }
+            List<byte[]> batch = new ArrayList<byte[]>(BATCH_ENTRIES);
+            while (!closed)
+            {
+               long head;
+               long batchGeneration;
+               synchronized (updates)
+               {
+                  long deadline = System.currentTimeMillis() + HEARTBEAT_MILLIS;
+                  // the replica gets the generation and acknowledges the image at once
+                  long wait = imaged ? 0 : HEARTBEAT_MILLIS;
+                  imaged = false;
+                  while (sequence == sent && role == Role.PRIMARY && !closed && wait > 0)
+                  {
+                     waiting++;
+                     try
+                     {
+                        updates.wait(wait);
+                     }
+                     catch (InterruptedException e)
+                     {
+                        return;
+                     }
+                     finally
+                     {
+                        waiting--;
+                     }
+                     wait = deadline - System.currentTimeMillis();
+                  }
+                  if (role != Role.PRIMARY || closed)
+                  {
+                     return;
+                  }
+                  if (sent < sequence - backlog.length)
+                  {
+                     // the replica gets an image when it reconnects
+                     throw new IOException("The replica fell behind the backlog");
+                  }
+                  head = sequence;
+                  batchGeneration = generation;
+                  for (long next = sent + 1; next <= head && batch.size() < BATCH_ENTRIES; next++)
+                  {
+                     batch.add(backlog[(int) next & mask]);
+                  }
+               }
+               // an empty batch is a heartbeat
+               out.writeByte(BATCH);
+               out.writeLong(batchGeneration);
+               out.writeLong(head);
+               out.writeLong(sent + 1);
+               out.writeInt(batch.size());
+               for (byte[] entry : batch)
+               {
+                  out.writeInt(entry.length);
+                  out.write(entry);
+               }
+               out.flush();
+               sent += batch.size();
+               batch.clear();
+               acknowledged = in.readLong();
+            }
+         }
+         catch (IOException e)
+         {
+            if (!closed)
+            {
+               lastError = "Replica " + socket.getRemoteSocketAddress() + " disconnected: " + e.getMessage();
+            }
+         }
+         finally
+         {
+            senders.remove(this);
+            closeQuietly(socket);
+         }
+      }
+
+      /**
+       * Streams an image of the stores and returns the sequence number the entries following it start from.
+       */
+      private long image(DataOutputStream out) throws IOException
+      {
+         long at;
+         List<byte[]> lastIds = new ArrayList<byte[]>();
+         synchronized (updates)
+         {
+            at = sequence;
+            for (ReplicatedStore<?> store : stores.values())
+            {
+               lastIds.add(store.lastId());
+            }
+         }
+         out.writeByte(RESET);
+         out.writeLong(at);
+         for (ReplicatedStore<?> store : stores.values())
+         {
+            List<byte[]> chunk = new ArrayList<byte[]>(IMAGE_CHUNK);
+            for (int[] ids = store.ids(Integer.MIN_VALUE, IMAGE_CHUNK); ids.length > 0; )
+            {
+               for (int id : ids)
+               {
+                  byte[] entry = store.image(id);
+                  if (entry != null)
+                  {
+                     chunk.add(entry);
+                  }
+               }
+               writeImage(out, chunk);
+               int last = ids[ids.length - 1];
+               ids = last == Integer.MAX_VALUE ? new int[0] : store.ids(last + 1, IMAGE_CHUNK);
+            }
+         }
+         writeImage(out, lastIds);
+         out.flush();
+         return at;
+      }
+
+      private void writeImage(DataOutputStream out, List<byte[]> entries) throws IOException
+      {
+         out.writeByte(IMAGE);
+         out.writeInt(entries.size());
+         for (byte[] entry : entries)
+         {
+            out.writeInt(entry.length);
+            out.write(entry);
+         }
+         entries.clear();
+      }
+   }
+
+   private final Map<String, ReplicatedStore<?>> stores = new ConcurrentHashMap<String, ReplicatedStore<?>>();
+   /** Orders the entries like the updates they record, and guards the sequence, role and generations. */
+   final Object updates = new Object();
+   private final byte[][] backlog;
+   private final int mask;
+   private final ServerSocket server;
+   private final InetSocketAddress primary;
+   private final List<Sender> senders = new CopyOnWriteArrayList<Sender>();
+   private final List<Promotion> promotions = new CopyOnWriteArrayList<Promotion>();
+   private long sequence;
+   /** The first sequence number whose entry this replicator appended itself, the earlier ones it applied. */
+   private long appendedFrom;
+   private long generation;
+   private long previousGeneration;
+   private long previousEnd;
+   private int waiting;
+   private volatile Role role;
+   private volatile Socket upstream;
+   private volatile long primarySequence;
+   /** Whether a replica applies the entries of the primary, rather than waiting or reading an image. */
+   private volatile boolean following;
+   /** Whether a replica cleared its stores for an image and has not received the entries following it yet. */
+   private volatile boolean loading;
+   private volatile String lastError;
+   private volatile boolean closed;
+   private boolean started;
+
+   /**
+    * @param port the port to listen on for replicas, 0 for any and -1 for none
+    * @param primary the primary to follow, null to be the primary
+    */
+   public Replicator(int port, InetSocketAddress primary) throws IOException
+   {
+      this(port, primary, DEFAULT_BACKLOG);
+   }
+
+   Replicator(int port, InetSocketAddress primary, int backlogEntries) throws IOException
+   {
+      int capacity = Integer.highestOneBit(Math.max(backlogEntries, 2) - 1) << 1;
+      backlog = new byte[capacity][];
+      mask = capacity - 1;
+      this.primary = primary;
+      role = primary == null ? Role.PRIMARY : Role.REPLICA;
+      appendedFrom = 1;
+      if (role == Role.PRIMARY)
+      {
+         generation = newGeneration();
+      }
+      server = port < 0 ? null : new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+   }
+
+   /**
+    * Returns a factory whose stores are replicated, those of the types without one of the {@link Codecs} are
+    * not. Every replicator of a deployment has to create the same stores before it is {@link #start() started}.
+    */
+   public StoreFactory factory(final StoreFactory factory)
+   {
+      return new StoreFactory()
+      {
+         public <V> Store<V> createStore(String name, Class<V> type)
+         {
+            Store<V> store = factory.createStore(name, type);
+            MappedStore.Codec<V> codec = Codecs.forType(type);
+            if (codec == null)
+            {
+               return store;
+            }
+            String key = name + "-" + type.getName();
+            ReplicatedStore<V> replicated = new ReplicatedStore<V>(key, store, codec, Replicator.this);
+            if (stores.put(key, replicated) != null)
+            {
+               throw new IllegalStateException("Store " + key + " is replicated already");
+            }
+            return replicated;
+         }
+      };
+   }
+
+   /**
+    * Starts accepting replicas and, on a replica, following the primary.
+    */
+   public synchronized void start()
+   {
+      if (started)
+      {
+         return;
+      }
+      started = true;
+      if (server != null)
+      {
+         daemon("replication-accept-" + server.getLocalPort(), new Runnable()
+         {
+            public void run()
+            {
+               accept();
+            }
+         });
+      }
+      if (primary != null)
+      {
+         daemon("replication-follow-" + primary.getPort(), new Runnable()
+         {
+            public void run()
+            {
+               follow();
+            }
+         });
+      }
+   }
+
+   /**
+    * Registers a promotion callback, called once all the entries applied so far are in the stores.
+    */
+   public void onPromotion(Promotion promotion)
+   {
+      promotions.add(promotion);
+   }
+
+   /**
+    * Makes a replica the primary; it stops following and accepts updates.
+    */
+   public void promote()
+   {
+      synchronized (updates)
+      {
+         if (role == Role.PRIMARY)
+         {
+            return;
+         }
+         role = Role.PRIMARY;
+         previousGeneration = generation;
+         previousEnd = sequence;
+         appendedFrom = sequence + 1;
+         generation = newGeneration();
+         // a primary serves what it holds, even if the image it was loading is incomplete
+         loading = false;
+         for (Promotion promotion : promotions)
+         {
+            promotion.promoted();
+         }
+      }
+      closeQuietly(upstream);
+   }
+
+   public Role getRole()
+   {
+      return role;
+   }
+
+   /**
+    * Returns the port replicas connect to, -1 if the replicator does not listen.
+    */
+   public int getPort()
+   {
+      return server == null ? -1 : server.getLocalPort();
+   }
+
+   public ReplicationStatus status()
+   {
+      ReplicationStatus status = new ReplicationStatus();
+      long last;
+      synchronized (updates)
+      {
+         last = sequence;
+      }
+      status.setRole(role.name().toLowerCase(Locale.ENGLISH));
+      status.setSequence(last);
+      if (role == Role.PRIMARY)
+      {
+         long lag = 0;
+         for (Sender sender : senders)
+         {
+            lag = Math.max(lag, last - sender.acknowledged);
+         }
+         status.setLag(lag);
+         status.setReplicas(senders.size());
+         status.setConnected(!senders.isEmpty());
+      }
+      else
+      {
+         status.setLag(Math.max(0, primarySequence - last));
+         status.setConnected(upstream != null && following);
+         status.setLoading(loading);
+      }
+      status.setLastError(lastError);
+      return status;
+   }
+
+   public void close() throws IOException
+   {
+      closed = true;
+      synchronized (updates)
+      {
+         updates.notifyAll();
+      }
+      if (server != null)
+      {
+         server.close();
+      }
+      closeQuietly(upstream);
+      for (Sender sender : senders)
+      {
+         closeQuietly(sender.socket);
+      }
+   }
+
+   /**
+    * Refuses an update unless this is the primary; the caller holds the updates lock.
+    */
+   void checkPrimary()
+   {
+      if (role != Role.PRIMARY)
+      {
+         throw new ReadOnlyReplicaException("This instance is a replica of " + primary);
+      }
+   }
+
+   /**
+    * Refuses a read while a replica loads an image.
+    */
+   void checkLoaded()
+   {
+      if (loading)
+      {
+         throw new ReplicaLoadingException("This replica is loading an image of " + primary);
+      }
+   }
+
+   /**
+    * Numbers an entry and appends it to the backlog; the caller holds the updates lock.
+    */
+   void append(byte[] entry)
+   {
+      sequence++;
+      backlog[(int) sequence & mask] = entry;
+      if (waiting > 0)
+      {
+         updates.notifyAll();
+      }
+   }
+
+   /**
+    * Returns an entry: the store name, the operation, the id and the encoded value if any.
+    */
+   static byte[] entry(String store, byte op, int id, byte[] value)
+   {
+      byte[] name = store.getBytes(UTF_8);
+      ByteBuffer entry = ByteBuffer.allocate(2 + name.length + 1 + 4 + (value == null ? 0 : value.length));
+      entry.putShort((short) name.length).put(name).put(op).putInt(id);
+      if (value != null)
+      {
+         entry.put(value);
+      }
+      return entry.array();
+   }
+
+   /**
+    * Whether the backlog holds the entries following those a replica applied.
+    */
+   private boolean resumes(long replicaGeneration, long applied)
+   {
+      synchronized (updates)
+      {
+         if (role != Role.PRIMARY || replicaGeneration == 0 || applied < appendedFrom - 1
+               || applied < sequence - backlog.length)
+         {
+            return false;
+         }
+         return replicaGeneration == generation && applied <= sequence
+               || replicaGeneration == previousGeneration && applied == previousEnd;
+      }
+   }
+
+   private void accept()
+   {
+      while (!closed)
+      {
+         try
+         {
+            Socket socket = server.accept();
+            if (role != Role.PRIMARY)
+            {
+               // replicas follow the primary only
+               closeQuietly(socket);
+               continue;
+            }
+            Sender sender = new Sender(socket);
+            senders.add(sender);
+            daemon("replication-send-" + socket.getPort(), sender);
+         }
+         catch (IOException e)
+         {
+            if (!closed)
+            {
+               lastError = "Cannot accept a replica: " + e.getMessage();
+            }
+         }
+      }
+   }
+
+   /**
+    * Follows the primary until this replicator is promoted or closed, reconnecting when the connection drops.
+    */
+   private void follow()
+   {
+      while (!closed && role == Role.REPLICA)
+      {
+         Socket socket = new Socket();
+         try
+         {
+            socket.connect(primary, TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            synchronized (updates)
+            {
+               if (role != Role.REPLICA)
+               {
+                  return;
+               }
+               upstream = socket;
+               out.writeLong(generation);
+               out.writeLong(sequence);
+            }
+            out.flush();
+            while (true)
+            {
+               byte frame = in.readByte();
+               switch (frame)
+               {
+                  case RESET:
+                     reset(in.readLong());
+                     break;
+                  case IMAGE:
+                     apply(read(in, in.readInt()), 0);
+                     break;
+                  case BATCH:
+                     long batchGeneration = in.readLong();
+                     long head = in.readLong();
+                     long first = in.readLong();
+                     out.writeLong(batch(batchGeneration, first, read(in, in.readInt())));
+                     out.flush();
+                     primarySequence = head;
+                     break;
+                  default:
+                     throw new IOException("Unknown replication frame " + frame);
+               }
+            }
+         }
+         catch (SocketTimeoutException e)
+         {
+            lastError = "Primary " + primary + " stopped answering";
+         }
+         catch (IOException e)
+         {
+            // refused, closed or promoted
+         }
+         finally
+         {
+            upstream = null;
+            following = false;
+            closeQuietly(socket);
+         }
+         try
+         {
+            Thread.sleep(RETRY_MILLIS);
+         }
+         catch (InterruptedException e)
+         {
+            return;
+         }
+      }
+   }
+
+   /**
+    * Starts over from an image of the primary. Until the entries following it arrive the replica has no
+    * generation, so if the connection drops before, it asks for an image again, and it refuses reads.
+    */
+   private void reset(long at) throws IOException
+   {
+      synchronized (updates)
+      {
+         checkReplica();
+         loading = true;
+         for (ReplicatedStore<?> store : stores.values())
+         {
+            store.clear();
+         }
+         generation = 0;
+         sequence = at;
+         following = false;
+      }
+   }
+
+   private long batch(long primaryGeneration, long first, List<byte[]> entries) throws IOException
+   {
+      synchronized (updates)
+      {
+         checkReplica();
+         if (first != sequence + 1)
+         {
+            throw new IOException("Entry " + first + " does not follow " + sequence);
+         }
+         // the primary decided the stream resumes here, possibly in a generation it started since
+         generation = primaryGeneration;
+         following = true;
+         apply(entries, first);
+         loading = false;
+         return sequence;
+      }
+   }
+
+   private static List<byte[]> read(DataInputStream in, int count) throws IOException
+   {
+      List<byte[]> entries = new ArrayList<byte[]>(count);
+      for (int i = 0; i < count; i++)
+      {
+         byte[] entry = new byte[in.readInt()];
+         in.readFully(entry);
+         entries.add(entry);
+      }
+      return entries;
+   }
+
+   /**
+    * Applies entries, numbered from <code>first</code> unless they are part of an image.
+    */
+   private void apply(List<byte[]> entries, long first) throws IOException
+   {
+      synchronized (updates)
+      {
+         checkReplica();
+         for (byte[] bytes : entries)
+         {
+            ByteBuffer entry = ByteBuffer.wrap(bytes);
+            byte[] name = new byte[entry.getShort()];
+            entry.get(name);
+            byte op = entry.get();
+            int id = entry.getInt();
+            ReplicatedStore<?> store = stores.get(new String(name, UTF_8));
+            if (store == null)
+            {
+               throw new IOException("Unknown store " + new String(name, UTF_8));
+            }
+            store.apply(op, id, entry.slice());
+            if (first > 0)
+            {
+               sequence = first++;
+            }
+         }
+      }
+   }
+
+   private void checkReplica() throws IOException
+   {
+      if (role != Role.REPLICA)
+      {
+         throw new IOException("Promoted");
+      }
+   }
+
+   private static long newGeneration()
+   {
+      long generation;
+      do
+      {
+         generation = GENERATIONS.nextLong();
+      }
+      while (generation == 0);
+      return generation;
+   }
+
+   private static void daemon(String name, Runnable task)
+   {
+      Thread t = new Thread(task, name);
+      t.setDaemon(true);
+      t.start();
+   }
+
+   private static void closeQuietly(Socket socket)
+   {
+      if (socket != null)
+      {
+         try
+         {
+            socket.close();
+         }
+         catch (IOException e)
+         {
+            // closing anyway
+         }
+      }
+   }
+}
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.Test;
+
+/**
+ * Throughput of customer puts on a primary without and with a replica on loopback, and how long the replica
+ * takes to apply the last of them.
+ */
+public class ReplicatorBenchmark
+{
+   private static final int PUTS = 500000;
+
+   @Test
+   public void testPutsWithReplica() throws Exception
+   {
+      for (int run = 0; run < 2; run++)
+      {
+         Replicator alone = new Replicator(-1, null);
+         try
+         {
+            puts("IntHashStore", new IntHashStore<Customer>(), null);
+            puts("primary without replicas", alone.factory(new IntHashStoreFactory())
+                  .createStore("customers", Customer.class), null);
+         }
+         finally
+         {
+            alone.close();
+         }
+
+         Replicator primary = new Replicator(0, null);
+         Replicator replica = new Replicator(-1, new InetSocketAddress(InetAddress.getLoopbackAddress(),
+               primary.getPort()));
+         try
+         {
+            Store<Customer> customers = primary.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+            replica.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+            primary.start();
+            replica.start();
+            while (!replica.status().isConnected())
+            {
+               Thread.sleep(10);
+            }
+            puts("primary with a replica", customers, replica);
+         }
+         finally
+         {
+            replica.close();
+            primary.close();
+         }
+      }
+   }
+
+   private static void puts(String label, Store<Customer> store, Replicator replica) throws InterruptedException
+   {
+      Customer customer = new Customer();
+      customer.setFirstName("Bill");
+      customer.setLastName("Burke");
+      customer.setStreet("263 Clarendon Street");
+      customer.setCity("Boston");
+      customer.setState("MA");
+      customer.setZip("02115");
+      customer.setCountry("USA");
+      long start = System.nanoTime();
+      for (int id = 1; id <= PUTS; id++)
+      {
+         store.put(id, customer);
+      }
+      long nanos = System.nanoTime() - start;
+      String caughtUp = "";
+      if (replica != null)
+      {
+         while (replica.status().getSequence() < PUTS)
+         {
+            Thread.sleep(1);
+         }
+         caughtUp = String.format(" %8d ms until replicated", (System.nanoTime() - start - nanos) / 1000000);
+      }
+      System.out.println(String.format("%-48s %12.0f puts/s%s", label, PUTS * 1e9 / nanos, caughtUp));
+   }
+}
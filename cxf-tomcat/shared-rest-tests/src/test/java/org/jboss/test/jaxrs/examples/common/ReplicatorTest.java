@@ -0,0 +1,306 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The stores of a primary without replicas keep the store contract; replicas on loopback are checked below.
+ */
+public class ReplicatorTest extends StoreConformanceTest
+{
+   private final List<Replicator> replicators = new ArrayList<Replicator>();
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      try
+      {
+         return replicator(-1, null, 1 << 16).factory(new IntHashStoreFactory());
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   @After
+   public void closeReplicators() throws Exception
+   {
+      for (Replicator replicator : replicators)
+      {
+         replicator.close();
+      }
+   }
+
+   private Replicator replicator(int port, Replicator primary, int backlog) throws IOException
+   {
+      InetSocketAddress address = primary == null ? null
+            : new InetSocketAddress(InetAddress.getLoopbackAddress(), primary.getPort());
+      Replicator replicator = new Replicator(port, address, backlog);
+      replicators.add(replicator);
+      return replicator;
+   }
+
+   private static Customer customer(int id, String firstName)
+   {
+      Customer customer = new Customer();
+      customer.setId(id);
+      customer.setFirstName(firstName);
+      customer.setLastName("Burke");
+      customer.setStreet(id + " Clarendon Street");
+      customer.setCity("Boston");
+      customer.setState("MA");
+      customer.setZip("02115");
+      customer.setCountry("USA");
+      return customer;
+   }
+
+   /**
+    * Waits until the replica applied everything the primary appended and the primary saw it acknowledged.
+    */
+   private static void awaitCaughtUp(Replicator primary, Replicator replica) throws InterruptedException
+   {
+      long deadline = System.currentTimeMillis() + 20000;
+      while (System.currentTimeMillis() < deadline)
+      {
+         ReplicationStatus ahead = primary.status();
+         ReplicationStatus behind = replica.status();
+         if (behind.isConnected() && behind.getSequence() == ahead.getSequence() && ahead.getLag() == 0)
+         {
+            return;
+         }
+         Thread.sleep(10);
+      }
+      Assert.fail("The replica did not catch up: " + replica.status().getSequence() + " of "
+            + primary.status().getSequence());
+   }
+
+   private static void assertSameCustomers(Store<Customer> expected, Store<Customer> actual)
+   {
+      Assert.assertEquals(expected.size(), actual.size());
+      for (Customer customer : expected.range(0, Integer.MAX_VALUE))
+      {
+         Customer copy = actual.get(customer.getId());
+         Assert.assertNotNull("customer " + customer.getId(), copy);
+         Assert.assertEquals(customer.getFirstName(), copy.getFirstName());
+         Assert.assertEquals(customer.getStreet(), copy.getStreet());
+      }
+   }
+
+   @Test
+   public void testReplicaFollowsPrimary() throws Exception
+   {
+      Replicator primary = replicator(0, null, 1 << 16);
+      Store<Customer> customers = primary.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      Replicator replica = replicator(-1, primary, 1 << 16);
+      Store<Customer> copies = replica.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      primary.start();
+      replica.start();
+
+      for (int i = 0; i < 5000; i++)
+      {
+         int id = customers.nextId();
+         customers.put(id, customer(id, "Bill" + id));
+      }
+      for (int id = 2; id <= 5000; id += 2)
+      {
+         customers.remove(id);
+      }
+      customers.put(1, customer(1, "William"));
+      awaitCaughtUp(primary, replica);
+
+      assertSameCustomers(customers, copies);
+      Assert.assertEquals("William", copies.get(1).getFirstName());
+      Assert.assertNull(copies.get(2));
+      ReplicationStatus status = primary.status();
+      Assert.assertEquals("primary", status.getRole());
+      Assert.assertEquals(1, status.getReplicas());
+      Assert.assertEquals(0, status.getLag());
+      Assert.assertTrue(status.getSequence() >= 12500);
+      status = replica.status();
+      Assert.assertEquals("replica", status.getRole());
+      Assert.assertEquals(0, status.getLag());
+
+      try
+      {
+         copies.put(1, customer(1, "Joe"));
+         Assert.fail("a replica accepted an update");
+      }
+      catch (ReadOnlyReplicaException e)
+      {
+         // expected
+      }
+      try
+      {
+         copies.nextId();
+         Assert.fail("a replica allocated an id");
+      }
+      catch (ReadOnlyReplicaException e)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testReplicaBehindTheBacklogGetsAnImage() throws Exception
+   {
+      Replicator primary = replicator(0, null, 64);
+      Store<Customer> customers = primary.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      Store<String> names = primary.factory(new IntHashStoreFactory()).createStore("names", String.class);
+      primary.start();
+      for (int i = 0; i < 1000; i++)
+      {
+         int id = customers.nextId();
+         customers.put(id, customer(id, "Bill" + id));
+         names.put(id, "Bill" + id);
+      }
+
+      Replicator replica = replicator(-1, primary, 64);
+      Store<Customer> copies = replica.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      Store<String> nameCopies = replica.factory(new IntHashStoreFactory()).createStore("names", String.class);
+      replica.start();
+      awaitCaughtUp(primary, replica);
+      assertSameCustomers(customers, copies);
+      Assert.assertEquals(1000, nameCopies.size());
+
+      // then the entries stream
+      customers.remove(500);
+      names.put(1, "William");
+      awaitCaughtUp(primary, replica);
+      Assert.assertNull(copies.get(500));
+      Assert.assertEquals("William", nameCopies.get(1));
+   }
+
+   @Test
+   public void testReplicaRefusesReadsWhileLoadingAnImage() throws Exception
+   {
+      Replicator primary = replicator(0, null, 64);
+      Store<Customer> customers = primary.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      primary.start();
+      for (int i = 0; i < 5000; i++)
+      {
+         int id = customers.nextId();
+         customers.put(id, customer(id, "Bill" + id));
+      }
+
+      // the replica comes back with the values of an earlier run, which the image replaces
+      final IntHashStore<Customer> previous = new IntHashStore<Customer>();
+      previous.putAll(toMap(customers));
+      Replicator replica = replicator(-1, primary, 64);
+      final Store<Customer> copies = replica.factory(new StoreFactory()
+      {
+         @SuppressWarnings("unchecked")
+         public <V> Store<V> createStore(String name, Class<V> type)
+         {
+            return (Store<V>) previous;
+         }
+      }).createStore("customers", Customer.class);
+      final AtomicBoolean done = new AtomicBoolean();
+      final AtomicReference<String> lost = new AtomicReference<String>();
+      Thread reader = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            for (int id = 1; !done.get(); id = id % 5000 + 1)
+            {
+               try
+               {
+                  if (copies.get(id) == null)
+                  {
+                     lost.set("customer " + id);
+                  }
+               }
+               catch (ReplicaLoadingException e)
+               {
+                  // expected until the image is complete
+               }
+            }
+         }
+      });
+      reader.start();
+      replica.start();
+      awaitCaughtUp(primary, replica);
+      done.set(true);
+      reader.join();
+
+      Assert.assertNull(lost.get(), lost.get());
+      Assert.assertFalse(replica.status().isLoading());
+      assertSameCustomers(customers, copies);
+   }
+
+   private static Map<Integer, Customer> toMap(Store<Customer> store)
+   {
+      Map<Integer, Customer> values = new HashMap<Integer, Customer>();
+      for (Customer customer : store.range(Integer.MIN_VALUE, Integer.MAX_VALUE))
+      {
+         values.put(customer.getId(), customer);
+      }
+      return values;
+   }
+
+   @Test
+   public void testPromotedReplicaTakesOver() throws Exception
+   {
+      Replicator primary = replicator(0, null, 1 << 16);
+      Store<Customer> customers = primary.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      Replicator replica = replicator(0, primary, 1 << 16);
+      Store<Customer> copies = replica.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      primary.start();
+      replica.start();
+      for (int i = 0; i < 10; i++)
+      {
+         int id = customers.nextId();
+         customers.put(id, customer(id, "Bill" + id));
+      }
+      awaitCaughtUp(primary, replica);
+
+      // the primary fails
+      primary.close();
+      replica.promote();
+      Assert.assertEquals(Replicator.Role.PRIMARY, replica.getRole());
+      int id = copies.nextId();
+      Assert.assertTrue("id " + id + " was allocated by the former primary", id > 10);
+      copies.put(id, customer(id, "Joe"));
+      Assert.assertEquals(11, copies.size());
+
+      // a new replica follows the promoted one
+      Replicator next = replicator(-1, replica, 1 << 16);
+      Store<Customer> nextCopies = next.factory(new IntHashStoreFactory()).createStore("customers", Customer.class);
+      next.start();
+      awaitCaughtUp(replica, next);
+      assertSameCustomers(copies, nextCopies);
+   }
+}
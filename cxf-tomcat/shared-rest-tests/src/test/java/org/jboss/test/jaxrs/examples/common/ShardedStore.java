@@ -0,0 +1,908 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Partitions values over shards, each a store of its own with its own lock, so updates of ids on different
+ * shards do not contend. A value is placed by the jump consistent hash of its id, or of a key of the value
+ * such as a customer name when a {@link Router} is given; listings read every shard in parallel and merge
+ * their ids.
+ *
+ * {@link #addShards(int)} adds shards at runtime. The consistent hash only moves values to the new shards,
+ * which a background task copies there and then removes from their old shard while reads look up both;
+ * updates of an id are serialized by a lock striped by id, so a value being moved is never updated in its
+ * old shard. Until the move completes, a listing may briefly see an id twice, which the merge drops, and
+ * {@link #size()} may count it twice. With a {@link ShardCount} the number of shards is recorded as they are
+ * added, so a store of a persistent factory opens the added shards again when it comes back.
+ *
+ * The ids are allocated by the sharded store itself, from a counter over all the shards; {@link #allocateIds}
+ * leases them in blocks and in the range of a node as {@link IdAllocator#factory} does for a plain store.
+ */
+public class ShardedStore<V> implements Store<V>
+{
+   public static final String INIT_PARAM = "org.jboss.test.jaxrs.examples.shards";
+   public static final int DEFAULT_SHARDS = 4;
+
+   private static final int STRIPES = 64;
+   private static final int CHUNK = 1024;
+   private static final int THREADS = Runtime.getRuntime().availableProcessors();
+   private static final ExecutorService workers = CustomerXmlExport.createExecutor("store-shards", THREADS);
+   private static final ExecutorService rebalancer = CustomerXmlExport.createExecutor("store-rebalance", 1);
+
+   /**
+    * Creates the store of a shard, called with 0, 1, 2... as shards are added.
+    */
+   public interface Shards<V>
+   {
+      Store<V> createShard(int index);
+   }
+
+   /**
+    * Records the shard count of a store, see {@link ShardedStore#count(StoreFactory, String)}.
+    */
+   public interface ShardCount
+   {
+      /**
+       * Returns the recorded count, 0 if none was.
+       */
+      int load();
+
+      void save(int count);
+   }
+
+   /**
+    * Places a value by a key of its own rather than its id; the same key must be found from a lookup, see
+    * {@link ShardedStore#read(int, Read)}.
+    */
+   public interface Router<V>
+   {
+      int hashOf(V value);
+   }
+
+   /**
+    * A lookup made on a shard.
+    */
+   public interface Read<V, R>
+   {
+      R read(Store<V> shard);
+   }
+
+   /**
+    * The shards, and while a rebalance moves values to the new ones, the shard count it started from.
+    */
+   private static final class Layout<V>
+   {
+      private final List<Store<V>> shards;
+      private final int previous;
+
+      private Layout(List<Store<V>> shards, int previous)
+      {
+         this.shards = shards;
+         this.previous = previous;
+      }
+
+      private boolean rebalancing()
+      {
+         return previous != shards.size();
+      }
+   }
+
+   private final Shards<V> factory;
+   private final Router<V> router;
+   private final ShardCount recorded;
+   private volatile Layout<V> layout;
+   private final AtomicInteger lastId = new AtomicInteger();
+   private final IdAllocator.Counter counter = new IdAllocator.Counter()
+   {
+      public int nextIds(int count)
+      {
+         return lastId.addAndGet(count) - count + 1;
+      }
+   };
+   private volatile IdAllocator ids;
+   // moving a value adds and removes an id, which is not a change of the store
+   private final AtomicLong moves = new AtomicLong();
+   private final Object[] stripes = new Object[STRIPES];
+
+   /**
+    * Places the values by id.
+    */
+   public ShardedStore(Shards<V> factory, int count)
+   {
+      this(factory, null, count);
+   }
+
+   public ShardedStore(Shards<V> factory, Router<V> router, int count)
+   {
+      this(factory, router, count, null);
+   }
+
+   /**
+    * Opens the recorded number of shards if more were added than the count configured.
+    */
+   public ShardedStore(Shards<V> factory, Router<V> router, int count, ShardCount recorded)
+   {
+      if (count < 1)
+      {
+         throw new IllegalArgumentException("A store needs at least one shard: " + count);
+      }
+      this.factory = factory;
+      this.router = router;
+      this.recorded = recorded;
+      if (recorded != null)
+      {
+         int previous = recorded.load();
+         if (previous > count)
+         {
+            // shards were added at runtime, the values moved there are found again
+            count = previous;
+         }
+         else if (previous < count)
+         {
+            recorded.save(count);
+         }
+      }
+      for (int i = 0; i < STRIPES; i++)
+      {
+         stripes[i] = new Object();
+      }
+      List<Store<V>> shards = new ArrayList<Store<V>>(count);
+      for (int i = 0; i < count; i++)
+      {
+         Store<V> shard = factory.createShard(i);
+         shards.add(shard);
+         // persistent shards come back with their ids
+         int[] last = shard.idsBefore(Integer.MAX_VALUE, 1);
+         if (last.length > 0)
+         {
+            allocated(last[0]);
+         }
+         if (shard.get(Integer.MAX_VALUE) != null)
+         {
+            allocated(Integer.MAX_VALUE);
+         }
+      }
+      layout = new Layout<V>(Collections.unmodifiableList(shards), count);
+   }
+
+   /**
+    * Names the shards of a store after it: the first shard keeps the name, so a store that grew from a single
+    * one keeps its values, the next ones are "name-1", "name-2"...
+    */
+   public static <V> Shards<V> of(final StoreFactory stores, final String name, final Class<V> type)
+   {
+      return new Shards<V>()
+      {
+         public Store<V> createShard(int index)
+         {
+            return stores.createStore(index == 0 ? name : name + "-" + index, type);
+         }
+      };
+   }
+
+   /**
+    * Hands out the ids through an {@link IdAllocator} leasing from the counter of the store, the allocators of
+    * the shards themselves are never asked for ids.
+    */
+   public ShardedStore<V> allocateIds(int block, int node)
+   {
+      ids = block == 1 && node == 0 ? null : new IdAllocator(counter, block, node);
+      return this;
+   }
+
+   /**
+    * Records the shard count of a store in a store of its own, <code>name-shards</code>, which a persistent
+    * factory keeps next to the shards.
+    */
+   public static ShardCount count(StoreFactory stores, String name)
+   {
+      final Store<String> record = stores.createStore(name + "-shards", String.class);
+      return new ShardCount()
+      {
+         public int load()
+         {
+            String count = record.get(1);
+            return count == null ? 0 : Integer.parseInt(count);
+         }
+
+         public void save(int count)
+         {
+            record.put(1, Integer.toString(count));
+         }
+      };
+   }
+
+   public int shardCount()
+   {
+      return layout.shards.size();
+   }
+
+   public boolean isRebalancing()
+   {
+      return layout.rebalancing();
+   }
+
+   /**
+    * Adds shards and moves the values they now own in the background; the returned future completes when they
+    * are all moved. Only one rebalance runs at a time.
+    */
+   public synchronized Future<?> addShards(int count)
+   {
+      if (count < 1)
+      {
+         throw new IllegalArgumentException("Cannot add " + count + " shards");
+      }
+      final Layout<V> current = layout;
+      if (current.rebalancing())
+      {
+         throw new IllegalStateException("The shards are being rebalanced");
+      }
+      List<Store<V>> shards = new ArrayList<Store<V>>(current.shards);
+      for (int i = 0; i < count; i++)
+      {
+         shards.add(factory.createShard(shards.size()));
+      }
+      if (recorded != null)
+      {
+         // before any value moves, a restart meanwhile opens every shard one may be in
+         recorded.save(shards.size());
+      }
+      final Layout<V> rebalancing = new Layout<V>(Collections.unmodifiableList(shards), current.shards.size());
+      publish(rebalancing, 0);
+      return rebalancer.submit(new Callable<Void>()
+      {
+         public Void call()
+         {
+            for (int s = 0; s < rebalancing.previous; s++)
+            {
+               rebalance(rebalancing, s);
+            }
+            publish(new Layout<V>(rebalancing.shards, rebalancing.shards.size()), 0);
+            return null;
+         }
+      });
+   }
+
+   /**
+    * Runs the lookup on the shard owning the hash, as computed by the {@link Router}, and returns its result;
+    * while a rebalance moves the values of the hash, on their old shard then, if it found nothing, on the new.
+    */
+   public <R> R read(int hash, Read<V, R> read)
+   {
+      while (true)
+      {
+         Layout<V> l = layout;
+         int from = home(hash, l.previous);
+         R result = read.read(l.shards.get(from));
+         int to = home(hash, l.shards.size());
+         if (result == null && to != from)
+         {
+            result = read.read(l.shards.get(to));
+         }
+         // a rebalance started meanwhile may have moved the value
+         if (result != null || l == layout)
+         {
+            return result;
+         }
+      }
+   }
+
+   /**
+    * Runs the lookup on every shard, in parallel on a multi-core box, and returns their results in shard order.
+    */
+   public <R> List<R> readAll(Read<V, R> read)
+   {
+      return fanOut(layout.shards, read);
+   }
+
+   public int nextId()
+   {
+      IdAllocator allocator = ids;
+      return allocator == null ? lastId.incrementAndGet() : allocator.next();
+   }
+
+   public int nextIds(int count)
+   {
+      IdAllocator allocator = ids;
+      return allocator == null ? counter.nextIds(count) : allocator.lease(count);
+   }
+
+   public V get(int id)
+   {
+      if (router == null)
+      {
+         while (true)
+         {
+            Layout<V> l = layout;
+            int from = home(id, l.previous);
+            V value = l.shards.get(from).get(id);
+            int to = home(id, l.shards.size());
+            if (value == null && to != from)
+            {
+               value = l.shards.get(to).get(id);
+            }
+            if (value != null || l == layout)
+            {
+               return value;
+            }
+         }
+      }
+      // placed by value, any shard may hold the id
+      V value = find(layout, id);
+      if (value == null)
+      {
+         // or a move may have taken it from a shard not read yet to one already read
+         synchronized (stripe(id))
+         {
+            value = find(layout, id);
+         }
+      }
+      return value;
+   }
+
+   public V put(int id, V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      allocated(id);
+      synchronized (stripe(id))
+      {
+         Layout<V> l = layout;
+         int to = home(hashOf(id, value), l.shards.size());
+         V previous = l.shards.get(to).put(id, value);
+         V moved = detach(l, id, to);
+         if (moved != null)
+         {
+            moves.incrementAndGet();
+         }
+         return previous != null ? previous : moved;
+      }
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+      {
+         put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   public V remove(int id)
+   {
+      synchronized (stripe(id))
+      {
+         return detach(layout, id, -1);
+      }
+   }
+
+   public boolean replace(int id, V expected, V updated)
+   {
+      if (updated == null)
+      {
+         throw new NullPointerException();
+      }
+      synchronized (stripe(id))
+      {
+         Layout<V> l = layout;
+         int at = locate(l, id);
+         if (at < 0)
+         {
+            return false;
+         }
+         // the shard holding the id compares the values the way it stores them
+         if (!l.shards.get(at).replace(id, expected, updated))
+         {
+            return false;
+         }
+         int to = home(hashOf(id, updated), l.shards.size());
+         if (to != at)
+         {
+            move(l, id, updated, at, to);
+         }
+         return true;
+      }
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      synchronized (stripe(id))
+      {
+         // the stripe keeps out every other update of the id
+         Layout<V> l = layout;
+         int at = locate(l, id);
+         V current = at < 0 ? null : l.shards.get(at).get(id);
+         V updated = update.apply(id, current);
+         if (updated == null)
+         {
+            if (at >= 0)
+            {
+               l.shards.get(at).remove(id);
+            }
+            return null;
+         }
+         if (updated != current)
+         {
+            allocated(id);
+            int to = home(hashOf(id, updated), l.shards.size());
+            l.shards.get(to).put(id, updated);
+            if (at >= 0 && at != to)
+            {
+               l.shards.get(at).remove(id);
+               moves.incrementAndGet();
+            }
+         }
+         return updated;
+      }
+   }
+
+   /**
+    * The ids are merged from every shard and the values read from the shard which listed them; an id removed
+    * meanwhile is skipped and the ids following it are listed again, as {@link IntHashStore} does.
+    */
+   public List<V> range(int fromId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      while (result.size() < limit)
+      {
+         Layout<V> l = layout;
+         Merged ids = merge(l, fanOut(l.shards, idsFrom(fromId, limit - result.size())), limit - result.size());
+         if (ids.ids.length == 0 || values(l, ids, result) == limit || ids.ids[ids.ids.length - 1] == Integer.MAX_VALUE)
+         {
+            break;
+         }
+         fromId = ids.ids[ids.ids.length - 1] + 1;
+      }
+      return result;
+   }
+
+   /**
+    * Merges the first <code>offset + limit</code> ids of every shard, so the cost grows with the offset; the
+    * keyset cursors of {@link KeysetPage} read through {@link #range(int, int)} instead.
+    */
+   public List<V> page(int offset, int limit)
+   {
+      if (offset < 0 || limit <= 0)
+      {
+         return new ArrayList<V>();
+      }
+      int wanted = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+      Layout<V> l = layout;
+      Merged ids = merge(l, fanOut(l.shards, idsFrom(Integer.MIN_VALUE, wanted)), wanted);
+      if (ids.ids.length <= offset)
+      {
+         return new ArrayList<V>();
+      }
+      Merged page = ids.slice(offset, ids.ids.length);
+      List<V> result = new ArrayList<V>(page.ids.length);
+      if (values(l, page, result) < limit && page.ids.length == limit && page.ids[limit - 1] != Integer.MAX_VALUE)
+      {
+         result.addAll(range(page.ids[limit - 1] + 1, limit - result.size()));
+      }
+      return result;
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      while (result.size() < limit)
+      {
+         Layout<V> l = layout;
+         final int wanted = limit - result.size();
+         final int before = toId;
+         Merged ids = merge(l, fanOut(l.shards, new Read<V, int[]>()
+         {
+            public int[] read(Store<V> shard)
+            {
+               return shard.idsBefore(before, wanted);
+            }
+         }), Integer.MAX_VALUE);
+         ids = ids.slice(Math.max(0, ids.ids.length - wanted), ids.ids.length);
+         if (ids.ids.length == 0)
+         {
+            break;
+         }
+         List<V> earlier = new ArrayList<V>(ids.ids.length);
+         values(l, ids, earlier);
+         result.addAll(0, earlier);
+         toId = ids.ids[0];
+      }
+      return result;
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      Layout<V> l = layout;
+      return merge(l, fanOut(l.shards, idsFrom(fromId, limit)), limit).ids;
+   }
+
+   public int[] idsBefore(final int toId, final int limit)
+   {
+      Layout<V> l = layout;
+      Merged ids = merge(l, fanOut(l.shards, new Read<V, int[]>()
+      {
+         public int[] read(Store<V> shard)
+         {
+            return shard.idsBefore(toId, limit);
+         }
+      }), Integer.MAX_VALUE);
+      return ids.slice(Math.max(0, ids.ids.length - Math.max(limit, 0)), ids.ids.length).ids;
+   }
+
+   public int size()
+   {
+      int size = 0;
+      for (Store<V> shard : layout.shards)
+      {
+         size += shard.size();
+      }
+      return size;
+   }
+
+   public long version()
+   {
+      long version = 0;
+      for (Store<V> shard : layout.shards)
+      {
+         version += shard.version();
+      }
+      return version - 2 * moves.get();
+   }
+
+   /**
+    * Ids merged from the shards, with the shard which listed each one.
+    */
+   private static final class Merged
+   {
+      private final int[] ids;
+      private final int[] shards;
+
+      private Merged(int[] ids, int[] shards)
+      {
+         this.ids = ids;
+         this.shards = shards;
+      }
+
+      private Merged slice(int from, int to)
+      {
+         return new Merged(Arrays.copyOfRange(ids, from, to), Arrays.copyOfRange(shards, from, to));
+      }
+   }
+
+   /**
+    * Merges the sorted ids listed by every shard into the first <code>limit</code> ones; an id listed twice,
+    * as the old and new shard of a move may, is kept from the new shard.
+    */
+   private Merged merge(Layout<V> l, List<int[]> listed, int limit)
+   {
+      int total = 0;
+      for (int[] ids : listed)
+      {
+         total += ids.length;
+      }
+      int count = Math.min(total, Math.max(limit, 0));
+      int[] ids = new int[count];
+      int[] shards = new int[count];
+      int[] next = new int[listed.size()];
+      int n = 0;
+      while (n < count)
+      {
+         int shard = -1;
+         for (int s = 0; s < next.length; s++)
+         {
+            int[] candidates = listed.get(s);
+            if (next[s] < candidates.length && (shard < 0 || candidates[next[s]] <= listed.get(shard)[next[shard]]))
+            {
+               shard = s;
+            }
+         }
+         if (shard < 0)
+         {
+            break;
+         }
+         int id = listed.get(shard)[next[shard]++];
+         if (n > 0 && ids[n - 1] == id)
+         {
+            shards[n - 1] = Math.max(shards[n - 1], shard);
+            continue;
+         }
+         ids[n] = id;
+         shards[n++] = shard;
+      }
+      return n == count ? new Merged(ids, shards) : new Merged(Arrays.copyOf(ids, n), Arrays.copyOf(shards, n));
+   }
+
+   /**
+    * Adds the values of the ids still present to the list and returns its size.
+    */
+   private int values(Layout<V> l, Merged merged, List<V> result)
+   {
+      for (int i = 0; i < merged.ids.length; i++)
+      {
+         V value = l.shards.get(merged.shards[i]).get(merged.ids[i]);
+         if (value == null)
+         {
+            // moved away by a rebalance or a new key since it was listed
+            value = get(merged.ids[i]);
+         }
+         if (value != null)
+         {
+            result.add(value);
+         }
+      }
+      return result.size();
+   }
+
+   private Read<V, int[]> idsFrom(final int fromId, final int limit)
+   {
+      return new Read<V, int[]>()
+      {
+         public int[] read(Store<V> shard)
+         {
+            return shard.ids(fromId, limit);
+         }
+      };
+   }
+
+   /**
+    * Runs the lookup on every shard, the first one on the calling thread.
+    */
+   private static <V, R> List<R> fanOut(List<Store<V>> shards, final Read<V, R> read)
+   {
+      if (shards.size() == 1 || THREADS == 1)
+      {
+         // nothing to run in parallel with
+         List<R> results = new ArrayList<R>(shards.size());
+         for (Store<V> shard : shards)
+         {
+            results.add(read.read(shard));
+         }
+         return results;
+      }
+      List<Future<R>> futures = new ArrayList<Future<R>>(shards.size() - 1);
+      for (int s = 1; s < shards.size(); s++)
+      {
+         final Store<V> shard = shards.get(s);
+         futures.add(workers.submit(new Callable<R>()
+         {
+            public R call()
+            {
+               return read.read(shard);
+            }
+         }));
+      }
+      List<R> results = new ArrayList<R>(shards.size());
+      try
+      {
+         results.add(read.read(shards.get(0)));
+         for (Future<R> future : futures)
+         {
+            results.add(future.get());
+         }
+         return results;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException(e);
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof RuntimeException)
+         {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IllegalStateException(e.getCause());
+      }
+      finally
+      {
+         for (Future<R> future : futures)
+         {
+            future.cancel(false);
+         }
+      }
+   }
+
+   /**
+    * Moves the values of one of the shards a rebalance started from to the shard they now belong to.
+    */
+   private void rebalance(Layout<V> l, int s)
+   {
+      Store<V> shard = l.shards.get(s);
+      for (int[] ids = shard.ids(Integer.MIN_VALUE, CHUNK); ids.length > 0; ids = shard.ids(ids[ids.length - 1] + 1, CHUNK))
+      {
+         for (int id : ids)
+         {
+            V value = shard.get(id);
+            if (value == null || home(hashOf(id, value), l.shards.size()) == s)
+            {
+               continue;
+            }
+            synchronized (stripe(id))
+            {
+               value = shard.get(id);
+               int to = value == null ? s : home(hashOf(id, value), l.shards.size());
+               if (to != s)
+               {
+                  move(l, id, value, s, to);
+               }
+            }
+         }
+         if (ids[ids.length - 1] == Integer.MAX_VALUE)
+         {
+            break;
+         }
+      }
+   }
+
+   /**
+    * Copies the value to its new shard before removing it from the old one, so a reader finds it in either.
+    */
+   private void move(Layout<V> l, int id, V value, int from, int to)
+   {
+      l.shards.get(to).put(id, value);
+      l.shards.get(from).remove(id);
+      moves.incrementAndGet();
+   }
+
+   /**
+    * Removes the id from every shard which may hold it but the given one and returns its value there.
+    */
+   private V detach(Layout<V> l, int id, int keep)
+   {
+      V removed = null;
+      if (router == null)
+      {
+         int from = home(id, l.previous);
+         int to = home(id, l.shards.size());
+         if (from != keep)
+         {
+            removed = removeIfPresent(l.shards.get(from), id);
+         }
+         if (to != from && to != keep)
+         {
+            V value = removeIfPresent(l.shards.get(to), id);
+            removed = removed != null ? removed : value;
+         }
+         return removed;
+      }
+      for (int s = 0; s < l.shards.size(); s++)
+      {
+         if (s != keep)
+         {
+            V value = removeIfPresent(l.shards.get(s), id);
+            removed = removed != null ? removed : value;
+         }
+      }
+      return removed;
+   }
+
+   /**
+    * Returns the shard holding the id, -1 if none does; called under the stripe of the id.
+    */
+   private int locate(Layout<V> l, int id)
+   {
+      if (router == null)
+      {
+         int from = home(id, l.previous);
+         if (l.shards.get(from).get(id) != null)
+         {
+            return from;
+         }
+         int to = home(id, l.shards.size());
+         return to != from && l.shards.get(to).get(id) != null ? to : -1;
+      }
+      for (int s = 0; s < l.shards.size(); s++)
+      {
+         if (l.shards.get(s).get(id) != null)
+         {
+            return s;
+         }
+      }
+      return -1;
+   }
+
+   private static <V> V find(Layout<V> l, int id)
+   {
+      for (Store<V> shard : l.shards)
+      {
+         V value = shard.get(id);
+         if (value != null)
+         {
+            return value;
+         }
+      }
+      return null;
+   }
+
+   private static <V> V removeIfPresent(Store<V> shard, int id)
+   {
+      // a lock-free read first, the other shards are mostly not holding the id
+      return shard.get(id) == null ? null : shard.remove(id);
+   }
+
+   private int hashOf(int id, V value)
+   {
+      return router == null ? id : router.hashOf(value);
+   }
+
+   /**
+    * Publishes the layout while holding every stripe, so no update is left running against the previous one.
+    */
+   private void publish(Layout<V> l, int stripe)
+   {
+      if (stripe == STRIPES)
+      {
+         layout = l;
+         return;
+      }
+      synchronized (stripes[stripe])
+      {
+         publish(l, stripe + 1);
+      }
+   }
+
+   private Object stripe(int id)
+   {
+      return stripes[IntHashStore.hash(id) & (STRIPES - 1)];
+   }
+
+   private void allocated(int id)
+   {
+      int last = lastId.get();
+      while (id > last && !lastId.compareAndSet(last, id))
+      {
+         last = lastId.get();
+      }
+   }
+
+   /**
+    * Jump consistent hash (Lamping and Veach): the shard of the hash among <code>count</code>, moving only
+    * the hashes the added shards take when the count grows.
+    */
+   static int home(int hash, int count)
+   {
+      long key = (hash & 0xffffffffL) * 0x9E3779B97F4A7C15L;
+      long shard = -1;
+      long next = 0;
+      while (next < count)
+      {
+         shard = next;
+         key = key * 2862933555777941757L + 1;
+         next = (long) ((shard + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+      }
+      return (int) shard;
+   }
+}
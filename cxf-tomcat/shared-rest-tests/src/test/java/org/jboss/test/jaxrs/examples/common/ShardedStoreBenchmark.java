@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex04_3.domain.Customer;
+import org.junit.Test;
+
+/**
+ * Write throughput of 8 threads updating customers of a {@link ShardedStore} as the shards grow from 1 to 8,
+ * each shard taking its own lock, and the cost of a first page merged from every shard. The throughput only
+ * scales with the cores the box has.
+ */
+public class ShardedStoreBenchmark
+{
+   private static final int CUSTOMERS = 100000;
+   private static final int THREADS = 8;
+   private static final int UPDATES = 400000;
+
+   @Test
+   public void testWritesAsShardsGrow() throws Exception
+   {
+      System.out.println(Runtime.getRuntime().availableProcessors() + " cores");
+      final Customer[] customers = new Customer[CUSTOMERS + 1];
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         customers[id] = new Customer();
+         customers[id].setId(id);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try
+      {
+         for (int shards = 1; shards <= 8; shards *= 2)
+         {
+            final ShardedStore<Customer> store = new ShardedStore<Customer>(new ShardedStore.Shards<Customer>()
+            {
+               public Store<Customer> createShard(int index)
+               {
+                  return new IntHashStore<Customer>();
+               }
+            }, shards);
+            for (int id = 1; id <= CUSTOMERS; id++)
+            {
+               store.put(id, customers[id]);
+            }
+            updates(executor, store, customers);
+            long start = System.nanoTime();
+            updates(executor, store, customers);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%-48s %12.0f updates/s", shards + " shards, " + THREADS + " writers",
+                  THREADS * UPDATES / seconds));
+            MicroBenchmark.nsPerOp("   first 20, merged from every shard", 20000, new MicroBenchmark.Op()
+            {
+               public void run(int i)
+               {
+                  store.range(Integer.MIN_VALUE, 20);
+               }
+            });
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   private static void updates(ExecutorService executor, final Store<Customer> store, final Customer[] customers)
+         throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Void>> writers = new ArrayList<Future<Void>>();
+      for (int t = 0; t < THREADS; t++)
+      {
+         final int seed = t + 1;
+         writers.add(executor.submit(new Callable<Void>()
+         {
+            public Void call() throws Exception
+            {
+               start.await();
+               int id = seed;
+               for (int i = 0; i < UPDATES; i++)
+               {
+                  id = (int) ((id * 48271L) % CUSTOMERS) + 1;
+                  store.put(id, customers[id]);
+               }
+               return null;
+            }
+         }));
+      }
+      start.countDown();
+      for (Future<Void> writer : writers)
+      {
+         writer.get();
+      }
+   }
+}
@@ -0,0 +1,313 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardedStoreTest extends StoreConformanceTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static final ShardedStore.Shards<String> SHARDS = new ShardedStore.Shards<String>()
+   {
+      public Store<String> createShard(int index)
+      {
+         return new IntHashStore<String>();
+      }
+   };
+
+   private static final ShardedStore.Router<String> FIRST_LETTER = new ShardedStore.Router<String>()
+   {
+      public int hashOf(String value)
+      {
+         return value.isEmpty() ? 0 : value.charAt(0);
+      }
+   };
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      return new StoreFactory()
+      {
+         public <V> Store<V> createStore(String name, Class<V> type)
+         {
+            // the conformance tests store strings
+            @SuppressWarnings("unchecked")
+            Store<V> store = (Store<V>) new ShardedStore<String>(SHARDS, 3);
+            return store;
+         }
+      };
+   }
+
+   @Test
+   public void testHomesOnlyMoveToAddedShards()
+   {
+      int[] counts = new int[8];
+      for (int id = 0; id < 80000; id++)
+      {
+         int home = ShardedStore.home(id, 7);
+         int grown = ShardedStore.home(id, 8);
+         Assert.assertTrue(grown == home || grown == 7);
+         counts[grown]++;
+      }
+      for (int count : counts)
+      {
+         Assert.assertEquals(10000, count, 500);
+      }
+   }
+
+   @Test
+   public void testShardsKeepTheirOwnValues()
+   {
+      final List<Store<String>> shards = new ArrayList<Store<String>>();
+      ShardedStore<String> sharded = new ShardedStore<String>(new ShardedStore.Shards<String>()
+      {
+         public Store<String> createShard(int index)
+         {
+            Store<String> shard = new IntHashStore<String>();
+            shards.add(shard);
+            return shard;
+         }
+      }, 4);
+      for (int id = 1; id <= 1000; id++)
+      {
+         sharded.put(id, "customer" + id);
+      }
+      int total = 0;
+      for (int s = 0; s < shards.size(); s++)
+      {
+         Assert.assertTrue(shards.get(s).size() > 150);
+         for (int id : shards.get(s).ids(Integer.MIN_VALUE, Integer.MAX_VALUE))
+         {
+            Assert.assertEquals(s, ShardedStore.home(id, 4));
+         }
+         total += shards.get(s).size();
+      }
+      Assert.assertEquals(1000, total);
+   }
+
+   @Test
+   public void testIdsInTheRangeOfTheNode()
+   {
+      // the shards lease in the range of the node too, but the sharded store never asks them
+      ShardedStore<String> sharded = new ShardedStore<String>(ShardedStore.of(
+            IdAllocator.factory(new IntHashStoreFactory(), 1, 0), "europe", String.class), 4).allocateIds(1, 3);
+      int first = sharded.nextId();
+      Assert.assertEquals((3 << IdAllocator.NODE_SHIFT) + 1, first);
+      sharded.put(first, "Bill");
+      Assert.assertEquals(first + 1, sharded.nextId());
+      Assert.assertEquals(first + 2, sharded.nextIds(10));
+      Assert.assertEquals("Bill", sharded.get(first));
+
+      sharded = new ShardedStore<String>(SHARDS, 4).allocateIds(64, 0);
+      Assert.assertEquals(1, sharded.nextId());
+      Assert.assertEquals(2, sharded.nextId());
+   }
+
+   @Test
+   public void testPersistentShardsKeepAllocatingIds()
+   {
+      final List<Store<String>> shards = new ArrayList<Store<String>>();
+      ShardedStore.Shards<String> factory = new ShardedStore.Shards<String>()
+      {
+         public Store<String> createShard(int index)
+         {
+            if (index == shards.size())
+            {
+               shards.add(new IntHashStore<String>());
+            }
+            return shards.get(index);
+         }
+      };
+      ShardedStore<String> sharded = new ShardedStore<String>(factory, 3);
+      for (int i = 0; i < 10; i++)
+      {
+         sharded.put(sharded.nextId(), "customer");
+      }
+      Assert.assertEquals(11, new ShardedStore<String>(factory, 3).nextId());
+   }
+
+   @Test
+   public void testAddShardsUnderWrites() throws Exception
+   {
+      final ShardedStore<String> sharded = new ShardedStore<String>(SHARDS, 2);
+      for (int id = 0; id < 20000; id++)
+      {
+         sharded.put(id, "customer" + id);
+      }
+      final AtomicInteger threads = new AtomicInteger();
+      Future<?> rebalance = sharded.addShards(3);
+      Assert.assertEquals(5, sharded.shardCount());
+      try
+      {
+         sharded.addShards(1);
+         Assert.fail("Only one rebalance runs at a time");
+      }
+      catch (IllegalStateException e)
+      {
+         // expected
+      }
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            // each thread updates its own ids and checks every other one is readable while the values move
+            int thread = threads.getAndIncrement();
+            Random random = new Random(thread);
+            for (int i = 0; i < 20000; i++)
+            {
+               int id = random.nextInt(20000);
+               if (id % THREADS == thread)
+               {
+                  String current = sharded.get(id);
+                  Assert.assertTrue(sharded.replace(id, current, current + "+"));
+               }
+               else
+               {
+                  Assert.assertNotNull("lost " + id, sharded.get(id));
+               }
+            }
+            return null;
+         }
+      });
+      rebalance.get(10, TimeUnit.SECONDS);
+      Assert.assertFalse(sharded.isRebalancing());
+      Assert.assertEquals(20000, sharded.size());
+      List<String> all = sharded.range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+      Assert.assertEquals(20000, all.size());
+      for (int id = 0; id < 20000; id++)
+      {
+         Assert.assertTrue(all.get(id).startsWith("customer" + id));
+      }
+      sharded.addShards(1).get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(20000, sharded.size());
+   }
+
+   @Test
+   public void testAddedShardsComeBack() throws Exception
+   {
+      MappedStoreFactory factory = new MappedStoreFactory(folder.getRoot());
+      ShardedStore<String> sharded = new ShardedStore<String>(ShardedStore.of(factory, "europe", String.class),
+            null, 2, ShardedStore.count(factory, "europe"));
+      for (int id = 1; id <= 1000; id++)
+      {
+         sharded.put(id, "customer" + id);
+      }
+      sharded.addShards(3).get(10, TimeUnit.SECONDS);
+      factory.close();
+
+      // reopened with the configured count, the shards the values moved to are opened too
+      factory = new MappedStoreFactory(folder.getRoot());
+      try
+      {
+         sharded = new ShardedStore<String>(ShardedStore.of(factory, "europe", String.class), null, 2,
+               ShardedStore.count(factory, "europe"));
+         Assert.assertEquals(5, sharded.shardCount());
+         Assert.assertEquals(1000, sharded.size());
+         for (int id = 1; id <= 1000; id++)
+         {
+            Assert.assertEquals("customer" + id, sharded.get(id));
+         }
+         Assert.assertEquals(1001, sharded.nextId());
+      }
+      finally
+      {
+         factory.close();
+      }
+   }
+
+   @Test
+   public void testRoutedByValue() throws Exception
+   {
+      final List<Store<String>> shards = new ArrayList<Store<String>>();
+      ShardedStore<String> sharded = new ShardedStore<String>(new ShardedStore.Shards<String>()
+      {
+         public Store<String> createShard(int index)
+         {
+            Store<String> shard = new IntHashStore<String>();
+            shards.add(shard);
+            return shard;
+         }
+      }, FIRST_LETTER, 3);
+      Random random = new Random(7);
+      Map<Integer, String> expected = new HashMap<Integer, String>();
+      for (int i = 0; i < 20000; i++)
+      {
+         if (i == 10000)
+         {
+            sharded.addShards(2).get(10, TimeUnit.SECONDS);
+         }
+         int id = random.nextInt(500);
+         String value = (char) ('a' + random.nextInt(26)) + Integer.toString(i);
+         switch (random.nextInt(4))
+         {
+            case 0:
+               Assert.assertEquals(expected.remove(id), sharded.remove(id));
+               break;
+            case 1:
+               String current = sharded.get(id);
+               Assert.assertEquals(expected.get(id), current);
+               if (current != null && sharded.replace(id, current, value))
+               {
+                  expected.put(id, value);
+               }
+               break;
+            default:
+               Assert.assertEquals(expected.put(id, value), sharded.put(id, value));
+         }
+      }
+      Assert.assertEquals(expected.size(), sharded.size());
+      for (Map.Entry<Integer, String> entry : expected.entrySet())
+      {
+         final String value = entry.getValue();
+         final int id = entry.getKey();
+         // found on the shard of its first letter only
+         Assert.assertEquals(value, sharded.read(FIRST_LETTER.hashOf(value), new ShardedStore.Read<String, String>()
+         {
+            public String read(Store<String> shard)
+            {
+               return shard.get(id);
+            }
+         }));
+         int holding = 0;
+         for (Store<String> shard : shards)
+         {
+            holding += shard.get(id) != null ? 1 : 0;
+         }
+         Assert.assertEquals(1, holding);
+      }
+   }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage behind the example resources: values keyed by an int id that the store also allocates. The backend of
+ * a deployment is chosen by its {@link StoreFactory}; every implementation must be safe for concurrent use and
+ * pass {@link StoreConformanceTest}.
+ */
+public interface Store<V>
+{
+   /**
+    * Computes the new value of an id from its current one, see {@link Store#compute(int, Update)}.
+    */
+   interface Update<V>
+   {
+      /**
+       * Returns the value to store, null to remove the id; <code>current</code> is null when the id is absent.
+       * May be called more than once for a single update, so it must not have side effects beyond its result.
+       */
+      V apply(int id, V current);
+   }
+
+   /**
+    * Allocates an id greater than any id allocated or stored so far.
+    */
+   int nextId();
+
+   /**
+    * Allocates <code>count</code> consecutive ids and returns the first one.
+    */
+   int nextIds(int count);
+
+   V get(int id);
+
+   /**
+    * Stores the value and returns the previous one, null if there was none.
+    */
+   V put(int id, V value);
+
+   void putAll(Map<Integer, ? extends V> values);
+
+   V remove(int id);
+
+   /**
+    * Stores <code>updated</code> only if the id still holds <code>expected</code>, as returned by
+    * {@link #get(int)}, and returns whether it did. This is the compare-and-swap of copy-on-write updates: a
+    * value is never changed once stored, an update stores a modified copy and retries from a fresh
+    * {@link #get(int)} when another update came first. Stores that keep the instances compare them by
+    * identity, stores that keep copies compare their encoding.
+    */
+   boolean replace(int id, V expected, V updated);
+
+   /**
+    * Replaces the value of the id atomically with respect to any other update of the same id and returns the
+    * stored value, null if the id ends up absent.
+    */
+   V compute(int id, Update<V> update);
+
+   /**
+    * Returns at most <code>limit</code> values whose ids are greater than or equal to <code>fromId</code>, in
+    * ascending id order.
+    */
+   List<V> range(int fromId, int limit);
+
+   /**
+    * Returns at most <code>limit</code> values in ascending id order, starting with the one at position
+    * <code>offset</code> among the stored ids; this is the page of a <code>start</code>/<code>size</code>
+    * listing, read without locking the store.
+    */
+   List<V> page(int offset, int limit);
+
+   /**
+    * Returns at most <code>limit</code> values whose ids are lower than <code>toId</code>, the closest ones to
+    * it, in ascending id order.
+    */
+   List<V> rangeBefore(int toId, int limit);
+
+   /**
+    * Returns at most <code>limit</code> of the ids greater than or equal to <code>fromId</code>, in ascending
+    * order.
+    */
+   int[] ids(int fromId, int limit);
+
+   /**
+    * Returns at most <code>limit</code> of the ids lower than <code>toId</code>, the closest ones to it, in
+    * ascending order.
+    */
+   int[] idsBefore(int toId, int limit);
+
+   int size();
+
+   /**
+    * Returns a number that changes whenever an id is added or removed, but not when the value of an id is
+    * replaced.
+    */
+   long version();
+}
@@ -0,0 +1,422 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The contract of {@link Store}: a backend is conformant when a subclass returning its factory passes. Every test
+ * gets a store of its own, created under a fresh name.
+ */
+public abstract class StoreConformanceTest
+{
+   protected static final int THREADS = 8;
+
+   private static final AtomicInteger names = new AtomicInteger();
+
+   private ExecutorService executor;
+
+   protected Store<String> store;
+
+   /**
+    * Returns the factory under test.
+    */
+   protected abstract StoreFactory createFactory() throws Exception;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      executor = Executors.newFixedThreadPool(THREADS);
+      store = createFactory().createStore("conformance-" + names.incrementAndGet(), String.class);
+   }
+
+   @After
+   public void tearDown() throws Exception
+   {
+      executor.shutdownNow();
+      Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void testPutGetRemove() throws Exception
+   {
+      Assert.assertNull(store.get(1));
+      Assert.assertNull(store.put(1, "Bill"));
+      Assert.assertEquals("Bill", store.put(1, "Joe"));
+      Assert.assertEquals("Joe", store.get(1));
+      Assert.assertEquals(1, store.size());
+      Assert.assertEquals("Joe", store.remove(1));
+      Assert.assertNull(store.remove(1));
+      Assert.assertNull(store.get(1));
+      Assert.assertEquals(0, store.size());
+   }
+
+   @Test
+   public void testIdsAreAllocatedAfterStoredOnes() throws Exception
+   {
+      int first = store.nextId();
+      store.put(first + 10, "Bill");
+      Assert.assertTrue(store.nextId() > first + 10);
+      int block = store.nextIds(5);
+      Assert.assertEquals(block + 5, store.nextId());
+   }
+
+   @Test
+   public void testPutAll() throws Exception
+   {
+      Map<Integer, String> values = new HashMap<Integer, String>();
+      for (int i = 1; i <= 100; i++)
+      {
+         values.put(i, "customer" + i);
+      }
+      store.putAll(values);
+      Assert.assertEquals(100, store.size());
+      Assert.assertEquals("customer42", store.get(42));
+   }
+
+   @Test
+   public void testRangeInIdOrder() throws Exception
+   {
+      for (int id : new int[] {7, 3, 11, 1, 5})
+      {
+         store.put(id, "customer" + id);
+      }
+      Assert.assertEquals(list("customer1", "customer3", "customer5"), store.range(0, 3));
+      Assert.assertEquals(list("customer5", "customer7", "customer11"), store.range(4, 10));
+      Assert.assertEquals(list("customer11"), store.range(11, 10));
+      Assert.assertTrue(store.range(12, 10).isEmpty());
+      Assert.assertTrue(store.range(0, 0).isEmpty());
+   }
+
+   @Test
+   public void testIdsInOrder() throws Exception
+   {
+      for (int id : new int[] {7, 3, 11, 1, 5})
+      {
+         store.put(id, "customer" + id);
+      }
+      store.remove(5);
+      Assert.assertArrayEquals(new int[] {1, 3, 7}, store.ids(0, 3));
+      Assert.assertArrayEquals(new int[] {7, 11}, store.ids(4, 10));
+      Assert.assertEquals(0, store.ids(0, 0).length);
+
+      // too sparse to probe id by id
+      store.put(1000000000, "far away");
+      Assert.assertArrayEquals(new int[] {1, 3, 7, 11, 1000000000}, store.ids(Integer.MIN_VALUE, 10));
+   }
+
+   @Test
+   public void testPage() throws Exception
+   {
+      for (int id : new int[] {7, 3, 11, 1, 5})
+      {
+         store.put(id, "customer" + id);
+      }
+      store.remove(5);
+      Assert.assertEquals(list("customer1", "customer3"), store.page(0, 2));
+      Assert.assertEquals(list("customer7", "customer11"), store.page(2, 10));
+      Assert.assertTrue(store.page(4, 10).isEmpty());
+      Assert.assertTrue(store.page(0, 0).isEmpty());
+      for (int id = 100; id < 1100; id++)
+      {
+         store.put(id, "customer" + id);
+      }
+      Assert.assertEquals(list("customer600", "customer601"), store.page(504, 2));
+   }
+
+   @Test
+   public void testRangeBefore() throws Exception
+   {
+      for (int id : new int[] {7, 3, 11, 1, 5})
+      {
+         store.put(id, "customer" + id);
+      }
+      Assert.assertEquals(list("customer5", "customer7"), store.rangeBefore(11, 2));
+      Assert.assertEquals(list("customer1", "customer3", "customer5"), store.rangeBefore(6, 10));
+      Assert.assertEquals(list("customer11"), store.rangeBefore(Integer.MAX_VALUE, 1));
+      Assert.assertTrue(store.rangeBefore(1, 10).isEmpty());
+      Assert.assertTrue(store.rangeBefore(11, 0).isEmpty());
+   }
+
+   @Test
+   public void testIdsBefore() throws Exception
+   {
+      for (int id : new int[] {7, 3, 11, 1, 5})
+      {
+         store.put(id, "customer" + id);
+      }
+      Assert.assertArrayEquals(new int[] {5, 7}, store.idsBefore(11, 2));
+      Assert.assertArrayEquals(new int[] {1, 3, 5}, store.idsBefore(6, 10));
+      Assert.assertArrayEquals(new int[] {11}, store.idsBefore(Integer.MAX_VALUE, 1));
+      Assert.assertEquals(0, store.idsBefore(1, 10).length);
+      Assert.assertEquals(0, store.idsBefore(11, 0).length);
+   }
+
+   @Test
+   public void testVersionChangesWithIds() throws Exception
+   {
+      long version = store.version();
+      store.put(1, "Bill");
+      Assert.assertTrue(store.version() != version);
+      version = store.version();
+      store.put(1, "Joe");
+      Assert.assertTrue(store.replace(1, store.get(1), "Monica"));
+      Assert.assertEquals(version, store.version());
+      store.remove(1);
+      Assert.assertTrue(store.version() != version);
+   }
+
+   @Test
+   public void testReplace() throws Exception
+   {
+      store.put(1, "Bill");
+      String current = store.get(1);
+      Assert.assertFalse(store.replace(1, "Joe", "Monica"));
+      Assert.assertTrue(store.replace(1, current, "William"));
+      Assert.assertEquals("William", store.get(1));
+      // stale, the id moved on
+      Assert.assertFalse(store.replace(1, current, "Steve"));
+      Assert.assertEquals("William", store.get(1));
+      Assert.assertFalse(store.replace(2, current, "Steve"));
+      Assert.assertNull(store.get(2));
+      Assert.assertEquals(1, store.size());
+   }
+
+   @Test
+   public void testCompute() throws Exception
+   {
+      Assert.assertNull(store.compute(1, new Store.Update<String>()
+      {
+         public String apply(int id, String current)
+         {
+            Assert.assertNull(current);
+            return null;
+         }
+      }));
+      Assert.assertEquals(0, store.size());
+      Assert.assertEquals("1", store.compute(1, append("1")));
+      Assert.assertEquals("12", store.compute(1, append("2")));
+      Assert.assertEquals(1, store.size());
+      Assert.assertNull(store.compute(1, new Store.Update<String>()
+      {
+         public String apply(int id, String current)
+         {
+            return null;
+         }
+      }));
+      Assert.assertNull(store.get(1));
+      Assert.assertEquals(0, store.size());
+   }
+
+   @Test
+   public void testConcurrentNextIdsAreUnique() throws Exception
+   {
+      final int perThread = 2000;
+      final Map<Integer, Boolean> seen = new ConcurrentHashMap<Integer, Boolean>();
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            for (int i = 0; i < perThread; i++)
+            {
+               int id = i % 10 == 0 ? store.nextIds(3) : store.nextId();
+               Assert.assertNull("id " + id + " allocated twice", seen.put(id, Boolean.TRUE));
+               store.put(id, "customer" + id);
+            }
+            return null;
+         }
+      });
+      Assert.assertEquals(THREADS * perThread, store.size());
+   }
+
+   @Test
+   public void testConcurrentComputeLosesNoUpdate() throws Exception
+   {
+      final int perThread = 500;
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            for (int i = 0; i < perThread; i++)
+            {
+               store.compute(1, append("x"));
+               store.compute(2 + i % 4, append("y"));
+            }
+            return null;
+         }
+      });
+      Assert.assertEquals(THREADS * perThread, store.get(1).length());
+      int total = 0;
+      for (String value : store.range(2, 4))
+      {
+         total += value.length();
+      }
+      Assert.assertEquals(THREADS * perThread, total);
+      Assert.assertEquals(5, store.size());
+   }
+
+   @Test
+   public void testConcurrentReplaceLosesNoUpdate() throws Exception
+   {
+      final int perThread = 500;
+      store.put(1, "");
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            for (int i = 0; i < perThread; i++)
+            {
+               String current;
+               do
+               {
+                  current = store.get(1);
+               }
+               while (!store.replace(1, current, current + "x"));
+            }
+            return null;
+         }
+      });
+      Assert.assertEquals(THREADS * perThread, store.get(1).length());
+   }
+
+   @Test
+   public void testConcurrentPutRemoveKeepsSize() throws Exception
+   {
+      final int perThread = 2000;
+      run(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            for (int i = 0; i < perThread; i++)
+            {
+               int id = 1 + i % 50;
+               if (i % 3 == 2)
+               {
+                  store.remove(id);
+               }
+               else
+               {
+                  store.put(id, "customer" + id);
+               }
+            }
+            return null;
+         }
+      });
+      Assert.assertEquals(store.range(0, Integer.MAX_VALUE).size(), store.size());
+   }
+
+   @Test
+   public void testRangeDuringWrites() throws Exception
+   {
+      final AtomicBoolean done = new AtomicBoolean();
+      final int writes = 20000;
+      Future<Void> writer = executor.submit(new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            try
+            {
+               for (int i = 0; i < writes; i++)
+               {
+                  store.put(store.nextId(), Integer.toString(i));
+               }
+            }
+            finally
+            {
+               done.set(true);
+            }
+            return null;
+         }
+      });
+      while (!done.get())
+      {
+         List<String> page = store.range(0, 100);
+         for (int i = 1; i < page.size(); i++)
+         {
+            // values are written in id order, so a scan must see them ascending
+            Assert.assertTrue(Integer.parseInt(page.get(i - 1)) < Integer.parseInt(page.get(i)));
+         }
+      }
+      writer.get();
+      Assert.assertEquals(writes, store.size());
+   }
+
+   protected void run(final Callable<Void> task) throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int i = 0; i < THREADS; i++)
+      {
+         results.add(executor.submit(new Callable<Void>()
+         {
+            public Void call() throws Exception
+            {
+               start.await();
+               return task.call();
+            }
+         }));
+      }
+      start.countDown();
+      for (Future<Void> result : results)
+      {
+         result.get(60, TimeUnit.SECONDS);
+      }
+   }
+
+   private static Store.Update<String> append(final String suffix)
+   {
+      return new Store.Update<String>()
+      {
+         public String apply(int id, String current)
+         {
+            return current == null ? suffix : current + suffix;
+         }
+      };
+   }
+
+   private static List<String> list(String... values)
+   {
+      List<String> list = new ArrayList<String>();
+      for (String value : values)
+      {
+         list.add(value);
+      }
+      return list;
+   }
+}
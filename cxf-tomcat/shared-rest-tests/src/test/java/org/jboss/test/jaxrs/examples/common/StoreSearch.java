@@ -0,0 +1,468 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.ext.search.ConditionType;
+import org.apache.cxf.jaxrs.ext.search.PrimitiveStatement;
+import org.apache.cxf.jaxrs.ext.search.SearchCondition;
+import org.apache.cxf.jaxrs.ext.search.SearchParseException;
+import org.apache.cxf.jaxrs.ext.search.fiql.FiqlParser;
+
+/**
+ * FIQL search over an {@link IndexedStore}, the expression being parsed by the CXF search extension. The
+ * planner picks the access path of a condition:
+ * <ul>
+ * <li>equalities on indexed properties, alone or ANDed with anything: the shortest posting list is walked and
+ * its ids probed in the others;</li>
+ * <li>an OR of equalities on indexed properties: the posting lists are merged;</li>
+ * <li>anything else: the store is scanned in chunks checked on worker threads.</li>
+ * </ul>
+ * Whatever the path, every value read is checked against the whole condition, so an index only has to find a
+ * superset of the matches. The matches come in id order, a page at a time with the cursor of the next one.
+ */
+public final class StoreSearch<V>
+{
+   private static final int CHUNK = 1024;
+   private static final int THREADS = Runtime.getRuntime().availableProcessors();
+   private static final ExecutorService workers = CustomerXmlExport.createExecutor("store-search", THREADS);
+
+   private abstract class Plan
+   {
+      /**
+       * Adds the values matching the condition from <code>fromId</code> on to the list until it holds
+       * <code>limit</code> of them or there are no more.
+       */
+      abstract void collect(SearchCondition<V> condition, int fromId, int limit, List<V> matches);
+
+      /**
+       * Adds the values of the ids matching the condition and returns whether the list is full.
+       */
+      boolean check(SearchCondition<V> condition, int[] ids, int count, int limit, List<V> matches)
+      {
+         for (int i = 0; i < count; i++)
+         {
+            V value = store.get(ids[i]);
+            if (value != null && condition.isMet(value))
+            {
+               matches.add(value);
+               if (matches.size() == limit)
+               {
+                  return true;
+               }
+            }
+         }
+         return false;
+      }
+   }
+
+   private final class IndexPlan extends Plan
+   {
+      private final String[] names;
+      private final OrderedIdIndex[] postings;
+
+      /**
+       * The posting lists, the first one being the shortest.
+       */
+      private IndexPlan(String[] names, OrderedIdIndex[] postings)
+      {
+         this.names = names;
+         this.postings = postings;
+      }
+
+      void collect(SearchCondition<V> condition, int fromId, int limit, List<V> matches)
+      {
+         int[] candidates = new int[CHUNK];
+         while (true)
+         {
+            int[] ids = postings[0].from(fromId, CHUNK);
+            int count = 0;
+            for (int id : ids)
+            {
+               if (probe(id))
+               {
+                  candidates[count++] = id;
+               }
+            }
+            if (check(condition, candidates, count, limit, matches) || ids.length < CHUNK
+                  || ids[ids.length - 1] == Integer.MAX_VALUE)
+            {
+               return;
+            }
+            fromId = ids[ids.length - 1] + 1;
+         }
+      }
+
+      private boolean probe(int id)
+      {
+         for (int i = 1; i < postings.length; i++)
+         {
+            if (!postings[i].contains(id))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      @Override
+      public String toString()
+      {
+         StringBuilder sb = new StringBuilder("index ").append(names[0]);
+         for (int i = 1; i < names.length; i++)
+         {
+            sb.append(i == 1 ? " probing " : ", ").append(names[i]);
+         }
+         return sb.toString();
+      }
+   }
+
+   private final class UnionPlan extends Plan
+   {
+      private final String[] names;
+      private final OrderedIdIndex[] postings;
+
+      private UnionPlan(String[] names, OrderedIdIndex[] postings)
+      {
+         this.names = names;
+         this.postings = postings;
+      }
+
+      void collect(SearchCondition<V> condition, int fromId, int limit, List<V> matches)
+      {
+         while (true)
+         {
+            // the ids up to the end of the shortest full chunk are all known, the next round starts after it
+            int[][] chunks = new int[postings.length][];
+            long bound = Integer.MAX_VALUE;
+            int total = 0;
+            for (int i = 0; i < postings.length; i++)
+            {
+               chunks[i] = postings[i].from(fromId, CHUNK);
+               total += chunks[i].length;
+               if (chunks[i].length == CHUNK)
+               {
+                  bound = Math.min(bound, chunks[i][CHUNK - 1]);
+               }
+            }
+            int[] ids = new int[total];
+            int count = 0;
+            for (int[] chunk : chunks)
+            {
+               for (int id : chunk)
+               {
+                  if (id <= bound)
+                  {
+                     ids[count++] = id;
+                  }
+               }
+            }
+            Arrays.sort(ids, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++)
+            {
+               if (unique == 0 || ids[unique - 1] != ids[i])
+               {
+                  ids[unique++] = ids[i];
+               }
+            }
+            if (check(condition, ids, unique, limit, matches) || bound == Integer.MAX_VALUE)
+            {
+               return;
+            }
+            fromId = (int) bound + 1;
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         StringBuilder sb = new StringBuilder("union ");
+         for (int i = 0; i < names.length; i++)
+         {
+            sb.append(i == 0 ? "" : ", ").append(names[i]);
+         }
+         return sb.toString();
+      }
+   }
+
+   private final class ScanPlan extends Plan
+   {
+      void collect(final SearchCondition<V> condition, int fromId, int limit, List<V> matches)
+      {
+         // a first page of a broad query should not read much more than the page, so the batches start small
+         int batch = CHUNK;
+         while (true)
+         {
+            final int[] ids = store.ids(fromId, batch);
+            if (ids.length == 0)
+            {
+               return;
+            }
+            int perThread = (ids.length + THREADS - 1) / THREADS;
+            List<Future<List<V>>> slices = new ArrayList<Future<List<V>>>();
+            for (int start = 0; start < ids.length; start += perThread)
+            {
+               final int from = start;
+               final int to = Math.min(ids.length, start + perThread);
+               slices.add(workers.submit(new Callable<List<V>>()
+               {
+                  public List<V> call()
+                  {
+                     List<V> slice = new ArrayList<V>();
+                     for (int i = from; i < to; i++)
+                     {
+                        V value = store.get(ids[i]);
+                        if (value != null && condition.isMet(value))
+                        {
+                           slice.add(value);
+                        }
+                     }
+                     return slice;
+                  }
+               }));
+            }
+            try
+            {
+               for (Future<List<V>> slice : slices)
+               {
+                  for (V value : slice.get())
+                  {
+                     if (matches.size() == limit)
+                     {
+                        break;
+                     }
+                     matches.add(value);
+                  }
+               }
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
+            }
+            catch (ExecutionException e)
+            {
+               throw new WebApplicationException(e.getCause(), Response.Status.INTERNAL_SERVER_ERROR);
+            }
+            finally
+            {
+               for (Future<List<V>> slice : slices)
+               {
+                  slice.cancel(false);
+               }
+            }
+            if (matches.size() == limit || ids.length < batch || ids[ids.length - 1] == Integer.MAX_VALUE)
+            {
+               return;
+            }
+            fromId = ids[ids.length - 1] + 1;
+            batch = Math.min(batch * 2, CHUNK * THREADS);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return "scan";
+      }
+   }
+
+   private final IndexedStore<V> store;
+   private final Class<V> type;
+   private final KeysetPage.Key<V> key;
+
+   public StoreSearch(IndexedStore<V> store, Class<V> type, KeysetPage.Key<V> key)
+   {
+      this.store = store;
+      this.type = type;
+      this.key = key;
+   }
+
+   /**
+    * Parses a FIQL expression, an invalid one or one naming an unknown property is a bad request.
+    */
+   public SearchCondition<V> parse(String expression)
+   {
+      try
+      {
+         return new FiqlParser<V>(type).parse(expression);
+      }
+      catch (SearchParseException e)
+      {
+         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+      }
+   }
+
+   /**
+    * Returns the page of matches following the <code>after</code> cursor, the first one if it is null.
+    */
+   public KeysetPage<V> page(String expression, String after, int size)
+   {
+      if (size < 1)
+      {
+         throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      SearchCondition<V> condition = parse(expression);
+      return page(condition, after == null ? Integer.MIN_VALUE : PageCursor.parse(after).getId() + 1L, size,
+            plan(condition));
+   }
+
+   public KeysetPage<V> page(SearchCondition<V> condition, int afterId, int size)
+   {
+      return page(condition, afterId + 1L, size, plan(condition));
+   }
+
+   /**
+    * Same as {@link #page(SearchCondition, int, int)} ignoring the indexes.
+    */
+   public KeysetPage<V> scan(SearchCondition<V> condition, int afterId, int size)
+   {
+      return page(condition, afterId + 1L, size, new ScanPlan());
+   }
+
+   /**
+    * Describes the access path chosen for the condition.
+    */
+   public String explain(SearchCondition<V> condition)
+   {
+      return plan(condition).toString();
+   }
+
+   private KeysetPage<V> page(SearchCondition<V> condition, long fromId, int size, Plan plan)
+   {
+      long version = store.version();
+      List<V> matches = new ArrayList<V>(Math.min(size, 64) + 1);
+      if (fromId <= Integer.MAX_VALUE)
+      {
+         plan.collect(condition, (int) fromId, size == Integer.MAX_VALUE ? size : size + 1, matches);
+      }
+      PageCursor next = null;
+      if (matches.size() > size)
+      {
+         matches = matches.subList(0, size);
+         next = new PageCursor(key.idOf(matches.get(size - 1)), version);
+      }
+      return new KeysetPage<V>(matches, next, null);
+   }
+
+   private Plan plan(SearchCondition<V> condition)
+   {
+      PrimitiveStatement statement = condition.getStatement();
+      if (statement != null)
+      {
+         OrderedIdIndex postings = postings(statement);
+         return postings == null ? new ScanPlan()
+               : new IndexPlan(new String[] {name(statement)}, new OrderedIdIndex[] {postings});
+      }
+      List<SearchCondition<V>> terms = condition.getSearchConditions();
+      if (condition.getConditionType() == ConditionType.AND)
+      {
+         List<OrderedIdIndex> postings = new ArrayList<OrderedIdIndex>();
+         List<String> names = new ArrayList<String>();
+         for (SearchCondition<V> term : terms)
+         {
+            OrderedIdIndex ids = term.getStatement() == null ? null : postings(term.getStatement());
+            if (ids != null)
+            {
+               postings.add(ids);
+               names.add(name(term.getStatement()));
+            }
+         }
+         if (postings.isEmpty())
+         {
+            return new ScanPlan();
+         }
+         // most selective first, the sizes are read once so the order stays consistent
+         final int[] sizes = new int[postings.size()];
+         Integer[] order = new Integer[sizes.length];
+         for (int i = 0; i < sizes.length; i++)
+         {
+            sizes[i] = postings.get(i).size();
+            order[i] = i;
+         }
+         Arrays.sort(order, new Comparator<Integer>()
+         {
+            public int compare(Integer a, Integer b)
+            {
+               return sizes[a] < sizes[b] ? -1 : sizes[a] == sizes[b] ? 0 : 1;
+            }
+         });
+         String[] sortedNames = new String[order.length];
+         OrderedIdIndex[] sortedPostings = new OrderedIdIndex[order.length];
+         for (int i = 0; i < order.length; i++)
+         {
+            sortedNames[i] = names.get(order[i]);
+            sortedPostings[i] = postings.get(order[i]);
+         }
+         return new IndexPlan(sortedNames, sortedPostings);
+      }
+      if (condition.getConditionType() == ConditionType.OR)
+      {
+         String[] names = new String[terms.size()];
+         OrderedIdIndex[] postings = new OrderedIdIndex[terms.size()];
+         for (int i = 0; i < postings.length; i++)
+         {
+            PrimitiveStatement term = terms.get(i).getStatement();
+            postings[i] = term == null ? null : postings(term);
+            if (postings[i] == null)
+            {
+               return new ScanPlan();
+            }
+            names[i] = name(term);
+         }
+         return new UnionPlan(names, postings);
+      }
+      return new ScanPlan();
+   }
+
+   /**
+    * Returns the posting list of an equality on an indexed property, null for any other statement.
+    */
+   private OrderedIdIndex postings(PrimitiveStatement statement)
+   {
+      if (statement.getCondition() != ConditionType.EQUALS || !(statement.getValue() instanceof String))
+      {
+         return null;
+      }
+      String value = (String) statement.getValue();
+      AttributeIndex<V> index = store.index(statement.getProperty());
+      // a wildcard is matched by the condition, the posting lists only know whole values
+      return index == null || value.indexOf('*') >= 0 ? null : index.postings(value);
+   }
+
+   private static String name(PrimitiveStatement statement)
+   {
+      return statement.getProperty() + "=" + statement.getValue();
+   }
+}
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Random;
+
+import org.apache.cxf.jaxrs.ext.search.SearchCondition;
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
+import org.junit.Test;
+
+/**
+ * FIQL searches over 1M customers answered through the secondary indexes of {@link StoreSearch} against the
+ * parallel scan it falls back to: all the matches of a selective query, and the first page of a broad one.
+ */
+public class StoreSearchBenchmark
+{
+   private static final int CUSTOMERS = 1000000;
+   private static final int LAST_NAMES = 1000;
+   private static final int STATES = 50;
+
+   @Test
+   public void testIndexedAgainstScan() throws Exception
+   {
+      IndexedStore<Customer> store = IndexedStore.customers(new IntHashStore<Customer>());
+      Random random = new Random(5);
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         store.put(id, StoreSearchTest.customer(id, "first" + id, "last" + random.nextInt(LAST_NAMES),
+               "city" + random.nextInt(5000), "state" + random.nextInt(STATES)));
+      }
+      final StoreSearch<Customer> search = new StoreSearch<Customer>(store, Customer.class,
+            new KeysetPage.Key<Customer>()
+            {
+               public int idOf(Customer customer)
+               {
+                  return customer.getId();
+               }
+            });
+      final SearchCondition<Customer> selective = search.parse("lastName==last7;state==state3");
+      final SearchCondition<Customer> broad = search.parse("country==USA");
+      System.out.println(search.explain(selective) + ", "
+            + search.page(selective, Integer.MIN_VALUE, Integer.MAX_VALUE).getValues().size() + " matches");
+
+      double indexed = MicroBenchmark.nsPerOp("indexed, all matches", 20000, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            search.page(selective, Integer.MIN_VALUE, Integer.MAX_VALUE);
+         }
+      });
+      double scanned = MicroBenchmark.nsPerOp("scan, all matches", 20, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            search.scan(selective, Integer.MIN_VALUE, Integer.MAX_VALUE);
+         }
+      });
+      System.out.println(String.format("   %.0fx faster through the indexes", scanned / indexed));
+
+      MicroBenchmark.nsPerOp("indexed, first 20 of a broad query", 200000, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            search.page(broad, Integer.MIN_VALUE, 20);
+         }
+      });
+      MicroBenchmark.nsPerOp("scan, first 20 of a broad query", 20000, new MicroBenchmark.Op()
+      {
+         public void run(int i)
+         {
+            search.scan(broad, Integer.MIN_VALUE, 20);
+         }
+      });
+   }
+}
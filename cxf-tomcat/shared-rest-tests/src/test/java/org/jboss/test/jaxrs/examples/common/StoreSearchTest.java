@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.cxf.jaxrs.ext.search.SearchCondition;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StoreSearchTest
+{
+   private static final String[] LAST_NAMES = {"Burke", "Soldano", "Smith", "Jones", "Brown"};
+   private static final String[] CITIES = {"Boston", "Westford", "Milan", "Paris"};
+   private static final String[] STATES = {"MA", "NY", "CA"};
+
+   private static final KeysetPage.Key<Customer> ID = new KeysetPage.Key<Customer>()
+   {
+      public int idOf(Customer customer)
+      {
+         return customer.getId();
+      }
+   };
+
+   private IndexedStore<Customer> store;
+   private StoreSearch<Customer> search;
+
+   @Before
+   public void setUp()
+   {
+      store = IndexedStore.customers(new IntHashStore<Customer>());
+      search = new StoreSearch<Customer>(store, Customer.class, ID);
+      Random random = new Random(11);
+      for (int id = 1; id <= 20000; id++)
+      {
+         store.put(id, customer(id, "first" + random.nextInt(100), LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+               CITIES[random.nextInt(CITIES.length)], STATES[random.nextInt(STATES.length)]));
+      }
+   }
+
+   @Test
+   public void testResultsMatchFullFilter() throws Exception
+   {
+      String[] queries = {
+            "lastName==Burke",
+            "lastName==Burke;state==MA",
+            "state==MA;lastName==Burke;city==Boston",
+            "lastName==Burke,lastName==Soldano",
+            "city==Milan,state==NY",
+            "lastName==Burke;firstName==first7",
+            "firstName==first7",
+            "lastName==Bur*",
+            "state!=MA;city==Paris",
+            "lastName==Nobody",
+            "lastName==Burke;(city==Boston,city==Milan)"};
+      for (String query : queries)
+      {
+         SearchCondition<Customer> condition = search.parse(query);
+         List<Integer> expected = new ArrayList<Integer>();
+         for (Customer customer : store.range(Integer.MIN_VALUE, Integer.MAX_VALUE))
+         {
+            if (condition.isMet(customer))
+            {
+               expected.add(customer.getId());
+            }
+         }
+         Assert.assertEquals(query, expected, walk(query, 700));
+         Assert.assertEquals(query, ids(search.scan(condition, Integer.MIN_VALUE, Integer.MAX_VALUE).getValues()),
+               expected);
+      }
+   }
+
+   @Test
+   public void testPlans() throws Exception
+   {
+      Assert.assertEquals("index lastName=Burke", search.explain(search.parse("lastName==Burke")));
+      // three states against five last names: the last name list is the shorter one
+      Assert.assertEquals("index lastName=Burke probing state=MA",
+            search.explain(search.parse("state==MA;lastName==Burke")));
+      Assert.assertEquals("index lastName=Burke", search.explain(search.parse("firstName==x;lastName==Burke")));
+      Assert.assertEquals("union city=Milan, state=NY", search.explain(search.parse("city==Milan,state==NY")));
+      Assert.assertEquals("scan", search.explain(search.parse("city==Milan,firstName==x")));
+      Assert.assertEquals("scan", search.explain(search.parse("lastName==Bur*")));
+      Assert.assertEquals("scan", search.explain(search.parse("state!=MA")));
+   }
+
+   @Test
+   public void testUpdatesAreFound() throws Exception
+   {
+      Customer moved = CustomerCopy.of(store.get(42));
+      moved.setCity("Springfield");
+      store.put(42, moved);
+      Assert.assertEquals(Collections.singletonList(42), walk("city==Springfield", 10));
+      store.remove(42);
+      Assert.assertTrue(walk("city==Springfield", 10).isEmpty());
+   }
+
+   @Test
+   public void testBadQueries() throws Exception
+   {
+      for (String query : new String[] {"unknown==1", "lastName==", "lastName=Burke"})
+      {
+         try
+         {
+            search.page(query, null, 10);
+            Assert.fail(query);
+         }
+         catch (WebApplicationException e)
+         {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+         }
+      }
+   }
+
+   private List<Integer> walk(String query, int size)
+   {
+      List<Integer> ids = new ArrayList<Integer>();
+      String after = null;
+      do
+      {
+         KeysetPage<Customer> page = search.page(query, after, size);
+         Assert.assertTrue(page.getValues().size() <= size);
+         ids.addAll(ids(page.getValues()));
+         after = page.getNext() == null ? null : page.getNext().toString();
+      }
+      while (after != null);
+      return ids;
+   }
+
+   private static List<Integer> ids(Iterable<Customer> customers)
+   {
+      List<Integer> ids = new ArrayList<Integer>();
+      for (Customer customer : customers)
+      {
+         ids.add(customer.getId());
+      }
+      return ids;
+   }
+
+   static Customer customer(int id, String firstName, String lastName, String city, String state)
+   {
+      Customer customer = new Customer();
+      customer.setId(id);
+      customer.setFirstName(firstName);
+      customer.setLastName(lastName);
+      customer.setStreet(id + " Main Street");
+      customer.setCity(city);
+      customer.setState(state);
+      customer.setZip(String.format("%05d", id % 1000));
+      customer.setCountry("USA");
+      return customer;
+   }
+}
@@ -0,0 +1,227 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import javax.servlet.ServletConfig;
+
+public final class Stores
+{
+   private Stores()
+   {
+   }
+
+   /**
+    * Returns the factory named by the {@link StoreFactory#INIT_PARAM} init-param, {@link IntHashStoreFactory} if
+    * there is none. Its stores allocate ids through an {@link IdAllocator} when the {@link #idBlock} or the
+    * {@link #node} is set. A factory holding resources is closed by the {@link UndeployListener} of the context.
+    */
+   public static StoreFactory factory(ServletConfig config)
+   {
+      StoreFactory factory = named(config);
+      if (factory instanceof Closeable)
+      {
+         UndeployListener.closeOnUndeploy(config, (Closeable) factory);
+      }
+      int block = idBlock(config);
+      int node = node(config);
+      return block == 1 && node == 0 ? factory : IdAllocator.factory(factory, block, node);
+   }
+
+   private static StoreFactory named(ServletConfig config)
+   {
+      String name = config == null ? null : config.getInitParameter(StoreFactory.INIT_PARAM);
+      if (name == null || name.trim().length() == 0)
+      {
+         return new IntHashStoreFactory();
+      }
+      try
+      {
+         return (StoreFactory) Class.forName(name.trim(), true, loader()).newInstance();
+      }
+      catch (Exception e)
+      {
+         throw new IllegalArgumentException("Cannot create the store factory " + name, e);
+      }
+   }
+
+   /**
+    * Returns how many ids a thread leases at once, the {@link IdAllocator#BLOCK_PARAM} init-param, else 1.
+    */
+   public static int idBlock(ServletConfig config)
+   {
+      String block = config == null ? null : config.getInitParameter(IdAllocator.BLOCK_PARAM);
+      if (block == null || block.trim().length() == 0)
+      {
+         return 1;
+      }
+      try
+      {
+         int size = Integer.parseInt(block.trim());
+         if (size > 0)
+         {
+            return size;
+         }
+      }
+      catch (NumberFormatException e)
+      {
+         // reported below
+      }
+      throw new IllegalArgumentException("Invalid id block size: " + block);
+   }
+
+   /**
+    * Returns the node id of the instance: the {@link IdAllocator#NODE_PARAM} init-param, else the system
+    * property of the same name, which each instance sets for itself, else 0. Nothing built into the
+    * deployment can tell the instances apart, every copy of it would claim the same node.
+    */
+   public static int node(ServletConfig config)
+   {
+      String node = config == null ? null : config.getInitParameter(IdAllocator.NODE_PARAM);
+      if (node == null || node.trim().length() == 0)
+      {
+         node = System.getProperty(IdAllocator.NODE_PARAM);
+      }
+      if (node == null || node.trim().length() == 0)
+      {
+         return 0;
+      }
+      try
+      {
+         int id = Integer.parseInt(node.trim());
+         if (id >= 0 && id < IdAllocator.MAX_NODES)
+         {
+            return id;
+         }
+      }
+      catch (NumberFormatException e)
+      {
+         // reported below
+      }
+      throw new IllegalArgumentException("Invalid node id: " + node);
+   }
+
+   /**
+    * Returns the replicator of the instance, null unless the {@link Replicator#PORT_PARAM} or the
+    * {@link Replicator#PRIMARY_PARAM} init-param is set: a replica of the primary at <code>host:port</code>
+    * if the latter is, else the primary. It is closed by the {@link UndeployListener} of the context, so an
+    * undeployed primary stops listening and streaming, and an undeployed replica stops following.
+    */
+   public static Replicator replicator(ServletConfig config)
+   {
+      String port = config == null ? null : config.getInitParameter(Replicator.PORT_PARAM);
+      String primary = config == null ? null : config.getInitParameter(Replicator.PRIMARY_PARAM);
+      boolean listens = port != null && port.trim().length() > 0;
+      boolean follows = primary != null && primary.trim().length() > 0;
+      if (!listens && !follows)
+      {
+         return null;
+      }
+      InetSocketAddress address = null;
+      if (follows)
+      {
+         int colon = primary.lastIndexOf(':');
+         if (colon <= 0)
+         {
+            throw new IllegalArgumentException("Invalid primary, host:port expected: " + primary);
+         }
+         address = new InetSocketAddress(primary.substring(0, colon).trim(), port(primary.substring(colon + 1)));
+      }
+      int listen = listens ? port(port) : -1;
+      try
+      {
+         Replicator replicator = new Replicator(listen, address);
+         UndeployListener.closeOnUndeploy(config, replicator);
+         return replicator;
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot listen for replicas on port " + listen, e);
+      }
+   }
+
+   private static int port(String port)
+   {
+      try
+      {
+         int number = Integer.parseInt(port.trim());
+         if (number >= 0 && number <= 65535)
+         {
+            return number;
+         }
+      }
+      catch (NumberFormatException e)
+      {
+         // reported below
+      }
+      throw new IllegalArgumentException("Invalid port: " + port);
+   }
+
+   private static ClassLoader loader()
+   {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      return loader != null ? loader : Stores.class.getClassLoader();
+   }
+
+   /**
+    * Allocates the ids of a sharded store in the {@link #idBlock} and the {@link #node} range of the instance,
+    * as {@link #factory} does for the stores it creates: a sharded store hands out ids of its own, not those of
+    * its shards.
+    */
+   public static <V> ShardedStore<V> allocateIds(ServletConfig config, ShardedStore<V> store)
+   {
+      return store.allocateIds(idBlock(config), node(config));
+   }
+
+   /**
+    * Returns the shard count of a region: the {@link ShardedStore#INIT_PARAM} init-param suffixed with
+    * <code>.region</code>, else the init-param itself, else {@link ShardedStore#DEFAULT_SHARDS}.
+    */
+   public static int shards(ServletConfig config, String region)
+   {
+      String count = config == null ? null : config.getInitParameter(ShardedStore.INIT_PARAM + "." + region);
+      if (count == null || count.trim().length() == 0)
+      {
+         count = config == null ? null : config.getInitParameter(ShardedStore.INIT_PARAM);
+      }
+      if (count == null || count.trim().length() == 0)
+      {
+         return ShardedStore.DEFAULT_SHARDS;
+      }
+      try
+      {
+         int shards = Integer.parseInt(count.trim());
+         if (shards > 0)
+         {
+            return shards;
+         }
+      }
+      catch (NumberFormatException e)
+      {
+         // reported below
+      }
+      throw new IllegalArgumentException("Invalid shard count of " + region + ": " + count);
+   }
+}
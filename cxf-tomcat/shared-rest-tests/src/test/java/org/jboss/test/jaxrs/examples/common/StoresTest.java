@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StoresTest
+{
+   public static class CountingStoreFactory extends InMemoryStoreFactory
+   {
+      static int created;
+
+      @Override
+      public <V> Store<V> createStore(String name, Class<V> type)
+      {
+         created++;
+         return super.createStore(name, type);
+      }
+   }
+
+   public static class ClosingStoreFactory extends InMemoryStoreFactory implements Closeable
+   {
+      int closed;
+
+      public void close()
+      {
+         closed++;
+      }
+   }
+
+   @Test
+   public void testDefaultsToIntHash() throws Exception
+   {
+      Assert.assertTrue(Stores.factory(null) instanceof IntHashStoreFactory);
+      Assert.assertTrue(Stores.factory(config((String) null)) instanceof IntHashStoreFactory);
+   }
+
+   @Test
+   public void testFactoryFromInitParam() throws Exception
+   {
+      StoreFactory factory = Stores.factory(config(" " + CountingStoreFactory.class.getName() + " "));
+      Assert.assertTrue(factory instanceof CountingStoreFactory);
+      int created = CountingStoreFactory.created;
+      factory.createStore("customers", String.class);
+      Assert.assertEquals(created + 1, CountingStoreFactory.created);
+   }
+
+   @Test
+   public void testFactoryClosedOnUndeploy() throws Exception
+   {
+      ServletContext context = context();
+      ServletConfig config = config(Collections.singletonMap(StoreFactory.INIT_PARAM,
+            ClosingStoreFactory.class.getName()), context);
+      ClosingStoreFactory factory = (ClosingStoreFactory) Stores.factory(config);
+      Assert.assertEquals(0, factory.closed);
+      new UndeployListener().contextDestroyed(new ServletContextEvent(context));
+      Assert.assertEquals(1, factory.closed);
+      new UndeployListener().contextDestroyed(new ServletContextEvent(context));
+      Assert.assertEquals(1, factory.closed);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnknownFactory() throws Exception
+   {
+      Stores.factory(config("org.example.NoSuchStoreFactory"));
+   }
+
+   @Test
+   public void testShardsFromInitParams() throws Exception
+   {
+      Map<String, String> params = new HashMap<String, String>();
+      Assert.assertEquals(ShardedStore.DEFAULT_SHARDS, Stores.shards(null, "europe"));
+      Assert.assertEquals(ShardedStore.DEFAULT_SHARDS, Stores.shards(config(params), "europe"));
+      params.put(ShardedStore.INIT_PARAM, " 8 ");
+      params.put(ShardedStore.INIT_PARAM + ".northamerica", "2");
+      Assert.assertEquals(8, Stores.shards(config(params), "europe"));
+      Assert.assertEquals(2, Stores.shards(config(params), "northamerica"));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidShards() throws Exception
+   {
+      Stores.shards(config(Collections.singletonMap(ShardedStore.INIT_PARAM, "0")), "europe");
+   }
+
+   @Test
+   public void testIdAllocationFromInitParams() throws Exception
+   {
+      Map<String, String> params = new HashMap<String, String>();
+      Assert.assertEquals(1, Stores.idBlock(config(params)));
+      Assert.assertEquals(0, Stores.node(config(params)));
+      params.put(IdAllocator.BLOCK_PARAM, "64");
+      params.put(IdAllocator.NODE_PARAM, " 2 ");
+      Assert.assertEquals(64, Stores.idBlock(config(params)));
+      Assert.assertEquals(2, Stores.node(config(params)));
+      Store<String> store = Stores.factory(config(params)).createStore("customers", String.class);
+      Assert.assertEquals((2 << IdAllocator.NODE_SHIFT) + 1, store.nextId());
+   }
+
+   @Test
+   public void testNodeFromSystemProperty() throws Exception
+   {
+      Map<String, String> params = new HashMap<String, String>();
+      System.setProperty(IdAllocator.NODE_PARAM, "3");
+      try
+      {
+         Assert.assertEquals(3, Stores.node(null));
+         Assert.assertEquals(3, Stores.node(config(params)));
+         params.put(IdAllocator.NODE_PARAM, "1");
+         Assert.assertEquals(1, Stores.node(config(params)));
+      }
+      finally
+      {
+         System.clearProperty(IdAllocator.NODE_PARAM);
+      }
+      Assert.assertEquals(0, Stores.node(null));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidNode() throws Exception
+   {
+      Stores.node(config(Collections.singletonMap(IdAllocator.NODE_PARAM, "100")));
+   }
+
+   @Test
+   public void testReplicatorFromInitParams() throws Exception
+   {
+      Map<String, String> params = new HashMap<String, String>();
+      Assert.assertNull(Stores.replicator(null));
+      Assert.assertNull(Stores.replicator(config(params)));
+      params.put(Replicator.PORT_PARAM, "0");
+      Replicator primary = Stores.replicator(config(params));
+      try
+      {
+         Assert.assertEquals(Replicator.Role.PRIMARY, primary.getRole());
+         Assert.assertTrue(primary.getPort() > 0);
+         params.remove(Replicator.PORT_PARAM);
+         params.put(Replicator.PRIMARY_PARAM, "localhost:" + primary.getPort());
+         Replicator replica = Stores.replicator(config(params));
+         Assert.assertEquals(Replicator.Role.REPLICA, replica.getRole());
+         Assert.assertEquals(-1, replica.getPort());
+         replica.close();
+      }
+      finally
+      {
+         primary.close();
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidPrimary() throws Exception
+   {
+      Stores.replicator(config(Collections.singletonMap(Replicator.PRIMARY_PARAM, "localhost")));
+   }
+
+   private static ServletConfig config(String factory)
+   {
+      return config(Collections.singletonMap(StoreFactory.INIT_PARAM, factory));
+   }
+
+   private static ServletConfig config(Map<String, String> params)
+   {
+      return config(params, null);
+   }
+
+   private static ServletConfig config(final Map<String, String> params, final ServletContext context)
+   {
+      return (ServletConfig) Proxy.newProxyInstance(StoresTest.class.getClassLoader(),
+            new Class<?>[] {ServletConfig.class}, new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  if ("getInitParameter".equals(method.getName()))
+                  {
+                     return params.get(args[0]);
+                  }
+                  if ("getServletContext".equals(method.getName()))
+                  {
+                     return context;
+                  }
+                  return null;
+               }
+            });
+   }
+
+   private static ServletContext context()
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      return (ServletContext) Proxy.newProxyInstance(StoresTest.class.getClassLoader(),
+            new Class<?>[] {ServletContext.class}, new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  if ("getAttribute".equals(method.getName()))
+                  {
+                     return attributes.get(args[0]);
+                  }
+                  if ("setAttribute".equals(method.getName()))
+                  {
+                     attributes.put((String) args[0], args[1]);
+                  }
+                  if ("removeAttribute".equals(method.getName()))
+                  {
+                     attributes.remove(args[0]);
+                  }
+                  return null;
+               }
+            });
+   }
+}
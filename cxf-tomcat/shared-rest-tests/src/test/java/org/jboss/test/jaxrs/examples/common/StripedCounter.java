@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sum updated by many threads, as the LongAdder of later JDKs: an uncontended counter is a single
+ * {@link AtomicLong}, and once two updates collide the threads spread over cells of their own cache lines, so
+ * they no longer retry against each other. Reading sums the cells, the result is not a snapshot of concurrent
+ * updates.
+ */
+public class StripedCounter
+{
+   private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+   // a cell every 64 bytes
+   private static final int PADDING = 8;
+
+   private static final ThreadLocal<int[]> probe = new ThreadLocal<int[]>()
+   {
+      @Override
+      protected int[] initialValue()
+      {
+         int seed = (int) Thread.currentThread().getId() * 0x9E3779B9;
+         return new int[] {seed == 0 ? 1 : seed};
+      }
+   };
+
+   private final AtomicLong base = new AtomicLong();
+   private volatile AtomicLongArray cells;
+
+   public void add(long delta)
+   {
+      AtomicLongArray c = cells;
+      if (c == null)
+      {
+         long b = base.get();
+         if (base.compareAndSet(b, b + delta))
+         {
+            return;
+         }
+         c = cells();
+      }
+      int[] h = probe.get();
+      while (true)
+      {
+         int cell = (h[0] & (STRIPES - 1)) * PADDING;
+         long v = c.get(cell);
+         if (c.compareAndSet(cell, v, v + delta))
+         {
+            return;
+         }
+         // collided with another thread, move to another cell
+         h[0] ^= h[0] << 13;
+         h[0] ^= h[0] >>> 17;
+         h[0] ^= h[0] << 5;
+      }
+   }
+
+   public void increment()
+   {
+      add(1);
+   }
+
+   public void decrement()
+   {
+      add(-1);
+   }
+
+   public long sum()
+   {
+      long sum = base.get();
+      AtomicLongArray c = cells;
+      if (c != null)
+      {
+         for (int cell = 0; cell < c.length(); cell += PADDING)
+         {
+            sum += c.get(cell);
+         }
+      }
+      return sum;
+   }
+
+   private synchronized AtomicLongArray cells()
+   {
+      if (cells == null)
+      {
+         cells = new AtomicLongArray(STRIPES * PADDING);
+      }
+      return cells;
+   }
+}
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedCounterTest
+{
+   @Test
+   public void testSingleThread()
+   {
+      StripedCounter counter = new StripedCounter();
+      Assert.assertEquals(0, counter.sum());
+      counter.increment();
+      counter.add(41);
+      counter.decrement();
+      counter.add(-5);
+      Assert.assertEquals(36, counter.sum());
+   }
+
+   @Test
+   public void testNoUpdateLost() throws Exception
+   {
+      final StripedCounter counter = new StripedCounter();
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try
+      {
+         List<Future<Void>> adders = new ArrayList<Future<Void>>();
+         for (int t = 0; t < 8; t++)
+         {
+            adders.add(executor.submit(new Callable<Void>()
+            {
+               public Void call()
+               {
+                  for (int i = 0; i < 100000; i++)
+                  {
+                     counter.add(3);
+                     counter.decrement();
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> adder : adders)
+         {
+            adder.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      Assert.assertEquals(8 * 100000 * 2, counter.sum());
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Statistics of a {@link TieredStore}.
+ */
+@XmlRootElement(name = "tiers")
+@XmlType(propOrder = {"hits", "misses", "hitRatio", "evictions", "rejections", "demotions", "hotEntries", "hotWeight",
+      "maxWeight", "coldEntries"})
+public class TierStats
+{
+   private long hits;
+   private long misses;
+   private String hitRatio;
+   private long evictions;
+   private long rejections;
+   private long demotions;
+   private int hotEntries;
+   private long hotWeight;
+   private long maxWeight;
+   private int coldEntries;
+
+   /**
+    * Reads served from the heap.
+    */
+   @XmlElement
+   public long getHits()
+   {
+      return hits;
+   }
+
+   public void setHits(long hits)
+   {
+      this.hits = hits;
+   }
+
+   /**
+    * Reads of values demoted to the cold tier, which moved them back to the heap.
+    */
+   @XmlElement
+   public long getMisses()
+   {
+      return misses;
+   }
+
+   public void setMisses(long misses)
+   {
+      this.misses = misses;
+   }
+
+   @XmlElement
+   public String getHitRatio()
+   {
+      return hitRatio;
+   }
+
+   public void setHitRatio(String hitRatio)
+   {
+      this.hitRatio = hitRatio;
+   }
+
+   /**
+    * Values demoted as the least recently used on probation.
+    */
+   @XmlElement
+   public long getEvictions()
+   {
+      return evictions;
+   }
+
+   public void setEvictions(long evictions)
+   {
+      this.evictions = evictions;
+   }
+
+   /**
+    * Values demoted because they were not used more often than the value they would have replaced.
+    */
+   @XmlElement
+   public long getRejections()
+   {
+      return rejections;
+   }
+
+   public void setRejections(long rejections)
+   {
+      this.rejections = rejections;
+   }
+
+   /**
+    * Values moved to the cold tier, evictions and rejections.
+    */
+   @XmlElement
+   public long getDemotions()
+   {
+      return demotions;
+   }
+
+   public void setDemotions(long demotions)
+   {
+      this.demotions = demotions;
+   }
+
+   @XmlElement
+   public int getHotEntries()
+   {
+      return hotEntries;
+   }
+
+   public void setHotEntries(int hotEntries)
+   {
+      this.hotEntries = hotEntries;
+   }
+
+   @XmlElement
+   public long getHotWeight()
+   {
+      return hotWeight;
+   }
+
+   public void setHotWeight(long hotWeight)
+   {
+      this.hotWeight = hotWeight;
+   }
+
+   @XmlElement
+   public long getMaxWeight()
+   {
+      return maxWeight;
+   }
+
+   public void setMaxWeight(long maxWeight)
+   {
+      this.maxWeight = maxWeight;
+   }
+
+   @XmlElement
+   public int getColdEntries()
+   {
+      return coldEntries;
+   }
+
+   public void setColdEntries(int coldEntries)
+   {
+      this.coldEntries = coldEntries;
+   }
+}
@@ -0,0 +1,604 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Store keeping at most a given weight of values, e.g. a number of values, in an {@link IntHashStore} on the
+ * heap and demoting the others to a cold store, e.g. a {@link MappedStore}, from where a read brings them back.
+ *
+ * Which values stay is decided by W-TinyLFU: a new value enters a window LRU of 1% of the weight, leaving it for
+ * the probation segment of the main space, and a value read again while on probation moves up to the protected
+ * segment (80% of the main space). When the heap is over weight, the value leaving the window only displaces the
+ * least recently used value on probation if the {@link FrequencySketch} counted it more often lately, otherwise
+ * it is the one demoted; so one pass over many cold values, e.g. an import or a scan, does not flush the
+ * popular ones. Scans read the values in place and count neither as uses nor in the statistics, and a read of
+ * an absent id is not a miss.
+ *
+ * A read of a hot value takes no lock, it only records the use in the sketch and, unless another thread holds
+ * the lock, in the LRU order. Everything else is serialized on the lock. A value moving between the tiers is
+ * stored in its new tier before it is removed from the old one, so a lock-free scan always finds it. The ids of
+ * both tiers are kept in an {@link OrderedIdIndex}.
+ */
+public class TieredStore<V> implements Store<V>, Closeable
+{
+   /**
+    * Weight of a value, e.g. 1 to bound the number of values or its encoded length to bound their bytes.
+    */
+   public interface Weigher<V>
+   {
+      int weigh(V value);
+   }
+
+   private static final int WINDOW = 0;
+   private static final int PROBATION = 1;
+   private static final int PROTECTED = 2;
+
+   private static final class Node
+   {
+      private final int id;
+      private int weight;
+      private int queue;
+      private Node previous;
+      private Node next;
+
+      private Node(int id)
+      {
+         this.id = id;
+      }
+   }
+
+   /**
+    * LRU list of nodes, least recently used first.
+    */
+   private static final class Queue
+   {
+      private final Node head = new Node(0);
+      private long weight;
+
+      private Queue()
+      {
+         head.previous = head;
+         head.next = head;
+      }
+
+      private void add(Node node)
+      {
+         node.previous = head.previous;
+         node.next = head;
+         head.previous.next = node;
+         head.previous = node;
+         weight += node.weight;
+      }
+
+      private void remove(Node node)
+      {
+         node.previous.next = node.next;
+         node.next.previous = node.previous;
+         node.previous = null;
+         node.next = null;
+         weight -= node.weight;
+      }
+
+      private Node first()
+      {
+         return head.next == head ? null : head.next;
+      }
+
+      private Node last()
+      {
+         return head.previous == head ? null : head.previous;
+      }
+   }
+
+   private final IntHashStore<V> hot = new IntHashStore<V>();
+   private final Store<V> cold;
+   private final Weigher<? super V> weigher;
+   private final long maxWeight;
+   private final long windowWeight;
+   private final long protectedWeight;
+   private final Queue[] queues = {new Queue(), new Queue(), new Queue()};
+   private final Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+   private final FrequencySketch sketch;
+   private final OrderedIdIndex ids = new OrderedIdIndex();
+   private final AtomicInteger lastId = new AtomicInteger();
+   private final ReentrantLock lock = new ReentrantLock();
+   private final StripedCounter hits = new StripedCounter();
+   private final StripedCounter misses = new StripedCounter();
+   private volatile long evictions;
+   private volatile long rejections;
+   private volatile long version;
+
+   /**
+    * Creates an empty store over an empty cold store, keeping values of at most <code>maxWeight</code> on the
+    * heap.
+    */
+   public TieredStore(Store<V> cold, long maxWeight, Weigher<? super V> weigher)
+   {
+      if (maxWeight < 1)
+      {
+         throw new IllegalArgumentException("Invalid maximum weight: " + maxWeight);
+      }
+      if (cold.size() > 0)
+      {
+         throw new IllegalArgumentException("The cold store is not empty");
+      }
+      this.cold = cold;
+      this.weigher = weigher;
+      this.maxWeight = maxWeight;
+      this.windowWeight = Math.max(1, maxWeight / 100);
+      this.protectedWeight = (maxWeight - windowWeight) * 8 / 10;
+      this.sketch = new FrequencySketch((int) Math.min(maxWeight, Integer.MAX_VALUE));
+   }
+
+   /**
+    * Returns a weigher counting the values.
+    */
+   public static <V> Weigher<V> entries()
+   {
+      return new Weigher<V>()
+      {
+         public int weigh(V value)
+         {
+            return 1;
+         }
+      };
+   }
+
+   public int nextId()
+   {
+      return lastId.incrementAndGet();
+   }
+
+   public int nextIds(int count)
+   {
+      return lastId.addAndGet(count) - count + 1;
+   }
+
+   public V get(int id)
+   {
+      V value = hot.get(id);
+      if (value != null)
+      {
+         hits.increment();
+         sketch.increment(id);
+         if (lock.tryLock())
+         {
+            try
+            {
+               accessed(id);
+            }
+            finally
+            {
+               lock.unlock();
+            }
+         }
+         return value;
+      }
+      if (!ids.contains(id))
+      {
+         return null;
+      }
+      misses.increment();
+      lock.lock();
+      try
+      {
+         value = load(id);
+         evict();
+         return value;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public V put(int id, V value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      lock.lock();
+      try
+      {
+         allocated(id);
+         V previous = hot.put(id, value);
+         if (previous == null && ids.contains(id))
+         {
+            previous = cold.remove(id);
+         }
+         stored(id, value);
+         evict();
+         return previous;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public void putAll(Map<Integer, ? extends V> values)
+   {
+      for (Map.Entry<Integer, ? extends V> entry : values.entrySet())
+      {
+         put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   public V remove(int id)
+   {
+      lock.lock();
+      try
+      {
+         Node node = nodes.remove(id);
+         if (node != null)
+         {
+            queues[node.queue].remove(node);
+         }
+         V previous = hot.remove(id);
+         if (previous == null && ids.contains(id))
+         {
+            previous = cold.remove(id);
+         }
+         if (ids.remove(id))
+         {
+            version++;
+         }
+         return previous;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * By identity while the value is hot, by the rules of the cold store once it was demoted.
+    */
+   public boolean replace(int id, V expected, V updated)
+   {
+      if (updated == null)
+      {
+         throw new NullPointerException();
+      }
+      lock.lock();
+      try
+      {
+         if (!nodes.containsKey(id))
+         {
+            return cold.replace(id, expected, updated);
+         }
+         if (!hot.replace(id, expected, updated))
+         {
+            return false;
+         }
+         stored(id, updated);
+         evict();
+         return true;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public V compute(int id, Update<V> update)
+   {
+      lock.lock();
+      try
+      {
+         V current = load(id);
+         V updated = hot.compute(id, update);
+         if (updated == null)
+         {
+            if (current != null)
+            {
+               Node node = nodes.remove(id);
+               queues[node.queue].remove(node);
+               ids.remove(id);
+               version++;
+            }
+         }
+         else
+         {
+            allocated(id);
+            stored(id, updated);
+         }
+         evict();
+         return updated;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * The ids come from the index and the values from either tier, see {@link IntHashStore#range(int, int)}.
+    */
+   public List<V> range(int fromId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] page = ids.from(fromId, limit);
+      while (page.length > 0 && values(page, result) < limit && page[page.length - 1] != Integer.MAX_VALUE)
+      {
+         page = ids.from(page[page.length - 1] + 1, limit - result.size());
+      }
+      return result;
+   }
+
+   public List<V> page(int offset, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] page = ids.page(offset, limit);
+      if (page.length > 0 && values(page, result) < limit && page[page.length - 1] != Integer.MAX_VALUE)
+      {
+         result.addAll(range(page[page.length - 1] + 1, limit - result.size()));
+      }
+      return result;
+   }
+
+   public List<V> rangeBefore(int toId, int limit)
+   {
+      List<V> result = new ArrayList<V>(Math.min(Math.max(limit, 0), 64));
+      int[] page = ids.before(toId, limit);
+      while (page.length > 0)
+      {
+         List<V> earlier = new ArrayList<V>(page.length);
+         values(page, earlier);
+         result.addAll(0, earlier);
+         if (result.size() == limit)
+         {
+            break;
+         }
+         page = ids.before(page[0], limit - result.size());
+      }
+      return result;
+   }
+
+   public int[] ids(int fromId, int limit)
+   {
+      return ids.from(fromId, limit);
+   }
+
+   public int[] idsBefore(int toId, int limit)
+   {
+      return ids.before(toId, limit);
+   }
+
+   public int size()
+   {
+      return ids.size();
+   }
+
+   public long version()
+   {
+      return version;
+   }
+
+   /**
+    * Returns the statistics of the tiers.
+    */
+   public TierStats stats()
+   {
+      TierStats stats = new TierStats();
+      long hit = hits.sum();
+      long missed = misses.sum();
+      stats.setHits(hit);
+      stats.setMisses(missed);
+      stats.setHitRatio(String.format(Locale.ENGLISH, "%.3f", hit + missed == 0 ? 1.0 : (double) hit / (hit + missed)));
+      stats.setEvictions(evictions);
+      stats.setRejections(rejections);
+      stats.setDemotions(evictions + rejections);
+      stats.setHotEntries(hot.size());
+      stats.setColdEntries(cold.size());
+      lock.lock();
+      try
+      {
+         stats.setHotWeight(queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+      stats.setMaxWeight(maxWeight);
+      return stats;
+   }
+
+   public void close() throws IOException
+   {
+      if (cold instanceof Closeable)
+      {
+         ((Closeable) cold).close();
+      }
+   }
+
+   /**
+    * Adds the values of the ids still present to the list and returns its size.
+    */
+   private int values(int[] page, List<V> result)
+   {
+      for (int id : page)
+      {
+         V value = hot.get(id);
+         if (value == null)
+         {
+            value = cold.get(id);
+         }
+         if (value == null)
+         {
+            // it was just reloaded, a value is stored in its new tier first
+            value = hot.get(id);
+         }
+         if (value != null)
+         {
+            result.add(value);
+         }
+      }
+      return result.size();
+   }
+
+   /**
+    * Returns the value of the id, moving it to the heap if it was demoted; the caller holds the lock and
+    * evicts once done with it.
+    */
+   private V load(int id)
+   {
+      V value = hot.get(id);
+      if (value != null || !ids.contains(id))
+      {
+         return value;
+      }
+      value = cold.get(id);
+      if (value != null)
+      {
+         hot.put(id, value);
+         cold.remove(id);
+         stored(id, value);
+      }
+      return value;
+   }
+
+   /**
+    * Accounts for a value put on the heap.
+    */
+   private void stored(int id, V value)
+   {
+      if (ids.add(id))
+      {
+         version++;
+      }
+      sketch.increment(id);
+      int weight = weigher.weigh(value);
+      Node node = nodes.get(id);
+      if (node == null)
+      {
+         node = new Node(id);
+         node.weight = weight;
+         node.queue = WINDOW;
+         queues[WINDOW].add(node);
+         nodes.put(id, node);
+         return;
+      }
+      Queue queue = queues[node.queue];
+      queue.weight += weight - node.weight;
+      node.weight = weight;
+      accessed(id);
+   }
+
+   /**
+    * Moves the node of the id to the most recently used end of its segment, or from probation to protected.
+    */
+   private void accessed(int id)
+   {
+      Node node = nodes.get(id);
+      if (node == null)
+      {
+         // demoted meanwhile
+         return;
+      }
+      if (node.queue == PROBATION)
+      {
+         move(node, PROTECTED);
+         while (queues[PROTECTED].weight > protectedWeight)
+         {
+            move(queues[PROTECTED].first(), PROBATION);
+         }
+      }
+      else
+      {
+         move(node, node.queue);
+      }
+   }
+
+   private void move(Node node, int queue)
+   {
+      queues[node.queue].remove(node);
+      node.queue = queue;
+      queues[queue].add(node);
+   }
+
+   /**
+    * Moves what overflows the window to probation, then demotes values until the heap is within its weight.
+    */
+   private void evict()
+   {
+      while (queues[WINDOW].weight > windowWeight)
+      {
+         move(queues[WINDOW].first(), PROBATION);
+      }
+      while (queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight > maxWeight)
+      {
+         Node victim = queues[PROBATION].first();
+         Node candidate = queues[PROBATION].last();
+         if (victim == null)
+         {
+            victim = queues[PROTECTED].first();
+            candidate = victim;
+         }
+         if (victim == null)
+         {
+            victim = queues[WINDOW].first();
+            candidate = victim;
+         }
+         if (victim != candidate && sketch.frequency(candidate.id) <= sketch.frequency(victim.id))
+         {
+            // the newcomer is not used more often than the value it would replace
+            demote(candidate);
+            rejections++;
+         }
+         else
+         {
+            demote(victim);
+            evictions++;
+         }
+      }
+   }
+
+   private void demote(Node node)
+   {
+      queues[node.queue].remove(node);
+      nodes.remove(node.id);
+      V value = hot.get(node.id);
+      cold.put(node.id, value);
+      hot.remove(node.id);
+   }
+
+   private void allocated(int id)
+   {
+      int last = lastId.get();
+      while (id > last && !lastId.compareAndSet(last, id))
+      {
+         last = lastId.get();
+      }
+   }
+}
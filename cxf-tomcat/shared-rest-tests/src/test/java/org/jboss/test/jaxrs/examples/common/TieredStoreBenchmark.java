@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.util.Random;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Heap kept by 500K customers in an {@link IntHashStore} and in a {@link TieredStore} holding 25K of them, and
+ * the hit ratio and latency of Zipfian reads of the tiered one.
+ */
+public class TieredStoreBenchmark
+{
+   private static final int CUSTOMERS = 500000;
+   private static final int CAPACITY = 25000;
+   private static final int READS = 2000000;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testZipfianReads() throws Exception
+   {
+      long base = usedHeap();
+      Store<Customer> unbounded = new IntHashStore<Customer>();
+      fill(unbounded);
+      System.out.println(String.format("%-48s %12d MB", "IntHashStore heap", (usedHeap() - base) >> 20));
+      unbounded = null;
+
+      base = usedHeap();
+      TieredStoreFactory factory = new TieredStoreFactory(folder.getRoot(), CAPACITY, false);
+      try
+      {
+         TieredStore<Customer> tiered = (TieredStore<Customer>) factory.createStore("customers", Customer.class);
+         fill(tiered);
+         System.out.println(String.format("%-48s %12d MB", "TieredStore heap", (usedHeap() - base) >> 20));
+         for (int run = 0; run < 2; run++)
+         {
+            TierStatsDelta delta = new TierStatsDelta(tiered.stats());
+            TieredStoreTest.Zipf zipf = new TieredStoreTest.Zipf(CUSTOMERS, 1.0, new Random(run));
+            int[] ids = new int[READS];
+            for (int i = 0; i < READS; i++)
+            {
+               ids[i] = zipf.next();
+            }
+            long start = System.nanoTime();
+            for (int id : ids)
+            {
+               tiered.get(id);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("%-48s %12.3f hit ratio %8d ns/read", "TieredStore Zipf s=1",
+                  delta.hitRatio(tiered.stats()), nanos / READS));
+         }
+      }
+      finally
+      {
+         factory.close();
+      }
+   }
+
+   private static final class TierStatsDelta
+   {
+      private final long hits;
+      private final long misses;
+
+      private TierStatsDelta(TierStats before)
+      {
+         hits = before.getHits();
+         misses = before.getMisses();
+      }
+
+      private double hitRatio(TierStats after)
+      {
+         long hit = after.getHits() - hits;
+         return (double) hit / (hit + after.getMisses() - misses);
+      }
+   }
+
+   private static void fill(Store<Customer> store)
+   {
+      for (int id = 1; id <= CUSTOMERS; id++)
+      {
+         Customer customer = new Customer();
+         customer.setId(id);
+         customer.setFirstName("Bill" + id);
+         customer.setLastName("Burke" + id);
+         customer.setStreet(id + " Clarendon Street");
+         customer.setCity("Boston");
+         customer.setState("MA");
+         customer.setZip("02115");
+         customer.setCountry("USA");
+         store.put(id, customer);
+      }
+   }
+
+   private static long usedHeap() throws InterruptedException
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 3; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
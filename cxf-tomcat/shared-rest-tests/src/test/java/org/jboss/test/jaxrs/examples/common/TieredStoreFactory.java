@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates a {@link TieredStore} per store name and value type, keeping at most
+ * <code>org.jboss.test.jaxrs.examples.store.capacity</code> values on the heap (10000 by default), or values of
+ * at most <code>org.jboss.test.jaxrs.examples.store.capacity.bytes</code> encoded bytes when that is set, and
+ * demoting the others to a {@link MappedStore} in the directory of the {@link MappedStoreFactory}. The cold tier
+ * starts empty with every deployment: the store bounds the heap, it does not persist. Types without one of the
+ * {@link Codecs} are kept in an {@link IntHashStore}. A store holds a lock on its cold file, so a file still
+ * mapped by a store that was not closed yet, e.g. of a deployment being replaced, is never deleted: the new
+ * store gets a file of its own.
+ */
+public class TieredStoreFactory implements StoreFactory, Closeable
+{
+   public static final String CAPACITY_PROPERTY = "org.jboss.test.jaxrs.examples.store.capacity";
+   public static final String BYTES_PROPERTY = "org.jboss.test.jaxrs.examples.store.capacity.bytes";
+
+   private final File directory;
+   private final long capacity;
+   private final boolean bytes;
+   private final List<TieredStore<?>> stores = new CopyOnWriteArrayList<TieredStore<?>>();
+   private final List<ColdFile> files = new CopyOnWriteArrayList<ColdFile>();
+
+   /**
+    * A cold file and the lock the store holds on it while it is open.
+    */
+   private static final class ColdFile
+   {
+      final File file;
+      final FileChannel lock;
+
+      ColdFile(File file, FileChannel lock)
+      {
+         this.file = file;
+         this.lock = lock;
+      }
+
+      /**
+       * Deletes the file under the lock, the lock file stays: deleting it would let two stores lock the same name.
+       */
+      void release() throws IOException
+      {
+         file.delete();
+         lock.close();
+      }
+   }
+
+   public TieredStoreFactory()
+   {
+      this(MappedStoreFactory.directory(), Long.getLong(BYTES_PROPERTY, Long.getLong(CAPACITY_PROPERTY, 10000)),
+            System.getProperty(BYTES_PROPERTY) != null);
+   }
+
+   /**
+    * @param capacity the number of values kept on the heap, or their encoded bytes if <code>bytes</code>
+    */
+   public TieredStoreFactory(File directory, long capacity, boolean bytes)
+   {
+      this.directory = directory;
+      this.capacity = capacity;
+      this.bytes = bytes;
+   }
+
+   public <V> Store<V> createStore(String name, Class<V> type)
+   {
+      final MappedStore.Codec<V> codec = Codecs.forType(type);
+      if (codec == null)
+      {
+         return new IntHashStore<V>();
+      }
+      String file = name + "-" + type.getName();
+      try
+      {
+         if (!directory.isDirectory() && !directory.mkdirs())
+         {
+            throw new IOException("Cannot create " + directory);
+         }
+         TieredStore.Weigher<V> weigher = TieredStore.entries();
+         if (bytes)
+         {
+            weigher = new TieredStore.Weigher<V>()
+            {
+               public int weigh(V value)
+               {
+                  return codec.encode(value).length;
+               }
+            };
+         }
+         ColdFile cold = claim(file);
+         MappedStore<V> mapped;
+         try
+         {
+            mapped = new MappedStore<V>(cold.file, codec);
+         }
+         catch (IOException e)
+         {
+            cold.release();
+            throw e;
+         }
+         TieredStore<V> store = new TieredStore<V>(mapped, capacity, weigher);
+         stores.add(store);
+         files.add(cold);
+         return store;
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Cannot open the cold tier " + file, e);
+      }
+   }
+
+   /**
+    * Locks and empties the first cold file of the store that no open store holds, <code>name.cold</code>
+    * unless an older deployment still maps it, then <code>name.2.cold</code> and so on.
+    */
+   private ColdFile claim(String name) throws IOException
+   {
+      for (int i = 1; i <= 100; i++)
+      {
+         String prefix = i == 1 ? name : name + "." + i;
+         FileChannel lock = new RandomAccessFile(new File(directory, prefix + ".cold.lock"), "rw").getChannel();
+         boolean locked = false;
+         try
+         {
+            locked = lock.tryLock() != null;
+         }
+         catch (OverlappingFileLockException e)
+         {
+            // held by a store of this JVM
+         }
+         File file = new File(directory, prefix + ".cold");
+         if (locked && (!file.exists() || file.delete()))
+         {
+            return new ColdFile(file, lock);
+         }
+         lock.close();
+      }
+      throw new IOException("No free cold file for " + name + " in " + directory);
+   }
+
+   /**
+    * Closes the stores created so far, deletes their cold files and releases their locks; the
+    * {@link UndeployListener} calls it when the deployment goes away.
+    */
+   public void close() throws IOException
+   {
+      for (TieredStore<?> store : stores)
+      {
+         store.close();
+      }
+      stores.clear();
+      for (ColdFile file : files)
+      {
+         file.release();
+      }
+      files.clear();
+   }
+}
@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.File;
+import java.util.Random;
+
+import org.jboss.test.jaxrs.examples.ex03_1.domain.Customer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * With 16 values on the heap the conformance tests go through both tiers.
+ */
+public class TieredStoreTest extends StoreConformanceTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private TieredStoreFactory factory;
+
+   @Override
+   protected StoreFactory createFactory()
+   {
+      factory = new TieredStoreFactory(folder.getRoot(), 16, false);
+      return factory;
+   }
+
+   @After
+   public void closeStores() throws Exception
+   {
+      factory.close();
+   }
+
+   private static Customer customer(int id)
+   {
+      Customer customer = new Customer();
+      customer.setId(id);
+      customer.setFirstName("Bill" + id);
+      customer.setLastName("Burke");
+      customer.setStreet(id + " Clarendon Street");
+      customer.setCity("Boston");
+      customer.setState("MA");
+      customer.setZip("02115");
+      customer.setCountry("USA");
+      return customer;
+   }
+
+   @Test
+   public void testDemotedValuesReloadOnAccess() throws Exception
+   {
+      TieredStore<Customer> customers = (TieredStore<Customer>) factory.createStore("customers", Customer.class);
+      for (int id = 1; id <= 1000; id++)
+      {
+         customers.put(id, customer(id));
+      }
+      TierStats stats = customers.stats();
+      Assert.assertEquals(16, stats.getHotEntries());
+      Assert.assertEquals(984, stats.getColdEntries());
+      Assert.assertEquals(984, stats.getDemotions());
+      Assert.assertEquals(1000, customers.size());
+      Assert.assertEquals(1000, customers.range(0, Integer.MAX_VALUE).size());
+
+      Assert.assertEquals("Bill500", customers.get(500).getFirstName());
+      stats = customers.stats();
+      Assert.assertEquals(1, stats.getMisses());
+      Assert.assertEquals(16, stats.getHotEntries());
+      Assert.assertNull(customers.get(1001));
+      Assert.assertEquals(1, customers.stats().getMisses());
+
+      Customer renamed = customer(7);
+      renamed.setFirstName("William");
+      customers.put(7, renamed);
+      Assert.assertEquals("William", customers.get(7).getFirstName());
+      Assert.assertEquals("Bill8", customers.remove(8).getFirstName());
+      Assert.assertNull(customers.get(8));
+      Assert.assertEquals(999, customers.size());
+   }
+
+   @Test
+   public void testRedeployDoesNotDeleteAMappedColdFile() throws Exception
+   {
+      File directory = folder.newFolder();
+      File cold = new File(directory, "customers-" + Customer.class.getName() + ".cold");
+      TieredStoreFactory undeployed = new TieredStoreFactory(directory, 16, false);
+      Store<Customer> customers = undeployed.createStore("customers", Customer.class);
+      for (int id = 1; id <= 100; id++)
+      {
+         customers.put(id, customer(id));
+      }
+      long length = cold.length();
+
+      TieredStoreFactory redeployed = new TieredStoreFactory(directory, 16, false);
+      Store<Customer> fresh = redeployed.createStore("customers", Customer.class);
+      Assert.assertEquals(0, fresh.size());
+      fresh.put(1, customer(1));
+      Assert.assertEquals(length, cold.length());
+      Assert.assertEquals("Bill50", customers.get(50).getFirstName());
+
+      undeployed.close();
+      Assert.assertFalse(cold.exists());
+      redeployed.close();
+      // a closed store frees its name again
+      TieredStoreFactory next = new TieredStoreFactory(directory, 16, false);
+      Assert.assertEquals(0, next.createStore("customers", Customer.class).size());
+      Assert.assertTrue(cold.exists());
+      next.close();
+   }
+
+   @Test
+   public void testImportDoesNotFlushPopularValues() throws Exception
+   {
+      TieredStoreFactory bounded = new TieredStoreFactory(folder.newFolder(), 1000, false);
+      try
+      {
+         TieredStore<Customer> customers = (TieredStore<Customer>) bounded.createStore("customers", Customer.class);
+         for (int id = 1; id <= 50; id++)
+         {
+            customers.put(id, customer(id));
+            for (int i = 0; i < 10; i++)
+            {
+               customers.get(id);
+            }
+         }
+         // a bulk import of values read once, five times what the heap holds
+         for (int id = 51; id <= 5050; id++)
+         {
+            customers.put(id, customer(id));
+         }
+         long misses = customers.stats().getMisses();
+         for (int id = 1; id <= 50; id++)
+         {
+            customers.get(id);
+         }
+         TierStats stats = customers.stats();
+         Assert.assertEquals(misses, stats.getMisses());
+         Assert.assertTrue(stats.getRejections() > 0);
+         Assert.assertEquals(1000, stats.getHotEntries());
+      }
+      finally
+      {
+         bounded.close();
+      }
+   }
+
+   @Test
+   public void testZipfianWorkloadUnderByteCap() throws Exception
+   {
+      int count = 20000;
+      int encoded = Codecs.forType(Customer.class).encode(customer(count)).length;
+      TieredStoreFactory bounded = new TieredStoreFactory(folder.newFolder(), 1000L * encoded, true);
+      try
+      {
+         TieredStore<Customer> customers = (TieredStore<Customer>) bounded.createStore("customers", Customer.class);
+         for (int id = 1; id <= count; id++)
+         {
+            customers.put(id, customer(id));
+         }
+         Zipf zipf = new Zipf(count, 1.0, new Random(42));
+         for (int i = 0; i < 200000; i++)
+         {
+            int id = zipf.next();
+            Assert.assertEquals(id, customers.get(id).getId());
+            if (i % 10000 == 0)
+            {
+               TierStats stats = customers.stats();
+               Assert.assertTrue(stats.getHotWeight() <= stats.getMaxWeight());
+            }
+         }
+         TierStats stats = customers.stats();
+         Assert.assertEquals(count, stats.getHotEntries() + stats.getColdEntries());
+         Assert.assertTrue(stats.getHotEntries() <= 1000 + 1000 / 10);
+         // the 1000 most popular of 20000 ids get 71% of the reads
+         double hitRatio = Double.parseDouble(stats.getHitRatio());
+         Assert.assertTrue("hit ratio " + hitRatio, hitRatio > 0.6);
+      }
+      finally
+      {
+         bounded.close();
+      }
+   }
+
+   /**
+    * Zipfian ranks 1 to n, drawn by inverting the cumulative distribution.
+    */
+   static final class Zipf
+   {
+      private final double[] cumulative;
+      private final Random random;
+
+      Zipf(int n, double exponent, Random random)
+      {
+         this.random = random;
+         cumulative = new double[n];
+         double sum = 0;
+         for (int rank = 1; rank <= n; rank++)
+         {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+         }
+         for (int i = 0; i < n; i++)
+         {
+            cumulative[i] /= sum;
+         }
+      }
+
+      int next()
+      {
+         int index = java.util.Arrays.binarySearch(cumulative, random.nextDouble());
+         return (index >= 0 ? index : -index - 1) + 1;
+      }
+   }
+}
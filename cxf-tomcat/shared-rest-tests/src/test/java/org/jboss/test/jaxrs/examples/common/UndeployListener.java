@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Closes what a deployment registered through {@link #closeOnUndeploy} when it is undeployed, e.g. the store
+ * factories keeping files mapped or the replicators holding sockets and threads, so a redeployment starts
+ * from released resources. The web.xml written by the tests declares it.
+ */
+public class UndeployListener implements ServletContextListener
+{
+   private static final String ATTRIBUTE = UndeployListener.class.getName();
+
+   /**
+    * Registers the closeable with the context of the servlet, does nothing without one.
+    */
+   public static void closeOnUndeploy(ServletConfig config, Closeable closeable)
+   {
+      ServletContext context = config == null ? null : config.getServletContext();
+      if (context != null)
+      {
+         closeables(context).add(closeable);
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private static List<Closeable> closeables(ServletContext context)
+   {
+      synchronized (context)
+      {
+         List<Closeable> closeables = (List<Closeable>) context.getAttribute(ATTRIBUTE);
+         if (closeables == null)
+         {
+            closeables = new CopyOnWriteArrayList<Closeable>();
+            context.setAttribute(ATTRIBUTE, closeables);
+         }
+         return closeables;
+      }
+   }
+
+   public void contextInitialized(ServletContextEvent event)
+   {
+   }
+
+   public void contextDestroyed(ServletContextEvent event)
+   {
+      ServletContext context = event.getServletContext();
+      List<Closeable> closeables = closeables(context);
+      // in the reverse order, e.g. a replicator is closed before the stores it writes to
+      for (int i = closeables.size() - 1; i >= 0; i--)
+      {
+         try
+         {
+            closeables.get(i).close();
+         }
+         catch (IOException e)
+         {
+            context.log("Cannot close " + closeables.get(i), e);
+         }
+      }
+      context.removeAttribute(ATTRIBUTE);
+   }
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+/**
+ * Encodes strings as UTF-8 straight into a byte array, without the intermediate array of
+ * <code>String.getBytes</code>, for the writers that fill buffers of their own.
+ */
+public final class Utf8
+{
+   /** Bytes a char encodes to at most; a surrogate pair takes 4 for its 2 chars. */
+   public static final int MAX_BYTES_PER_CHAR = 3;
+
+   private Utf8()
+   {
+   }
+
+   /**
+    * Returns the number of bytes {@link #encode} writes for the string.
+    */
+   public static int length(String s)
+   {
+      int len = s.length();
+      int bytes = len;
+      for (int i = 0; i < len; i++)
+      {
+         char c = s.charAt(i);
+         if (c >= 0x800)
+         {
+            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+               // 4 bytes for the pair
+               bytes += 2;
+               i++;
+            }
+            else if (!Character.isSurrogate(c))
+            {
+               bytes += 2;
+            }
+         }
+         else if (c >= 0x80)
+         {
+            bytes++;
+         }
+      }
+      return bytes;
+   }
+
+   /**
+    * Encodes the chars from <code>start</code> to <code>end</code> at <code>pos</code> and returns the position
+    * following them; the caller makes room for them.
+    */
+   public static int encode(String s, int start, int end, byte[] buf, int pos)
+   {
+      for (int i = start; i < end; i++)
+      {
+         char c = s.charAt(i);
+         if (c < 0x80)
+         {
+            buf[pos++] = (byte) c;
+         }
+         else if (c < 0x800)
+         {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+         }
+         else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1)))
+         {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buf[pos++] = (byte) (0xF0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+         }
+         else if (Character.isSurrogate(c))
+         {
+            // unpaired surrogate, same replacement String.getBytes("UTF-8") would use
+            buf[pos++] = '?';
+         }
+         else
+         {
+            buf[pos++] = (byte) (0xE0 | (c >> 12));
+            buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+         }
+      }
+      return pos;
+   }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Utf8Test
+{
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   @Test
+   public void testSameBytesAsGetBytes()
+   {
+      for (String s : new String[] {"", "Bill Burke", "Zürichstraße €", "😀 smile",
+            "unpaired \ud83d and \ude00", "trailing \ud83d"})
+      {
+         byte[] expected = s.getBytes(UTF_8);
+         Assert.assertEquals(s, expected.length, Utf8.length(s));
+         byte[] buf = new byte[s.length() * Utf8.MAX_BYTES_PER_CHAR + 2];
+         buf[0] = 'x';
+         int end = Utf8.encode(s, 0, s.length(), buf, 1);
+         Assert.assertEquals(s, expected.length + 1, end);
+         Assert.assertArrayEquals(s, expected, Arrays.copyOfRange(buf, 1, end));
+      }
+   }
+
+   @Test
+   public void testEncodesARange()
+   {
+      byte[] buf = new byte[16];
+      int end = Utf8.encode("<é>", 1, 2, buf, 0);
+      Assert.assertArrayEquals("é".getBytes(UTF_8), Arrays.copyOf(buf, end));
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+/**
+ * An immutable snapshot of a value with the version it got when it was stored. Stored in place of the bare value,
+ * it turns {@link Store#replace(int, Object, Object)} into a compare on the version: a copy-on-write update
+ * swaps in {@link #next(Object)} of the snapshot it read, which fails once any other update stored a newer one.
+ * The version only grows, so it can serve as an entity tag.
+ *
+ * The value itself must not be modified once wrapped.
+ */
+public final class Versioned<V>
+{
+   private final V value;
+   private final long version;
+
+   private Versioned(V value, long version)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException();
+      }
+      this.value = value;
+      this.version = version;
+   }
+
+   public static <V> Versioned<V> initial(V value)
+   {
+      return new Versioned<V>(value, 1);
+   }
+
+   /**
+    * Restores a stored snapshot.
+    */
+   static <V> Versioned<V> of(V value, long version)
+   {
+      return new Versioned<V>(value, version);
+   }
+
+   /**
+    * The class to create a store of versioned values with, see {@link StoreFactory#createStore(String, Class)}.
+    */
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   public static <V> Class<Versioned<V>> type()
+   {
+      return (Class) Versioned.class;
+   }
+
+   public V getValue()
+   {
+      return value;
+   }
+
+   public long getVersion()
+   {
+      return version;
+   }
+
+   /**
+    * Returns the snapshot that succeeds this one.
+    */
+   public Versioned<V> next(V value)
+   {
+      return new Versioned<V>(value, version + 1);
+   }
+}
@@ -0,0 +1,496 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque entries, kept as numbered segment files <code>&lt;name&gt;.&lt;segment&gt;.log</code>.
+ * An entry is its length and CRC-32 ahead of its bytes; replay stops at the first entry that is short or fails
+ * its checksum, which is where a crash cut the last write, and the segment is truncated there.
+ *
+ * {@link #append(byte[])} returns a ticket that {@link #await(long)} blocks on until the entry is as durable as
+ * the {@link Sync} policy makes it. With {@link Sync#GROUP} and {@link Sync#INTERVAL} a writer thread drains
+ * the entries appended in the meantime into one write, so concurrent requests share a single force.
+ * {@link #roll()} starts a new segment, after which the older ones can be deleted once a snapshot covers them.
+ */
+public class WriteAheadLog implements Closeable
+{
+   public enum Sync
+   {
+      /** Every append writes and forces the log before it returns. */
+      REQUEST,
+      /** Appends wait for the writer thread, which forces once for all the entries of a batch. */
+      GROUP,
+      /** Appends return at once, the writer thread forces at most once per interval. */
+      INTERVAL
+   }
+
+   public interface Replay
+   {
+      void entry(ByteBuffer entry) throws IOException;
+   }
+
+   private static final int ENTRY_HEADER = 8;
+
+   private final File directory;
+   private final String name;
+   private final Sync sync;
+   private final long intervalNanos;
+   /** Held while writing, forcing or switching segments; taken before the monitor of the log. */
+   private final Object io = new Object();
+   private final Thread writer;
+   private FileChannel channel;
+   private long segment;
+   private List<byte[]> pending = new ArrayList<byte[]>();
+   private long appended;
+   private long forced;
+   private IOException failure;
+   private boolean closed;
+
+   /**
+    * Opens the log, replaying the entries of the segments from <code>firstSegment</code> on, in order, and
+    * deleting the older segments.
+    */
+   public WriteAheadLog(File directory, String name, Sync sync, long interval, TimeUnit unit, long firstSegment,
+         Replay replay) throws IOException
+   {
+      this.directory = directory;
+      this.name = name;
+      this.sync = sync;
+      this.intervalNanos = unit.toNanos(interval);
+      segment = firstSegment;
+      for (long s : segments())
+      {
+         File file = segmentFile(s);
+         if (s < firstSegment)
+         {
+            delete(file);
+            continue;
+         }
+         replay(file, replay);
+         segment = s;
+      }
+      channel = open(segment);
+      if (sync == Sync.REQUEST)
+      {
+         writer = null;
+      }
+      else
+      {
+         writer = new Thread(new Runnable()
+         {
+            public void run()
+            {
+               writeLoop();
+            }
+         }, "wal-" + name);
+         writer.setDaemon(true);
+         writer.start();
+      }
+   }
+
+   public Sync getSync()
+   {
+      return sync;
+   }
+
+   /**
+    * The segment new entries go to.
+    */
+   public long getSegment()
+   {
+      synchronized (io)
+      {
+         return segment;
+      }
+   }
+
+   /**
+    * Appends the entry and returns the ticket to {@link #await(long)} for. Entries are logged in the order of
+    * the calls, so callers that need their entries ordered like their updates append under the same lock.
+    */
+   public long append(byte[] entry) throws IOException
+   {
+      if (sync == Sync.REQUEST)
+      {
+         synchronized (io)
+         {
+            synchronized (this)
+            {
+               check();
+            }
+            write(Arrays.asList(entry));
+            channel.force(false);
+            synchronized (this)
+            {
+               forced = ++appended;
+               return appended;
+            }
+         }
+      }
+      synchronized (this)
+      {
+         check();
+         pending.add(entry);
+         notifyAll();
+         return ++appended;
+      }
+   }
+
+   /**
+    * Blocks until the entry of the ticket is durable; returns at once under {@link Sync#INTERVAL}.
+    */
+   public void await(long ticket) throws IOException
+   {
+      if (sync != Sync.GROUP)
+      {
+         return;
+      }
+      synchronized (this)
+      {
+         boolean interrupted = false;
+         while (forced < ticket)
+         {
+            // entries appended before a close are still forced by it, only a failure ends the wait early
+            if (failure != null)
+            {
+               throw new IOException("Log " + name + " failed", failure);
+            }
+            try
+            {
+               wait();
+            }
+            catch (InterruptedException e)
+            {
+               interrupted = true;
+            }
+         }
+         if (interrupted)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * Forces the pending entries to the current segment and starts the next one, whose number is returned.
+    */
+   public long roll() throws IOException
+   {
+      synchronized (io)
+      {
+         flush();
+         channel.close();
+         segment++;
+         channel = open(segment);
+         return segment;
+      }
+   }
+
+   /**
+    * Deletes the segments before the given one.
+    */
+   public void deleteBefore(long firstSegment) throws IOException
+   {
+      for (long s : segments())
+      {
+         if (s < firstSegment)
+         {
+            delete(segmentFile(s));
+         }
+      }
+   }
+
+   public void close() throws IOException
+   {
+      synchronized (this)
+      {
+         if (closed)
+         {
+            return;
+         }
+         closed = true;
+         notifyAll();
+      }
+      if (writer != null)
+      {
+         try
+         {
+            writer.join();
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+      synchronized (io)
+      {
+         try
+         {
+            flush();
+         }
+         finally
+         {
+            channel.close();
+         }
+      }
+   }
+
+   private void writeLoop()
+   {
+      long lastForce = System.nanoTime();
+      while (true)
+      {
+         synchronized (this)
+         {
+            if (closed)
+            {
+               return;
+            }
+            if (pending.isEmpty())
+            {
+               try
+               {
+                  // spurious and early wake ups only cost an empty turn
+                  if (sync == Sync.INTERVAL)
+                  {
+                     TimeUnit.NANOSECONDS.timedWait(this, intervalNanos);
+                  }
+                  else
+                  {
+                     wait();
+                  }
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+            }
+         }
+         boolean force = sync == Sync.GROUP || System.nanoTime() - lastForce >= intervalNanos;
+         try
+         {
+            synchronized (io)
+            {
+               List<byte[]> batch;
+               long last;
+               synchronized (this)
+               {
+                  batch = pending;
+                  pending = new ArrayList<byte[]>();
+                  last = appended;
+                  if (!force || last == forced)
+                  {
+                     force = false;
+                  }
+               }
+               write(batch);
+               if (force)
+               {
+                  channel.force(false);
+                  lastForce = System.nanoTime();
+                  synchronized (this)
+                  {
+                     forced = Math.max(forced, last);
+                     notifyAll();
+                  }
+               }
+            }
+         }
+         catch (IOException e)
+         {
+            synchronized (this)
+            {
+               failure = e;
+               notifyAll();
+            }
+            return;
+         }
+      }
+   }
+
+   /**
+    * Writes and forces what is pending; the caller holds the io lock.
+    */
+   private void flush() throws IOException
+   {
+      List<byte[]> batch;
+      long last;
+      synchronized (this)
+      {
+         batch = pending;
+         pending = new ArrayList<byte[]>();
+         last = appended;
+      }
+      write(batch);
+      channel.force(false);
+      synchronized (this)
+      {
+         forced = Math.max(forced, last);
+         notifyAll();
+      }
+   }
+
+   private void write(List<byte[]> batch) throws IOException
+   {
+      if (batch.isEmpty())
+      {
+         return;
+      }
+      int length = 0;
+      for (byte[] entry : batch)
+      {
+         length += ENTRY_HEADER + entry.length;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      CRC32 crc = new CRC32();
+      for (byte[] entry : batch)
+      {
+         crc.reset();
+         crc.update(entry, 0, entry.length);
+         buffer.putInt(entry.length);
+         buffer.putInt((int) crc.getValue());
+         buffer.put(entry);
+      }
+      buffer.flip();
+      while (buffer.hasRemaining())
+      {
+         channel.write(buffer);
+      }
+   }
+
+   private void check() throws IOException
+   {
+      if (failure != null)
+      {
+         throw new IOException("Log " + name + " failed", failure);
+      }
+      if (closed)
+      {
+         throw new IOException("Log " + name + " is closed");
+      }
+   }
+
+   private void replay(File file, Replay replay) throws IOException
+   {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try
+      {
+         FileChannel in = raf.getChannel();
+         ByteBuffer log = ByteBuffer.allocate((int) in.size());
+         while (log.hasRemaining())
+         {
+            if (in.read(log) < 0)
+            {
+               break;
+            }
+         }
+         log.flip();
+         CRC32 crc = new CRC32();
+         byte[] entry = new byte[256];
+         int good = 0;
+         while (log.remaining() >= ENTRY_HEADER)
+         {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length < 0 || length > log.remaining())
+            {
+               break;
+            }
+            if (entry.length < length)
+            {
+               entry = new byte[Math.max(length, entry.length * 2)];
+            }
+            log.get(entry, 0, length);
+            crc.reset();
+            crc.update(entry, 0, length);
+            if ((int) crc.getValue() != checksum)
+            {
+               break;
+            }
+            replay.entry(ByteBuffer.wrap(entry, 0, length).slice());
+            good = log.position();
+         }
+         if (good < in.size())
+         {
+            // the torn tail of the last write before a crash
+            in.truncate(good);
+         }
+      }
+      finally
+      {
+         raf.close();
+      }
+   }
+
+   private FileChannel open(long s) throws IOException
+   {
+      FileChannel c = new RandomAccessFile(segmentFile(s), "rw").getChannel();
+      c.position(c.size());
+      return c;
+   }
+
+   private File segmentFile(long s)
+   {
+      return new File(directory, name + "." + s + ".log");
+   }
+
+   private long[] segments()
+   {
+      final String prefix = name + ".";
+      String[] files = directory.list(new FilenameFilter()
+      {
+         public boolean accept(File dir, String file)
+         {
+            return file.startsWith(prefix) && file.endsWith(".log")
+                  && file.substring(prefix.length(), file.length() - 4).matches("[0-9]+");
+         }
+      });
+      long[] segments = new long[files == null ? 0 : files.length];
+      for (int i = 0; i < segments.length; i++)
+      {
+         segments[i] = Long.parseLong(files[i].substring(prefix.length(), files[i].length() - 4));
+      }
+      Arrays.sort(segments);
+      return segments;
+   }
+
+   private static void delete(File file) throws IOException
+   {
+      if (file.exists() && !file.delete())
+      {
+         throw new IOException("Cannot delete " + file);
+      }
+   }
+}
@@ -56,8 +56,22 @@ public class CustomerResource20Test
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex03_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
                .addClass(org.jboss.test.jaxrs.examples.ex03_1.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex03_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
 //               .addAsLibrary(JBossWSTestHelper.resolveDependency("org.apache.cxf:cxf-rt-frontend-jaxrs:" + System.getProperty("cxf.version")))
 //               .addAsLibrary(JBossWSTestHelper.resolveDependency("org.apache.cxf:cxf-core:" + System.getProperty("cxf.version")))
 //               .addAsLibrary(JBossWSTestHelper.resolveDependency("org.apache.cxf:cxf-rt-transports-http:" + System.getProperty("cxf.version")))
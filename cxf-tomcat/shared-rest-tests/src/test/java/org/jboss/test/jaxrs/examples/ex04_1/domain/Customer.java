@@ -21,7 +21,9 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_1.domain;
 
-public class Customer
+import org.jboss.test.jaxrs.examples.common.CustomerData;
+
+public class Customer implements CustomerData
 {
    private int id;
 
@@ -55,8 +55,25 @@ public class CustomerResource20Test
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex04_2.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_2.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex04_2.services.ShoppingApplication.class);
+               .addClass(org.jboss.test.jaxrs.examples.ex04_2.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IndexedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.AttributeIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.NameIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex04_2.services.ShoppingApplication", "/services/*");
       return archive;
    }
@@ -88,6 +105,12 @@ public class CustomerResource20Test
          Assert.assertTrue(customer.contains("Bill"));
          customer = client.target(baseURL + "services/customers/Bill-Burke").request().get(String.class);
          Assert.assertTrue(customer.contains("Bill"));
+         String customers = client.target(baseURL + "services/customers/Bi*-Burke").request().get(String.class);
+         Assert.assertTrue(customers.startsWith("<customers>"));
+         Assert.assertTrue(customers.contains("Bill"));
+         response = client.target(baseURL + "services/customers/Joe-Burke").request().get();
+         Assert.assertEquals(404, response.getStatus());
+         response.close();
       } finally {
          client.close();
       }
@@ -21,41 +21,39 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_2.services;
 
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlReader;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlWriter;
+import org.jboss.test.jaxrs.examples.common.IndexedStore;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex04_2.domain.Customer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
+   private final IndexedStore<Customer> customerDB;
 
-   private AtomicInteger idCounter = new AtomicInteger();
-
-   public CustomerResource()
+   public CustomerResource(Store<Customer> customerDB)
    {
+      this.customerDB = IndexedStore.byName(customerDB);
    }
 
    @POST
@@ -63,7 +61,7 @@ public class CustomerResource
    public Response createCustomer(InputStream is)
    {
       Customer customer = readCustomer(is);
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
@@ -90,24 +88,42 @@ public class CustomerResource
    }
 
    @GET
-   @Path("{first : [a-zA-Z]+}-{last:[a-zA-Z]+}")
+   @Path("{first : [a-zA-Z]+\\*?}-{last : [a-zA-Z]+\\*?}")
    @Produces("application/xml")
-   public StreamingOutput getCustomerFirstLast(@PathParam("first") String first, @PathParam("last") String last)
+   public StreamingOutput getCustomerFirstLast(@PathParam("first") String first, @PathParam("last") String last,
+                                               @QueryParam("size") @DefaultValue("10") int size)
    {
-      Customer found = null;
-      for (Customer cust : customerDB.values())
+      if (first.endsWith("*") || last.endsWith("*"))
       {
-         if (cust.getFirstName().equals(first) && cust.getLastName().equals(last))
+         // a prefix query, the matching customers sorted by last and first name
+         final List<Customer> customers = customerDB.findByName(first, last, size);
+         return new StreamingOutput()
          {
-            found = cust;
-            break;
-         }
+            public void write(OutputStream outputStream) throws IOException, WebApplicationException
+            {
+               CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+               try
+               {
+                  writer.startCustomers();
+                  for (Customer customer : customers)
+                  {
+                     writer.writeCustomer(customer, true, 3);
+                  }
+                  writer.endCustomers();
+                  writer.flushTo(outputStream);
+               }
+               finally
+               {
+                  writer.release();
+               }
+            }
+         };
       }
-      if (found == null)
+      final Customer customer = customerDB.getByName(first, last);
+      if (customer == null)
       {
          throw new WebApplicationException(Response.Status.NOT_FOUND);
       }
-      final Customer customer = found;
       return new StreamingOutput()
       {
          public void write(OutputStream outputStream) throws IOException, WebApplicationException
@@ -123,76 +139,34 @@ public class CustomerResource
    public void updateCustomer(@PathParam("id") int id, InputStream is)
    {
       Customer update = readCustomer(is);
-      Customer current = customerDB.get(id);
-      if (current == null)
-         throw new WebApplicationException(Response.Status.NOT_FOUND);
-
-      current.setFirstName(update.getFirstName());
-      current.setLastName(update.getLastName());
-      current.setStreet(update.getStreet());
-      current.setState(update.getState());
-      current.setZip(update.getZip());
-      current.setCountry(update.getCountry());
+      Customer current;
+      Customer updated;
+      do
+      {
+         current = customerDB.get(id);
+         if (current == null)
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+         updated = CustomerCopy.of(current);
+         updated.setFirstName(update.getFirstName());
+         updated.setLastName(update.getLastName());
+         updated.setStreet(update.getStreet());
+         updated.setState(update.getState());
+         updated.setZip(update.getZip());
+         updated.setCountry(update.getCountry());
+      }
+      while (!customerDB.replace(id, current, updated));
    }
 
    protected void outputCustomer(OutputStream os, Customer cust) throws IOException
    {
-      PrintStream writer = new PrintStream(os);
-      writer.println("<customer id=\"" + cust.getId() + "\">");
-      writer.println("   <first-name>" + cust.getFirstName() + "</first-name>");
-      writer.println("   <last-name>" + cust.getLastName() + "</last-name>");
-      writer.println("   <street>" + cust.getStreet() + "</street>");
-      writer.println("   <city>" + cust.getCity() + "</city>");
-      writer.println("   <state>" + cust.getState() + "</state>");
-      writer.println("   <zip>" + cust.getZip() + "</zip>");
-      writer.println("   <country>" + cust.getCountry() + "</country>");
-      writer.println("</customer>");
+      CustomerXmlWriter.write(os, cust, true);
    }
 
    protected Customer readCustomer(InputStream is)
    {
       try
       {
-         DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-         Document doc = builder.parse(is);
-         Element root = doc.getDocumentElement();
-         Customer cust = new Customer();
-         if (root.getAttribute("id") != null && !root.getAttribute("id").trim().equals(""))
-            cust.setId(Integer.valueOf(root.getAttribute("id")));
-         NodeList nodes = root.getChildNodes();
-         for (int i = 0; i < nodes.getLength(); i++)
-         {
-            Element element = (Element) nodes.item(i);
-            if (element.getTagName().equals("first-name"))
-            {
-               cust.setFirstName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("last-name"))
-            {
-               cust.setLastName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("street"))
-            {
-               cust.setStreet(element.getTextContent());
-            }
-            else if (element.getTagName().equals("city"))
-            {
-               cust.setCity(element.getTextContent());
-            }
-            else if (element.getTagName().equals("state"))
-            {
-               cust.setState(element.getTextContent());
-            }
-            else if (element.getTagName().equals("zip"))
-            {
-               cust.setZip(element.getTextContent());
-            }
-            else if (element.getTagName().equals("country"))
-            {
-               cust.setCountry(element.getTextContent());
-            }
-         }
-         return cust;
+         return CustomerXmlReader.read(is, new Customer());
       }
       catch (Exception e)
       {
@@ -57,8 +57,27 @@ public class CustomerResource20Test
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IndexedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.AttributeIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.NameIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ShardedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.FirstLastCustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.CustomerDatabaseResource.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex04_3.services.ShoppingApplication", "/services/*");
@@ -129,4 +148,40 @@ public class CustomerResource20Test
       String customer = client.target(baseURL + "services/customers/northamerica-db/Bill-Burke").request().get(String.class);
       Assert.assertTrue(customer.contains("Bill"));
    }
+
+   @Test
+   @RunAsClient
+   public void testAddShards() throws Exception
+   {
+      String xml = "<customer>"
+              + "<first-name>Monica</first-name>"
+              + "<last-name>Burke</last-name>"
+              + "<street>263 Clarendon Street</street>"
+              + "<city>Boston</city>"
+              + "<state>MA</state>"
+              + "<zip>02116</zip>"
+              + "<country>USA</country>"
+              + "</customer>";
+
+      Response response = client.target(baseURL + "services/customers/northamerica-db")
+              .request().post(Entity.xml(xml));
+      Assert.assertEquals(201, response.getStatus());
+      response.close();
+
+      // the customers are moved in the background, they are found while they are
+      response = client.target(baseURL + "services/customers/northamerica-db/shards")
+              .queryParam("count", "2").request().post(null);
+      Assert.assertEquals(202, response.getStatus());
+      response.close();
+
+      String customer = client.target(baseURL + "services/customers/northamerica-db/Monica-Burke").request().get(String.class);
+      Assert.assertTrue(customer.contains("Monica"));
+      String customers = client.target(baseURL + "services/customers/northamerica-db/Mo*-Burke").request().get(String.class);
+      Assert.assertTrue(customers.startsWith("<customers>"));
+      Assert.assertTrue(customers.contains("Monica"));
+
+      response = client.target(baseURL + "services/customers/asia-db/shards").request().post(null);
+      Assert.assertEquals(404, response.getStatus());
+      response.close();
+   }
 }
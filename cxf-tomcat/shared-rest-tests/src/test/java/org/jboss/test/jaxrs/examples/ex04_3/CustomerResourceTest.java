@@ -54,8 +54,27 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IndexedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.AttributeIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.NameIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ShardedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.FirstLastCustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex04_3.services.CustomerDatabaseResource.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex04_3.services.ShoppingApplication", "/services/*");
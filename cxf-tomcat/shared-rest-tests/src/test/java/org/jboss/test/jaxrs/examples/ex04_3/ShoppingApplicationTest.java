@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex04_3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.ServletConfig;
+import javax.ws.rs.core.Response;
+
+import org.jboss.test.jaxrs.examples.common.IdAllocator;
+import org.jboss.test.jaxrs.examples.ex04_3.services.CustomerDatabaseResource;
+import org.jboss.test.jaxrs.examples.ex04_3.services.CustomerResource;
+import org.jboss.test.jaxrs.examples.ex04_3.services.ShoppingApplication;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The sharded regions of an instance with a node id hand out the ids of its range.
+ */
+public class ShoppingApplicationTest
+{
+   @Test
+   public void testCustomersCreatedInTheRangeOfTheNode() throws Exception
+   {
+      ServletConfig config = (ServletConfig) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {ServletConfig.class}, new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  boolean node = "getInitParameter".equals(method.getName()) && IdAllocator.NODE_PARAM.equals(args[0]);
+                  return node ? "3" : null;
+               }
+            });
+      CustomerDatabaseResource databases = null;
+      for (Object singleton : new ShoppingApplication(config).getSingletons())
+      {
+         if (singleton instanceof CustomerDatabaseResource)
+         {
+            databases = (CustomerDatabaseResource) singleton;
+         }
+      }
+      CustomerResource europe = (CustomerResource) databases.getDatabase("europe");
+      String customer = "<customer><first-name>Sacha</first-name><last-name>Labourey</last-name>"
+            + "<street>Le Swiss Street</street><city>Neuchatel</city><state>French</state><zip>211222</zip>"
+            + "<country>Switzerland</country></customer>";
+      Response response = europe.createCustomer(new ByteArrayInputStream(customer.getBytes("UTF-8")));
+      int id = (3 << 27) + 1;
+      Assert.assertEquals("/customers/" + id, response.getLocation().toString());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      europe.getCustomer(id).write(out);
+      Assert.assertTrue(out.toString("UTF-8").contains("Sacha"));
+   }
+}
@@ -21,8 +21,19 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_3.services;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.jboss.test.jaxrs.examples.common.ShardedStore;
+import org.jboss.test.jaxrs.examples.ex04_3.domain.Customer;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -31,20 +42,54 @@ import javax.ws.rs.PathParam;
 public class CustomerDatabaseResource
 {
 
-   protected CustomerResource europe = new CustomerResource();
-   protected FirstLastCustomerResource northamerica = new FirstLastCustomerResource();
+   protected CustomerResource europe;
+   protected FirstLastCustomerResource northamerica;
+   // each region is a sharded store, europe placed by id and northamerica by name
+   protected final Map<String, Object> databases = new LinkedHashMap<String, Object>();
+   protected final Map<String, ShardedStore<Customer>> shards = new LinkedHashMap<String, ShardedStore<Customer>>();
+
+   public CustomerDatabaseResource(ShardedStore<Customer> europeDB, ShardedStore<Customer> northamericaDB)
+   {
+      europe = new CustomerResource(europeDB);
+      northamerica = new FirstLastCustomerResource(northamericaDB);
+      databases.put("europe", europe);
+      databases.put("northamerica", northamerica);
+      shards.put("europe", europeDB);
+      shards.put("northamerica", northamericaDB);
+   }
 
    @Path("{database}-db")
    public Object getDatabase(@PathParam("database") String db)
    {
-      if (db.equals("europe"))
+      return databases.get(db);
+   }
+
+   /**
+    * Adds shards to a region; its customers are moved to them in the background, so the request is accepted
+    * before they are.
+    */
+   @POST
+   @Path("{database}-db/shards")
+   public Response addShards(@PathParam("database") String db, @QueryParam("count") @DefaultValue("1") int count)
+   {
+      ShardedStore<Customer> store = shards.get(db);
+      if (store == null)
+      {
+         throw new WebApplicationException(Response.Status.NOT_FOUND);
+      }
+      if (count < 1)
+      {
+         throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      try
       {
-         return europe;
+         store.addShards(count);
       }
-      else if (db.equals("northamerica"))
+      catch (IllegalStateException e)
       {
-         return northamerica;
+         // the previous rebalance is still running
+         throw new WebApplicationException(e, Response.Status.CONFLICT);
       }
-      else return null;
+      return Response.accepted().build();
    }
 }
\ No newline at end of file
@@ -21,10 +21,11 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_3.services;
 
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlReader;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlWriter;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex04_3.domain.Customer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -36,28 +37,16 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();;
+   private final Store<Customer> customerDB;
 
-   private static AtomicInteger idCounter = new AtomicInteger();
-
-   public CustomerResource()
-   {
-   }
-
-   public CustomerResource(Map<Integer, Customer> customerDB)
+   public CustomerResource(Store<Customer> customerDB)
    {
       this.customerDB = customerDB;
    }
@@ -67,7 +56,7 @@ public class CustomerResource
    public Response createCustomer(InputStream is)
    {
       Customer customer = readCustomer(is);
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
@@ -99,76 +88,34 @@ public class CustomerResource
    public void updateCustomer(@PathParam("id") int id, InputStream is)
    {
       Customer update = readCustomer(is);
-      Customer current = customerDB.get(id);
-      if (current == null)
-         throw new WebApplicationException(Response.Status.NOT_FOUND);
-
-      current.setFirstName(update.getFirstName());
-      current.setLastName(update.getLastName());
-      current.setStreet(update.getStreet());
-      current.setState(update.getState());
-      current.setZip(update.getZip());
-      current.setCountry(update.getCountry());
+      Customer current;
+      Customer updated;
+      do
+      {
+         current = customerDB.get(id);
+         if (current == null)
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+         updated = CustomerCopy.of(current);
+         updated.setFirstName(update.getFirstName());
+         updated.setLastName(update.getLastName());
+         updated.setStreet(update.getStreet());
+         updated.setState(update.getState());
+         updated.setZip(update.getZip());
+         updated.setCountry(update.getCountry());
+      }
+      while (!customerDB.replace(id, current, updated));
    }
 
    protected void outputCustomer(OutputStream os, Customer cust) throws IOException
    {
-      PrintStream writer = new PrintStream(os);
-      writer.println("<customer id=\"" + cust.getId() + "\">");
-      writer.println("   <first-name>" + cust.getFirstName() + "</first-name>");
-      writer.println("   <last-name>" + cust.getLastName() + "</last-name>");
-      writer.println("   <street>" + cust.getStreet() + "</street>");
-      writer.println("   <city>" + cust.getCity() + "</city>");
-      writer.println("   <state>" + cust.getState() + "</state>");
-      writer.println("   <zip>" + cust.getZip() + "</zip>");
-      writer.println("   <country>" + cust.getCountry() + "</country>");
-      writer.println("</customer>");
+      CustomerXmlWriter.write(os, cust, true);
    }
 
    protected Customer readCustomer(InputStream is)
    {
       try
       {
-         DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-         Document doc = builder.parse(is);
-         Element root = doc.getDocumentElement();
-         Customer cust = new Customer();
-         if (root.getAttribute("id") != null && !root.getAttribute("id").trim().equals(""))
-            cust.setId(Integer.valueOf(root.getAttribute("id")));
-         NodeList nodes = root.getChildNodes();
-         for (int i = 0; i < nodes.getLength(); i++)
-         {
-            Element element = (Element) nodes.item(i);
-            if (element.getTagName().equals("first-name"))
-            {
-               cust.setFirstName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("last-name"))
-            {
-               cust.setLastName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("street"))
-            {
-               cust.setStreet(element.getTextContent());
-            }
-            else if (element.getTagName().equals("city"))
-            {
-               cust.setCity(element.getTextContent());
-            }
-            else if (element.getTagName().equals("state"))
-            {
-               cust.setState(element.getTextContent());
-            }
-            else if (element.getTagName().equals("zip"))
-            {
-               cust.setZip(element.getTextContent());
-            }
-            else if (element.getTagName().equals("country"))
-            {
-               cust.setCountry(element.getTextContent());
-            }
-         }
-         return cust;
+         return CustomerXmlReader.read(is, new Customer());
       }
       catch (Exception e)
       {
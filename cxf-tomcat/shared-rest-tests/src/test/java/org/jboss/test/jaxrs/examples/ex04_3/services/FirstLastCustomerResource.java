@@ -21,44 +21,118 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_3.services;
 
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlReader;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlWriter;
+import org.jboss.test.jaxrs.examples.common.IndexedStore;
+import org.jboss.test.jaxrs.examples.common.NameIndex;
+import org.jboss.test.jaxrs.examples.common.ShardedStore;
+import org.jboss.test.jaxrs.examples.common.Store;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
 import org.jboss.test.jaxrs.examples.ex04_3.domain.Customer;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  */
 public class FirstLastCustomerResource
 {
-   private Map<String, Customer> customerDB = new ConcurrentHashMap<String, Customer>();
+   private static final ShardedStore.Router<Customer> BY_NAME = new ShardedStore.Router<Customer>()
+   {
+      public int hashOf(Customer customer)
+      {
+         return hash(customer.getFirstName(), customer.getLastName());
+      }
+   };
+
+   private static final Comparator<Customer> NAME_ORDER = new Comparator<Customer>()
+   {
+      public int compare(Customer a, Customer b)
+      {
+         int c = a.getLastName().compareTo(b.getLastName());
+         if (c == 0)
+         {
+            c = a.getFirstName().compareTo(b.getFirstName());
+         }
+         return c != 0 ? c : (a.getId() < b.getId() ? -1 : (a.getId() == b.getId() ? 0 : 1));
+      }
+   };
+
+   private final ShardedStore<Customer> customerDB;
+
+   public FirstLastCustomerResource(ShardedStore<Customer> customerDB)
+   {
+      this.customerDB = customerDB;
+   }
+
+   /**
+    * Shards of a region placed by customer name, each indexing the names it holds.
+    */
+   public static ShardedStore<Customer> shards(StoreFactory stores, String region, int count)
+   {
+      final ShardedStore.Shards<Customer> named = ShardedStore.of(stores, region, Customer.class);
+      return new ShardedStore<Customer>(new ShardedStore.Shards<Customer>()
+      {
+         public Store<Customer> createShard(int index)
+         {
+            return IndexedStore.byName(named.createShard(index));
+         }
+      }, BY_NAME, count, ShardedStore.count(stores, region));
+   }
 
    @GET
    @Path("{first}-{last}")
    @Produces("application/xml")
-   public StreamingOutput getCustomer(@PathParam("first") String firstName, @PathParam("last") String lastName)
+   public StreamingOutput getCustomer(@PathParam("first") String firstName, @PathParam("last") String lastName,
+                                      @QueryParam("size") @DefaultValue("10") int size)
    {
-      final Customer customer = customerDB.get(firstName + "-" + lastName);
+      if (firstName.endsWith("*") || lastName.endsWith("*"))
+      {
+         // a prefix query, asked of every shard and merged by last and first name
+         final List<Customer> customers = findByName(firstName, lastName, size);
+         return new StreamingOutput()
+         {
+            public void write(OutputStream outputStream) throws IOException, WebApplicationException
+            {
+               CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+               try
+               {
+                  writer.startCustomers();
+                  for (Customer customer : customers)
+                  {
+                     writer.writeCustomer(customer, false, 3);
+                  }
+                  writer.endCustomers();
+                  writer.flushTo(outputStream);
+               }
+               finally
+               {
+                  writer.release();
+               }
+            }
+         };
+      }
+      final Customer customer = getByName(firstName, lastName);
       if (customer == null)
       {
          throw new WebApplicationException(Response.Status.NOT_FOUND);
@@ -78,16 +152,23 @@ public class FirstLastCustomerResource
    public void updateCustomer(@PathParam("first") String firstName, @PathParam("last") String lastName, InputStream is)
    {
       Customer update = readCustomer(is);
-      Customer current = customerDB.get(firstName + "-" + lastName);
-      if (current == null)
-         throw new WebApplicationException(Response.Status.NOT_FOUND);
-
-      current.setFirstName(update.getFirstName());
-      current.setLastName(update.getLastName());
-      current.setStreet(update.getStreet());
-      current.setState(update.getState());
-      current.setZip(update.getZip());
-      current.setCountry(update.getCountry());
+      Customer current;
+      Customer updated;
+      do
+      {
+         current = getByName(firstName, lastName);
+         if (current == null)
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+         // a rename moves the customer to its new name in the index
+         updated = CustomerCopy.of(current);
+         updated.setFirstName(update.getFirstName());
+         updated.setLastName(update.getLastName());
+         updated.setStreet(update.getStreet());
+         updated.setState(update.getState());
+         updated.setZip(update.getZip());
+         updated.setCountry(update.getCountry());
+      }
+      while (!customerDB.replace(current.getId(), current, updated));
    }
 
    @POST
@@ -95,69 +176,70 @@ public class FirstLastCustomerResource
    public Response createCustomer(InputStream is)
    {
       Customer customer = readCustomer(is);
+      // the name is the key of this resource, a customer posted again under it replaces the previous one
+      Customer previous = getByName(customer.getFirstName(), customer.getLastName());
+      customer.setId(previous != null ? previous.getId() : customerDB.nextId());
+      customerDB.put(customer.getId(), customer);
       String index = customer.getFirstName() + "-" + customer.getLastName();
-      customerDB.put(index, customer);
       System.out.println("Created customer " + index);
       return Response.created(URI.create("/customers/" + index)).build();
 
    }
 
+   /**
+    * Reads the shard the name hashes to.
+    */
+   protected Customer getByName(final String firstName, final String lastName)
+   {
+      return customerDB.read(hash(firstName, lastName), new ShardedStore.Read<Customer, Customer>()
+      {
+         public Customer read(Store<Customer> shard)
+         {
+            return ((IndexedStore<Customer>) shard).getByName(firstName, lastName);
+         }
+      });
+   }
+
+   protected List<Customer> findByName(final String firstName, final String lastName, final int size)
+   {
+      List<Customer> customers = new ArrayList<Customer>();
+      for (List<Customer> found : customerDB.readAll(new ShardedStore.Read<Customer, List<Customer>>()
+      {
+         public List<Customer> read(Store<Customer> shard)
+         {
+            return ((IndexedStore<Customer>) shard).findByName(firstName, lastName, size);
+         }
+      }))
+      {
+         customers.addAll(found);
+      }
+      Collections.sort(customers, NAME_ORDER);
+      // a customer being moved to another shard may have been found on both
+      for (int i = customers.size() - 1; i > 0; i--)
+      {
+         if (customers.get(i).getId() == customers.get(i - 1).getId())
+         {
+            customers.remove(i);
+         }
+      }
+      return customers.size() > size ? customers.subList(0, size) : customers;
+   }
+
+   private static int hash(String firstName, String lastName)
+   {
+      return NameIndex.hash(firstName == null ? "" : firstName, lastName == null ? "" : lastName);
+   }
+
    protected void outputCustomer(OutputStream os, Customer cust) throws IOException
    {
-      PrintStream writer = new PrintStream(os);
-      writer.println("<customer>");
-      writer.println("   <first-name>" + cust.getFirstName() + "</first-name>");
-      writer.println("   <last-name>" + cust.getLastName() + "</last-name>");
-      writer.println("   <street>" + cust.getStreet() + "</street>");
-      writer.println("   <city>" + cust.getCity() + "</city>");
-      writer.println("   <state>" + cust.getState() + "</state>");
-      writer.println("   <zip>" + cust.getZip() + "</zip>");
-      writer.println("   <country>" + cust.getCountry() + "</country>");
-      writer.println("</customer>");
+      CustomerXmlWriter.write(os, cust, false);
    }
 
    protected Customer readCustomer(InputStream is)
    {
       try
       {
-         DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-         Document doc = builder.parse(is);
-         Element root = doc.getDocumentElement();
-         Customer cust = new Customer();
-         NodeList nodes = root.getChildNodes();
-         for (int i = 0; i < nodes.getLength(); i++)
-         {
-            Element element = (Element) nodes.item(i);
-            if (element.getTagName().equals("first-name"))
-            {
-               cust.setFirstName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("last-name"))
-            {
-               cust.setLastName(element.getTextContent());
-            }
-            else if (element.getTagName().equals("street"))
-            {
-               cust.setStreet(element.getTextContent());
-            }
-            else if (element.getTagName().equals("city"))
-            {
-               cust.setCity(element.getTextContent());
-            }
-            else if (element.getTagName().equals("state"))
-            {
-               cust.setState(element.getTextContent());
-            }
-            else if (element.getTagName().equals("zip"))
-            {
-               cust.setZip(element.getTextContent());
-            }
-            else if (element.getTagName().equals("country"))
-            {
-               cust.setCountry(element.getTextContent());
-            }
-         }
-         return cust;
+         return CustomerXmlReader.read(is, new Customer());
       }
       catch (Exception e)
       {
@@ -21,8 +21,16 @@
  */
 package org.jboss.test.jaxrs.examples.ex04_3.services;
 
+import javax.servlet.ServletConfig;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+
+import org.jboss.test.jaxrs.examples.common.ShardedStore;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.Stores;
+import org.jboss.test.jaxrs.examples.ex04_3.domain.Customer;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,9 +39,14 @@ public class ShoppingApplication extends Application
 {
    private Set<Object> singletons = new HashSet<Object>();
 
-   public ShoppingApplication()
+   public ShoppingApplication(@Context ServletConfig config)
    {
-      singletons.add(new CustomerDatabaseResource());
+      StoreFactory stores = Stores.factory(config);
+      singletons.add(new CustomerDatabaseResource(
+            Stores.allocateIds(config, new ShardedStore<Customer>(ShardedStore.of(stores, "europe", Customer.class),
+                  null, Stores.shards(config, "europe"), ShardedStore.count(stores, "europe"))),
+            Stores.allocateIds(config, FirstLastCustomerResource.shards(stores, "northamerica",
+                  Stores.shards(config, "northamerica")))));
    }
 
    @Override
@@ -22,6 +22,7 @@
 package org.jboss.test.jaxrs.examples.ex05_1;
 
 import java.net.URL;
+import java.util.Collections;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -33,6 +34,8 @@ import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
+import org.jboss.test.jaxrs.examples.common.MappedStoreFactory;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -55,10 +58,30 @@ public class InjectionTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex05_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
                .addClass(org.jboss.test.jaxrs.examples.ex05_1.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex05_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.MappedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.MappedStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerRecordCodec.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Codecs.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Versioned.class)
                .addClass(org.jboss.test.jaxrs.examples.ex05_1.services.CarResource.class);
-         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex05_1.services.ShoppingApplication", "/services/*");
+         // the customers are kept in a mapped file, the list is written straight from its records
+         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex05_1.services.ShoppingApplication", "/services/*",
+               Collections.singletonMap(StoreFactory.INIT_PARAM, MappedStoreFactory.class.getName()));
       return archive;
    }
    
@@ -117,4 +140,18 @@ public class InjectionTest
       Assert.assertTrue(list.contains("Monica"));
       Assert.assertTrue(list.contains("Steve"));
    }
+
+   @Test
+   @RunAsClient
+   public void testCustomerExport() throws Exception
+   {
+      String list = client.target(baseURL + "services/customers/export").request().get(String.class);
+      Assert.assertTrue(list.startsWith("<customers>"));
+      int bill = list.indexOf("Bill");
+      int joe = list.indexOf("Joe");
+      int monica = list.indexOf("Monica");
+      int steve = list.indexOf("Steve");
+      Assert.assertTrue(bill > 0 && bill < joe && joe < monica && monica < steve);
+      Assert.assertTrue(list.endsWith("</customers>\n"));
+   }
 }
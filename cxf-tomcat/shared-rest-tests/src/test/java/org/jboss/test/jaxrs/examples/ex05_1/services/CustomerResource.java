@@ -31,22 +31,29 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.jboss.test.jaxrs.examples.common.CustomerXmlExport;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlWriter;
+import org.jboss.test.jaxrs.examples.common.MappedStore;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex05_1.domain.Customer;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = Collections.synchronizedMap(new LinkedHashMap<Integer, Customer>());
+   private final Store<Customer> customerDB;
 
-   public CustomerResource()
+   public CustomerResource(Store<Customer> customerDB)
    {
+      this.customerDB = customerDB;
+      if (customerDB.size() > 0)
+      {
+         // a persistent store kept the customers of the previous deployment
+         return;
+      }
       Customer customer;
       int id = 1;
 
@@ -104,18 +111,55 @@ public class CustomerResource
       {
          public void write(OutputStream outputStream) throws IOException, WebApplicationException
          {
-            PrintStream writer = new PrintStream(outputStream);
-            writer.println("<customers>");
-            synchronized (customerDB)
+            CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+            try
             {
-               int i = 0;
-               for (Customer customer : customerDB.values())
+               writer.startCustomers();
+               if (customerDB instanceof MappedStore)
                {
-                  if (i >= start && i < start + size) outputCustomer("   ", writer, customer);
-                  i++;
+                  // straight from the mapped records, no customer is decoded
+                  final CustomerXmlWriter out = writer;
+                  ((MappedStore<Customer>) customerDB).visitPage(start, size, new MappedStore.RecordVisitor()
+                  {
+                     public void visit(int id, ByteBuffer record)
+                     {
+                        out.writeCustomer(id, record, true, 3);
+                     }
+                  });
                }
+               else
+               {
+                  for (Customer customer : customerDB.page(start, size))
+                  {
+                     writer.writeCustomer(customer, true, 3);
+                  }
+               }
+               writer.endCustomers();
+               writer.flushTo(outputStream);
+            }
+            finally
+            {
+               writer.release();
             }
-            writer.println("</customers>");
+         }
+      };
+   }
+
+   /**
+    * The whole collection, serialized in parallel ranges by {@link CustomerXmlExport}. The range scan only
+    * copies the references, the serialization runs against that copy.
+    */
+   @GET
+   @Produces("application/xml")
+   @Path("export")
+   public StreamingOutput exportCustomers()
+   {
+      final Customer[] snapshot = customerDB.range(0, Integer.MAX_VALUE).toArray(new Customer[0]);
+      return new StreamingOutput()
+      {
+         public void write(OutputStream outputStream) throws IOException, WebApplicationException
+         {
+            CustomerXmlExport.write(outputStream, snapshot);
          }
       };
    }
@@ -138,17 +182,4 @@ public class CustomerResource
       return getCustomers(start, size);
    }
 
-   protected void outputCustomer(String indent, PrintStream writer, Customer cust) throws IOException
-   {
-      writer.println(indent + "<customer id=\"" + cust.getId() + "\">");
-      writer.println(indent + "   <first-name>" + cust.getFirstName() + "</first-name>");
-      writer.println(indent + "   <last-name>" + cust.getLastName() + "</last-name>");
-      writer.println(indent + "   <street>" + cust.getStreet() + "</street>");
-      writer.println(indent + "   <city>" + cust.getCity() + "</city>");
-      writer.println(indent + "   <state>" + cust.getState() + "</state>");
-      writer.println(indent + "   <zip>" + cust.getZip() + "</zip>");
-      writer.println(indent + "   <country>" + cust.getCountry() + "</country>");
-      writer.println(indent + "</customer>");
-   }
-
 }
\ No newline at end of file
@@ -21,8 +21,15 @@
  */
 package org.jboss.test.jaxrs.examples.ex05_1.services;
 
+import javax.servlet.ServletConfig;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.Stores;
+import org.jboss.test.jaxrs.examples.ex05_1.domain.Customer;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,9 +38,10 @@ public class ShoppingApplication extends Application
 {
    private Set<Object> singletons = new HashSet<Object>();
 
-   public ShoppingApplication()
+   public ShoppingApplication(@Context ServletConfig config)
    {
-      singletons.add(new CustomerResource());
+      StoreFactory stores = Stores.factory(config);
+      singletons.add(new CustomerResource(stores.createStore("customers", Customer.class)));
       singletons.add(new CarResource());
    }
 
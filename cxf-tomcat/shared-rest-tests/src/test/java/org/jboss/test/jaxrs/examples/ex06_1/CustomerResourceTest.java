@@ -21,12 +21,16 @@
  */
 package org.jboss.test.jaxrs.examples.ex06_1;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.container.test.api.RunAsClient;
@@ -35,6 +39,8 @@ import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
+import org.jboss.test.jaxrs.examples.common.BulkImportResult;
+import org.jboss.test.jaxrs.examples.common.CustomerXmlWriter;
 import org.jboss.test.jaxrs.examples.ex06_1.domain.Customer;
 import org.junit.Assert;
 import org.junit.Test;
@@ -56,8 +62,26 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex06_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex06_1.domain.CustomerXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerBulkImport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportResult.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportResultXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportError.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportErrorXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex06_1.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex06_1.services.ShoppingApplication.class);
+               .addClass(org.jboss.test.jaxrs.examples.ex06_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex06_1.services.ShoppingApplication", "/services/*");
       return archive;
    }
@@ -99,4 +123,66 @@ public class CustomerResourceTest
          client.close();
       }
    }
+
+   @Test
+   @RunAsClient
+   public void testBulkImport() throws Exception
+   {
+      final int records = 100000;
+      final int invalid = 50000;
+      StreamingOutput body = new StreamingOutput()
+      {
+         public void write(OutputStream os) throws IOException, WebApplicationException
+         {
+            Customer cust = new Customer();
+            cust.setStreet("256 Clarendon Street");
+            cust.setCity("Boston");
+            cust.setState("MA");
+            cust.setZip("02115");
+            cust.setCountry("USA");
+            CustomerXmlWriter writer = CustomerXmlWriter.acquire();
+            try
+            {
+               writer.startCustomers();
+               for (int i = 0; i <= records; i++)
+               {
+                  cust.setFirstName("Bill" + i);
+                  cust.setLastName(i == invalid ? "" : "Burke");
+                  writer.writeCustomer(cust, false, 3);
+                  if (writer.size() > 32 * 1024)
+                  {
+                     writer.flushTo(os);
+                  }
+               }
+               writer.endCustomers();
+               writer.flushTo(os);
+            }
+            finally
+            {
+               writer.release();
+            }
+         }
+      };
+
+      Client client = ClientBuilder.newClient();
+      try {
+         Response response = client.target(baseURL + "services/customers/bulk")
+                 .request().post(Entity.entity(body, "application/xml"));
+         Assert.assertEquals(200, response.getStatus());
+         BulkImportResult result = response.readEntity(BulkImportResult.class);
+         Assert.assertTrue(result.isComplete());
+         Assert.assertEquals(records, result.getImported());
+         Assert.assertEquals(1, result.getFailed());
+         Assert.assertEquals(invalid, result.getErrors().get(0).getIndex());
+         // a single client importing gets one contiguous block of ids
+         Assert.assertEquals(1, result.getRanges().size());
+         String range = result.getRanges().get(0);
+         int last = Integer.parseInt(range.substring(range.indexOf('-') + 1));
+
+         Customer customer = client.target(baseURL + "services/customers/" + last).request().get(Customer.class);
+         Assert.assertEquals("Bill" + records, customer.getFirstName());
+      } finally {
+         client.close();
+      }
+   }
 }
@@ -31,34 +31,58 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
+import org.jboss.test.jaxrs.examples.common.BulkImportResult;
+import org.jboss.test.jaxrs.examples.common.CustomerBulkImport;
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex06_1.domain.Customer;
 
+import java.io.InputStream;
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private final Store<Customer> customerDB;
 
-   public CustomerResource()
+   public CustomerResource(Store<Customer> customerDB)
    {
+      this.customerDB = customerDB;
    }
 
    @POST
    @Consumes("application/xml")
    public Response createCustomer(Customer customer)
    {
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
 
    }
 
+   /**
+    * Streams a &lt;customers&gt; document of any size into the database, see {@link CustomerBulkImport}.
+    */
+   @POST
+   @Path("bulk")
+   @Consumes("application/xml")
+   @Produces("application/xml")
+   public Response importCustomers(InputStream is)
+   {
+      BulkImportResult result = CustomerBulkImport.importCustomers(is, customerDB,
+            new CustomerBulkImport.Factory<Customer>()
+            {
+               public Customer newCustomer()
+               {
+                  return new Customer();
+               }
+            });
+      System.out.println("Imported " + result.getImported() + " customers, rejected " + result.getFailed());
+      Response.Status status = result.isComplete() ? Response.Status.OK : Response.Status.BAD_REQUEST;
+      return Response.status(status).entity(result).build();
+   }
+
    @GET
    @Path("{id}")
    @Produces("application/xml")
@@ -77,14 +101,20 @@ public class CustomerResource
    @Consumes("application/xml")
    public void updateCustomer(@PathParam("id") int id, Customer update)
    {
-      Customer current = customerDB.get(id);
-      if (current == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
-
-      current.setFirstName(update.getFirstName());
-      current.setLastName(update.getLastName());
-      current.setStreet(update.getStreet());
-      current.setState(update.getState());
-      current.setZip(update.getZip());
-      current.setCountry(update.getCountry());
+      Customer current;
+      Customer updated;
+      do
+      {
+         current = customerDB.get(id);
+         if (current == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
+         updated = CustomerCopy.of(current);
+         updated.setFirstName(update.getFirstName());
+         updated.setLastName(update.getLastName());
+         updated.setStreet(update.getStreet());
+         updated.setState(update.getState());
+         updated.setZip(update.getZip());
+         updated.setCountry(update.getCountry());
+      }
+      while (!customerDB.replace(id, current, updated));
    }
 }
\ No newline at end of file
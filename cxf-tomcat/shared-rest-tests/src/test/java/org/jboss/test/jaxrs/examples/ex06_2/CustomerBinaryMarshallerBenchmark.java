@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex06_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex06_2.services.CustomerBinaryMarshaller;
+import org.jboss.test.jaxrs.examples.ex06_2.services.JavaMarshaller;
+import org.junit.Test;
+
+/**
+ * Payload size and encode/decode cost of {@link CustomerBinaryMarshaller} against {@link JavaMarshaller}.
+ */
+public class CustomerBinaryMarshallerBenchmark
+{
+   private static final int ITERATIONS = 50000;
+
+   @Test
+   public void testThroughput() throws Exception
+   {
+      final Customer cust = new Customer();
+      cust.setId(42);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      cust.setStreet("256 Clarendon Street");
+      cust.setCity("Boston");
+      cust.setState("MA");
+      cust.setZip("02115");
+      cust.setCountry("USA");
+
+      final JavaMarshaller java = new JavaMarshaller();
+      final CustomerBinaryMarshaller binary = new CustomerBinaryMarshaller();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      java.writeTo(cust, Customer.class, Customer.class, null, null, null, out);
+      final byte[] javaBytes = out.toByteArray();
+      out.reset();
+      binary.writeTo(cust, Customer.class, Customer.class, null, null, null, out);
+      final byte[] binaryBytes = out.toByteArray();
+      System.out.println(String.format("payload: %d bytes JavaMarshaller, %d bytes CustomerBinaryMarshaller",
+            javaBytes.length, binaryBytes.length));
+
+      MicroBenchmark.nsPerOp("JavaMarshaller encode", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            java.writeTo(cust, Customer.class, Customer.class, null, null, null, new ByteArrayOutputStream(256));
+         }
+      });
+      MicroBenchmark.nsPerOp("CustomerBinaryMarshaller encode", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            binary.writeTo(cust, Customer.class, Customer.class, null, null, null, new ByteArrayOutputStream(256));
+         }
+      });
+      MicroBenchmark.nsPerOp("JavaMarshaller decode", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            java.readFrom(Customer.class, Customer.class, null, null, null, new ByteArrayInputStream(javaBytes));
+         }
+      });
+      MicroBenchmark.nsPerOp("CustomerBinaryMarshaller decode", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            binary.readFrom(Customer.class, Customer.class, null, null, null, new ByteArrayInputStream(binaryBytes));
+         }
+      });
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex06_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex06_2.services.CustomerBinaryMarshaller;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the application/x-customer-bin encoding of {@link CustomerBinaryMarshaller}.
+ */
+public class CustomerBinaryMarshallerTest
+{
+   @Test
+   public void testRoundTripWithExactSize() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setId(-1234567);
+      cust.setFirstName("Zoë");
+      cust.setLastName("Burke 😀");
+      cust.setStreet("256 Clarendon Street €");
+      cust.setCity("Boston");
+      cust.setZip("");
+
+      CustomerBinaryMarshaller marshaller = new CustomerBinaryMarshaller();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      marshaller.writeTo(cust, Customer.class, Customer.class, null, null, null, out);
+      Assert.assertEquals(marshaller.getSize(cust, Customer.class, Customer.class, null, null), out.size());
+
+      Customer read = marshaller.readFrom(Customer.class, Customer.class, null, null, null,
+            new ByteArrayInputStream(out.toByteArray()));
+      Assert.assertEquals(cust.getId(), read.getId());
+      Assert.assertEquals(cust.getFirstName(), read.getFirstName());
+      Assert.assertEquals(cust.getLastName(), read.getLastName());
+      Assert.assertEquals(cust.getStreet(), read.getStreet());
+      Assert.assertEquals(cust.getCity(), read.getCity());
+      Assert.assertNull(read.getState());
+      Assert.assertEquals("", read.getZip());
+      Assert.assertNull(read.getCountry());
+   }
+
+   @Test
+   public void testUnknownFieldsAreSkipped() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setId(7);
+      cust.setCountry("USA");
+      byte[] encoded = CustomerBinaryMarshaller.encode(cust);
+      // field 15 as a varint and field 16 as a one byte string, as a newer writer could send
+      byte[] extended = new byte[encoded.length + 6];
+      System.arraycopy(encoded, 0, extended, 0, encoded.length);
+      int pos = encoded.length;
+      extended[pos++] = (byte) (15 << 3);
+      extended[pos++] = 42;
+      extended[pos++] = (byte) 0x82;
+      extended[pos++] = 1;
+      extended[pos++] = 1;
+      extended[pos++] = 'x';
+
+      Customer read = CustomerBinaryMarshaller.decode(extended, 0, extended.length);
+      Assert.assertEquals(7, read.getId());
+      Assert.assertEquals("USA", read.getCountry());
+   }
+
+   @Test
+   public void testTruncatedMessage() throws Exception
+   {
+      Customer cust = new Customer();
+      cust.setFirstName("Bill");
+      byte[] encoded = CustomerBinaryMarshaller.encode(cust);
+      try
+      {
+         new CustomerBinaryMarshaller().readFrom(Customer.class, Customer.class, null, null, null,
+               new ByteArrayInputStream(encoded, 0, encoded.length - 1));
+         Assert.fail("expected a WebApplicationException");
+      }
+      catch (WebApplicationException e)
+      {
+         Assert.assertEquals(400, e.getResponse().getStatus());
+      }
+   }
+}
@@ -22,10 +22,18 @@
 package org.jboss.test.jaxrs.examples.ex06_2;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.Response;
 
 import org.jboss.arquillian.container.test.api.Deployment;
@@ -36,6 +44,7 @@ import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
 import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex06_2.services.CustomerBinaryMarshaller;
 import org.jboss.test.jaxrs.examples.ex06_2.services.JavaMarshaller;
 import org.junit.Assert;
 import org.junit.Test;
@@ -59,7 +68,20 @@ public class CustomerResourceTest
                .addClass(org.jboss.test.jaxrs.examples.ex06_2.domain.Customer.class)
                .addClass(org.jboss.test.jaxrs.examples.ex06_2.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex06_2.services.ShoppingApplication.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex06_2.services.JavaMarshaller.class);
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex06_2.services.JavaMarshaller.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex06_2.services.CustomerBinaryMarshaller.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex06_2.services.ShoppingApplication", "/services/*");
       return archive;
    }
@@ -101,4 +123,88 @@ public class CustomerResourceTest
          client.close();
       }
    }
+
+   @Test
+   @RunAsClient
+   public void testCustomerResourceBinary() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      client.register(CustomerBinaryMarshaller.class);
+      try {
+         Customer newCustomer = new Customer();
+         newCustomer.setFirstName("Bill");
+         newCustomer.setLastName("Burke");
+         newCustomer.setStreet("256 Clarendon Street");
+         newCustomer.setCity("Boston");
+         newCustomer.setState("MA");
+         newCustomer.setZip("02115");
+         newCustomer.setCountry("USA");
+
+         Response response = client.target(baseURL + "services/customers")
+                 .request().post(Entity.entity(newCustomer, CustomerBinaryMarshaller.MEDIA_TYPE));
+         if (response.getStatus() != 201) throw new RuntimeException("Failed to create");
+         String location = response.getLocation().toString();
+         response.close();
+
+         response = client.target(location).request(CustomerBinaryMarshaller.MEDIA_TYPE).get();
+         Assert.assertEquals(200, response.getStatus());
+         Customer customer = response.readEntity(Customer.class);
+         Assert.assertEquals(CustomerBinaryMarshaller.encodedSize(customer), response.getLength());
+         Assert.assertEquals("Bill", customer.getFirstName());
+
+         customer.setFirstName("William");
+         response = client.target(location).request().put(Entity.entity(customer, CustomerBinaryMarshaller.MEDIA_TYPE));
+         if (response.getStatus() != 204) throw new RuntimeException("Failed to update");
+
+         customer = client.target(location).request(CustomerBinaryMarshaller.MEDIA_TYPE).get(Customer.class);
+         Assert.assertEquals("William", customer.getFirstName());
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testCustomerStream() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      client.register(JavaMarshaller.class);
+      try {
+         // more than one reset interval, so the stream is reset along the way
+         int count = 2 * JavaMarshaller.RESET_INTERVAL + 1;
+         List<Customer> customers = new ArrayList<Customer>();
+         for (int i = 0; i < count; i++)
+         {
+            Customer customer = new Customer();
+            customer.setFirstName("Stream" + i);
+            customer.setLastName("Burke");
+            customer.setCity("Boston");
+            customer.setCountry("USA");
+            customers.add(customer);
+         }
+         Response response = client.target(baseURL + "services/customers/batch").request()
+               .post(Entity.entity(new GenericEntity<Collection<Customer>>(customers) {}, "application/example-java"));
+         Assert.assertEquals(200, response.getStatus());
+         Assert.assertEquals(String.valueOf(count), response.readEntity(String.class));
+
+         response = client.target(baseURL + "services/customers").request("application/example-java").get();
+         Assert.assertEquals(200, response.getStatus());
+         Set<String> names = new HashSet<String>();
+         try {
+            Iterator<Customer> it = response.readEntity(new GenericType<Iterator<Customer>>() {});
+            while (it.hasNext())
+            {
+               names.add(it.next().getFirstName());
+            }
+         } finally {
+            response.close();
+         }
+         for (int i = 0; i < count; i++)
+         {
+            Assert.assertTrue(names.contains("Stream" + i));
+         }
+      } finally {
+         client.close();
+      }
+   }
 }
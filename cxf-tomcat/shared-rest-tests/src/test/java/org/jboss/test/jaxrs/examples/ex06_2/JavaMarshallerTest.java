@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex06_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericType;
+
+import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex06_2.services.JavaMarshaller;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the multi-object streaming mode of {@link JavaMarshaller}.
+ */
+public class JavaMarshallerTest
+{
+   private static final Type COLLECTION = new GenericType<Collection<Customer>>() {}.getType();
+   private static final Type LIST = new GenericType<List<Customer>>() {}.getType();
+   private static final Type ITERATOR = new GenericType<Iterator<Customer>>() {}.getType();
+
+   private static List<Customer> customers(int count)
+   {
+      List<Customer> customers = new ArrayList<Customer>();
+      for (int i = 0; i < count; i++)
+      {
+         Customer cust = new Customer();
+         cust.setId(i);
+         cust.setFirstName("Bill" + i);
+         cust.setLastName("Burke");
+         customers.add(cust);
+      }
+      return customers;
+   }
+
+   private static byte[] write(Object entity, Class<?> type, Type genericType) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new JavaMarshaller().writeTo(entity, type, genericType, null, null, null, out);
+      return out.toByteArray();
+   }
+
+   @Test
+   public void testSelection()
+   {
+      JavaMarshaller marshaller = new JavaMarshaller();
+      Assert.assertTrue(marshaller.isReadable(Iterator.class, ITERATOR, null, null));
+      Assert.assertTrue(marshaller.isReadable(List.class, LIST, null, null));
+      Assert.assertTrue(marshaller.isReadable(Collection.class, COLLECTION, null, null));
+      Assert.assertTrue(marshaller.isReadable(Customer.class, Customer.class, null, null));
+      Assert.assertFalse(marshaller.isReadable(Iterator.class, Iterator.class, null, null));
+      Assert.assertTrue(marshaller.isWriteable(ArrayList.class, COLLECTION, null, null));
+      Assert.assertTrue(marshaller.isWriteable(Arrays.asList().iterator().getClass(), ITERATOR, null, null));
+   }
+
+   @Test
+   public void testCollectionRoundTrip() throws Exception
+   {
+      int count = 2 * JavaMarshaller.RESET_INTERVAL + 3;
+      List<Customer> customers = customers(count);
+      byte[] bytes = write(customers, ArrayList.class, COLLECTION);
+
+      @SuppressWarnings("unchecked")
+      List<Customer> read = (List<Customer>) new JavaMarshaller().readFrom(List.class, LIST, null, null, null,
+            new ByteArrayInputStream(bytes));
+      Assert.assertEquals(count, read.size());
+      for (int i = 0; i < count; i++)
+      {
+         Assert.assertEquals(i, read.get(i).getId());
+         Assert.assertEquals("Bill" + i, read.get(i).getFirstName());
+      }
+   }
+
+   @Test
+   public void testIteratorRoundTrip() throws Exception
+   {
+      List<Customer> customers = customers(10);
+      byte[] bytes = write(customers.iterator(), Iterator.class, ITERATOR);
+      Assert.assertArrayEquals(write(customers, ArrayList.class, COLLECTION), bytes);
+
+      @SuppressWarnings("unchecked")
+      Iterator<Customer> it = (Iterator<Customer>) new JavaMarshaller().readFrom(Iterator.class, ITERATOR, null, null,
+            null, new ByteArrayInputStream(bytes));
+      for (int i = 0; i < 10; i++)
+      {
+         Assert.assertTrue(it.hasNext());
+         Assert.assertEquals(i, it.next().getId());
+      }
+      Assert.assertFalse(it.hasNext());
+   }
+
+   @Test
+   public void testIteratorIsLazy() throws Exception
+   {
+      byte[] bytes = write(customers(100), ArrayList.class, COLLECTION);
+      // cut the stream in the middle: the leading customers can be consumed before the failure shows up
+      byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+      @SuppressWarnings("unchecked")
+      Iterator<Customer> it = (Iterator<Customer>) new JavaMarshaller().readFrom(Iterator.class, ITERATOR, null, null,
+            null, new ByteArrayInputStream(truncated));
+      Assert.assertEquals(0, it.next().getId());
+      Assert.assertEquals(1, it.next().getId());
+      try
+      {
+         while (it.hasNext())
+         {
+            it.next();
+         }
+         Assert.fail("Expected the truncated stream to fail");
+      }
+      catch (WebApplicationException e)
+      {
+         Assert.assertEquals(400, e.getResponse().getStatus());
+      }
+   }
+
+   @Test
+   public void testStreamIsReset() throws Exception
+   {
+      byte[] bytes = write(customers(2 * JavaMarshaller.RESET_INTERVAL + 1), ArrayList.class, COLLECTION);
+      // every reset forgets the class descriptor, so it is written once per interval
+      byte[] name = Customer.class.getName().getBytes("UTF-8");
+      int descriptors = 0;
+      for (int i = 0; i <= bytes.length - name.length; i++)
+      {
+         if (Arrays.equals(name, Arrays.copyOfRange(bytes, i, i + name.length)))
+         {
+            descriptors++;
+         }
+      }
+      Assert.assertEquals(3, descriptors);
+   }
+}
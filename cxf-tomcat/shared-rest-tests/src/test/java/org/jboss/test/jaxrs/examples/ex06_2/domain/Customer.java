@@ -27,8 +27,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.jboss.test.jaxrs.examples.common.CustomerData;
+
 @XmlRootElement(name = "customer")
-public class Customer implements Serializable
+public class Customer implements Serializable, CustomerData
 {
    private int id;
    private String firstName;
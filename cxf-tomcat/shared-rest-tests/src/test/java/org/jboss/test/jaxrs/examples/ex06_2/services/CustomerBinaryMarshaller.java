@@ -0,0 +1,289 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex06_2.services;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.jboss.test.jaxrs.examples.common.Utf8;
+import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of a {@link Customer} for <code>application/x-customer-bin</code>.
+ *
+ * A version byte is followed by tagged fields, each tag being <code>field &lt;&lt; 3 | wire type</code> as
+ * a varint. The id is a zig-zag varint (wire type 0); the strings are a varint length followed by their
+ * UTF-8 bytes (wire type 2). Null fields are left out and unknown fields are skipped, so fields can be
+ * added without breaking older readers. Unlike {@link JavaMarshaller} no class names travel on the wire
+ * and nothing but the Customer can be instantiated.
+ */
+@Provider
+@Produces(CustomerBinaryMarshaller.MEDIA_TYPE)
+@Consumes(CustomerBinaryMarshaller.MEDIA_TYPE)
+public class CustomerBinaryMarshaller implements MessageBodyReader<Customer>, MessageBodyWriter<Customer>
+{
+   public static final String MEDIA_TYPE = "application/x-customer-bin";
+
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+   private static final int VERSION = 1;
+   private static final int VARINT = 0;
+   private static final int LENGTH_DELIMITED = 2;
+   private static final int ID = 1;
+   private static final int FIRST_NAME = 2;
+   private static final int LAST_NAME = 3;
+   private static final int STREET = 4;
+   private static final int CITY = 5;
+   private static final int STATE = 6;
+   private static final int ZIP = 7;
+   private static final int COUNTRY = 8;
+   /** Upper bound for a message; a customer is a few hundred bytes. */
+   private static final int MAX_MESSAGE_SIZE = 64 * 1024;
+
+   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return type == Customer.class;
+   }
+
+   public Customer readFrom(Class<Customer> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+         MultivaluedMap<String, String> httpHeaders, InputStream is) throws IOException, WebApplicationException
+   {
+      byte[] buf = new byte[256];
+      int count = 0;
+      for (int n; (n = is.read(buf, count, buf.length - count)) != -1;)
+      {
+         count += n;
+         if (count == buf.length)
+         {
+            if (buf.length == MAX_MESSAGE_SIZE)
+            {
+               throw new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            buf = Arrays.copyOf(buf, Math.min(buf.length * 2, MAX_MESSAGE_SIZE));
+         }
+      }
+      try
+      {
+         return decode(buf, 0, count);
+      }
+      catch (IllegalArgumentException e)
+      {
+         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+      }
+   }
+
+   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return type == Customer.class;
+   }
+
+   public long getSize(Customer o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return encodedSize(o);
+   }
+
+   public void writeTo(Customer o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+         MultivaluedMap<String, Object> httpHeaders, OutputStream os) throws IOException, WebApplicationException
+   {
+      os.write(encode(o));
+   }
+
+   public static int encodedSize(Customer cust)
+   {
+      int size = 1 + 1 + varintSize(zigZag(cust.getId()));
+      size += stringFieldSize(cust.getFirstName());
+      size += stringFieldSize(cust.getLastName());
+      size += stringFieldSize(cust.getStreet());
+      size += stringFieldSize(cust.getCity());
+      size += stringFieldSize(cust.getState());
+      size += stringFieldSize(cust.getZip());
+      size += stringFieldSize(cust.getCountry());
+      return size;
+   }
+
+   public static byte[] encode(Customer cust)
+   {
+      byte[] buf = new byte[encodedSize(cust)];
+      int pos = 0;
+      buf[pos++] = VERSION;
+      pos = writeVarint(buf, pos, ID << 3 | VARINT);
+      pos = writeVarint(buf, pos, zigZag(cust.getId()));
+      pos = writeString(buf, pos, FIRST_NAME, cust.getFirstName());
+      pos = writeString(buf, pos, LAST_NAME, cust.getLastName());
+      pos = writeString(buf, pos, STREET, cust.getStreet());
+      pos = writeString(buf, pos, CITY, cust.getCity());
+      pos = writeString(buf, pos, STATE, cust.getState());
+      pos = writeString(buf, pos, ZIP, cust.getZip());
+      writeString(buf, pos, COUNTRY, cust.getCountry());
+      return buf;
+   }
+
+   /**
+    * @throws IllegalArgumentException if the bytes are not a valid message
+    */
+   public static Customer decode(byte[] buf, int offset, int length)
+   {
+      int end = offset + length;
+      if (length == 0 || buf[offset] != VERSION)
+      {
+         throw new IllegalArgumentException("Unsupported message version");
+      }
+      Customer cust = new Customer();
+      int[] pos = {offset + 1};
+      while (pos[0] < end)
+      {
+         long tag = readVarint(buf, pos, end);
+         int field = (int) (tag >>> 3);
+         int wireType = (int) (tag & 7);
+         if (wireType == VARINT)
+         {
+            long value = readVarint(buf, pos, end);
+            if (field == ID)
+            {
+               cust.setId((int) ((value >>> 1) ^ -(value & 1)));
+            }
+         }
+         else if (wireType == LENGTH_DELIMITED)
+         {
+            long len = readVarint(buf, pos, end);
+            if (len > end - pos[0])
+            {
+               throw new IllegalArgumentException("Truncated field " + field);
+            }
+            String value = field >= FIRST_NAME && field <= COUNTRY ? new String(buf, pos[0], (int) len, UTF_8) : null;
+            pos[0] += (int) len;
+            switch (field)
+            {
+               case FIRST_NAME:
+                  cust.setFirstName(value);
+                  break;
+               case LAST_NAME:
+                  cust.setLastName(value);
+                  break;
+               case STREET:
+                  cust.setStreet(value);
+                  break;
+               case CITY:
+                  cust.setCity(value);
+                  break;
+               case STATE:
+                  cust.setState(value);
+                  break;
+               case ZIP:
+                  cust.setZip(value);
+                  break;
+               case COUNTRY:
+                  cust.setCountry(value);
+                  break;
+               default:
+                  // unknown field, skipped
+            }
+         }
+         else
+         {
+            throw new IllegalArgumentException("Unsupported wire type " + wireType);
+         }
+      }
+      return cust;
+   }
+
+   private static int zigZag(int value)
+   {
+      return (value << 1) ^ (value >> 31);
+   }
+
+   private static int varintSize(int value)
+   {
+      int size = 1;
+      while ((value & ~0x7F) != 0)
+      {
+         value >>>= 7;
+         size++;
+      }
+      return size;
+   }
+
+   private static int writeVarint(byte[] buf, int pos, int value)
+   {
+      while ((value & ~0x7F) != 0)
+      {
+         buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      buf[pos++] = (byte) value;
+      return pos;
+   }
+
+   private static long readVarint(byte[] buf, int[] pos, int end)
+   {
+      long value = 0;
+      for (int shift = 0; shift < 35; shift += 7)
+      {
+         if (pos[0] >= end)
+         {
+            throw new IllegalArgumentException("Truncated varint");
+         }
+         byte b = buf[pos[0]++];
+         value |= (long) (b & 0x7F) << shift;
+         if (b >= 0)
+         {
+            return value;
+         }
+      }
+      throw new IllegalArgumentException("Malformed varint");
+   }
+
+   private static int stringFieldSize(String s)
+   {
+      if (s == null)
+      {
+         return 0;
+      }
+      int len = Utf8.length(s);
+      return 1 + varintSize(len) + len;
+   }
+
+   private static int writeString(byte[] buf, int pos, int field, String s)
+   {
+      if (s == null)
+      {
+         return pos;
+      }
+      pos = writeVarint(buf, pos, field << 3 | LENGTH_DELIMITED);
+      pos = writeVarint(buf, pos, Utf8.length(s));
+      return Utf8.encode(s, 0, s.length(), buf, pos);
+   }
+}
@@ -31,33 +31,62 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex06_2.domain.Customer;
 
 import java.net.URI;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Iterator;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private final Store<Customer> customerDB;
+
+   public CustomerResource(Store<Customer> customerDB)
+   {
+      this.customerDB = customerDB;
+   }
 
    @POST
-   @Consumes("application/example-java")
+   @Consumes({"application/example-java", CustomerBinaryMarshaller.MEDIA_TYPE})
    public Response createCustomer(Customer customer)
    {
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
 
    }
 
+   @POST
+   @Path("batch")
+   @Consumes("application/example-java")
+   @Produces("text/plain")
+   public String createCustomers(Iterator<Customer> customers)
+   {
+      int count = 0;
+      while (customers.hasNext())
+      {
+         Customer customer = customers.next();
+         customer.setId(customerDB.nextId());
+         customerDB.put(customer.getId(), customer);
+         count++;
+      }
+      System.out.println("Created " + count + " customers");
+      return Integer.toString(count);
+   }
+
    @GET
-   @Path("{id}")
    @Produces("application/example-java")
+   public Iterator<Customer> getCustomers()
+   {
+      return customerDB.range(0, Integer.MAX_VALUE).iterator();
+   }
+
+   @GET
+   @Path("{id}")
+   @Produces({"application/example-java", CustomerBinaryMarshaller.MEDIA_TYPE})
    public Customer getCustomer(@PathParam("id") int id)
    {
       Customer customer = customerDB.get(id);
@@ -70,17 +99,23 @@ public class CustomerResource
 
    @PUT
    @Path("{id}")
-   @Consumes("application/example-java")
+   @Consumes({"application/example-java", CustomerBinaryMarshaller.MEDIA_TYPE})
    public void updateCustomer(@PathParam("id") int id, Customer update)
    {
-      Customer current = customerDB.get(id);
-      if (current == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
-
-      current.setFirstName(update.getFirstName());
-      current.setLastName(update.getLastName());
-      current.setStreet(update.getStreet());
-      current.setState(update.getState());
-      current.setZip(update.getZip());
-      current.setCountry(update.getCountry());
+      Customer current;
+      Customer updated;
+      do
+      {
+         current = customerDB.get(id);
+         if (current == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
+         updated = CustomerCopy.of(current);
+         updated.setFirstName(update.getFirstName());
+         updated.setLastName(update.getLastName());
+         updated.setStreet(update.getStreet());
+         updated.setState(update.getState());
+         updated.setZip(update.getZip());
+         updated.setCountry(update.getCountry());
+      }
+      while (!customerDB.replace(id, current, updated));
    }
 }
\ No newline at end of file
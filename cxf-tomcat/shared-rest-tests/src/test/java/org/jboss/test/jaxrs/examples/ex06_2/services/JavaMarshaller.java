@@ -26,6 +26,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
@@ -39,29 +40,61 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
+ * Besides single objects, <code>Collection&lt;Customer&gt;</code> and <code>Iterator&lt;Customer&gt;</code>
+ * are sent as one object stream: the customers one after the other, terminated by a null. The stream is
+ * reset every {@link #RESET_INTERVAL} customers so that neither side's back-reference table grows with
+ * the number of customers, while the class descriptor is only written again after a reset. An
+ * Iterator is written and read lazily, a Collection is read into a list.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  */
 @SuppressWarnings("rawtypes")
 @Provider
 @Produces("application/example-java")
 @Consumes("application/example-java")
-public class JavaMarshaller implements MessageBodyReader<Customer>, MessageBodyWriter<Customer>
+public class JavaMarshaller implements MessageBodyReader<Object>, MessageBodyWriter<Object>
 {
-   public boolean isReadable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   public static final int RESET_INTERVAL = 1000;
+
+   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
    {
+      if (isCustomers(genericType))
+      {
+         return type == Iterator.class || (Collection.class.isAssignableFrom(type) && type.isAssignableFrom(ArrayList.class));
+      }
       return Serializable.class.isAssignableFrom(type);
    }
 
-   public Customer readFrom(Class type, Type genericType, Annotation[] annotations, MediaType mediaType,
+   public Object readFrom(Class type, Type genericType, Annotation[] annotations, MediaType mediaType,
          MultivaluedMap httpHeaders, InputStream is) throws IOException, WebApplicationException
    {
       ObjectInputStream ois = new ObjectInputStream(is);
+      if (isCustomers(genericType))
+      {
+         Iterator<Customer> it = new CustomerIterator(ois);
+         if (type == Iterator.class)
+         {
+            return it;
+         }
+         List<Customer> list = new ArrayList<Customer>();
+         while (it.hasNext())
+         {
+            list.add(it.next());
+         }
+         return list;
+      }
       try
       {
-         return (Customer)ois.readObject();
+         return ois.readObject();
       }
       catch (ClassNotFoundException e)
       {
@@ -69,20 +102,99 @@ public class JavaMarshaller implements MessageBodyReader<Customer>, MessageBodyW
       }
    }
 
-   public boolean isWriteable(Class type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
    {
+      if ((Collection.class.isAssignableFrom(type) || Iterator.class.isAssignableFrom(type)) && isCustomers(genericType))
+      {
+         return true;
+      }
       return Serializable.class.isAssignableFrom(type);
    }
 
-   public long getSize(Customer o, Class type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   public long getSize(Object o, Class type, Type genericType, Annotation[] annotations, MediaType mediaType)
    {
       return -1;
    }
 
-   public void writeTo(Customer o, Class type, Type genericType, Annotation[] annotations, MediaType mediaType,
+   public void writeTo(Object o, Class type, Type genericType, Annotation[] annotations, MediaType mediaType,
          MultivaluedMap httpHeaders, OutputStream os) throws IOException, WebApplicationException
    {
       ObjectOutputStream oos = new ObjectOutputStream(os);
+      if ((o instanceof Collection || o instanceof Iterator) && isCustomers(genericType))
+      {
+         Iterator<?> it = o instanceof Iterator ? (Iterator<?>) o : ((Collection<?>) o).iterator();
+         int count = 0;
+         while (it.hasNext())
+         {
+            oos.writeObject(it.next());
+            if (++count % RESET_INTERVAL == 0)
+            {
+               oos.reset();
+            }
+         }
+         oos.writeObject(null);
+         oos.flush();
+         return;
+      }
       oos.writeObject(o);
    }
-}
\ No newline at end of file
+
+   private static boolean isCustomers(Type genericType)
+   {
+      if (!(genericType instanceof ParameterizedType))
+      {
+         return false;
+      }
+      Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+      return arguments.length == 1 && arguments[0] == Customer.class;
+   }
+
+   private static class CustomerIterator implements Iterator<Customer>
+   {
+      private final ObjectInputStream ois;
+      private Customer next;
+      private boolean done;
+
+      CustomerIterator(ObjectInputStream ois)
+      {
+         this.ois = ois;
+      }
+
+      public boolean hasNext()
+      {
+         if (next == null && !done)
+         {
+            try
+            {
+               next = (Customer) ois.readObject();
+            }
+            catch (ClassNotFoundException e)
+            {
+               throw new RuntimeException(e);
+            }
+            catch (IOException e)
+            {
+               throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+            }
+            done = next == null;
+         }
+         return next != null;
+      }
+
+      public Customer next()
+      {
+         if (!hasNext())
+         {
+            throw new NoSuchElementException();
+         }
+         Customer customer = next;
+         next = null;
+         return customer;
+      }
+
+      public void remove()
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -55,8 +55,20 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex07_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex07_1.domain.CustomerXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex07_1.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex07_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
                .addClass(org.jboss.test.jaxrs.examples.ex07_1.services.CustomerNotFoundException.class)
                .addClass(org.jboss.test.jaxrs.examples.ex07_1.services.CustomerNotFoundExceptionMapper.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex07_1.services.ShoppingApplication", "/services/*");
@@ -25,8 +25,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.jboss.test.jaxrs.examples.common.CustomerData;
+
 @XmlRootElement(name = "customer")
-public class Customer
+public class Customer implements CustomerData
 {
    private int id;
    private String firstName;
@@ -57,8 +57,22 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex09_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex09_1.domain.CustomerXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex09_1.domain.CustomerJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex09_1.domain.JsonCodec.class)
                .addClass(org.jboss.test.jaxrs.examples.ex09_1.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex09_1.services.ShoppingApplication.class);
+               .addClass(org.jboss.test.jaxrs.examples.ex09_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex09_1.services.NegotiationResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ContentNegotiationCache.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex09_1.services.ShoppingApplication", "/services/*");
       return archive;
    }
@@ -94,6 +108,51 @@ public class CustomerResourceTest
                  .accept(MediaType.APPLICATION_JSON_TYPE)
                  .get(String.class);
          Assert.assertTrue(json.contains("\"first-name\":\"Bill\""));
+
+         response = client.target(baseURL + "services/customers").request()
+                 .post(Entity.json("{\"customer\":{\"first-name\":\"Monica\",\"last-name\":\"Burke\",\"zip\":\"02115\"}}"));
+         if (response.getStatus() != 201) throw new RuntimeException("Failed to create");
+         location = response.getLocation().toString();
+         response.close();
+
+         json = client.target(location).request()
+                 .accept(MediaType.APPLICATION_JSON_TYPE)
+                 .get(String.class);
+         Assert.assertTrue(json.contains("\"first-name\":\"Monica\""));
+         Assert.assertTrue(json.contains("\"zip\":\"02115\""));
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testNegotiationCache() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         Response response = client.target(baseURL + "services/customers")
+                 .request().post(Entity.json("{\"customer\":{\"first-name\":\"Bill\",\"last-name\":\"Burke\"}}"));
+         if (response.getStatus() != 201) throw new RuntimeException("Failed to create");
+         String location = response.getLocation().toString();
+         response.close();
+
+         for (int i = 0; i < 3; i++)
+         {
+            String text = client.target(location).request()
+                    .accept("text/plain, application/*;q=0.5")
+                    .get(String.class);
+            Assert.assertTrue(text.contains("Bill"));
+            String json = client.target(location).request()
+                    .accept("application/json, application/xml;q=0.9")
+                    .get(String.class);
+            Assert.assertTrue(json.contains("\"first-name\":\"Bill\""));
+         }
+
+         String stats = client.target(baseURL + "services/negotiation").request().get(String.class);
+         // the other tests of this deployment may have warmed the cache already
+         long hits = Long.parseLong(stats.substring(stats.indexOf("hits=") + 5, stats.indexOf(' ')));
+         Assert.assertTrue(stats, hits >= 4);
       } finally {
          client.close();
       }
@@ -23,10 +23,12 @@ package org.jboss.test.jaxrs.examples.ex10_1;
 
 import java.net.URI;
 import java.net.URL;
+import java.util.Collections;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.container.test.api.RunAsClient;
@@ -35,7 +37,11 @@ import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.TieredStoreFactory;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
 import org.jboss.test.jaxrs.examples.ex10_1.domain.Customers;
+import org.jboss.test.jaxrs.examples.ex10_1.domain.CustomersJsonProvider;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -56,10 +62,52 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.CustomerXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlReader.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerBulkImport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportResult.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportResultXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportError.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.BulkImportErrorXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.Customers.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.CustomersXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.CustomerJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.CustomersJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.domain.JsonCodec.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_1.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex10_1.services.ShoppingApplication.class);
-         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex10_1.services.ShoppingApplication", "/services/*");
+               .addClass(org.jboss.test.jaxrs.examples.ex10_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.KeysetPage.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.PageCursor.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IndexedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.AttributeIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreSearch.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.MappedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.MappedStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerRecordCodec.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Codecs.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Versioned.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StripedCounter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.FrequencySketch.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.TieredStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.TieredStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.TierStats.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.TierStatsXmlProvider.class);
+         // the customers least used lately are demoted from the heap to a mapped file
+         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex10_1.services.ShoppingApplication", "/services/*",
+               Collections.singletonMap(StoreFactory.INIT_PARAM, TieredStoreFactory.class.getName()));
       return archive;
    }
    
@@ -91,4 +139,106 @@ public class CustomerResourceTest
          client.close();
       }
    }
+
+   @Test
+   @RunAsClient
+   public void testQueryCustomersJson() throws Exception
+   {
+      URI uri = new URI(baseURL + "services/customers");
+      Client client = ClientBuilder.newClient();
+      client.register(CustomersJsonProvider.class);
+      StringBuilder sb = new StringBuilder();
+      try {
+         while (uri != null)
+         {
+            Customers customers = client.target(uri).request(MediaType.APPLICATION_JSON_TYPE).get(Customers.class);
+            for (Customer customer : customers.getCustomers())
+            {
+               sb.append(customer.getFirstName()).append(' ');
+            }
+            uri = customers.getNext();
+         }
+         String s = sb.toString();
+         Assert.assertTrue(s.contains("Bill"));
+         Assert.assertTrue(s.contains("Bob"));
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testCursorLinks() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         URI uri = new URI(baseURL + "services/customers?size=4");
+         Customers customers = client.target(uri).request().get(Customers.class);
+         Assert.assertNull(customers.getPrevious());
+         URI next = customers.getNext();
+         Assert.assertTrue(next.getQuery().contains("after="));
+
+         customers = client.target(next).request().get(Customers.class);
+         URI previous = customers.getPrevious();
+         Assert.assertTrue(previous.getQuery().contains("before="));
+
+         // back to the first page through the cursor
+         customers = client.target(previous).request().get(Customers.class);
+         Assert.assertEquals("Bill", customers.getCustomers().iterator().next().getFirstName());
+         Assert.assertEquals(4, customers.getCustomers().size());
+
+         int status = client.target(baseURL + "services/customers?after=garbage").request().get().getStatus();
+         Assert.assertEquals(400, status);
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testSearchCustomers() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         Customers customers = client.target(baseURL + "services/customers")
+                                     .queryParam("_s", "lastName==Burke;state==MA")
+                                     .queryParam("size", "4")
+                                     .request().get(Customers.class);
+         Assert.assertEquals(4, customers.getCustomers().size());
+         URI next = customers.getNext();
+         Assert.assertTrue(next.getQuery().contains("_s="));
+
+         customers = client.target(next).request().get(Customers.class);
+         Assert.assertEquals(2, customers.getCustomers().size());
+         Assert.assertNull(customers.getNext());
+
+         customers = client.target(baseURL + "services/customers")
+                           .queryParam("_s", "firstName==Bob")
+                           .request().get(Customers.class);
+         Assert.assertEquals("Bob", customers.getCustomers().iterator().next().getFirstName());
+
+         int status = client.target(baseURL + "services/customers").queryParam("_s", "unknown==1").request().get().getStatus();
+         Assert.assertEquals(400, status);
+      } finally {
+         client.close();
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testTiers() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         Customer customer = client.target(baseURL + "services/customers/1").request().get(Customer.class);
+         Assert.assertEquals("Bill", customer.getFirstName());
+
+         String tiers = client.target(baseURL + "services/customers/tiers").request().get(String.class);
+         Assert.assertTrue(tiers.startsWith("<tiers>"));
+         Assert.assertTrue(tiers.contains("<coldEntries>0</coldEntries>"));
+         Assert.assertFalse(tiers.contains("<hits>0</hits>"));
+      } finally {
+         client.close();
+      }
+   }
 }
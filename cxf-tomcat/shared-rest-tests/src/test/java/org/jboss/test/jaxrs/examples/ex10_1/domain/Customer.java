@@ -26,9 +26,11 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
+import org.jboss.test.jaxrs.examples.common.CustomerData;
+
 @XmlRootElement(name = "customer")
 @XmlType(propOrder = {"firstName", "lastName", "street", "city", "state", "zip", "country"})
-public class Customer
+public class Customer implements CustomerData
 {
    private int id;
    private String firstName;
@@ -37,23 +37,47 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import org.jboss.test.jaxrs.examples.common.BulkImportResult;
+import org.jboss.test.jaxrs.examples.common.CustomerBulkImport;
+import org.jboss.test.jaxrs.examples.common.IndexedStore;
+import org.jboss.test.jaxrs.examples.common.KeysetPage;
+import org.jboss.test.jaxrs.examples.common.Store;
+import org.jboss.test.jaxrs.examples.common.StoreSearch;
+import org.jboss.test.jaxrs.examples.common.TierStats;
+import org.jboss.test.jaxrs.examples.common.TieredStore;
 import org.jboss.test.jaxrs.examples.ex10_1.domain.Customer;
 import org.jboss.test.jaxrs.examples.ex10_1.domain.Customers;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private static final KeysetPage.Key<Customer> ID = new KeysetPage.Key<Customer>()
+   {
+      public int idOf(Customer customer)
+      {
+         return customer.getId();
+      }
+   };
+
+   private final Store<Customer> customerDB;
+   private final StoreSearch<Customer> search;
+   private final TieredStore<Customer> tiers;
 
-   public CustomerResource()
+   public CustomerResource(Store<Customer> customerDB)
    {
+      tiers = customerDB instanceof TieredStore ? (TieredStore<Customer>) customerDB : null;
+      IndexedStore<Customer> indexed = IndexedStore.customers(customerDB);
+      this.customerDB = indexed;
+      search = new StoreSearch<Customer>(indexed, Customer.class, ID);
+      if (customerDB.size() > 0)
+      {
+         // a persistent store kept the customers of the previous deployment
+         return;
+      }
       Customer customer;
       int id = 1;
 
@@ -66,7 +90,7 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
 
       customer = new Customer();
       customer.setId(id);
@@ -77,7 +101,7 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
 
       customer = new Customer();
       customer.setId(id);
@@ -88,7 +112,7 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
 
       customer = new Customer();
       customer.setId(id);
@@ -99,7 +123,7 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
 
       customer = new Customer();
       customer.setId(id);
@@ -110,7 +134,7 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
 
       customer = new Customer();
       customer.setId(id);
@@ -121,57 +145,81 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      this.customerDB.put(id++, customer);
    }
 
    @POST
-   @Consumes("application/xml")
+   @Consumes({"application/xml", "application/json"})
    public Response createCustomer(Customer customer)
    {
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
 
    }
 
-   @GET
+   /**
+    * Streams a &lt;customers&gt; document of any size into the database, see {@link CustomerBulkImport}.
+    */
+   @POST
+   @Path("bulk")
+   @Consumes("application/xml")
    @Produces("application/xml")
+   public Response importCustomers(InputStream is)
+   {
+      BulkImportResult result = CustomerBulkImport.importCustomers(is, customerDB,
+            new CustomerBulkImport.Factory<Customer>()
+            {
+               public Customer newCustomer()
+               {
+                  return new Customer();
+               }
+            });
+      System.out.println("Imported " + result.getImported() + " customers, rejected " + result.getFailed());
+      Response.Status status = result.isComplete() ? Response.Status.OK : Response.Status.BAD_REQUEST;
+      return Response.status(status).entity(result).build();
+   }
+
+   @GET
+   @Produces({"application/xml", "application/json"})
    public Customers getCustomers(@QueryParam("start") int start,
                                  @QueryParam("size") @DefaultValue("2") int size,
+                                 @QueryParam("after") String after,
+                                 @QueryParam("before") String before,
+                                 @QueryParam("_s") String query,
                                  @Context UriInfo uriInfo)
    {
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
-      builder.queryParam("start", "{start}");
-      builder.queryParam("size", "{size}");
 
-      ArrayList<Customer> list = new ArrayList<Customer>();
+      KeysetPage<Customer> page;
+      if (query != null)
+      {
+         // FIQL search, e.g. _s=lastName==Burke;state==MA, the matches are paged forward only
+         if (before != null) throw new WebApplicationException(Response.Status.BAD_REQUEST);
+         page = search.page(query, after, size);
+         builder.queryParam("_s", query);
+      }
+      else
+      {
+         // an index seek at any depth, the cursors keep the pages from shifting under inserts and purges
+         page = KeysetPage.of(customerDB, ID, after, before, start, size);
+      }
+      ArrayList<Customer> list = new ArrayList<Customer>(page.getValues());
       ArrayList<Link> links = new ArrayList<Link>();
-      synchronized (customerDB)
+      // next link
+      if (page.getNext() != null)
       {
-         int i = 0;
-         for (Customer customer : customerDB.values())
-         {
-            if (i >= start && i < start + size) list.add(customer);
-            i++;
-         }
-         // next link
-         if (start + size < customerDB.size())
-         {
-            int next = start + size;
-            URI nextUri = builder.clone().build(next, size);
-            Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
-            links.add(nextLink);
-          }
-         // previous link
-         if (start > 0)
-         {
-            int previous = start - size;
-            if (previous < 0) previous = 0;
-            URI previousUri = builder.clone().build(previous, size);
-            Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
-            links.add(previousLink);
-         }
+         URI nextUri = builder.clone().queryParam("after", page.getNext()).queryParam("size", size).build();
+         Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
+         links.add(nextLink);
+      }
+      // previous link
+      if (page.getPrevious() != null)
+      {
+         URI previousUri = builder.clone().queryParam("before", page.getPrevious()).queryParam("size", size).build();
+         Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
+         links.add(previousLink);
       }
       Customers customers = new Customers();
       customers.setCustomers(list);
@@ -192,4 +240,20 @@ public class CustomerResource
       return customer;
    }
 
+   /**
+    * Returns how the customers are spread between the heap and the cold tier and how often reads found them
+    * on the heap, if the store is a {@link TieredStore}.
+    */
+   @GET
+   @Path("tiers")
+   @Produces("application/xml")
+   public TierStats getTiers()
+   {
+      if (tiers == null)
+      {
+         throw new WebApplicationException(Response.Status.NOT_FOUND);
+      }
+      return tiers.stats();
+   }
+
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.jboss.test.jaxrs.examples.MicroBenchmark;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customers;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersJsonProvider;
+import org.junit.Test;
+
+/**
+ * Cost of writing and reading a page of customers as JSON with the generated {@link CustomersJsonProvider}
+ * against the Jettison based CXF JSONProvider.
+ */
+public class JsonProviderBenchmark
+{
+   private static final int ITERATIONS = 2000;
+   private static final int CUSTOMERS = 50;
+
+   @Test
+   public void testThroughput() throws Exception
+   {
+      final Customers customers = new Customers();
+      List<Customer> list = new ArrayList<Customer>();
+      for (int i = 0; i < CUSTOMERS; i++)
+      {
+         Customer cust = new Customer();
+         cust.setId(i);
+         cust.setFirstName("Bill" + i);
+         cust.setLastName("Burke");
+         cust.setStreet("256 Clarendon Street");
+         cust.setCity("Boston");
+         cust.setState("MA");
+         cust.setZip("02115");
+         cust.setCountry("USA");
+         list.add(cust);
+      }
+      customers.setCustomers(list);
+
+      final Annotation[] annotations = new Annotation[0];
+      final JSONProvider<Customers> jettison = new JSONProvider<Customers>();
+      final CustomersJsonProvider generated = new CustomersJsonProvider();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      generated.writeTo(customers, Customers.class, Customers.class, annotations, MediaType.APPLICATION_JSON_TYPE,
+            null, out);
+      final byte[] json = out.toByteArray();
+      System.out.println(String.format("payload: %d bytes for %d customers", json.length, CUSTOMERS));
+
+      MicroBenchmark.nsPerOp("JSONProvider (Jettison) write", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            jettison.writeTo(customers, Customers.class, Customers.class, annotations, MediaType.APPLICATION_JSON_TYPE,
+                  new MultivaluedHashMap<String, Object>(), new ByteArrayOutputStream(8192));
+         }
+      });
+      MicroBenchmark.nsPerOp("CustomersJsonProvider write", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            generated.writeTo(customers, Customers.class, Customers.class, annotations, MediaType.APPLICATION_JSON_TYPE,
+                  null, new ByteArrayOutputStream(8192));
+         }
+      });
+      MicroBenchmark.nsPerOp("JSONProvider (Jettison) read", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            jettison.readFrom(Customers.class, Customers.class, annotations, MediaType.APPLICATION_JSON_TYPE,
+                  new MultivaluedHashMap<String, String>(), new ByteArrayInputStream(json));
+         }
+      });
+      MicroBenchmark.nsPerOp("CustomersJsonProvider read", ITERATIONS, new MicroBenchmark.Op()
+      {
+         public void run(int i) throws Exception
+         {
+            generated.readFrom(Customers.class, Customers.class, annotations, MediaType.APPLICATION_JSON_TYPE, null,
+                  new ByteArrayInputStream(json));
+         }
+      });
+   }
+}
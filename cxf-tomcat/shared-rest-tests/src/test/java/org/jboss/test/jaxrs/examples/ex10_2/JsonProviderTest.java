@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerJsonProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customers;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersJsonProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Orders;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrdersJsonProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the JSON providers generated by the xml-binding-processor against the Jettison based CXF provider they
+ * replace.
+ */
+public class JsonProviderTest
+{
+   @Test
+   public void testOrdersSameJsonAsJettison() throws Exception
+   {
+      Orders orders = orders();
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new OrdersJsonProvider().writeTo(orders, Orders.class, Orders.class, null, null, null, actual);
+      Assert.assertEquals(jettison(orders), actual.toString("UTF-8"));
+   }
+
+   @Test
+   public void testCustomersSameJsonAsJettison() throws Exception
+   {
+      // a single customer is written as an object, more of them as an array, none as an empty string
+      Customers customers = new Customers();
+      List<Customer> list = new ArrayList<Customer>();
+      customers.setCustomers(list);
+      assertSameJsonAsJettison(customers);
+      list.add(customer(1, "Bill"));
+      assertSameJsonAsJettison(customers);
+      list.add(customer(2, "Monica"));
+      List<Link> links = new ArrayList<Link>();
+      links.add(Link.fromUri("http://localhost:8080/customers?start=2&size=2").rel("next").type("application/xml").build());
+      customers.setLinks(links);
+      assertSameJsonAsJettison(customers);
+   }
+
+   @Test
+   public void testTextTypedLikeJettison() throws Exception
+   {
+      String[] values = {"02115", "2115", "-0", "12.0", "12.50", "0.001", "1.0E10", "NaN", "true", "TRUE", "null", "",
+            " 1", "99999999999999999999", "256 Clarendon Street", "a/b \"c\" \\ \t\n\u0001\u001f "};
+      for (String value : values)
+      {
+         Customer cust = customer(7, value);
+         cust.setZip(value);
+         ByteArrayOutputStream actual = new ByteArrayOutputStream();
+         new CustomerJsonProvider().writeTo(cust, Customer.class, Customer.class, null, null, null, actual);
+         Assert.assertEquals(value, jettison(cust), actual.toString("UTF-8"));
+      }
+   }
+
+   @Test
+   public void testPropertyOrderWithoutPropOrder() throws Exception
+   {
+      org.jboss.test.jaxrs.examples.ex09_1.domain.Customer cust = new org.jboss.test.jaxrs.examples.ex09_1.domain.Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      cust.setStreet("256 Clarendon Street");
+      cust.setCity("Boston");
+      cust.setState("MA");
+      cust.setZip("02115");
+      cust.setCountry("USA");
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new org.jboss.test.jaxrs.examples.ex09_1.domain.CustomerJsonProvider().writeTo(cust, cust.getClass(),
+            cust.getClass(), null, null, null, actual);
+      Assert.assertEquals(jettison(cust), actual.toString("UTF-8"));
+   }
+
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      Orders orders = orders();
+      OrdersJsonProvider provider = new OrdersJsonProvider();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      provider.writeTo(orders, Orders.class, Orders.class, null, null, null, out);
+      Orders read = provider.readFrom(Orders.class, Orders.class, null, null, null, new ByteArrayInputStream(out.toByteArray()));
+
+      Assert.assertEquals(2, read.getOrders().size());
+      Order order = read.getOrders().iterator().next();
+      Assert.assertEquals(1, order.getId());
+      Assert.assertTrue(order.isCancelled());
+      Assert.assertEquals("<$199.02> & \"tax\"", order.getTotal());
+      Assert.assertEquals("Bill", order.getCustomer().getFirstName());
+      Assert.assertEquals("02115", order.getCustomer().getZip());
+      Assert.assertEquals(2, order.getLineItems().size());
+      Assert.assertEquals("iPhone", order.getLineItems().get(0).getProduct());
+      Assert.assertEquals("", order.getLineItems().get(1).getCost());
+      Assert.assertTrue(read.getOrders().toArray(new Order[0])[1].getLineItems().isEmpty());
+      Assert.assertEquals(URI.create("http://localhost:8080/orders?start=2&size=2"), read.getNext());
+      Assert.assertEquals("application/xml", read.getLinks().get(0).getType());
+   }
+
+   @Test
+   public void testReadsNumbersAndSingleValues() throws Exception
+   {
+      String json = "{ \"customers\" : { \"customer\" : { \"@id\" : 3, \"first-name\" : \"Bill\\u0020\\/\","
+            + " \"zip\" : 2115, \"unknown\" : [1, {\"a\": null}] },\n \"link\" : { \"@href\" : \"http://x/customers\" } } }";
+      Customers read = new CustomersJsonProvider().readFrom(Customers.class, Customers.class, null, null, null,
+            new ByteArrayInputStream(json.getBytes("UTF-8")));
+      Customer cust = read.getCustomers().iterator().next();
+      Assert.assertEquals(3, cust.getId());
+      Assert.assertEquals("Bill /", cust.getFirstName());
+      Assert.assertEquals("2115", cust.getZip());
+      Assert.assertEquals(URI.create("http://x/customers"), read.getLinks().get(0).getUri());
+   }
+
+   @Test
+   public void testMalformedDocument() throws Exception
+   {
+      String[] documents = {"{\"orders\":{\"order\":{\"@id\":\"x\"}}}", "{\"orders\":{\"order\":", "{\"customers\":{}}", "[]"};
+      for (String document : documents)
+      {
+         try
+         {
+            new OrdersJsonProvider().readFrom(Orders.class, Orders.class, null, null, null,
+                  new ByteArrayInputStream(document.getBytes("UTF-8")));
+            Assert.fail("expected a WebApplicationException for " + document);
+         }
+         catch (WebApplicationException e)
+         {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+         }
+      }
+   }
+
+   private static void assertSameJsonAsJettison(Customers customers) throws Exception
+   {
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new CustomersJsonProvider().writeTo(customers, Customers.class, Customers.class, null, null, null, actual);
+      Assert.assertEquals(jettison(customers), actual.toString("UTF-8"));
+   }
+
+   private static Customer customer(int id, String firstName)
+   {
+      Customer cust = new Customer();
+      cust.setId(id);
+      cust.setFirstName(firstName);
+      cust.setLastName("Burke");
+      cust.setCity("Boston");
+      cust.setZip("02115");
+      return cust;
+   }
+
+   private static Orders orders()
+   {
+      LineItem iphone = new LineItem();
+      iphone.setProduct("iPhone");
+      iphone.setCost("$199.99");
+      LineItem cover = new LineItem();
+      cover.setProduct("Cover");
+      cover.setCost("");
+
+      Order first = new Order();
+      first.setId(1);
+      first.setCancelled(true);
+      first.setTotal("<$199.02> & \"tax\"");
+      first.setDate("Sun Oct 18 10:00:00 EDT 2015");
+      first.setCustomer(customer(1, "Bill"));
+      List<LineItem> items = new ArrayList<LineItem>();
+      items.add(iphone);
+      items.add(cover);
+      first.setLineItems(items);
+
+      Order second = new Order();
+      second.setId(2);
+      second.setLineItems(new ArrayList<LineItem>());
+
+      List<Order> list = new ArrayList<Order>();
+      list.add(first);
+      list.add(second);
+      List<Link> links = new ArrayList<Link>();
+      links.add(Link.fromUri("http://localhost:8080/orders?start=2&size=2").rel("next").type("application/xml").build());
+      links.add(Link.fromUri("http://localhost:8080/orders/purge").rel("purge").build());
+
+      Orders orders = new Orders();
+      orders.setOrders(list);
+      orders.setLinks(links);
+      return orders;
+   }
+
+   static String jettison(Object o) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new JSONProvider<Object>().writeTo(o, o.getClass(), o.getClass(), new Annotation[0],
+            MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<String, Object>(), out);
+      return out.toString("UTF-8");
+   }
+}
@@ -0,0 +1,370 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.UriInfo;
+
+import org.jboss.test.jaxrs.examples.common.Compactor;
+import org.jboss.test.jaxrs.examples.common.IntHashStore;
+import org.jboss.test.jaxrs.examples.common.IntHashStoreFactory;
+import org.jboss.test.jaxrs.examples.common.Money;
+import org.jboss.test.jaxrs.examples.common.Replicator;
+import org.jboss.test.jaxrs.examples.common.Store;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats;
+import org.jboss.test.jaxrs.examples.ex10_2.services.OrderAggregates;
+import org.jboss.test.jaxrs.examples.ex10_2.services.OrderResource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the order aggregates against a recomputation from the stored orders after concurrent changes.
+ */
+public class OrderAggregatesTest
+{
+   private static final int THREADS = 4;
+   private static final int CUSTOMERS = 7;
+   private static final String[] DATES = {"Sun Oct 18 10:00:00 EDT 2015", "Mon Oct 19 23:59:59 EDT 2015",
+         "2015-10-20T08:00:00Z"};
+   private static final String[] DAYS = {"2015-10-18", "2015-10-19", "2015-10-20"};
+
+   private static final Compactor.Garbage<Order> CANCELLED = new Compactor.Garbage<Order>()
+   {
+      public boolean isGarbage(Order order)
+      {
+         return order.isCancelled();
+      }
+   };
+
+   private static Order order(int id)
+   {
+      Customer customer = new Customer();
+      customer.setId(id % CUSTOMERS);
+      Order order = new Order();
+      order.setId(id);
+      order.setCustomer(customer);
+      order.setDate(DATES[id % DATES.length]);
+      order.setTotal("$" + (id % 1000) + "." + (id % 90 + 10));
+      return order;
+   }
+
+   private static Order cancelledCopy(Order order)
+   {
+      Order copy = order(order.getId());
+      copy.setCancelled(true);
+      return copy;
+   }
+
+   @Test
+   public void testCreateCancelPurgeConcurrently() throws Exception
+   {
+      final Store<Order> store = new IntHashStore<Order>();
+      final OrderAggregates aggregates = new OrderAggregates();
+      final Compactor<Order> compactor = new Compactor<Order>(store, CANCELLED, new Compactor.Removal<Order>()
+      {
+         public void removed(int id, Order order)
+         {
+            aggregates.removed(order);
+         }
+      });
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try
+      {
+         List<Future<Void>> workers = new ArrayList<Future<Void>>();
+         for (int t = 0; t < THREADS; t++)
+         {
+            final int seed = t + 1;
+            workers.add(executor.submit(new Callable<Void>()
+            {
+               public Void call()
+               {
+                  int random = seed;
+                  for (int i = 0; i < 20000; i++)
+                  {
+                     random = random * 1103515245 + 12345;
+                     if ((random >>> 16) % 3 != 0)
+                     {
+                        Order order = order(store.nextId());
+                        store.put(order.getId(), order);
+                        aggregates.created(order);
+                     }
+                     else
+                     {
+                        // as OrderResource.cancelOrder does, threads may cancel the same order
+                        int id = (random >>> 8) % (store.size() + 1) + 1;
+                        final Order[] open = new Order[1];
+                        Order order = store.compute(id, new Store.Update<Order>()
+                        {
+                           public Order apply(int id, Order current)
+                           {
+                              open[0] = current == null || current.isCancelled() ? null : current;
+                              return open[0] == null ? current : cancelledCopy(current);
+                           }
+                        });
+                        if (open[0] != null)
+                        {
+                           aggregates.cancelled(order);
+                           compactor.mark(id);
+                        }
+                     }
+                     if (i % 1000 == 0)
+                     {
+                        compactor.sweep();
+                     }
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> worker : workers)
+         {
+            worker.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (compactor.isRunning() && System.nanoTime() < deadline)
+      {
+         Thread.sleep(5);
+      }
+      Assert.assertTrue(compactor.removed() > 0);
+      assertConsistent(store, aggregates);
+
+      compactor.sweep();
+      while ((compactor.isRunning() || compactor.pending() > 0) && System.nanoTime() < deadline)
+      {
+         Thread.sleep(5);
+      }
+      Assert.assertEquals(0, aggregates.stats().getCancelled());
+      assertConsistent(store, aggregates);
+   }
+
+   @Test
+   public void testResourceRebuildsAndCancels() throws Exception
+   {
+      Store<Order> store = new IntHashStore<Order>();
+      for (int id = 1; id <= 3000; id++)
+      {
+         Order order = order(id);
+         order.setCancelled(id % 10 == 0);
+         store.put(id, order);
+      }
+      final OrderResource resource = new OrderResource(store);
+      OrderStats before = resource.getStats(null, null);
+      Assert.assertEquals(2700, before.getOpen());
+      Assert.assertEquals(300, before.getCancelled());
+
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try
+      {
+         List<Future<Void>> workers = new ArrayList<Future<Void>>();
+         for (int t = 0; t < THREADS; t++)
+         {
+            workers.add(executor.submit(new Callable<Void>()
+            {
+               public Void call()
+               {
+                  // every thread cancels the same orders
+                  for (int id = 1; id <= 3000; id += 3)
+                  {
+                     resource.cancelOrder(id);
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> worker : workers)
+         {
+            worker.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      int open = 0;
+      long revenue = 0;
+      for (int id = 1; id <= 3000; id++)
+      {
+         Order order = store.get(id);
+         if (order != null && !order.isCancelled())
+         {
+            open++;
+            revenue += Money.parseCents(order.getTotal());
+         }
+      }
+      OrderStats after = resource.getStats(null, null);
+      Assert.assertEquals(open, after.getOpen());
+      Assert.assertEquals(Money.format(revenue), after.getRevenue());
+      Assert.assertEquals(Money.format(0), resource.getStats(CUSTOMERS + 1, null).getRevenue());
+   }
+
+   @Test
+   public void testPromotedReplicaRecovers() throws Exception
+   {
+      Replicator primary = new Replicator(0, null);
+      Replicator replica = new Replicator(-1, new InetSocketAddress("localhost", primary.getPort()));
+      try
+      {
+         Store<Order> orders = primary.factory(new IntHashStoreFactory()).createStore("orders", Order.class);
+         Store<Order> copies = replica.factory(new IntHashStoreFactory()).createStore("orders", Order.class);
+         final OrderResource resource = new OrderResource(copies);
+         replica.onPromotion(new Replicator.Promotion()
+         {
+            public void promoted()
+            {
+               resource.recover();
+            }
+         });
+         primary.start();
+         replica.start();
+         long revenue = 0;
+         for (int id = 1; id <= 30; id++)
+         {
+            Order order = order(orders.nextId());
+            if (id % 3 == 0)
+            {
+               order.setCancelled(true);
+            }
+            else
+            {
+               revenue += Money.parseCents(order.getTotal());
+            }
+            orders.put(order.getId(), order);
+         }
+         long deadline = System.currentTimeMillis() + 20000;
+         while (replica.status().getSequence() < primary.status().getSequence()
+               && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(10);
+         }
+         Assert.assertEquals(30, copies.size());
+         // the primary goes away before the replica takes over
+         primary.close();
+         replica.promote();
+
+         OrderStats stats = resource.getStats(null, null);
+         Assert.assertEquals(20, stats.getOpen());
+         Assert.assertEquals(10, stats.getCancelled());
+         Assert.assertEquals(Money.format(revenue), stats.getRevenue());
+         resource.cancelOrder(1);
+         revenue -= Money.parseCents(copies.get(1).getTotal());
+         stats = resource.getStats(null, null);
+         Assert.assertEquals(19, stats.getOpen());
+         Assert.assertEquals(Money.format(revenue), stats.getRevenue());
+
+         // the replicated cancelled orders are marked for the purge along with the new one
+         deadline = System.currentTimeMillis() + 20000;
+         while (resource.getPurge().getPending() < 11 && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(10);
+         }
+         Assert.assertEquals(11, resource.getPurge().getPending());
+         resource.purgeOrders(uriInfo());
+         while ((resource.getPurge().isRunning() || copies.size() > 19) && System.currentTimeMillis() < deadline)
+         {
+            Thread.sleep(10);
+         }
+         Assert.assertEquals(19, copies.size());
+         Assert.assertEquals(19, resource.getStats(null, null).getOpen());
+         Assert.assertEquals(0, resource.getStats(null, null).getCancelled());
+      }
+      finally
+      {
+         replica.close();
+         primary.close();
+      }
+   }
+
+   private static UriInfo uriInfo()
+   {
+      return (UriInfo) Proxy.newProxyInstance(OrderAggregatesTest.class.getClassLoader(),
+            new Class<?>[] {UriInfo.class}, new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  return "getAbsolutePath".equals(method.getName()) ? URI.create("http://localhost/orders/purge") : null;
+               }
+            });
+   }
+
+   private static void assertConsistent(Store<Order> store, OrderAggregates aggregates)
+   {
+      Map<String, long[]> expected = new HashMap<String, long[]>();
+      for (Order order : store.range(Integer.MIN_VALUE, Integer.MAX_VALUE))
+      {
+         long cents = Money.parseCents(order.getTotal());
+         String[] keys = {"all", "customer " + order.getCustomer().getId(), "day " + DAYS[order.getId() % DAYS.length]};
+         for (String key : keys)
+         {
+            long[] totals = expected.get(key);
+            if (totals == null)
+            {
+               totals = new long[4];
+               expected.put(key, totals);
+            }
+            totals[order.isCancelled() ? 1 : 0]++;
+            totals[order.isCancelled() ? 3 : 2] += cents;
+         }
+      }
+      assertStats("all", expected.get("all"), aggregates.stats());
+      for (int customer = 0; customer < CUSTOMERS; customer++)
+      {
+         assertStats("customer " + customer, expected.get("customer " + customer), aggregates.customer(customer));
+      }
+      for (String day : DAYS)
+      {
+         assertStats("day " + day, expected.get("day " + day), aggregates.day(day));
+      }
+   }
+
+   private static void assertStats(String key, long[] expected, OrderStats actual)
+   {
+      if (expected == null)
+      {
+         expected = new long[4];
+      }
+      Assert.assertEquals(key, expected[0], actual.getOpen());
+      Assert.assertEquals(key, expected[1], actual.getCancelled());
+      Assert.assertEquals(key, Money.format(expected[2]), actual.getRevenue());
+      Assert.assertEquals(key, Money.format(expected[3]), actual.getCancelledTotal());
+   }
+}
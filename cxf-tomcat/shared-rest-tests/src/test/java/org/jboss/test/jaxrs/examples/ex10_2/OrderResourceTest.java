@@ -24,6 +24,7 @@ package org.jboss.test.jaxrs.examples.ex10_2;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 
 import javax.ws.rs.client.Client;
@@ -39,6 +40,8 @@ import org.jboss.arquillian.test.api.ArquillianResource;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
+import org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
@@ -62,15 +65,51 @@ public class OrderResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Customers.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.JsonCodec.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Order.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrderXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Orders.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrdersXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Purge.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.LineItemXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.CustomerResource.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.OrderResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.OrderAggregates.class)
                .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.StoreResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication.class);
-         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication", "/services/*");
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.KeysetPage.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Compactor.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Money.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StripedCounter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.PageCursor.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.JaxbContextResolver.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.PooledJaxbProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Replicator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReplicationStatus.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReadOnlyReplicaException.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReplicaLoadingException.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReplicationResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReadOnlyReplicaExceptionMapper.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReplicaLoadingExceptionMapper.class);
+         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication", "/services/*",
+               Collections.singletonMap(StoreFactory.INIT_PARAM, InMemoryStoreFactory.class.getName()));
       return archive;
    }
    
@@ -140,10 +179,30 @@ public class OrderResourceTest
          Assert.assertTrue(orderList.contains("<product>iPhone</product>"));
          Assert.assertTrue(orderList.contains("<cancelled>true</cancelled>"));
 
+         String stats = client.target(orders).path("stats").request().get(String.class);
+         Assert.assertTrue(stats.contains("<open>0</open>"));
+         Assert.assertTrue(stats.contains("<cancelled>1</cancelled>"));
+         Assert.assertTrue(stats.contains("<revenue>$0.00</revenue>"));
+         Assert.assertTrue(stats.contains("<cancelledTotal>$199.99</cancelledTotal>"));
+
          response = client.target(purge).request().post(null);
-         Assert.assertEquals(204, response.getStatus());
+         Assert.assertEquals(202, response.getStatus());
+         Assert.assertTrue(response.readEntity(String.class).contains("<purge>"));
          response.close();
 
+         // the purge runs in the background, its progress is polled
+         String progress = client.target(purge).request().get(String.class);
+         for (int i = 0; i < 100 && !(progress.contains("<running>false</running>") && progress.contains("<pending>0</pending>")); i++)
+         {
+            Thread.sleep(50);
+            progress = client.target(purge).request().get(String.class);
+         }
+         Assert.assertTrue(progress.contains("<removed>1</removed>"));
+
+         stats = client.target(orders).path("stats").request().get(String.class);
+         Assert.assertTrue(stats.contains("<cancelled>0</cancelled>"));
+         Assert.assertTrue(stats.contains("<cancelledTotal>$0.00</cancelledTotal>"));
+
          orderList = client.target(orders).request().get(String.class);
          Assert.assertFalse(orderList.contains("<product>iPhone</product>"));
       } finally {
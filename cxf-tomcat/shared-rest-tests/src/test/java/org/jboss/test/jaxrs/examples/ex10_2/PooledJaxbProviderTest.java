@@ -0,0 +1,253 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Link;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.jboss.test.jaxrs.examples.common.JaxbContextResolver;
+import org.jboss.test.jaxrs.examples.common.PooledJaxbProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customers;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Orders;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PooledJaxbProviderTest
+{
+   private final JaxbContextResolver resolver = new JaxbContextResolver(Customer.class, Customers.class,
+         LineItem.class, Order.class, Orders.class);
+
+   @Test
+   public void testOneContextPerPackage() throws Exception
+   {
+      Assert.assertEquals(1, resolver.getContexts().size());
+      Assert.assertSame(resolver.getContext(Orders.class), resolver.getContext(LineItem.class));
+      Assert.assertNull(resolver.getContext(org.jboss.test.jaxrs.examples.ex10_1.domain.Customer.class));
+   }
+
+   @Test
+   public void testOrdersSameBytesAsJaxb() throws Exception
+   {
+      PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      Orders orders = orders();
+      Assert.assertEquals(marshal(orders), write(provider, orders));
+      // a second write goes through the same, already used marshaller
+      Assert.assertEquals(marshal(orders), write(provider, orders));
+   }
+
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      String xml = write(provider, orders());
+      Orders read = read(provider, xml);
+      Assert.assertEquals(1, read.getOrders().size());
+      Order order = read.getOrders().iterator().next();
+      Assert.assertEquals("Bill", order.getCustomer().getFirstName());
+      Assert.assertEquals(2, order.getLineItems().size());
+      Assert.assertEquals("Cover", order.getLineItems().get(1).getProduct());
+      Assert.assertEquals("next", read.getLinks().get(0).getRel());
+   }
+
+   @Test
+   public void testPoolStatistics() throws Exception
+   {
+      PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      // primed with one marshaller and one unmarshaller
+      Assert.assertEquals(2, provider.getCreated());
+      Assert.assertEquals(2, provider.getIdle());
+      for (int i = 0; i < 10; i++)
+      {
+         String xml = write(provider, orders());
+         read(provider, xml);
+      }
+      Assert.assertEquals(2, provider.getCreated());
+      Assert.assertEquals(20, provider.getReused());
+      Assert.assertEquals(2, provider.getIdle());
+   }
+
+   @Test
+   public void testConcurrentWrites() throws Exception
+   {
+      final PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      final String expected = marshal(orders());
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try
+      {
+         List<Future<String>> results = new ArrayList<Future<String>>();
+         for (int i = 0; i < 200; i++)
+         {
+            results.add(executor.submit(new Callable<String>()
+            {
+               public String call() throws Exception
+               {
+                  return write(provider, orders());
+               }
+            }));
+         }
+         for (Future<String> result : results)
+         {
+            Assert.assertEquals(expected, result.get());
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      Assert.assertTrue(provider.getCreated() <= 2 + PooledJaxbProvider.POOL_SIZE + 8);
+      Assert.assertTrue(provider.getIdle() <= 2 * PooledJaxbProvider.POOL_SIZE);
+   }
+
+   @Test
+   public void testOnlyBoundRootElements() throws Exception
+   {
+      PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      Assert.assertTrue(provider.isWriteable(Orders.class, Orders.class, null, null));
+      Assert.assertFalse(provider.isWriteable(String.class, String.class, null, null));
+      Assert.assertFalse(provider.isReadable(org.jboss.test.jaxrs.examples.ex10_1.domain.Customer.class,
+            org.jboss.test.jaxrs.examples.ex10_1.domain.Customer.class, null, null));
+   }
+
+   @Test
+   public void testMalformedDocument() throws Exception
+   {
+      PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+      try
+      {
+         read(provider, "<orders><order");
+         Assert.fail("expected a WebApplicationException");
+      }
+      catch (WebApplicationException e)
+      {
+         Assert.assertEquals(400, e.getResponse().getStatus());
+      }
+      // the unmarshaller went back to the pool
+      Assert.assertEquals(2, provider.getIdle());
+   }
+
+   @Test
+   public void testEntitiesAreNotExpanded() throws Exception
+   {
+      File secret = File.createTempFile("secret", ".txt");
+      try
+      {
+         FileOutputStream out = new FileOutputStream(secret);
+         out.write("top secret".getBytes("UTF-8"));
+         out.close();
+         PooledJaxbProvider provider = new PooledJaxbProvider(resolver);
+         String xml = write(provider, orders());
+         String body = xml.substring(xml.indexOf("<orders"));
+         // an internal entity, the building block of entity expansion attacks, and an external one
+         String doctype = "<!DOCTYPE orders [<!ENTITY bill \"Bill\"><!ENTITY secret SYSTEM \"" + secret.toURI()
+               + "\">]>";
+         for (String entity : new String[] {"&bill;", "&secret;"})
+         {
+            try
+            {
+               Orders read = read(provider, doctype + body.replace("Bill", entity));
+               Assert.fail(entity + " read as " + read.getOrders().iterator().next().getCustomer().getFirstName());
+            }
+            catch (WebApplicationException e)
+            {
+               Assert.assertEquals(400, e.getResponse().getStatus());
+            }
+         }
+      }
+      finally
+      {
+         secret.delete();
+      }
+   }
+
+   private static String write(PooledJaxbProvider provider, Object o) throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      provider.writeTo(o, o.getClass(), o.getClass(), null, null, null, out);
+      return out.toString("UTF-8");
+   }
+
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private static Orders read(PooledJaxbProvider provider, String xml) throws Exception
+   {
+      return (Orders) provider.readFrom((Class) Orders.class, Orders.class, null, null, null,
+            new ByteArrayInputStream(xml.getBytes("UTF-8")));
+   }
+
+   private static Orders orders()
+   {
+      Customer cust = new Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+
+      LineItem iphone = new LineItem();
+      iphone.setProduct("iPhone");
+      iphone.setCost("$199.99");
+      LineItem cover = new LineItem();
+      cover.setProduct("Cover");
+      cover.setCost("$9.99");
+
+      Order order = new Order();
+      order.setId(1);
+      order.setTotal("$209.98");
+      order.setCustomer(cust);
+      List<LineItem> items = new ArrayList<LineItem>();
+      items.add(iphone);
+      items.add(cover);
+      order.setLineItems(items);
+
+      List<Order> list = new ArrayList<Order>();
+      list.add(order);
+      List<Link> links = new ArrayList<Link>();
+      links.add(Link.fromUri("http://localhost:8080/orders?start=1&size=1").rel("next").type("application/xml").build());
+
+      Orders orders = new Orders();
+      orders.setOrders(list);
+      orders.setLinks(links);
+      return orders;
+   }
+
+   private static String marshal(Object o) throws Exception
+   {
+      Marshaller marshaller = JAXBContext.newInstance(o.getClass()).createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      marshaller.marshal(o, out);
+      return out.toString("UTF-8");
+   }
+}
@@ -0,0 +1,295 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.jboss.arquillian.container.test.api.ContainerController;
+import org.jboss.arquillian.container.test.api.Deployer;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
+import org.jboss.arquillian.container.test.api.TargetsContainer;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.test.jaxrs.examples.JBossWSTestHelper;
+import org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory;
+import org.jboss.test.jaxrs.examples.common.ReplicationStatus;
+import org.jboss.test.jaxrs.examples.common.Replicator;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * The shop deployed on the default container as the primary and on the replica container as its replica, which
+ * follows it over loopback on the HTTP port of its container plus 1000.
+ */
+@RunWith(Arquillian.class)
+public class ReplicationTest
+{
+   private static final String GROUP = "shared-rest-tests";
+   private static final String PRIMARY = "primary";
+   private static final String REPLICA = "replica";
+
+   @ArquillianResource
+   private ContainerController controller;
+
+   @ArquillianResource
+   private Deployer deployer;
+
+   @Deployment(name = PRIMARY, managed = false, testable = false)
+   @TargetsContainer("tomcat")
+   public static WebArchive createPrimary() {
+      Map<String, String> initParams = new HashMap<String, String>();
+      initParams.put(Replicator.PORT_PARAM, Integer.toString(replicationPort("jboss")));
+      return createDeployment(initParams);
+   }
+
+   @Deployment(name = REPLICA, managed = false, testable = false)
+   @TargetsContainer(REPLICA)
+   public static WebArchive createReplica() {
+      Map<String, String> initParams = new HashMap<String, String>();
+      initParams.put(Replicator.PORT_PARAM, Integer.toString(replicationPort(REPLICA)));
+      initParams.put(Replicator.PRIMARY_PARAM, JBossWSTestHelper.getServerHost() + ":" + replicationPort("jboss"));
+      return createDeployment(initParams);
+   }
+
+   private static WebArchive createDeployment(Map<String, String> initParams) {
+      WebArchive archive = ShrinkWrap.create(WebArchive.class, "jaxrs-examples-ex10_2-replication.war");
+         archive
+               .addManifest()
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Customers.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.JsonCodec.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Order.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrderXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrderJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Orders.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrdersXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.Purge.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.LineItemXmlProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.domain.LineItemJsonProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.CustomerResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.OrderResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.OrderAggregates.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.StoreResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReplicationResource.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReadOnlyReplicaExceptionMapper.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ReplicaLoadingExceptionMapper.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.KeysetPage.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Compactor.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlExport.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Money.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StripedCounter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.PageCursor.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.JaxbContextResolver.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.PooledJaxbProvider.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.MappedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerRecordCodec.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerXmlWriter.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Utf8.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Codecs.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Versioned.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Replicator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReplicatedStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReplicationStatus.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReadOnlyReplicaException.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.ReplicaLoadingException.class);
+         initParams.put(StoreFactory.INIT_PARAM, InMemoryStoreFactory.class.getName());
+         JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex10_2.services.ShoppingApplication", "/services/*",
+               initParams);
+      return archive;
+   }
+
+   private static int replicationPort(String container)
+   {
+      return JBossWSTestHelper.getServerPort(GROUP, container) + 1000;
+   }
+
+   private static String services(String container)
+   {
+      return "http://" + JBossWSTestHelper.getServerHost() + ":" + JBossWSTestHelper.getServerPort(GROUP, container)
+            + "/jaxrs-examples-ex10_2-replication/services/";
+   }
+
+   @Test
+   @RunAsClient
+   public void testReplicaFollowsAndTakesOver() throws Exception
+   {
+      deployer.deploy(PRIMARY);
+      boolean primaryDeployed = true;
+      controller.start(REPLICA);
+      Client client = ClientBuilder.newClient();
+      try {
+         deployer.deploy(REPLICA);
+         String primary = services("jboss");
+         String replica = services(REPLICA);
+
+         Customer customer = new Customer();
+         customer.setFirstName("Bill");
+         customer.setLastName("Burke");
+         customer.setStreet("10 Somewhere Street");
+         customer.setCity("Westford");
+         customer.setState("MA");
+         customer.setZip("01711");
+         customer.setCountry("USA");
+         Response response = client.target(primary + "customers").request().post(Entity.xml(customer));
+         Assert.assertEquals(201, response.getStatus());
+         URI customerUrl = response.getLocation();
+         response.close();
+
+         Order order = new Order();
+         order.setTotal("$199.99");
+         order.setCustomer(customer);
+         order.setDate(new Date().toString());
+         LineItem item = new LineItem();
+         item.setCost("$199.99");
+         item.setProduct("iPhone");
+         order.setLineItems(new ArrayList<LineItem>());
+         order.getLineItems().add(item);
+         response = client.target(primary + "orders").request().post(Entity.xml(order));
+         Assert.assertEquals(201, response.getStatus());
+         URI orderUrl = response.getLocation();
+         response.close();
+
+         // the replica catches up asynchronously
+         ReplicationStatus head = client.target(primary + "replication").request().get(ReplicationStatus.class);
+         Assert.assertEquals("primary", head.getRole());
+         ReplicationStatus status = client.target(replica + "replication").request().get(ReplicationStatus.class);
+         for (int i = 0; i < 200 && !(status.isConnected() && status.getSequence() >= head.getSequence()); i++)
+         {
+            Thread.sleep(50);
+            status = client.target(replica + "replication").request().get(ReplicationStatus.class);
+         }
+         Assert.assertEquals("replica", status.getRole());
+         Assert.assertEquals(head.getSequence(), status.getSequence());
+         Assert.assertEquals(0, status.getLag());
+
+         String id = customerUrl.getPath().substring(customerUrl.getPath().lastIndexOf('/') + 1);
+         Customer copy = client.target(replica + "customers/" + id).request().get(Customer.class);
+         Assert.assertEquals("Bill", copy.getFirstName());
+         String orderList = client.target(replica + "orders").request().get(String.class);
+         Assert.assertTrue(orderList.contains("<product>iPhone</product>"));
+
+         response = client.target(replica + "customers").request().post(Entity.xml(customer));
+         Assert.assertEquals(503, response.getStatus());
+         response.close();
+
+         // failover: the primary is gone before the replica takes over, undeploying it closed its replicator
+         deployer.undeploy(PRIMARY);
+         primaryDeployed = false;
+         status = client.target(replica + "replication").request().get(ReplicationStatus.class);
+         for (int i = 0; i < 200 && status.isConnected(); i++)
+         {
+            Thread.sleep(50);
+            status = client.target(replica + "replication").request().get(ReplicationStatus.class);
+         }
+         Assert.assertFalse(status.isConnected());
+         status = client.target(replica + "replication/promote").request().post(null, ReplicationStatus.class);
+         Assert.assertEquals("primary", status.getRole());
+         response = client.target(replica + "customers").request().post(Entity.xml(customer));
+         Assert.assertEquals(201, response.getStatus());
+         // the ids the former primary allocated were replicated too
+         String path = response.getLocation().getPath();
+         Assert.assertTrue(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)) > Integer.parseInt(id));
+         response.close();
+
+         // the promoted replica counts and purges the orders it was sent
+         String stats = client.target(replica + "orders/stats").request().get(String.class);
+         Assert.assertTrue(stats.contains("<open>1</open>"));
+         Assert.assertTrue(stats.contains("<revenue>$199.99</revenue>"));
+         String orderId = orderUrl.getPath().substring(orderUrl.getPath().lastIndexOf('/') + 1);
+         response = client.target(replica + "orders/" + orderId + "/cancel").request().post(null);
+         Assert.assertEquals(204, response.getStatus());
+         response.close();
+         stats = client.target(replica + "orders/stats").request().get(String.class);
+         Assert.assertTrue(stats.contains("<open>0</open>"));
+         Assert.assertTrue(stats.contains("<revenue>$0.00</revenue>"));
+         response = client.target(replica + "orders/purge").request().post(null);
+         Assert.assertEquals(202, response.getStatus());
+         response.close();
+         String progress = client.target(replica + "orders/purge").request().get(String.class);
+         for (int i = 0; i < 100 && !(progress.contains("<running>false</running>") && progress.contains("<pending>0</pending>")); i++)
+         {
+            Thread.sleep(50);
+            progress = client.target(replica + "orders/purge").request().get(String.class);
+         }
+         Assert.assertTrue(progress.contains("<removed>1</removed>"));
+      } finally {
+         client.close();
+         deployer.undeploy(REPLICA);
+         controller.stop(REPLICA);
+         if (primaryDeployed) {
+            deployer.undeploy(PRIMARY);
+         }
+      }
+   }
+
+   @Test
+   @RunAsClient
+   public void testPrimaryRedeploysOnItsPort() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         // the replication port of the first deployment is released when it is undeployed
+         deployer.deploy(PRIMARY);
+         deployer.undeploy(PRIMARY);
+         deployer.deploy(PRIMARY);
+         ReplicationStatus status = client.target(services("jboss") + "replication").request().get(ReplicationStatus.class);
+         Assert.assertEquals("primary", status.getRole());
+      } finally {
+         client.close();
+         deployer.undeploy(PRIMARY);
+      }
+   }
+}
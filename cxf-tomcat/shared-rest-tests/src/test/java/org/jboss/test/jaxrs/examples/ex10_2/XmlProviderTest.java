@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Link;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Orders;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrdersXmlProvider;
+import org.jboss.test.jaxrs.examples.ex12_2.domain.CustomerXmlProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the providers generated by the xml-binding-processor against the JAXB marshaller they replace.
+ */
+public class XmlProviderTest
+{
+   @Test
+   public void testOrdersSameBytesAsJaxb() throws Exception
+   {
+      Orders orders = orders();
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new OrdersXmlProvider().writeTo(orders, Orders.class, Orders.class, null, null, null, actual);
+      Assert.assertEquals(marshal(orders), actual.toString("UTF-8"));
+   }
+
+   @Test
+   public void testEmptyOrdersSameBytesAsJaxb() throws Exception
+   {
+      Orders orders = new Orders();
+      orders.setOrders(new ArrayList<Order>());
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new OrdersXmlProvider().writeTo(orders, Orders.class, Orders.class, null, null, null, actual);
+      Assert.assertEquals(marshal(orders), actual.toString("UTF-8"));
+   }
+
+   @Test
+   public void testPropertyOrderWithoutPropOrder() throws Exception
+   {
+      // the Content-MD5 asserted by the ex12_2 test depends on JAXB sorting the properties by name
+      org.jboss.test.jaxrs.examples.ex12_2.domain.Customer cust = new org.jboss.test.jaxrs.examples.ex12_2.domain.Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      cust.setStreet("256 Clarendon Street");
+      cust.setCity("Boston");
+      cust.setState("MA");
+      cust.setZip("02115");
+      cust.setCountry("USA");
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      new CustomerXmlProvider().writeTo(cust, cust.getClass(), cust.getClass(), null, null, null, actual);
+      Assert.assertEquals(marshal(cust), actual.toString("UTF-8"));
+   }
+
+   @Test
+   public void testRoundTrip() throws Exception
+   {
+      Orders orders = orders();
+      OrdersXmlProvider provider = new OrdersXmlProvider();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      provider.writeTo(orders, Orders.class, Orders.class, null, null, null, out);
+      Orders read = provider.readFrom(Orders.class, Orders.class, null, null, null, new ByteArrayInputStream(out.toByteArray()));
+
+      Assert.assertEquals(2, read.getOrders().size());
+      Order order = read.getOrders().iterator().next();
+      Assert.assertEquals(1, order.getId());
+      Assert.assertTrue(order.isCancelled());
+      Assert.assertEquals("<$199.02> & \"tax\"", order.getTotal());
+      Assert.assertEquals("Bill", order.getCustomer().getFirstName());
+      Assert.assertEquals(2, order.getLineItems().size());
+      Assert.assertEquals("iPhone", order.getLineItems().get(0).getProduct());
+      Assert.assertEquals(URI.create("http://localhost:8080/orders?start=2&size=2"), read.getNext());
+      Assert.assertEquals("application/xml", read.getLinks().get(0).getType());
+   }
+
+   @Test
+   public void testMalformedDocument() throws Exception
+   {
+      try
+      {
+         new OrdersXmlProvider().readFrom(Orders.class, Orders.class, null, null, null,
+               new ByteArrayInputStream("<orders><order id=\"x\"/></orders>".getBytes("UTF-8")));
+         Assert.fail("expected a WebApplicationException");
+      }
+      catch (WebApplicationException e)
+      {
+         Assert.assertEquals(400, e.getResponse().getStatus());
+      }
+   }
+
+   private static Orders orders()
+   {
+      Customer cust = new Customer();
+      cust.setId(1);
+      cust.setFirstName("Bill");
+      cust.setLastName("Burke");
+      cust.setCity("Boston");
+
+      LineItem iphone = new LineItem();
+      iphone.setProduct("iPhone");
+      iphone.setCost("$199.99");
+      LineItem cover = new LineItem();
+      cover.setProduct("Cover");
+      cover.setCost("");
+
+      Order first = new Order();
+      first.setId(1);
+      first.setCancelled(true);
+      first.setTotal("<$199.02> & \"tax\"");
+      first.setDate("Sun Oct 18 10:00:00 EDT 2015");
+      first.setCustomer(cust);
+      List<LineItem> items = new ArrayList<LineItem>();
+      items.add(iphone);
+      items.add(cover);
+      first.setLineItems(items);
+
+      Order second = new Order();
+      second.setId(2);
+      second.setLineItems(new ArrayList<LineItem>());
+
+      List<Order> list = new ArrayList<Order>();
+      list.add(first);
+      list.add(second);
+      List<Link> links = new ArrayList<Link>();
+      links.add(Link.fromUri("http://localhost:8080/orders?start=2&size=2").rel("next").type("application/xml").build());
+      links.add(Link.fromUri("http://localhost:8080/orders/purge").rel("purge").build());
+
+      Orders orders = new Orders();
+      orders.setOrders(list);
+      orders.setLinks(links);
+      return orders;
+   }
+
+   private static String marshal(Object o) throws Exception
+   {
+      Marshaller marshaller = JAXBContext.newInstance(o.getClass()).createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      marshaller.marshal(o, out);
+      return out.toString("UTF-8");
+   }
+}
@@ -26,6 +26,9 @@ import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
+
+import org.jboss.test.jaxrs.examples.common.Money;
+
 import java.util.List;
 
 /**
@@ -35,12 +38,15 @@ import java.util.List;
 @XmlType(propOrder = {"total", "date", "cancelled", "customer", "lineItems"})
 public class Order
 {
+   private static final long UNPARSED = Long.MIN_VALUE;
+
    protected int id;
    protected boolean cancelled;
    protected List<LineItem> lineItems;
    protected String total;
    protected String date;
    protected Customer customer;
+   private volatile long totalCents = UNPARSED;
 
    @XmlAttribute
    public int getId()
@@ -92,6 +98,21 @@ public class Order
    public void setTotal(String total)
    {
       this.total = total;
+      this.totalCents = UNPARSED;
+   }
+
+   /**
+    * Returns the total in cents, parsed once.
+    */
+   public long totalCents()
+   {
+      long cents = totalCents;
+      if (cents == UNPARSED)
+      {
+         cents = Money.parseCents(total);
+         totalCents = cents;
+      }
+      return cents;
    }
 
    @XmlElementRef
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2.domain;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * Progress of the background purge of the cancelled orders.
+ */
+@XmlRootElement(name = "purge")
+@XmlType(propOrder = {"running", "pending", "removed"})
+public class Purge
+{
+   protected boolean running;
+   protected int pending;
+   protected long removed;
+
+   public boolean isRunning()
+   {
+      return running;
+   }
+
+   public void setRunning(boolean running)
+   {
+      this.running = running;
+   }
+
+   public int getPending()
+   {
+      return pending;
+   }
+
+   public void setPending(int pending)
+   {
+      this.pending = pending;
+   }
+
+   public long getRemoved()
+   {
+      return removed;
+   }
+
+   public void setRemoved(long removed)
+   {
+      this.removed = removed;
+   }
+}
@@ -36,26 +36,37 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import org.jboss.test.jaxrs.examples.common.KeysetPage;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Customers;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private static final KeysetPage.Key<Customer> ID = new KeysetPage.Key<Customer>()
+   {
+      public int idOf(Customer customer)
+      {
+         return customer.getId();
+      }
+   };
+
+   private final Store<Customer> customerDB;
+
+   public CustomerResource(Store<Customer> customerDB)
+   {
+      this.customerDB = customerDB;
+   }
 
    @POST
-   @Consumes("application/xml")
+   @Consumes({"application/xml", "application/json"})
    public Response createCustomer(Customer customer, @Context UriInfo uriInfo)
    {
-      customer.setId(idCounter.incrementAndGet());
+      customer.setId(customerDB.nextId());
       customerDB.put(customer.getId(), customer);
       System.out.println("Created customer " + customer.getId());
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
@@ -65,42 +76,32 @@ public class CustomerResource
    }
 
    @GET
-   @Produces("application/xml")
+   @Produces({"application/xml", "application/json"})
    public Customers getCustomers(@QueryParam("start") int start,
                                  @QueryParam("size") @DefaultValue("2") int size,
+                                 @QueryParam("after") String after,
+                                 @QueryParam("before") String before,
                                  @Context UriInfo uriInfo)
    {
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
-      builder.queryParam("start", "{start}");
-      builder.queryParam("size", "{size}");
 
-      ArrayList<Customer> list = new ArrayList<Customer>();
+      // an index seek at any depth, the cursors keep the pages from shifting under inserts and purges
+      KeysetPage<Customer> page = KeysetPage.of(customerDB, ID, after, before, start, size);
+      ArrayList<Customer> list = new ArrayList<Customer>(page.getValues());
       ArrayList<Link> links = new ArrayList<Link>();
-      synchronized (customerDB)
+      // next link
+      if (page.getNext() != null)
+      {
+         URI nextUri = builder.clone().queryParam("after", page.getNext()).queryParam("size", size).build();
+         Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
+         links.add(nextLink);
+      }
+      // previous link
+      if (page.getPrevious() != null)
       {
-         int i = 0;
-         for (Customer customer : customerDB.values())
-         {
-            if (i >= start && i < start + size) list.add(customer);
-            i++;
-         }
-         // next link
-         if (start + size < customerDB.size())
-         {
-            int next = start + size;
-            URI nextUri = builder.clone().build(next, size);
-            Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
-            links.add(nextLink);
-         }
-         // previous link
-         if (start > 0)
-         {
-            int previous = start - size;
-            if (previous < 0) previous = 0;
-            URI previousUri = builder.clone().build(previous, size);
-            Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
-            links.add(previousLink);
-         }
+         URI previousUri = builder.clone().queryParam("before", page.getPrevious()).queryParam("size", size).build();
+         Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
+         links.add(previousLink);
       }
       Customers customers = new Customers();
       customers.setCustomers(list);
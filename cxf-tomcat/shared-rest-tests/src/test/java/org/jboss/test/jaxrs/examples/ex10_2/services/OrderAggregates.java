@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.test.jaxrs.examples.common.Money;
+import org.jboss.test.jaxrs.examples.common.StripedCounter;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats;
+
+/**
+ * Counts and totals of the orders, overall, per customer and per day, kept up to date as orders are created,
+ * cancelled and purged rather than computed from the store, so reading them costs the same whatever the number
+ * of orders. Every change is a few {@link StripedCounter} additions of the total in cents, parsed once per
+ * order. The counters are read one after the other, a read concurrent with changes may see part of one.
+ */
+public class OrderAggregates
+{
+   private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+         "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+   private static final class Totals
+   {
+      private final StripedCounter open = new StripedCounter();
+      private final StripedCounter cancelled = new StripedCounter();
+      private final StripedCounter revenue = new StripedCounter();
+      private final StripedCounter cancelledTotal = new StripedCounter();
+
+      private void add(long openCount, long cancelledCount, long openCents, long cancelledCents)
+      {
+         open.add(openCount);
+         cancelled.add(cancelledCount);
+         revenue.add(openCents);
+         cancelledTotal.add(cancelledCents);
+      }
+
+      private OrderStats stats()
+      {
+         OrderStats stats = new OrderStats();
+         stats.setOpen(open.sum());
+         stats.setCancelled(cancelled.sum());
+         stats.setRevenue(Money.format(revenue.sum()));
+         stats.setCancelledTotal(Money.format(cancelledTotal.sum()));
+         return stats;
+      }
+   }
+
+   private final Totals all = new Totals();
+   private final ConcurrentMap<Integer, Totals> customers = new ConcurrentHashMap<Integer, Totals>();
+   private final ConcurrentMap<String, Totals> days = new ConcurrentHashMap<String, Totals>();
+
+   public void created(Order order)
+   {
+      long cents = order.totalCents();
+      if (order.isCancelled())
+      {
+         add(order, 0, 1, 0, cents);
+      }
+      else
+      {
+         add(order, 1, 0, cents, 0);
+      }
+   }
+
+   /**
+    * Moves an order, which was open, to the cancelled ones.
+    */
+   public void cancelled(Order order)
+   {
+      long cents = order.totalCents();
+      add(order, -1, 1, -cents, cents);
+   }
+
+   public void removed(Order order)
+   {
+      long cents = order.totalCents();
+      if (order.isCancelled())
+      {
+         add(order, 0, -1, 0, -cents);
+      }
+      else
+      {
+         add(order, -1, 0, -cents, 0);
+      }
+   }
+
+   public OrderStats stats()
+   {
+      return all.stats();
+   }
+
+   public OrderStats customer(int customerId)
+   {
+      return stats(customers.get(customerId));
+   }
+
+   /**
+    * Returns the stats of the orders of a day, given as <code>yyyy-MM-dd</code>.
+    */
+   public OrderStats day(String day)
+   {
+      return stats(days.get(day));
+   }
+
+   private static OrderStats stats(Totals totals)
+   {
+      return totals == null ? new Totals().stats() : totals.stats();
+   }
+
+   private void add(Order order, long openCount, long cancelledCount, long openCents, long cancelledCents)
+   {
+      all.add(openCount, cancelledCount, openCents, cancelledCents);
+      if (order.getCustomer() != null)
+      {
+         totals(customers, order.getCustomer().getId()).add(openCount, cancelledCount, openCents, cancelledCents);
+      }
+      String day = dayOf(order.getDate());
+      if (day != null)
+      {
+         totals(days, day).add(openCount, cancelledCount, openCents, cancelledCents);
+      }
+   }
+
+   private static <K> Totals totals(ConcurrentMap<K, Totals> map, K key)
+   {
+      Totals totals = map.get(key);
+      if (totals == null)
+      {
+         Totals created = new Totals();
+         totals = map.putIfAbsent(key, created);
+         if (totals == null)
+         {
+            totals = created;
+         }
+      }
+      return totals;
+   }
+
+   /**
+    * Returns the day of an order date, written as <code>yyyy-MM-dd...</code> or as <code>Date.toString()</code>
+    * does, e.g. <code>Sun Oct 18 10:00:00 EDT 2015</code>, in the time zone it was written in; null if it is
+    * neither.
+    */
+   static String dayOf(String date)
+   {
+      if (date == null)
+      {
+         return null;
+      }
+      if (date.length() >= 10 && date.charAt(4) == '-' && date.charAt(7) == '-')
+      {
+         return date.substring(0, 10);
+      }
+      String[] fields = date.split(" ");
+      if (fields.length != 6 || fields[2].length() != 2 || fields[5].length() != 4)
+      {
+         return null;
+      }
+      for (int month = 0; month < MONTHS.length; month++)
+      {
+         if (MONTHS[month].equals(fields[1]))
+         {
+            return fields[5] + (month < 9 ? "-0" : "-") + (month + 1) + "-" + fields[2];
+         }
+      }
+      return null;
+   }
+}
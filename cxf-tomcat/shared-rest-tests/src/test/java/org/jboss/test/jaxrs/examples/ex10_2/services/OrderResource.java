@@ -37,28 +37,94 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import org.jboss.test.jaxrs.examples.common.Compactor;
+import org.jboss.test.jaxrs.examples.common.KeysetPage;
+import org.jboss.test.jaxrs.examples.common.Store;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats;
 import org.jboss.test.jaxrs.examples.ex10_2.domain.Orders;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Purge;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("/orders")
 public class OrderResource
 {
-   private Map<Integer, Order> orderDB = new Hashtable<Integer, Order>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private static final KeysetPage.Key<Order> ID = new KeysetPage.Key<Order>()
+   {
+      public int idOf(Order order)
+      {
+         return order.getId();
+      }
+   };
+
+   private static final Compactor.Garbage<Order> CANCELLED = new Compactor.Garbage<Order>()
+   {
+      public boolean isGarbage(Order order)
+      {
+         return order.isCancelled();
+      }
+   };
+
+   private final Store<Order> orderDB;
+   private volatile OrderAggregates aggregates = new OrderAggregates();
+   private final Compactor<Order> compactor;
+
+   public OrderResource(Store<Order> orderDB)
+   {
+      this.orderDB = orderDB;
+      this.compactor = new Compactor<Order>(orderDB, CANCELLED, new Compactor.Removal<Order>()
+      {
+         public void removed(int id, Order order)
+         {
+            aggregates.removed(order);
+         }
+      });
+      if (orderDB.size() > 0)
+      {
+         // a persistent store may come back with orders, and cancelled ones among them
+         recover();
+      }
+   }
+
+   /**
+    * Recomputes the aggregates from the stored orders and marks the cancelled ones for the purge, e.g. once a
+    * replica whose orders were all replicated is promoted. No order may change meanwhile.
+    */
+   public void recover()
+   {
+      OrderAggregates recovered = new OrderAggregates();
+      for (int[] ids = orderDB.ids(Integer.MIN_VALUE, 1000); ids.length > 0; ids = orderDB.ids(ids[ids.length - 1] + 1, 1000))
+      {
+         for (int id : ids)
+         {
+            Order order = orderDB.get(id);
+            if (order != null)
+            {
+               recovered.created(order);
+            }
+         }
+         if (ids[ids.length - 1] == Integer.MAX_VALUE)
+         {
+            break;
+         }
+      }
+      aggregates = recovered;
+      compactor.scan();
+   }
 
    @POST
    @Consumes("application/xml")
    public Response createOrder(Order order, @Context UriInfo uriInfo)
    {
-      order.setId(idCounter.incrementAndGet());
+      order.setId(orderDB.nextId());
       orderDB.put(order.getId(), order);
+      aggregates.created(order);
+      if (order.isCancelled())
+      {
+         compactor.mark(order.getId());
+      }
       System.out.println("Created order " + order.getId());
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
       builder.path(Integer.toString(order.getId()));
@@ -92,12 +158,37 @@ public class OrderResource
    @Path("{id}/cancel")
    public void cancelOrder(@PathParam("id") int id)
    {
-      Order order = orderDB.get(id);
+      // the stored order is replaced by a cancelled copy, so the aggregates move it once however many cancel it
+      final Order[] open = new Order[1];
+      Order order = orderDB.compute(id, new Store.Update<Order>()
+      {
+         public Order apply(int id, Order current)
+         {
+            open[0] = current == null || current.isCancelled() ? null : current;
+            return open[0] == null ? current : cancelled(current);
+         }
+      });
       if (order == null)
       {
          throw new WebApplicationException(Response.Status.NOT_FOUND);
       }
-      order.setCancelled(true);
+      if (open[0] != null)
+      {
+         aggregates.cancelled(order);
+         compactor.mark(id);
+      }
+   }
+
+   private static Order cancelled(Order order)
+   {
+      Order copy = new Order();
+      copy.setId(order.getId());
+      copy.setTotal(order.getTotal());
+      copy.setDate(order.getDate());
+      copy.setCustomer(order.getCustomer());
+      copy.setLineItems(order.getLineItems());
+      copy.setCancelled(true);
+      return copy;
    }
 
 
@@ -121,39 +212,29 @@ public class OrderResource
    @Produces("application/xml")
    public Response getOrders(@QueryParam("start") int start,
                              @QueryParam("size") @DefaultValue("2") int size,
+                             @QueryParam("after") String after,
+                             @QueryParam("before") String before,
                              @Context UriInfo uriInfo)
    {
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
-      builder.queryParam("start", "{start}");
-      builder.queryParam("size", "{size}");
 
-      ArrayList<Order> list = new ArrayList<Order>();
+      // an index seek at any depth, the cursors keep the pages from shifting under inserts and purges
+      KeysetPage<Order> page = KeysetPage.of(orderDB, ID, after, before, start, size);
+      ArrayList<Order> list = new ArrayList<Order>(page.getValues());
       ArrayList<Link> links = new ArrayList<Link>();
-      synchronized (orderDB)
+      // next link
+      if (page.getNext() != null)
       {
-         int i = 0;
-         for (Order order : orderDB.values())
-         {
-            if (i >= start && i < start + size) list.add(order);
-            i++;
-         }
-         // next link
-         if (start + size < orderDB.size())
-         {
-            int next = start + size;
-            URI nextUri = builder.clone().build(next, size);
-            Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
-            links.add(nextLink);
-         }
-         // previous link
-         if (start > 0)
-         {
-            int previous = start - size;
-            if (previous < 0) previous = 0;
-            URI previousUri = builder.clone().build(previous, size);
-            Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
-            links.add(previousLink);
-         }
+         URI nextUri = builder.clone().queryParam("after", page.getNext()).queryParam("size", size).build();
+         Link nextLink = Link.fromUri(nextUri).rel("next").type("application/xml").build();
+         links.add(nextLink);
+      }
+      // previous link
+      if (page.getPrevious() != null)
+      {
+         URI previousUri = builder.clone().queryParam("before", page.getPrevious()).queryParam("size", size).build();
+         Link previousLink = Link.fromUri(previousUri).rel("previous").type("application/xml").build();
+         links.add(previousLink);
       }
       Orders orders = new Orders();
       orders.setOrders(list);
@@ -170,22 +251,49 @@ public class OrderResource
       builder.links(Link.fromUri(purgeUri).rel("purge").build());
    }
 
+   /**
+    * Starts removing the cancelled orders in the background, unless it already is, and answers with its
+    * progress; the orders stay readable and writable meanwhile.
+    */
    @POST
    @Path("purge")
-   public void purgeOrders()
+   @Produces("application/xml")
+   public Response purgeOrders(@Context UriInfo uriInfo)
+   {
+      compactor.sweep();
+      return Response.accepted(getPurge()).location(uriInfo.getAbsolutePath()).build();
+   }
+
+   @GET
+   @Path("purge")
+   @Produces("application/xml")
+   public Purge getPurge()
+   {
+      Purge purge = new Purge();
+      purge.setRunning(compactor.isRunning());
+      purge.setPending(compactor.pending());
+      purge.setRemoved(compactor.removed());
+      return purge;
+   }
+
+   /**
+    * Returns the counts and totals of all the orders, or of those of a customer or of a day
+    * (<code>yyyy-MM-dd</code>), without reading the orders.
+    */
+   @GET
+   @Path("stats")
+   @Produces("application/xml")
+   public OrderStats getStats(@QueryParam("customer") Integer customer, @QueryParam("day") String day)
    {
-      synchronized (orderDB)
+      if (customer != null && day != null)
       {
-         List<Order> orders = new ArrayList<Order>();
-         orders.addAll(orderDB.values());
-         for (Order order : orders)
-         {
-            if (order.isCancelled())
-            {
-               orderDB.remove(order.getId());
-            }
-         }
+         throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      if (customer != null)
+      {
+         return aggregates.customer(customer);
       }
+      return day != null ? aggregates.day(day) : aggregates.stats();
    }
 
    @HEAD
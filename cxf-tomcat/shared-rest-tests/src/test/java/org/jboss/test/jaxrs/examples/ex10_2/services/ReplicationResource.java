@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.examples.ex10_2.services;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import org.jboss.test.jaxrs.examples.common.ReplicationStatus;
+import org.jboss.test.jaxrs.examples.common.Replicator;
+
+@Path("/replication")
+public class ReplicationResource
+{
+   private final Replicator replicator;
+
+   public ReplicationResource(Replicator replicator)
+   {
+      this.replicator = replicator;
+   }
+
+   /**
+    * Returns the role of the instance, the sequence number it reached and how far behind its replicas, or
+    * itself if it is a replica, are.
+    */
+   @GET
+   @Produces("application/xml")
+   public ReplicationStatus getStatus()
+   {
+      return replicator.status();
+   }
+
+   /**
+    * Makes a replica the primary, e.g. once the primary failed; it stops following it and accepts updates.
+    */
+   @POST
+   @Path("promote")
+   @Produces("application/xml")
+   public ReplicationStatus promote()
+   {
+      replicator.promote();
+      return replicator.status();
+   }
+}
@@ -21,8 +21,32 @@
  */
 package org.jboss.test.jaxrs.examples.ex10_2.services;
 
+import javax.servlet.ServletConfig;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+
+import org.jboss.test.jaxrs.examples.common.JaxbContextResolver;
+import org.jboss.test.jaxrs.examples.common.PooledJaxbProvider;
+import org.jboss.test.jaxrs.examples.common.ReplicationStatus;
+import org.jboss.test.jaxrs.examples.common.Replicator;
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.Stores;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerJsonProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomerXmlProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersJsonProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Customers;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.CustomersXmlProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItem;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.LineItemXmlProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Order;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrderStats;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrderXmlProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Orders;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.OrdersXmlProvider;
+import org.jboss.test.jaxrs.examples.ex10_2.domain.Purge;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,11 +55,45 @@ public class ShoppingApplication extends Application
 {
    private Set<Object> singletons = new HashSet<Object>();
 
-   public ShoppingApplication()
+   public ShoppingApplication(@Context ServletConfig config)
    {
-      singletons.add(new CustomerResource());
-      singletons.add(new OrderResource());
+      StoreFactory stores = Stores.factory(config);
+      Replicator replicator = Stores.replicator(config);
+      if (replicator != null)
+      {
+         // the updates of the primary are streamed to its replicas, which serve reads
+         stores = replicator.factory(stores);
+         singletons.add(new ReplicationResource(replicator));
+         singletons.add(new ReadOnlyReplicaExceptionMapper());
+         singletons.add(new ReplicaLoadingExceptionMapper());
+      }
+      singletons.add(new CustomerResource(stores.createStore("customers", Customer.class)));
+      final OrderResource orders = new OrderResource(stores.createStore("orders", Order.class));
+      singletons.add(orders);
       singletons.add(new StoreResource());
+      singletons.add(new CustomerXmlProvider());
+      singletons.add(new CustomersXmlProvider());
+      singletons.add(new LineItemXmlProvider());
+      singletons.add(new OrderXmlProvider());
+      singletons.add(new OrdersXmlProvider());
+      singletons.add(new CustomerJsonProvider());
+      singletons.add(new CustomersJsonProvider());
+      JaxbContextResolver jaxbContexts = new JaxbContextResolver(Customer.class, Customers.class, LineItem.class,
+            Order.class, Orders.class, OrderStats.class, Purge.class, ReplicationStatus.class);
+      singletons.add(jaxbContexts);
+      singletons.add(new PooledJaxbProvider(jaxbContexts));
+      if (replicator != null)
+      {
+         // the aggregates of a replica saw none of the orders it was sent
+         replicator.onPromotion(new Replicator.Promotion()
+         {
+            public void promoted()
+            {
+               orders.recover();
+            }
+         });
+         replicator.start();
+      }
    }
 
    @Override
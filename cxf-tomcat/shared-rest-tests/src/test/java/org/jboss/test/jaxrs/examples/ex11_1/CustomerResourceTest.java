@@ -58,8 +58,21 @@ public class CustomerResourceTest
          archive
                .addManifest()
                .addClass(org.jboss.test.jaxrs.examples.ex11_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex11_1.domain.CustomerXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex11_1.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex11_1.services.ShoppingApplication.class);
+               .addClass(org.jboss.test.jaxrs.examples.ex11_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Versioned.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex11_1.services.ShoppingApplication", "/services/*");
       return archive;
    }
@@ -94,4 +107,41 @@ public class CustomerResourceTest
          client.close();
       }
    }
+
+   @Test
+   @RunAsClient
+   public void testConditionalUpdate() throws Exception
+   {
+      Client client = ClientBuilder.newClient();
+      try {
+         WebTarget customerTarget = client.target(baseURL + "services/customers/1");
+         Response response = customerTarget.request().get();
+         Customer cust = response.readEntity(Customer.class);
+         EntityTag etag = response.getEntityTag();
+         response.close();
+
+         cust.setStreet("1 Main Street");
+         response = customerTarget.request()
+                 .header("If-Match", etag)
+                 .put(Entity.xml(cust));
+         Assert.assertEquals(204, response.getStatus());
+         EntityTag updated = response.getEntityTag();
+         Assert.assertNotEquals(etag, updated);
+         response.close();
+
+         // the version the client read is gone
+         response = customerTarget.request()
+                 .header("If-Match", etag)
+                 .put(Entity.xml(cust));
+         Assert.assertEquals(412, response.getStatus());
+         response.close();
+
+         response = customerTarget.request()
+                 .header("If-None-Match", updated).get();
+         Assert.assertEquals(304, response.getStatus());
+         response.close();
+      } finally {
+         client.close();
+      }
+   }
 }
@@ -24,10 +24,12 @@ package org.jboss.test.jaxrs.examples.ex11_1.domain;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+
+import org.jboss.test.jaxrs.examples.common.CustomerData;
 import java.util.Date;
 
 @XmlRootElement(name = "customer")
-public class Customer
+public class Customer implements CustomerData
 {
    private int id;
    private String firstName;
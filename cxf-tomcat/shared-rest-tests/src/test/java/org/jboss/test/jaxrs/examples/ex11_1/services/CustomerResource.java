@@ -36,22 +36,27 @@ import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import org.jboss.test.jaxrs.examples.common.CustomerCopy;
+import org.jboss.test.jaxrs.examples.common.Store;
+import org.jboss.test.jaxrs.examples.common.Versioned;
 import org.jboss.test.jaxrs.examples.ex11_1.domain.Customer;
 
 import java.net.URI;
 import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Path("/customers")
 public class CustomerResource
 {
-   private Map<Integer, Customer> customerDB = new ConcurrentHashMap<Integer, Customer>();
-   private AtomicInteger idCounter = new AtomicInteger();
+   private final Store<Versioned<Customer>> customerDB;
 
-   public CustomerResource()
+   public CustomerResource(Store<Versioned<Customer>> customerDB)
    {
+      this.customerDB = customerDB;
+      if (customerDB.size() > 0)
+      {
+         // a persistent store kept the customers of the previous deployment
+         return;
+      }
       Customer customer;
       int id = 1;
 
@@ -64,15 +69,15 @@ public class CustomerResource
       customer.setState("MA");
       customer.setZip("02115");
       customer.setCountry("USA");
-      customerDB.put(id++, customer);
+      customerDB.put(id++, Versioned.initial(customer));
    }
 
    @POST
    @Consumes("application/xml")
    public Response createCustomer(Customer customer)
    {
-      customer.setId(idCounter.incrementAndGet());
-      customerDB.put(customer.getId(), customer);
+      customer.setId(customerDB.nextId());
+      customerDB.put(customer.getId(), Versioned.initial(customer));
       System.out.println("Created customer " + customer.getId());
       return Response.created(URI.create("/customers/" + customer.getId())).build();
 
@@ -85,15 +90,15 @@ public class CustomerResource
                                @HeaderParam("If-None-Match") String sent,
                                @Context Request request)
    {
-      Customer cust = customerDB.get(id);
-      if (cust == null)
+      Versioned<Customer> record = customerDB.get(id);
+      if (record == null)
       {
          throw new WebApplicationException(Response.Status.NOT_FOUND);
       }
 
       if (sent == null) System.out.println("No If-None-Match sent by client");
 
-      EntityTag tag = new EntityTag(Integer.toString(cust.hashCode()));
+      EntityTag tag = tag(record);
 
       CacheControl cc = new CacheControl();
       cc.setMaxAge(5);
@@ -110,6 +115,8 @@ public class CustomerResource
 
       // Preconditions not met!
 
+      // the stored customer is shared by every reader, so the view stamp goes on a copy
+      Customer cust = CustomerCopy.of(record.getValue());
       cust.setLastViewed(new Date().toString());
       builder = Response.ok(cust, "application/xml");
       builder.cacheControl(cc);
@@ -125,30 +132,41 @@ public class CustomerResource
                                   @Context Request request,
                                   Customer update)
    {
-      Customer cust = customerDB.get(id);
-      if (cust == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
-      EntityTag tag = new EntityTag(Integer.toString(cust.hashCode()));
-
-      Response.ResponseBuilder builder =
-              request.evaluatePreconditions(tag);
-
-      if (builder != null)
+      while (true)
       {
-         // Preconditions not met!
-         return builder.build();
+         Versioned<Customer> current = customerDB.get(id);
+         if (current == null) throw new WebApplicationException(Response.Status.NOT_FOUND);
+
+         Response.ResponseBuilder builder =
+                 request.evaluatePreconditions(tag(current));
+
+         if (builder != null)
+         {
+            // Preconditions not met!
+            return builder.build();
+         }
+
+         // Preconditions met, perform update on a copy
+
+         Customer cust = CustomerCopy.of(current.getValue());
+         cust.setFirstName(update.getFirstName());
+         cust.setLastName(update.getLastName());
+         cust.setStreet(update.getStreet());
+         cust.setState(update.getState());
+         cust.setZip(update.getZip());
+         cust.setCountry(update.getCountry());
+
+         Versioned<Customer> updated = current.next(cust);
+         if (customerDB.replace(id, current, updated))
+         {
+            return Response.noContent().tag(tag(updated)).build();
+         }
+         // another update got in first, the preconditions are evaluated again against its version
       }
+   }
 
-      // Preconditions met, perform update
-
-      cust.setFirstName(update.getFirstName());
-      cust.setLastName(update.getLastName());
-      cust.setStreet(update.getStreet());
-      cust.setState(update.getState());
-      cust.setZip(update.getZip());
-      cust.setCountry(update.getCountry());
-
-
-      builder = Response.noContent();
-      return builder.build();
+   private static EntityTag tag(Versioned<Customer> record)
+   {
+      return new EntityTag(Long.toString(record.getVersion()));
    }
-}
\ No newline at end of file
+}
@@ -21,8 +21,17 @@
  */
 package org.jboss.test.jaxrs.examples.ex11_1.services;
 
+import javax.servlet.ServletConfig;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
+
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.Stores;
+import org.jboss.test.jaxrs.examples.common.Versioned;
+import org.jboss.test.jaxrs.examples.ex11_1.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex11_1.domain.CustomerXmlProvider;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,9 +40,11 @@ public class ShoppingApplication extends Application
 {
    private Set<Object> singletons = new HashSet<Object>();
 
-   public ShoppingApplication()
+   public ShoppingApplication(@Context ServletConfig config)
    {
-      singletons.add(new CustomerResource());
+      StoreFactory stores = Stores.factory(config);
+      singletons.add(new CustomerResource(stores.createStore("customers", Versioned.<Customer>type())));
+      singletons.add(new CustomerXmlProvider());
    }
 
    @Override
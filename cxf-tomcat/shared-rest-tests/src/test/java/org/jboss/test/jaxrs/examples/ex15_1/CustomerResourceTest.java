@@ -60,6 +60,7 @@ public class CustomerResourceTest
          archive
                .setManifest(new StringAsset("Manifest-Version: 1.0\n" + "Dependencies: org.jboss.ws.common\n"))
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.domain.Customer.class)
+               .addClass(org.jboss.test.jaxrs.examples.ex15_1.domain.CustomerXmlProvider.class)
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.features.AllowedPerDay.class)
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.features.OneTimePasswordAuthenticator.class)
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.features.OTPAuthenticated.class)
@@ -67,7 +68,18 @@ public class CustomerResourceTest
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.features.OneTimePasswordGenerator.class)
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.features.OTP.class)
                .addClass(org.jboss.test.jaxrs.examples.ex15_1.services.CustomerResource.class)
-               .addClass(org.jboss.test.jaxrs.examples.ex15_1.services.ShoppingApplication.class);
+               .addClass(org.jboss.test.jaxrs.examples.ex15_1.services.ShoppingApplication.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerData.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.CustomerCopy.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Store.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.StoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.Stores.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IdAllocator.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.InMemoryStoreFactory.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStore.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.OrderedIdIndex.class)
+               .addClass(org.jboss.test.jaxrs.examples.common.IntHashStoreFactory.class);
          JBossWSTestHelper.setXml(archive, "org.jboss.test.jaxrs.examples.ex15_1.services.ShoppingApplication", "/services/*");
       return archive;
    }
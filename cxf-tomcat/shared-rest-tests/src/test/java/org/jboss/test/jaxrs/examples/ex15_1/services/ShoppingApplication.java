@@ -21,9 +21,15 @@
  */
 package org.jboss.test.jaxrs.examples.ex15_1.services;
 
+import javax.servlet.ServletConfig;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Context;
 
+import org.jboss.test.jaxrs.examples.common.StoreFactory;
+import org.jboss.test.jaxrs.examples.common.Stores;
+import org.jboss.test.jaxrs.examples.ex15_1.domain.Customer;
+import org.jboss.test.jaxrs.examples.ex15_1.domain.CustomerXmlProvider;
 import org.jboss.test.jaxrs.examples.ex15_1.features.OneTimePasswordAuthenticator;
 import org.jboss.test.jaxrs.examples.ex15_1.features.PerDayAuthorizer;
 
@@ -36,9 +42,11 @@ public class ShoppingApplication extends Application
 {
    private Set<Object> singletons = new HashSet<Object>();
 
-   public ShoppingApplication()
+   public ShoppingApplication(@Context ServletConfig config)
    {
-      singletons.add(new CustomerResource());
+      StoreFactory stores = Stores.factory(config);
+      singletons.add(new CustomerResource(stores.createStore("customers", Customer.class)));
+      singletons.add(new CustomerXmlProvider());
       HashMap<String, String> userSecretMap = new HashMap<String, String>();
       userSecretMap.put("bburke", "geheim");
       singletons.add(new OneTimePasswordAuthenticator(userSecretMap));
@@ -0,0 +1,642 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+import org.jboss.test.jaxrs.processor.XmlBindingProcessor.Bean;
+import org.jboss.test.jaxrs.processor.XmlBindingProcessor.Kind;
+import org.jboss.test.jaxrs.processor.XmlBindingProcessor.Property;
+
+/**
+ * Generates an <code>application/json</code> provider named <code>&lt;Class&gt;JsonProvider</code> for the
+ * beans {@link XmlBindingProcessor} handles, plus one <code>JsonCodec</code> per package with the pull parser
+ * and output helpers they share.
+ *
+ * The JSON is the one CXF's JSONProvider produces through Jettison's mapped convention: the root element is the
+ * single member of the document, attributes are <code>@</code> prefixed strings, repeated elements become
+ * arrays, elements without content are written as <code>""</code> and element text is typed by Jettison's
+ * default converter. It is written and parsed directly, without the XML stream events in between.
+ */
+final class JsonProviderGenerator
+{
+   private static final String CODEC = "JsonCodec";
+
+   private final ProcessingEnvironment processingEnv;
+   private final Set<String> codecs = new HashSet<String>();
+
+   JsonProviderGenerator(ProcessingEnvironment processingEnv)
+   {
+      this.processingEnv = processingEnv;
+   }
+
+   void generate(Bean bean, Map<String, Bean> beans) throws IOException
+   {
+      String packageName = packageName(bean.type);
+      for (Property property : bean.elements)
+      {
+         // nested beans share the codec of their package
+         if (property.kind == Kind.BEAN && !packageName.equals(packageName(beans.get(property.itemType).type)))
+         {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                  "No streaming JSON provider generated, nested type " + property.itemType
+                        + " is in another package", bean.type);
+            return;
+         }
+      }
+      if (codecs.add(packageName))
+      {
+         generateCodec(packageName, bean.type);
+      }
+
+      String typeName = bean.type.getSimpleName().toString();
+      String providerName = typeName + "JsonProvider";
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("/*\n");
+      sb.append(" * Generated by ").append(JsonProviderGenerator.class.getName()).append(" from ").append(typeName)
+            .append(", do not edit.\n");
+      sb.append(" */\n");
+      sb.append("package ").append(packageName).append(";\n\n");
+      sb.append("import javax.ws.rs.Consumes;\n");
+      sb.append("import javax.ws.rs.Produces;\n");
+      sb.append("import javax.ws.rs.WebApplicationException;\n");
+      sb.append("import javax.ws.rs.core.MediaType;\n");
+      sb.append("import javax.ws.rs.core.MultivaluedMap;\n");
+      sb.append("import javax.ws.rs.core.Response;\n");
+      sb.append("import javax.ws.rs.ext.MessageBodyReader;\n");
+      sb.append("import javax.ws.rs.ext.MessageBodyWriter;\n");
+      sb.append("import javax.ws.rs.ext.Provider;\n\n");
+      sb.append("import java.io.BufferedWriter;\n");
+      sb.append("import java.io.IOException;\n");
+      sb.append("import java.io.InputStream;\n");
+      sb.append("import java.io.InputStreamReader;\n");
+      sb.append("import java.io.OutputStream;\n");
+      sb.append("import java.io.OutputStreamWriter;\n");
+      sb.append("import java.io.Writer;\n");
+      sb.append("import java.lang.annotation.Annotation;\n");
+      sb.append("import java.lang.reflect.Type;\n");
+      sb.append("import java.nio.charset.Charset;\n\n");
+
+      sb.append("@Provider\n");
+      sb.append("@Produces(\"application/json\")\n");
+      sb.append("@Consumes(\"application/json\")\n");
+      sb.append("public class ").append(providerName).append(" implements MessageBodyReader<").append(typeName)
+            .append(">, MessageBodyWriter<").append(typeName).append(">\n");
+      sb.append("{\n");
+      sb.append("   private static final Charset UTF_8 = Charset.forName(\"UTF-8\");\n\n");
+
+      // reader
+      sb.append("   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return type == ").append(typeName).append(".class;\n");
+      sb.append("   }\n\n");
+      sb.append("   public ").append(typeName).append(" readFrom(Class<").append(typeName)
+            .append("> type, Type genericType, Annotation[] annotations, MediaType mediaType,\n");
+      sb.append("         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      try\n");
+      sb.append("      {\n");
+      sb.append("         ").append(CODEC).append(" json = new ").append(CODEC)
+            .append("(new InputStreamReader(entityStream, UTF_8));\n");
+      sb.append("         json.beginObject();\n");
+      sb.append("         if (!\"").append(bean.rootName).append("\".equals(json.nextName()))\n");
+      sb.append("         {\n");
+      sb.append("            throw new WebApplicationException(Response.Status.BAD_REQUEST);\n");
+      sb.append("         }\n");
+      sb.append("         return readObject(json);\n");
+      sb.append("      }\n");
+      sb.append("      catch (IllegalArgumentException e)\n");
+      sb.append("      {\n");
+      sb.append("         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);\n");
+      sb.append("      }\n");
+      sb.append("   }\n\n");
+
+      // writer
+      sb.append("   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return type == ").append(typeName).append(".class;\n");
+      sb.append("   }\n\n");
+      sb.append("   public long getSize(").append(typeName)
+            .append(" t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return -1;\n");
+      sb.append("   }\n\n");
+      sb.append("   public void writeTo(").append(typeName)
+            .append(" t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,\n");
+      sb.append("         MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      Writer out = new BufferedWriter(new OutputStreamWriter(entityStream, UTF_8));\n");
+      sb.append("      out.write(\"{\\\"").append(bean.rootName).append("\\\":\");\n");
+      sb.append("      writeObject(out, t);\n");
+      sb.append("      out.write('}');\n");
+      sb.append("      out.flush();\n");
+      sb.append("   }\n\n");
+
+      boolean usesLinks = false;
+      boolean usesBoolean = false;
+      for (Property property : bean.attributes)
+      {
+         usesBoolean |= "Boolean".equals(property.boxed);
+      }
+      for (Property property : bean.elements)
+      {
+         usesLinks |= property.kind == Kind.LINK;
+         usesBoolean |= "Boolean".equals(property.boxed);
+      }
+
+      generateReadObject(sb, bean, beans, typeName);
+      generateWriteObject(sb, bean, beans, typeName);
+
+      // helpers
+      if (usesBoolean)
+      {
+         sb.append("   private static Boolean parseBoolean(String text)\n");
+         sb.append("   {\n");
+         sb.append("      String value = text.trim();\n");
+         sb.append("      return \"true\".equals(value) || \"1\".equals(value);\n");
+         sb.append("   }\n\n");
+      }
+      if (usesLinks)
+      {
+         sb.append("   private static javax.ws.rs.core.Link readLink(").append(CODEC).append(" json) throws IOException\n");
+         sb.append("   {\n");
+         sb.append("      if (json.peek() != '{')\n");
+         sb.append("      {\n");
+         sb.append("         json.skipValue();\n");
+         sb.append("         return null;\n");
+         sb.append("      }\n");
+         sb.append("      json.beginObject();\n");
+         sb.append("      String href = null;\n");
+         sb.append("      java.util.Map<String, String> params = new java.util.LinkedHashMap<String, String>();\n");
+         sb.append("      for (String name = json.nextName(); name != null; name = json.nextName())\n");
+         sb.append("      {\n");
+         sb.append("         if (\"@href\".equals(name))\n");
+         sb.append("         {\n");
+         sb.append("            href = json.nextText();\n");
+         sb.append("         }\n");
+         sb.append("         else if (name.startsWith(\"@\"))\n");
+         sb.append("         {\n");
+         sb.append("            params.put(name.substring(1), json.nextText());\n");
+         sb.append("         }\n");
+         sb.append("         else\n");
+         sb.append("         {\n");
+         sb.append("            json.skipValue();\n");
+         sb.append("         }\n");
+         sb.append("      }\n");
+         sb.append("      if (href == null)\n");
+         sb.append("      {\n");
+         sb.append("         return null;\n");
+         sb.append("      }\n");
+         sb.append("      javax.ws.rs.core.Link.Builder builder = javax.ws.rs.core.Link.fromUri(href);\n");
+         sb.append("      for (java.util.Map.Entry<String, String> param : params.entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         builder.param(param.getKey(), param.getValue());\n");
+         sb.append("      }\n");
+         sb.append("      return builder.build();\n");
+         sb.append("   }\n\n");
+         sb.append("   private static void writeLink(Writer out, javax.ws.rs.core.Link link) throws IOException\n");
+         sb.append("   {\n");
+         sb.append("      char separator = '{';\n");
+         sb.append("      if (link.getUri() != null)\n");
+         sb.append("      {\n");
+         sb.append("         out.write(separator);\n");
+         sb.append("         separator = ',';\n");
+         sb.append("         out.write(\"\\\"@href\\\":\");\n");
+         sb.append("         ").append(CODEC).append(".writeString(out, link.getUri().toString());\n");
+         sb.append("      }\n");
+         // same parameter order as the XML written through Link.JaxbAdapter
+         sb.append("      java.util.Map<javax.xml.namespace.QName, String> params = new java.util.HashMap<javax.xml.namespace.QName, String>();\n");
+         sb.append("      for (java.util.Map.Entry<String, String> param : link.getParams().entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         params.put(new javax.xml.namespace.QName(\"\", param.getKey()), param.getValue());\n");
+         sb.append("      }\n");
+         sb.append("      for (java.util.Map.Entry<javax.xml.namespace.QName, String> param : params.entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         out.write(separator);\n");
+         sb.append("         separator = ',';\n");
+         sb.append("         ").append(CODEC).append(".writeString(out, \"@\" + param.getKey().getLocalPart());\n");
+         sb.append("         out.write(':');\n");
+         sb.append("         ").append(CODEC).append(".writeString(out, param.getValue());\n");
+         sb.append("      }\n");
+         sb.append("      out.write(separator == '{' ? \"\\\"\\\"\" : \"}\");\n");
+         sb.append("   }\n");
+      }
+      trimBlankLine(sb);
+      sb.append("}\n");
+
+      write(packageName + "." + providerName, bean.type, sb.toString());
+   }
+
+   private void generateReadObject(StringBuilder sb, Bean bean, Map<String, Bean> beans, String typeName)
+   {
+      sb.append("   public static ").append(typeName).append(" readObject(").append(CODEC)
+            .append(" json) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      ").append(typeName).append(" bean = new ").append(typeName).append("();\n");
+      sb.append("      if (json.peek() != '{')\n");
+      sb.append("      {\n");
+      sb.append("         // an element without content\n");
+      sb.append("         json.skipValue();\n");
+      sb.append("         return bean;\n");
+      sb.append("      }\n");
+      for (Property property : bean.elements)
+      {
+         if (property.list && property.setter != null)
+         {
+            sb.append("      java.util.List<").append(property.itemType).append("> ")
+                  .append(XmlBindingProcessor.local(property)).append(" = null;\n");
+         }
+      }
+      sb.append("      json.beginObject();\n");
+      sb.append("      for (String name = json.nextName(); name != null; name = json.nextName())\n");
+      sb.append("      {\n");
+      String keyword = "if";
+      for (Property property : bean.attributes)
+      {
+         if (property.setter == null)
+         {
+            continue;
+         }
+         sb.append("         ").append(keyword).append(" (\"@").append(property.xmlName).append("\".equals(name))\n");
+         sb.append("         {\n");
+         readSimple(sb, "            ", property);
+         sb.append("         }\n");
+         keyword = "else if";
+      }
+      for (Property property : bean.elements)
+      {
+         if (property.setter == null)
+         {
+            continue;
+         }
+         String local = XmlBindingProcessor.local(property);
+         if (property.list)
+         {
+            String name = property.wrapper != null ? property.wrapper : property.xmlName;
+            sb.append("         ").append(keyword).append(" (\"").append(name).append("\".equals(name))\n");
+            sb.append("         {\n");
+            sb.append("            if (").append(local).append(" == null)\n");
+            sb.append("            {\n");
+            sb.append("               ").append(local).append(" = new java.util.ArrayList<").append(property.itemType)
+                  .append(">();\n");
+            sb.append("            }\n");
+            if (property.wrapper != null)
+            {
+               sb.append("            if (json.peek() == '{')\n");
+               sb.append("            {\n");
+               sb.append("               json.beginObject();\n");
+               sb.append("               for (String item = json.nextName(); item != null; item = json.nextName())\n");
+               sb.append("               {\n");
+               sb.append("                  if (\"").append(property.xmlName).append("\".equals(item))\n");
+               sb.append("                  {\n");
+               readItems(sb, "                     ", property, beans, local);
+               sb.append("                  }\n");
+               sb.append("                  else\n");
+               sb.append("                  {\n");
+               sb.append("                     json.skipValue();\n");
+               sb.append("                  }\n");
+               sb.append("               }\n");
+               sb.append("            }\n");
+               sb.append("            else\n");
+               sb.append("            {\n");
+               sb.append("               json.skipValue();\n");
+               sb.append("            }\n");
+            }
+            else
+            {
+               readItems(sb, "            ", property, beans, local);
+            }
+            sb.append("         }\n");
+         }
+         else
+         {
+            sb.append("         ").append(keyword).append(" (\"").append(property.xmlName).append("\".equals(name))\n");
+            sb.append("         {\n");
+            if (property.kind == Kind.SIMPLE)
+            {
+               readSimple(sb, "            ", property);
+            }
+            else
+            {
+               sb.append("            bean.").append(property.setter).append('(').append(readItem(property, beans))
+                     .append(");\n");
+            }
+            sb.append("         }\n");
+         }
+         keyword = "else if";
+      }
+      if ("if".equals(keyword))
+      {
+         sb.append("         json.skipValue();\n");
+      }
+      else
+      {
+         sb.append("         else\n");
+         sb.append("         {\n");
+         sb.append("            json.skipValue();\n");
+         sb.append("         }\n");
+      }
+      sb.append("      }\n");
+      for (Property property : bean.elements)
+      {
+         if (property.list && property.setter != null)
+         {
+            String local = XmlBindingProcessor.local(property);
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            sb.append("         bean.").append(property.setter).append('(').append(local).append(");\n");
+            sb.append("      }\n");
+         }
+      }
+      sb.append("      return bean;\n");
+      sb.append("   }\n\n");
+   }
+
+   private void readSimple(StringBuilder sb, String indent, Property property)
+   {
+      if ("String".equals(property.boxed))
+      {
+         sb.append(indent).append("bean.").append(property.setter).append("(json.nextText());\n");
+         return;
+      }
+      sb.append(indent).append("String text = json.nextText();\n");
+      sb.append(indent).append("if (text != null)\n");
+      sb.append(indent).append("{\n");
+      sb.append(indent).append("   bean.").append(property.setter).append('(').append(parse(property, "text"))
+            .append(");\n");
+      sb.append(indent).append("}\n");
+   }
+
+   /**
+    * Jettison writes a single occurrence of a repeated element as a plain value and more of them as an array.
+    */
+   private void readItems(StringBuilder sb, String indent, Property property, Map<String, Bean> beans, String local)
+   {
+      String item = readItem(property, beans);
+      sb.append(indent).append("if (json.peek() == '[')\n");
+      sb.append(indent).append("{\n");
+      sb.append(indent).append("   json.beginArray();\n");
+      sb.append(indent).append("   while (json.hasNext())\n");
+      sb.append(indent).append("   {\n");
+      sb.append(indent).append("      ").append(local).append(".add(").append(item).append(");\n");
+      sb.append(indent).append("   }\n");
+      sb.append(indent).append("}\n");
+      sb.append(indent).append("else\n");
+      sb.append(indent).append("{\n");
+      sb.append(indent).append("   ").append(local).append(".add(").append(item).append(");\n");
+      sb.append(indent).append("}\n");
+   }
+
+   private void generateWriteObject(StringBuilder sb, Bean bean, Map<String, Bean> beans, String typeName)
+   {
+      sb.append("   public static void writeObject(Writer out, ").append(typeName).append(" bean) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      char separator = '{';\n");
+      for (Property property : bean.attributes)
+      {
+         String local = XmlBindingProcessor.local(property);
+         sb.append("      ").append(property.type).append(' ').append(local).append(" = bean.")
+               .append(property.getter).append("();\n");
+         String indent = "      ";
+         if (!property.primitive)
+         {
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            indent = "         ";
+         }
+         writeName(sb, indent, "@" + property.xmlName);
+         if ("String".equals(property.boxed))
+         {
+            sb.append(indent).append(CODEC).append(".writeString(out, ").append(local).append(");\n");
+         }
+         else
+         {
+            sb.append(indent).append(CODEC).append(".writeString(out, String.valueOf(").append(local).append("));\n");
+         }
+         if (!property.primitive)
+         {
+            sb.append("      }\n");
+         }
+      }
+      for (Property property : bean.elements)
+      {
+         String local = XmlBindingProcessor.local(property);
+         sb.append("      ").append(property.type).append(' ').append(local).append(" = bean.")
+               .append(property.getter).append("();\n");
+         if (property.list)
+         {
+            String count = property.name + "Count";
+            sb.append("      int ").append(count).append(" = ").append(CODEC).append(".count(").append(local)
+                  .append(");\n");
+            String indent = "         ";
+            if (property.wrapper != null)
+            {
+               // the wrapper is written as soon as there is a list, an empty one as an element without content
+               sb.append("      if (").append(local).append(" != null)\n");
+               sb.append("      {\n");
+               writeName(sb, "         ", property.wrapper);
+               sb.append("         if (").append(count).append(" == 0)\n");
+               sb.append("         {\n");
+               sb.append("            out.write(\"\\\"\\\"\");\n");
+               sb.append("         }\n");
+               sb.append("         else\n");
+               sb.append("         {\n");
+               sb.append("            out.write('{');\n");
+               indent = "            ";
+               sb.append(indent).append("out.write(\"\\\"").append(property.xmlName).append("\\\":\");\n");
+            }
+            else
+            {
+               sb.append("      if (").append(count).append(" > 0)\n");
+               sb.append("      {\n");
+               writeName(sb, indent, property.xmlName);
+            }
+            sb.append(indent).append("if (").append(count).append(" > 1)\n");
+            sb.append(indent).append("{\n");
+            sb.append(indent).append("   out.write('[');\n");
+            sb.append(indent).append("}\n");
+            sb.append(indent).append("boolean first = true;\n");
+            sb.append(indent).append("for (").append(property.itemType).append(" item : ").append(local).append(")\n");
+            sb.append(indent).append("{\n");
+            sb.append(indent).append("   if (item != null)\n");
+            sb.append(indent).append("   {\n");
+            sb.append(indent).append("      if (!first)\n");
+            sb.append(indent).append("      {\n");
+            sb.append(indent).append("         out.write(',');\n");
+            sb.append(indent).append("      }\n");
+            sb.append(indent).append("      first = false;\n");
+            writeItem(sb, indent + "      ", property, beans, "item");
+            sb.append(indent).append("   }\n");
+            sb.append(indent).append("}\n");
+            sb.append(indent).append("if (").append(count).append(" > 1)\n");
+            sb.append(indent).append("{\n");
+            sb.append(indent).append("   out.write(']');\n");
+            sb.append(indent).append("}\n");
+            if (property.wrapper != null)
+            {
+               sb.append("            out.write('}');\n");
+               sb.append("         }\n");
+            }
+            sb.append("      }\n");
+         }
+         else if (property.primitive)
+         {
+            writeName(sb, "      ", property.xmlName);
+            writeItem(sb, "      ", property, beans, local);
+         }
+         else
+         {
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            writeName(sb, "         ", property.xmlName);
+            writeItem(sb, "         ", property, beans, local);
+            sb.append("      }\n");
+         }
+      }
+      sb.append("      // Jettison writes an element without attributes and content as an empty string\n");
+      sb.append("      out.write(separator == '{' ? \"\\\"\\\"\" : \"}\");\n");
+      sb.append("   }\n\n");
+   }
+
+   private static void writeName(StringBuilder sb, String indent, String name)
+   {
+      sb.append(indent).append("out.write(separator);\n");
+      sb.append(indent).append("separator = ',';\n");
+      sb.append(indent).append("out.write(\"\\\"").append(name).append("\\\":\");\n");
+   }
+
+   private void writeItem(StringBuilder sb, String indent, Property property, Map<String, Bean> beans, String value)
+   {
+      switch (property.kind)
+      {
+         case BEAN:
+            sb.append(indent).append(provider(property, beans)).append(".writeObject(out, ").append(value)
+                  .append(");\n");
+            break;
+         case LINK:
+            sb.append(indent).append("writeLink(out, ").append(value).append(");\n");
+            break;
+         default:
+            if ("String".equals(property.boxed))
+            {
+               sb.append(indent).append(CODEC).append(".writeText(out, ").append(value).append(");\n");
+            }
+            else
+            {
+               // the canonical text of numbers and booleans is what Jettison turns back into JSON literals
+               sb.append(indent).append("out.write(String.valueOf(").append(value).append("));\n");
+            }
+      }
+   }
+
+   private String readItem(Property property, Map<String, Bean> beans)
+   {
+      switch (property.kind)
+      {
+         case BEAN:
+            return provider(property, beans) + ".readObject(json)";
+         case LINK:
+            return "readLink(json)";
+         default:
+            return parse(property, "json.nextText()");
+      }
+   }
+
+   private static String parse(Property property, String text)
+   {
+      if ("String".equals(property.boxed))
+      {
+         return text;
+      }
+      if ("Boolean".equals(property.boxed))
+      {
+         return "parseBoolean(" + text + ")";
+      }
+      return property.boxed + ".valueOf(" + text + ".trim())";
+   }
+
+   private static String provider(Property property, Map<String, Bean> beans)
+   {
+      return beans.get(property.itemType).type.getSimpleName() + "JsonProvider";
+   }
+
+   private static String packageName(TypeElement type)
+   {
+      return ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+   }
+
+   private static void trimBlankLine(StringBuilder sb)
+   {
+      if (sb.length() > 1 && sb.charAt(sb.length() - 1) == '\n' && sb.charAt(sb.length() - 2) == '\n')
+      {
+         sb.setLength(sb.length() - 1);
+      }
+   }
+
+   private void generateCodec(String packageName, TypeElement origin) throws IOException
+   {
+      InputStream in = JsonProviderGenerator.class.getResourceAsStream(CODEC + ".template");
+      if (in == null)
+      {
+         throw new IOException(CODEC + ".template not found");
+      }
+      ByteArrayOutputStream template = new ByteArrayOutputStream();
+      try
+      {
+         byte[] buf = new byte[4096];
+         for (int n = in.read(buf); n > 0; n = in.read(buf))
+         {
+            template.write(buf, 0, n);
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+      write(packageName + "." + CODEC, origin, template.toString("UTF-8").replace("${package}", packageName));
+   }
+
+   private void write(String name, TypeElement origin, String source) throws IOException
+   {
+      Writer writer = processingEnv.getFiler().createSourceFile(name, origin).openWriter();
+      try
+      {
+         writer.write(source);
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+}
@@ -0,0 +1,1015 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2015, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.jaxrs.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a streaming <code>MessageBodyReader</code>/<code>MessageBodyWriter</code> named
+ * <code>&lt;Class&gt;XmlProvider</code> for every <code>@XmlRootElement</code> class of the compilation.
+ *
+ * Only the subset of the JAXB mapping used by the examples is understood: public getter/setter properties,
+ * <code>@XmlAttribute</code>, <code>@XmlElement</code>, <code>@XmlElementRef</code>, <code>@XmlElementWrapper</code>,
+ * <code>@XmlTransient</code>, <code>@XmlType(propOrder)</code> and <code>Link.JaxbAdapter</code>, over strings,
+ * integral and boolean types, other root elements and lists of those. Classes using anything else are reported
+ * with a warning and left to the JAXB provider. The generated writer produces the same bytes as the JAXB
+ * reference implementation does for the unformatted UTF-8 output CXF asks for, including its property order.
+ * The same classes also get an <code>application/json</code> provider, see {@link JsonProviderGenerator}.
+ */
+@SupportedAnnotationTypes(XmlBindingProcessor.XML_ROOT_ELEMENT)
+public class XmlBindingProcessor extends AbstractProcessor
+{
+   static final String XML_ROOT_ELEMENT = "javax.xml.bind.annotation.XmlRootElement";
+   private static final String XML_ACCESSOR_TYPE = "javax.xml.bind.annotation.XmlAccessorType";
+   private static final String XML_ATTRIBUTE = "javax.xml.bind.annotation.XmlAttribute";
+   private static final String XML_ELEMENT = "javax.xml.bind.annotation.XmlElement";
+   private static final String XML_ELEMENT_REF = "javax.xml.bind.annotation.XmlElementRef";
+   private static final String XML_ELEMENT_WRAPPER = "javax.xml.bind.annotation.XmlElementWrapper";
+   private static final String XML_TRANSIENT = "javax.xml.bind.annotation.XmlTransient";
+   private static final String XML_TYPE = "javax.xml.bind.annotation.XmlType";
+   private static final String XML_JAVA_TYPE_ADAPTER = "javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter";
+   private static final String LINK = "javax.ws.rs.core.Link";
+   private static final String LINK_ADAPTER = "javax.ws.rs.core.Link.JaxbAdapter";
+   private static final String DEFAULT_NAME = "##default";
+
+   private static final Map<String, String> SIMPLE_TYPES = new HashMap<String, String>();
+
+   static
+   {
+      SIMPLE_TYPES.put("java.lang.String", "String");
+      SIMPLE_TYPES.put("boolean", "Boolean");
+      SIMPLE_TYPES.put("java.lang.Boolean", "Boolean");
+      SIMPLE_TYPES.put("byte", "Byte");
+      SIMPLE_TYPES.put("java.lang.Byte", "Byte");
+      SIMPLE_TYPES.put("short", "Short");
+      SIMPLE_TYPES.put("java.lang.Short", "Short");
+      SIMPLE_TYPES.put("int", "Integer");
+      SIMPLE_TYPES.put("java.lang.Integer", "Integer");
+      SIMPLE_TYPES.put("long", "Long");
+      SIMPLE_TYPES.put("java.lang.Long", "Long");
+   }
+
+   enum Kind
+   {
+      SIMPLE, BEAN, LINK
+   }
+
+   static class Property
+   {
+      String name;
+      String getter;
+      String setter;
+      String type;
+      boolean attribute;
+      String xmlName;
+      String wrapper;
+      Kind kind;
+      boolean list;
+      boolean primitive;
+      /** element type for lists, the property type otherwise */
+      String itemType;
+      /** wrapper class name of simple types, used for parsing */
+      String boxed;
+   }
+
+   static class Bean
+   {
+      TypeElement type;
+      String rootName;
+      List<Property> attributes = new ArrayList<Property>();
+      List<Property> elements = new ArrayList<Property>();
+   }
+
+   private JsonProviderGenerator json;
+
+   @Override
+   public SourceVersion getSupportedSourceVersion()
+   {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+   {
+      TypeElement rootAnnotation = processingEnv.getElementUtils().getTypeElement(XML_ROOT_ELEMENT);
+      if (rootAnnotation == null || roundEnv.processingOver())
+      {
+         return false;
+      }
+      if (json == null)
+      {
+         json = new JsonProviderGenerator(processingEnv);
+      }
+      Map<String, Bean> beans = new LinkedHashMap<String, Bean>();
+      for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(rootAnnotation)))
+      {
+         Bean bean = introspect(type);
+         if (bean != null)
+         {
+            beans.put(type.getQualifiedName().toString(), bean);
+         }
+      }
+      // a bean nesting an unsupported root element can't be generated either
+      boolean removed = true;
+      while (removed)
+      {
+         removed = false;
+         for (Iterator<Bean> it = beans.values().iterator(); it.hasNext();)
+         {
+            Bean bean = it.next();
+            for (Property property : bean.elements)
+            {
+               if (property.kind == Kind.BEAN && !beans.containsKey(property.itemType))
+               {
+                  warn(bean.type, "nested type " + property.itemType + " is not supported");
+                  it.remove();
+                  removed = true;
+                  break;
+               }
+            }
+         }
+      }
+      for (Bean bean : beans.values())
+      {
+         try
+         {
+            generate(bean, beans);
+            json.generate(bean, beans);
+         }
+         catch (IOException e)
+         {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                  "Could not generate provider: " + e.getMessage(), bean.type);
+         }
+      }
+      return false;
+   }
+
+   private Bean introspect(TypeElement type)
+   {
+      if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)
+            || !type.getModifiers().contains(Modifier.PUBLIC) || type.getNestingKind().isNested())
+      {
+         warn(type, "only public top level classes are supported");
+         return null;
+      }
+      if (!"java.lang.Object".equals(type.getSuperclass().toString()))
+      {
+         warn(type, "inherited properties are not supported");
+         return null;
+      }
+      AnnotationMirror accessorType = annotation(type, XML_ACCESSOR_TYPE);
+      if (accessorType != null && !String.valueOf(value(accessorType, "value")).endsWith("PUBLIC_MEMBER"))
+      {
+         warn(type, "only the PUBLIC_MEMBER access type is supported");
+         return null;
+      }
+      boolean hasDefaultConstructor = false;
+      for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+      {
+         if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+         {
+            hasDefaultConstructor = true;
+         }
+      }
+      if (!hasDefaultConstructor)
+      {
+         warn(type, "a public no-arg constructor is required");
+         return null;
+      }
+
+      Bean bean = new Bean();
+      bean.type = type;
+      bean.rootName = name(annotation(type, XML_ROOT_ELEMENT), decapitalize(type.getSimpleName().toString()));
+
+      // without a propOrder the reference implementation sorts getter/setter properties by name
+      List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+      Map<String, Property> attributes = new TreeMap<String, Property>();
+      Map<String, Property> elements = new TreeMap<String, Property>();
+      for (ExecutableElement getter : methods)
+      {
+         String name = propertyName(getter);
+         if (name == null || annotation(getter, XML_TRANSIENT) != null)
+         {
+            continue;
+         }
+         ExecutableElement setter = setter(methods, name, getter.getReturnType());
+         boolean annotated = annotation(getter, XML_ATTRIBUTE) != null || annotation(getter, XML_ELEMENT) != null
+               || annotation(getter, XML_ELEMENT_REF) != null || annotation(getter, XML_ELEMENT_WRAPPER) != null
+               || annotation(getter, XML_JAVA_TYPE_ADAPTER) != null;
+         if (setter == null && !annotated)
+         {
+            continue;
+         }
+         Property property = property(getter, name);
+         if (property == null)
+         {
+            return null;
+         }
+         property.setter = setter == null ? null : setter.getSimpleName().toString();
+         if (property.attribute)
+         {
+            attributes.put(name, property);
+         }
+         else
+         {
+            elements.put(name, property);
+         }
+      }
+      for (Element field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+      {
+         if (field.getModifiers().contains(Modifier.PUBLIC) && !field.getModifiers().contains(Modifier.STATIC))
+         {
+            warn(type, "public fields are not supported");
+            return null;
+         }
+      }
+
+      bean.attributes.addAll(attributes.values());
+      AnnotationMirror xmlType = annotation(type, XML_TYPE);
+      Object propOrder = xmlType == null ? null : value(xmlType, "propOrder");
+      if (propOrder instanceof List)
+      {
+         for (Object entry : (List<?>) propOrder)
+         {
+            String name = String.valueOf(((AnnotationValue) entry).getValue());
+            Property property = elements.remove(name);
+            if (property != null)
+            {
+               bean.elements.add(property);
+            }
+         }
+      }
+      bean.elements.addAll(elements.values());
+      return bean;
+   }
+
+   private Property property(ExecutableElement getter, String name)
+   {
+      Property property = new Property();
+      property.name = name;
+      property.getter = getter.getSimpleName().toString();
+      property.type = getter.getReturnType().toString();
+      property.primitive = getter.getReturnType().getKind().isPrimitive();
+
+      TypeMirror itemType = getter.getReturnType();
+      String erasure = processingEnv.getTypeUtils().erasure(itemType).toString();
+      if ("java.util.List".equals(erasure) || "java.util.Collection".equals(erasure))
+      {
+         List<? extends TypeMirror> arguments = ((DeclaredType) itemType).getTypeArguments();
+         if (arguments.size() != 1)
+         {
+            warn(getter, "raw collections are not supported");
+            return null;
+         }
+         property.list = true;
+         itemType = arguments.get(0);
+      }
+      property.itemType = itemType.toString();
+
+      AnnotationMirror adapter = annotation(getter, XML_JAVA_TYPE_ADAPTER);
+      if (LINK.equals(property.itemType))
+      {
+         if (adapter == null || !LINK_ADAPTER.equals(String.valueOf(value(adapter, "value")).replace(".class", "")))
+         {
+            warn(getter, "links are only supported through Link.JaxbAdapter");
+            return null;
+         }
+         property.kind = Kind.LINK;
+      }
+      else if (adapter != null)
+      {
+         warn(getter, "only Link.JaxbAdapter is supported");
+         return null;
+      }
+      else if (SIMPLE_TYPES.containsKey(property.itemType))
+      {
+         property.kind = Kind.SIMPLE;
+         property.boxed = SIMPLE_TYPES.get(property.itemType);
+      }
+      else if (itemType.getKind() == TypeKind.DECLARED
+            && annotation(processingEnv.getTypeUtils().asElement(itemType), XML_ROOT_ELEMENT) != null)
+      {
+         property.kind = Kind.BEAN;
+      }
+      else
+      {
+         warn(getter, "type " + property.type + " is not supported");
+         return null;
+      }
+
+      AnnotationMirror attribute = annotation(getter, XML_ATTRIBUTE);
+      if (attribute != null)
+      {
+         if (property.kind != Kind.SIMPLE || property.list)
+         {
+            warn(getter, "only simple types can be mapped to attributes");
+            return null;
+         }
+         property.attribute = true;
+         property.xmlName = name(attribute, name);
+         return property;
+      }
+      if (annotation(getter, XML_ELEMENT_REF) != null)
+      {
+         if (property.kind != Kind.BEAN)
+         {
+            warn(getter, "@XmlElementRef is only supported on root elements");
+            return null;
+         }
+         TypeElement referenced = (TypeElement) processingEnv.getTypeUtils().asElement(itemType);
+         property.xmlName = name(annotation(referenced, XML_ROOT_ELEMENT),
+               decapitalize(referenced.getSimpleName().toString()));
+      }
+      else
+      {
+         property.xmlName = name(annotation(getter, XML_ELEMENT), name);
+      }
+      AnnotationMirror wrapper = annotation(getter, XML_ELEMENT_WRAPPER);
+      if (wrapper != null)
+      {
+         if (!property.list)
+         {
+            warn(getter, "@XmlElementWrapper is only supported on collections");
+            return null;
+         }
+         property.wrapper = name(wrapper, name);
+      }
+      return property;
+   }
+
+   private void generate(Bean bean, Map<String, Bean> beans) throws IOException
+   {
+      String packageName = ((PackageElement) bean.type.getEnclosingElement()).getQualifiedName().toString();
+      String typeName = bean.type.getSimpleName().toString();
+      String providerName = typeName + "XmlProvider";
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("/*\n");
+      sb.append(" * Generated by ").append(XmlBindingProcessor.class.getName()).append(" from ").append(typeName)
+            .append(", do not edit.\n");
+      sb.append(" */\n");
+      sb.append("package ").append(packageName).append(";\n\n");
+      sb.append("import javax.ws.rs.Consumes;\n");
+      sb.append("import javax.ws.rs.Produces;\n");
+      sb.append("import javax.ws.rs.WebApplicationException;\n");
+      sb.append("import javax.ws.rs.core.MediaType;\n");
+      sb.append("import javax.ws.rs.core.MultivaluedMap;\n");
+      sb.append("import javax.ws.rs.core.Response;\n");
+      sb.append("import javax.ws.rs.ext.MessageBodyReader;\n");
+      sb.append("import javax.ws.rs.ext.MessageBodyWriter;\n");
+      sb.append("import javax.ws.rs.ext.Provider;\n");
+      sb.append("import javax.xml.stream.XMLInputFactory;\n");
+      sb.append("import javax.xml.stream.XMLStreamConstants;\n");
+      sb.append("import javax.xml.stream.XMLStreamException;\n");
+      sb.append("import javax.xml.stream.XMLStreamReader;\n\n");
+      sb.append("import java.io.BufferedWriter;\n");
+      sb.append("import java.io.IOException;\n");
+      sb.append("import java.io.InputStream;\n");
+      sb.append("import java.io.OutputStream;\n");
+      sb.append("import java.io.OutputStreamWriter;\n");
+      sb.append("import java.io.Writer;\n");
+      sb.append("import java.lang.annotation.Annotation;\n");
+      sb.append("import java.lang.reflect.Type;\n");
+      sb.append("import java.nio.charset.Charset;\n\n");
+
+      sb.append("@Provider\n");
+      sb.append("@Produces({\"application/xml\", \"text/xml\"})\n");
+      sb.append("@Consumes({\"application/xml\", \"text/xml\"})\n");
+      sb.append("public class ").append(providerName).append(" implements MessageBodyReader<").append(typeName)
+            .append(">, MessageBodyWriter<").append(typeName).append(">\n");
+      sb.append("{\n");
+      sb.append("   private static final Charset UTF_8 = Charset.forName(\"UTF-8\");\n");
+      sb.append("   private static final String PROLOG = \"<?xml version=\\\"1.0\\\" encoding=\\\"UTF-8\\\" standalone=\\\"yes\\\"?>\";\n");
+      sb.append("   private static final XMLInputFactory factory = XMLInputFactory.newInstance();\n\n");
+      sb.append("   static\n");
+      sb.append("   {\n");
+      sb.append("      factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);\n");
+      sb.append("      factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);\n");
+      sb.append("   }\n\n");
+
+      // reader
+      sb.append("   public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return type == ").append(typeName).append(".class;\n");
+      sb.append("   }\n\n");
+      sb.append("   public ").append(typeName).append(" readFrom(Class<").append(typeName)
+            .append("> type, Type genericType, Annotation[] annotations, MediaType mediaType,\n");
+      sb.append("         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      try\n");
+      sb.append("      {\n");
+      sb.append("         XMLStreamReader reader;\n");
+      sb.append("         synchronized (factory)\n");
+      sb.append("         {\n");
+      sb.append("            reader = factory.createXMLStreamReader(entityStream);\n");
+      sb.append("         }\n");
+      sb.append("         try\n");
+      sb.append("         {\n");
+      sb.append("            reader.nextTag();\n");
+      sb.append("            if (!\"").append(bean.rootName).append("\".equals(reader.getLocalName()))\n");
+      sb.append("            {\n");
+      sb.append("               throw new WebApplicationException(Response.Status.BAD_REQUEST);\n");
+      sb.append("            }\n");
+      sb.append("            return readElement(reader);\n");
+      sb.append("         }\n");
+      sb.append("         finally\n");
+      sb.append("         {\n");
+      sb.append("            reader.close();\n");
+      sb.append("         }\n");
+      sb.append("      }\n");
+      sb.append("      catch (XMLStreamException e)\n");
+      sb.append("      {\n");
+      sb.append("         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);\n");
+      sb.append("      }\n");
+      sb.append("      catch (IllegalArgumentException e)\n");
+      sb.append("      {\n");
+      sb.append("         throw new WebApplicationException(e, Response.Status.BAD_REQUEST);\n");
+      sb.append("      }\n");
+      sb.append("   }\n\n");
+
+      // writer
+      sb.append("   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return type == ").append(typeName).append(".class;\n");
+      sb.append("   }\n\n");
+      sb.append("   public long getSize(").append(typeName)
+            .append(" t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)\n");
+      sb.append("   {\n");
+      sb.append("      return -1;\n");
+      sb.append("   }\n\n");
+      sb.append("   public void writeTo(").append(typeName)
+            .append(" t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,\n");
+      sb.append("         MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      Writer out = new BufferedWriter(new OutputStreamWriter(entityStream, UTF_8));\n");
+      sb.append("      out.write(PROLOG);\n");
+      sb.append("      writeElement(out, \"").append(bean.rootName).append("\", t);\n");
+      sb.append("      out.flush();\n");
+      sb.append("   }\n\n");
+
+      boolean usesLinks = false;
+      boolean usesBoolean = false;
+      for (Property property : bean.attributes)
+      {
+         usesBoolean |= "Boolean".equals(property.boxed);
+      }
+      for (Property property : bean.elements)
+      {
+         usesLinks |= property.kind == Kind.LINK;
+         usesBoolean |= "Boolean".equals(property.boxed);
+      }
+
+      generateReadElement(sb, bean, beans, typeName);
+      generateWriteElement(sb, bean, beans, typeName);
+
+      // helpers
+      sb.append("   private static void skipElement(XMLStreamReader reader) throws XMLStreamException\n");
+      sb.append("   {\n");
+      sb.append("      for (int depth = 1; depth > 0;)\n");
+      sb.append("      {\n");
+      sb.append("         int event = reader.next();\n");
+      sb.append("         if (event == XMLStreamConstants.START_ELEMENT)\n");
+      sb.append("         {\n");
+      sb.append("            depth++;\n");
+      sb.append("         }\n");
+      sb.append("         else if (event == XMLStreamConstants.END_ELEMENT)\n");
+      sb.append("         {\n");
+      sb.append("            depth--;\n");
+      sb.append("         }\n");
+      sb.append("      }\n");
+      sb.append("   }\n\n");
+      if (usesBoolean)
+      {
+         sb.append("   private static Boolean parseBoolean(String text)\n");
+         sb.append("   {\n");
+         sb.append("      String value = text.trim();\n");
+         sb.append("      return \"true\".equals(value) || \"1\".equals(value);\n");
+         sb.append("   }\n\n");
+      }
+      if (usesLinks)
+      {
+         sb.append("   private static javax.ws.rs.core.Link readLink(XMLStreamReader reader) throws XMLStreamException\n");
+         sb.append("   {\n");
+         sb.append("      String href = null;\n");
+         sb.append("      java.util.Map<String, String> params = new java.util.LinkedHashMap<String, String>();\n");
+         sb.append("      for (int i = 0; i < reader.getAttributeCount(); i++)\n");
+         sb.append("      {\n");
+         sb.append("         if (\"href\".equals(reader.getAttributeLocalName(i)))\n");
+         sb.append("         {\n");
+         sb.append("            href = reader.getAttributeValue(i);\n");
+         sb.append("         }\n");
+         sb.append("         else\n");
+         sb.append("         {\n");
+         sb.append("            params.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));\n");
+         sb.append("         }\n");
+         sb.append("      }\n");
+         sb.append("      skipElement(reader);\n");
+         sb.append("      if (href == null)\n");
+         sb.append("      {\n");
+         sb.append("         return null;\n");
+         sb.append("      }\n");
+         sb.append("      javax.ws.rs.core.Link.Builder builder = javax.ws.rs.core.Link.fromUri(href);\n");
+         sb.append("      for (java.util.Map.Entry<String, String> param : params.entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         builder.param(param.getKey(), param.getValue());\n");
+         sb.append("      }\n");
+         sb.append("      return builder.build();\n");
+         sb.append("   }\n\n");
+         sb.append("   private static void writeLink(Writer out, String name, javax.ws.rs.core.Link link) throws IOException\n");
+         sb.append("   {\n");
+         sb.append("      out.write('<');\n");
+         sb.append("      out.write(name);\n");
+         sb.append("      if (link.getUri() != null)\n");
+         sb.append("      {\n");
+         sb.append("         out.write(\" href=\\\"\");\n");
+         sb.append("         escape(out, link.getUri().toString(), true);\n");
+         sb.append("         out.write('\"');\n");
+         sb.append("      }\n");
+         // Link.JaxbAdapter hands the parameters to JAXB through a HashMap keyed by QName, keep its order
+         sb.append("      java.util.Map<javax.xml.namespace.QName, String> params = new java.util.HashMap<javax.xml.namespace.QName, String>();\n");
+         sb.append("      for (java.util.Map.Entry<String, String> param : link.getParams().entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         params.put(new javax.xml.namespace.QName(\"\", param.getKey()), param.getValue());\n");
+         sb.append("      }\n");
+         sb.append("      for (java.util.Map.Entry<javax.xml.namespace.QName, String> param : params.entrySet())\n");
+         sb.append("      {\n");
+         sb.append("         out.write(' ');\n");
+         sb.append("         out.write(param.getKey().getLocalPart());\n");
+         sb.append("         out.write(\"=\\\"\");\n");
+         sb.append("         escape(out, param.getValue(), true);\n");
+         sb.append("         out.write('\"');\n");
+         sb.append("      }\n");
+         sb.append("      out.write(\"/>\");\n");
+         sb.append("   }\n\n");
+      }
+      sb.append("   private static void escape(Writer out, String s, boolean attribute) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      int start = 0;\n");
+      sb.append("      for (int i = 0; i < s.length(); i++)\n");
+      sb.append("      {\n");
+      sb.append("         String entity;\n");
+      sb.append("         switch (s.charAt(i))\n");
+      sb.append("         {\n");
+      sb.append("            case '&':\n");
+      sb.append("               entity = \"&amp;\";\n");
+      sb.append("               break;\n");
+      sb.append("            case '<':\n");
+      sb.append("               entity = \"&lt;\";\n");
+      sb.append("               break;\n");
+      sb.append("            case '>':\n");
+      sb.append("               entity = \"&gt;\";\n");
+      sb.append("               break;\n");
+      sb.append("            case '\"':\n");
+      sb.append("               if (!attribute)\n");
+      sb.append("               {\n");
+      sb.append("                  continue;\n");
+      sb.append("               }\n");
+      sb.append("               entity = \"&quot;\";\n");
+      sb.append("               break;\n");
+      sb.append("            default:\n");
+      sb.append("               continue;\n");
+      sb.append("         }\n");
+      sb.append("         out.write(s, start, i - start);\n");
+      sb.append("         out.write(entity);\n");
+      sb.append("         start = i + 1;\n");
+      sb.append("      }\n");
+      sb.append("      out.write(s, start, s.length() - start);\n");
+      sb.append("   }\n");
+      sb.append("}\n");
+
+      Writer writer = processingEnv.getFiler().createSourceFile(packageName + "." + providerName, bean.type).openWriter();
+      try
+      {
+         writer.write(sb.toString());
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+
+   private void generateReadElement(StringBuilder sb, Bean bean, Map<String, Bean> beans, String typeName)
+   {
+      sb.append("   public static ").append(typeName)
+            .append(" readElement(XMLStreamReader reader) throws XMLStreamException\n");
+      sb.append("   {\n");
+      sb.append("      ").append(typeName).append(" bean = new ").append(typeName).append("();\n");
+      if (!bean.attributes.isEmpty())
+      {
+         sb.append("      for (int i = 0; i < reader.getAttributeCount(); i++)\n");
+         sb.append("      {\n");
+         sb.append("         String name = reader.getAttributeLocalName(i);\n");
+         String keyword = "if";
+         for (Property property : bean.attributes)
+         {
+            if (property.setter == null)
+            {
+               continue;
+            }
+            sb.append("         ").append(keyword).append(" (\"").append(property.xmlName).append("\".equals(name))\n");
+            sb.append("         {\n");
+            sb.append("            bean.").append(property.setter).append('(')
+                  .append(parse(property, "reader.getAttributeValue(i)")).append(");\n");
+            sb.append("         }\n");
+            keyword = "else if";
+         }
+         sb.append("      }\n");
+      }
+      for (Property property : bean.elements)
+      {
+         if (property.list && property.setter != null)
+         {
+            sb.append("      java.util.List<").append(property.itemType).append("> ").append(local(property))
+                  .append(" = null;\n");
+         }
+      }
+      sb.append("      while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)\n");
+      sb.append("      {\n");
+      sb.append("         String name = reader.getLocalName();\n");
+      String keyword = "if";
+      for (Property property : bean.elements)
+      {
+         if (property.setter == null)
+         {
+            continue;
+         }
+         String local = local(property);
+         if (property.wrapper != null)
+         {
+            sb.append("         ").append(keyword).append(" (\"").append(property.wrapper).append("\".equals(name))\n");
+            sb.append("         {\n");
+            sb.append("            if (").append(local).append(" == null)\n");
+            sb.append("            {\n");
+            sb.append("               ").append(local).append(" = new java.util.ArrayList<").append(property.itemType)
+                  .append(">();\n");
+            sb.append("            }\n");
+            sb.append("            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)\n");
+            sb.append("            {\n");
+            sb.append("               if (\"").append(property.xmlName).append("\".equals(reader.getLocalName()))\n");
+            sb.append("               {\n");
+            sb.append("                  ").append(local).append(".add(").append(readItem(property, beans)).append(");\n");
+            sb.append("               }\n");
+            sb.append("               else\n");
+            sb.append("               {\n");
+            sb.append("                  skipElement(reader);\n");
+            sb.append("               }\n");
+            sb.append("            }\n");
+            sb.append("         }\n");
+         }
+         else if (property.list)
+         {
+            sb.append("         ").append(keyword).append(" (\"").append(property.xmlName).append("\".equals(name))\n");
+            sb.append("         {\n");
+            sb.append("            if (").append(local).append(" == null)\n");
+            sb.append("            {\n");
+            sb.append("               ").append(local).append(" = new java.util.ArrayList<").append(property.itemType)
+                  .append(">();\n");
+            sb.append("            }\n");
+            sb.append("            ").append(local).append(".add(").append(readItem(property, beans)).append(");\n");
+            sb.append("         }\n");
+         }
+         else
+         {
+            sb.append("         ").append(keyword).append(" (\"").append(property.xmlName).append("\".equals(name))\n");
+            sb.append("         {\n");
+            sb.append("            bean.").append(property.setter).append('(').append(readItem(property, beans))
+                  .append(");\n");
+            sb.append("         }\n");
+         }
+         keyword = "else if";
+      }
+      if ("if".equals(keyword))
+      {
+         sb.append("         skipElement(reader);\n");
+      }
+      else
+      {
+         sb.append("         else\n");
+         sb.append("         {\n");
+         sb.append("            skipElement(reader);\n");
+         sb.append("         }\n");
+      }
+      sb.append("      }\n");
+      for (Property property : bean.elements)
+      {
+         if (property.list && property.setter != null)
+         {
+            sb.append("      if (").append(local(property)).append(" != null)\n");
+            sb.append("      {\n");
+            sb.append("         bean.").append(property.setter).append('(').append(local(property)).append(");\n");
+            sb.append("      }\n");
+         }
+      }
+      sb.append("      return bean;\n");
+      sb.append("   }\n\n");
+   }
+
+   private void generateWriteElement(StringBuilder sb, Bean bean, Map<String, Bean> beans, String typeName)
+   {
+      sb.append("   public static void writeElement(Writer out, String name, ").append(typeName)
+            .append(" bean) throws IOException\n");
+      sb.append("   {\n");
+      sb.append("      out.write('<');\n");
+      sb.append("      out.write(name);\n");
+      for (Property property : bean.attributes)
+      {
+         String local = local(property);
+         sb.append("      ").append(property.type).append(' ').append(local).append(" = bean.")
+               .append(property.getter).append("();\n");
+         String indent = "      ";
+         if (!property.primitive)
+         {
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            indent = "         ";
+         }
+         sb.append(indent).append("out.write(\" ").append(property.xmlName).append("=\\\"\");\n");
+         writeSimple(sb, indent, property, local, true);
+         sb.append(indent).append("out.write('\"');\n");
+         if (!property.primitive)
+         {
+            sb.append("      }\n");
+         }
+      }
+      // JAXB closes elements without content as <name/>
+      StringBuilder empty = new StringBuilder();
+      for (Property property : bean.elements)
+      {
+         String local = local(property);
+         sb.append("      ").append(property.type).append(' ').append(local).append(" = bean.")
+               .append(property.getter).append("();\n");
+         if (property.primitive)
+         {
+            empty = null;
+         }
+         else if (empty != null)
+         {
+            empty.append(empty.length() == 0 ? "" : " && ");
+            if (property.list && property.wrapper == null)
+            {
+               empty.append('(').append(local).append(" == null || ").append(local).append(".isEmpty())");
+            }
+            else
+            {
+               empty.append(local).append(" == null");
+            }
+         }
+      }
+      if (empty != null)
+      {
+         sb.append("      if (").append(empty.length() == 0 ? "true" : empty).append(")\n");
+         sb.append("      {\n");
+         sb.append("         out.write(\"/>\");\n");
+         sb.append("         return;\n");
+         sb.append("      }\n");
+      }
+      sb.append("      out.write('>');\n");
+      for (Property property : bean.elements)
+      {
+         String local = local(property);
+         if (property.list)
+         {
+            String indent = "         ";
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            if (property.wrapper != null)
+            {
+               sb.append("         if (").append(local).append(".isEmpty())\n");
+               sb.append("         {\n");
+               sb.append("            out.write(\"<").append(property.wrapper).append("/>\");\n");
+               sb.append("         }\n");
+               sb.append("         else\n");
+               sb.append("         {\n");
+               sb.append("            out.write(\"<").append(property.wrapper).append(">\");\n");
+               indent = "            ";
+            }
+            sb.append(indent).append("for (").append(property.itemType).append(" item : ").append(local).append(")\n");
+            sb.append(indent).append("{\n");
+            sb.append(indent).append("   if (item != null)\n");
+            sb.append(indent).append("   {\n");
+            writeItem(sb, indent + "      ", property, beans, "item");
+            sb.append(indent).append("   }\n");
+            sb.append(indent).append("}\n");
+            if (property.wrapper != null)
+            {
+               sb.append("            out.write(\"</").append(property.wrapper).append(">\");\n");
+               sb.append("         }\n");
+            }
+            sb.append("      }\n");
+         }
+         else if (property.primitive)
+         {
+            writeItem(sb, "      ", property, beans, local);
+         }
+         else
+         {
+            sb.append("      if (").append(local).append(" != null)\n");
+            sb.append("      {\n");
+            writeItem(sb, "         ", property, beans, local);
+            sb.append("      }\n");
+         }
+      }
+      sb.append("      out.write(\"</\");\n");
+      sb.append("      out.write(name);\n");
+      sb.append("      out.write('>');\n");
+      sb.append("   }\n\n");
+   }
+
+   private void writeItem(StringBuilder sb, String indent, Property property, Map<String, Bean> beans, String value)
+   {
+      switch (property.kind)
+      {
+         case BEAN:
+            sb.append(indent).append(provider(property, beans)).append(".writeElement(out, \"")
+                  .append(property.xmlName).append("\", ").append(value).append(");\n");
+            break;
+         case LINK:
+            sb.append(indent).append("writeLink(out, \"").append(property.xmlName).append("\", ").append(value)
+                  .append(");\n");
+            break;
+         default:
+            sb.append(indent).append("out.write(\"<").append(property.xmlName).append(">\");\n");
+            writeSimple(sb, indent, property, value, false);
+            sb.append(indent).append("out.write(\"</").append(property.xmlName).append(">\");\n");
+      }
+   }
+
+   private void writeSimple(StringBuilder sb, String indent, Property property, String value, boolean attribute)
+   {
+      if ("String".equals(property.boxed))
+      {
+         sb.append(indent).append("escape(out, ").append(value).append(", ").append(attribute).append(");\n");
+      }
+      else
+      {
+         sb.append(indent).append("out.write(String.valueOf(").append(value).append("));\n");
+      }
+   }
+
+   private String readItem(Property property, Map<String, Bean> beans)
+   {
+      switch (property.kind)
+      {
+         case BEAN:
+            return provider(property, beans) + ".readElement(reader)";
+         case LINK:
+            return "readLink(reader)";
+         default:
+            return parse(property, "reader.getElementText()");
+      }
+   }
+
+   private String parse(Property property, String text)
+   {
+      if ("String".equals(property.boxed))
+      {
+         return text;
+      }
+      if ("Boolean".equals(property.boxed))
+      {
+         return "parseBoolean(" + text + ")";
+      }
+      return property.boxed + ".valueOf(" + text + ".trim())";
+   }
+
+   private String provider(Property property, Map<String, Bean> beans)
+   {
+      TypeElement type = beans.get(property.itemType).type;
+      return ((PackageElement) type.getEnclosingElement()).getQualifiedName() + "." + type.getSimpleName()
+            + "XmlProvider";
+   }
+
+   static String local(Property property)
+   {
+      return property.name + "Value";
+   }
+
+   private static String propertyName(ExecutableElement method)
+   {
+      if (method.getModifiers().contains(Modifier.STATIC) || !method.getModifiers().contains(Modifier.PUBLIC)
+            || !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID)
+      {
+         return null;
+      }
+      String name = method.getSimpleName().toString();
+      if (name.startsWith("get") && name.length() > 3 && !"getClass".equals(name))
+      {
+         return decapitalize(name.substring(3));
+      }
+      if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN)
+      {
+         return decapitalize(name.substring(2));
+      }
+      return null;
+   }
+
+   private static ExecutableElement setter(List<ExecutableElement> methods, String property, TypeMirror type)
+   {
+      String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+      for (ExecutableElement method : methods)
+      {
+         if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+               && method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC)
+               && method.getParameters().get(0).asType().toString().equals(type.toString()))
+         {
+            return method;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Same rule as java.beans.Introspector, which is what JAXB uses for default names.
+    */
+   private static String decapitalize(String name)
+   {
+      if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0)))
+      {
+         return name;
+      }
+      return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+   }
+
+   private static AnnotationMirror annotation(Element element, String type)
+   {
+      for (AnnotationMirror mirror : element.getAnnotationMirrors())
+      {
+         if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(type))
+         {
+            return mirror;
+         }
+      }
+      return null;
+   }
+
+   private static Object value(AnnotationMirror mirror, String name)
+   {
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet())
+      {
+         if (entry.getKey().getSimpleName().contentEquals(name))
+         {
+            return entry.getValue().getValue();
+         }
+      }
+      return null;
+   }
+
+   private static String name(AnnotationMirror mirror, String defaultName)
+   {
+      Object name = mirror == null ? null : value(mirror, "name");
+      return name == null || DEFAULT_NAME.equals(name) ? defaultName : name.toString();
+   }
+
+   private void warn(Element element, String message)
+   {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+            "No streaming XML provider generated, " + message, element);
+   }
+}